@@ -0,0 +1,23 @@
+/**
+ * DoubleDoubleFractalFormula.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+import jfractus.math.DDComplex;
+
+/* optional contract for FractalFormula which can be computed in double-double precision
+ * (used by renderer for moderate deep zooms) */
+public interface DoubleDoubleFractalFormula
+{
+	/* compute block of image:
+	 * itData - output iterations data used for generate image
+	 * center - center of view in double-double precision
+	 * dcRe, dcIm - input: distances of points from center (coordinates are center+dc)
+	 * outZRe, outZIm - output: complex values after n[i,j] iterations
+	 */
+	public void compute(int length, int[] itData, DDComplex center,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm);
+}
@@ -0,0 +1,20 @@
+/**
+ * FloatFractalFormula.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* optional contract for FractalFormula which can be computed in single precision
+ * (used by renderer for shallow zooms, where float is visually identical) */
+public interface FloatFractalFormula
+{
+	/* compute block of image:
+	 * itData - output iterations data used for generate image
+	 * zRe, zIm - input: coordinates at complex plane
+	 * outZRe, outZIm - output: complex values after n[i,j] iterations
+	 */
+	public void compute(int length, int[] itData, float[] zRe, float[] zIm,
+			float[] outZRe, float[] outZIm);
+}
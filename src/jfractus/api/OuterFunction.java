@@ -17,4 +17,11 @@ public abstract class OuterFunction extends Function
 	 */
 	public abstract void compute(int length, int[] itData, Complex[] zData,
 			float[] outData);
+	
+	/* returns true if color index depends only on number of iterations
+	 * (renderer can guess escaped points of solid regions) */
+	public boolean isIterationsOnly()
+	{
+		return false;
+	}
 }
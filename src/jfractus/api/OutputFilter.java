@@ -8,6 +8,32 @@ package jfractus.api;
 
 public abstract class OutputFilter extends Function
 {
+	/* window of image and its output, reused by blocks computed by thread */
+	private static class WindowBuffers
+	{
+		public int[] data, outData;
+		
+		public void ensureCapacity(int length)
+		{
+			if (data == null || data.length < length)
+			{	/* old arrays can be collected before allocation */
+				data = null;
+				outData = null;
+				data = new int[length];
+				outData = new int[length];
+			}
+		}
+	}
+	
+	private static final ThreadLocal<WindowBuffers> windowBuffers =
+			new ThreadLocal<WindowBuffers>()
+	{
+		protected WindowBuffers initialValue()
+		{
+			return new WindowBuffers();
+		}
+	};
+	
 	/* inputWidth, inputHeight - size of whole image
 	 * width, height - size of image block
 	 * x, y - start position of block
@@ -16,4 +42,48 @@ public abstract class OutputFilter extends Function
 	 */
 	public abstract void compute(int inputWidth, int inputHeight,
 			int startX, int startY, int width, int height, int[] data, int[] outData);
+	
+	/* computes block of output raster from input raster (of same size).
+	 * by default window of image (block with halo) is copied to arrays and computed
+	 * as whole image, so with unknown halo whole image must fit in array.
+	 * filters can work on rasters directly */
+	public void compute(PixelRaster input, PixelRaster output, int startX, int startY,
+			int width, int height)
+	{
+		int halo = getHaloRadius();
+		int windowX = 0, windowY = 0;
+		int windowWidth = input.getWidth(), windowHeight = input.getHeight();
+		if (halo >= 0)
+		{
+			windowX = Math.max(startX-halo, 0);
+			windowY = Math.max(startY-halo, 0);
+			windowWidth = Math.min(startX+width+halo, input.getWidth()) - windowX;
+			windowHeight = Math.min(startY+height+halo, input.getHeight()) - windowY;
+		}
+		if ((long)windowWidth*windowHeight > PixelRaster.MAX_ARRAY_LENGTH)
+			throw new IllegalStateException("Image is too large for filter " +
+					getClass().getName() + " (filter with unknown halo needs whole image " +
+					"in array, at most " + PixelRaster.MAX_ARRAY_LENGTH + " pixels)");
+		
+		WindowBuffers buffers = windowBuffers.get();
+		buffers.ensureCapacity(windowWidth*windowHeight);
+		int[] data = buffers.data;
+		int[] outData = buffers.outData;
+		input.getRect(windowX, windowY, windowWidth, windowHeight, data, 0);
+		compute(windowWidth, windowHeight, startX-windowX, startY-windowY, width, height,
+				data, outData);
+		for (int y = 0; y < height; y++)
+			output.setPixels((long)(startY+y)*output.getWidth() + startX, outData,
+					(startY-windowY+y)*windowWidth + startX-windowX, width);
+	}
+	
+	/* maximal distance of input pixels used by output pixel
+	 * (negative if unknown, then filtered pixels are never reused).
+	 * in chain of filters, block is computed from window of image (block with halo)
+	 * given as whole image, so output pixel can depend only on pixels in this
+	 * distance and on edges of image nearer than this distance */
+	public int getHaloRadius()
+	{
+		return -1;
+	}
 }
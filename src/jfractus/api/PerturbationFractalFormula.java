@@ -0,0 +1,30 @@
+/**
+ * PerturbationFractalFormula.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/* optional contract for FractalFormula which can be computed by perturbation
+ * (used by renderer for deep zooms, where doubles are not enough for coordinates) */
+public interface PerturbationFractalFormula
+{
+	/* compute reference orbit at center:
+	 * maxDelta - maximal distance of computed points from center
+	 * mc - precision of reference orbit computations
+	 */
+	public PerturbationReference computeReference(BigDecimal centerRe, BigDecimal centerIm,
+			double maxDelta, MathContext mc);
+	
+	/* compute block of image:
+	 * itData - output iterations data used for generate image
+	 * dcRe, dcIm - input: distances of points from center of reference
+	 * outZRe, outZIm - output: complex values after n[i,j] iterations
+	 */
+	public void compute(int length, int[] itData, PerturbationReference reference,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm);
+}
@@ -0,0 +1,28 @@
+/**
+ * PerturbationReference.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* reference orbit for perturbation rendering: orbit is computed once in high precision
+ * at center of view and rounded to doubles, points are iterated as small deltas from it */
+public class PerturbationReference
+{
+	/* reference orbit Z[0..length], last point is escaped or last iteration */
+	public double[] orbitRe, orbitIm;
+	public int length;
+	/* number of iterations skipped by series approximation (0 if not used) */
+	public int seriesSkip;
+	/* coefficients of series: delta = sum(series[k]*dc^(k+1)) at iteration seriesSkip */
+	public double[] seriesRe, seriesIm;
+	
+	public PerturbationReference(int capacity)
+	{
+		orbitRe = new double[capacity];
+		orbitIm = new double[capacity];
+		length = 0;
+		seriesSkip = 0;
+	}
+}
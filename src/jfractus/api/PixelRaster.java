@@ -0,0 +1,61 @@
+/**
+ * PixelRaster.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* image data (in ARGB integer format, row by row) with long indexing,
+ * so image can have more pixels than array. storage can be outside heap */
+public abstract class PixelRaster
+{
+	/* maximal length of array (virtual machines reserve some elements) */
+	public static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+	
+	protected int width, height;
+
+	protected PixelRaster(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+	public int getHeight()
+	{
+		return height;
+	}
+	public long getPixelsNumber()
+	{
+		return (long)width*height;
+	}
+
+	/* copy length pixels from index of raster to dest */
+	public abstract void getPixels(long index, int[] dest, int offset, int length);
+	/* copy length pixels from src to index of raster */
+	public abstract void setPixels(long index, int[] src, int offset, int length);
+
+	/* copy rectangle of raster to dest (rows follow each other) */
+	public void getRect(int x, int y, int rectWidth, int rectHeight, int[] dest,
+			int offset)
+	{
+		for (int row = 0; row < rectHeight; row++)
+			getPixels((long)(y+row)*width + x, dest, offset + row*rectWidth, rectWidth);
+	}
+	/* copy rectangle from src (rows follow each other) to raster */
+	public void setRect(int x, int y, int rectWidth, int rectHeight, int[] src,
+			int offset)
+	{
+		for (int row = 0; row < rectHeight; row++)
+			setPixels((long)(y+row)*width + x, src, offset + row*rectWidth, rectWidth);
+	}
+
+	/* frees storage, raster can not be used later */
+	public void dispose()
+	{
+	}
+}
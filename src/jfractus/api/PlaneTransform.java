@@ -15,4 +15,10 @@ public abstract class PlaneTransform extends Function
 	 * zData - transformed coordinates at complex plane
 	 */
 	public abstract void compute(int length, Complex[] zData);
+	
+	/* returns true if transform does not change coordinates */
+	public boolean isIdentity()
+	{
+		return false;
+	}
 }
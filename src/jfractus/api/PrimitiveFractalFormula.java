@@ -0,0 +1,20 @@
+/**
+ * PrimitiveFractalFormula.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* optional batch contract for FractalFormula working on primitive arrays
+ * (preferred by renderer over Complex[] version) */
+public interface PrimitiveFractalFormula
+{
+	/* compute block of image:
+	 * itData - output iterations data used for generate image
+	 * zRe, zIm - input: coordinates at complex plane
+	 * outZRe, outZIm - output: complex values after n[i,j] iterations
+	 */
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm);
+}
@@ -0,0 +1,19 @@
+/**
+ * PrimitiveInnerFunction.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* optional batch contract for InnerFunction working on primitive arrays */
+public interface PrimitiveInnerFunction
+{
+	/* compute block of image:
+	 * itData - input number of iterations
+	 * zRe, zIm - complex values after n[i,j] iteration,
+	 * outData - real value of color index
+	 */
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData);
+}
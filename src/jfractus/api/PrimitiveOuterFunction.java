@@ -0,0 +1,19 @@
+/**
+ * PrimitiveOuterFunction.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* optional batch contract for OuterFunction working on primitive arrays */
+public interface PrimitiveOuterFunction
+{
+	/* compute block of image:
+	 * itData - input number of iterations
+	 * zRe, zIm - complex values after n[i,j] iteration,
+	 * outData - real value of color index
+	 */
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData);
+}
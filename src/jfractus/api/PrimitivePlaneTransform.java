@@ -0,0 +1,17 @@
+/**
+ * PrimitivePlaneTransform.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.api;
+
+/* optional batch contract for PlaneTransform working on primitive arrays */
+public interface PrimitivePlaneTransform
+{
+	/* compute block of image:
+	 * length - number of items of input data
+	 * zRe, zIm - transformed coordinates at complex plane (modified in place)
+	 */
+	public void compute(int length, double[] zRe, double[] zIm);
+}
@@ -11,21 +11,23 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.locks.*;
 import java.util.concurrent.atomic.*;
 
-public abstract class AbstractRenderThread extends Thread
+/* fragment rendering loop, run by workers from RenderWorkerPool */
+public abstract class AbstractRenderThread implements Runnable
 {
 	protected ReentrantLock finishLock;
 	protected Condition finishCond;
 	protected AtomicBoolean doCancel;
-	protected AtomicInteger globalFragmentIndex;
+	protected FragmentScheduler scheduler;
 	protected BlockingQueue<Integer> fragmentQueue;
 	protected int fragmentsNum;
+	protected int workerIndex;
 	
 	public static class SharedData
 	{
 		protected ReentrantLock finishLock;
     	protected Condition finishCond;
     	protected AtomicBoolean doCancel;
-    	protected AtomicInteger globalFragmentIndex;
+    	protected FragmentScheduler scheduler;
     	protected BlockingQueue<Integer> fragmentQueue;
     	protected int fragmentsNum;
     	
@@ -34,7 +36,7 @@ public abstract class AbstractRenderThread extends Thread
     		this.finishLock = new ReentrantLock();
     		this.finishCond = finishLock.newCondition();
     		this.doCancel = new AtomicBoolean();
-    		this.globalFragmentIndex = new AtomicInteger();
+    		this.scheduler = new WorkStealingFragmentScheduler();
     		this.fragmentQueue = new LinkedBlockingDeque<Integer>();
     	}
     	
@@ -56,9 +58,13 @@ public abstract class AbstractRenderThread extends Thread
     	{
     		return this.doCancel;
     	}
-    	public AtomicInteger getGlobalFragmentIndex()
+    	public FragmentScheduler getScheduler()
     	{
-    		return this.globalFragmentIndex;
+    		return this.scheduler;
+    	}
+    	public void setScheduler(FragmentScheduler scheduler)
+    	{
+    		this.scheduler = scheduler;
     	}
     	public int getFragmentsNumber()
     	{
@@ -76,7 +82,6 @@ public abstract class AbstractRenderThread extends Thread
     	public void reset()
     	{
     		doCancel.set(false);
-    		globalFragmentIndex.set(0);
     	}
 	}
 	
@@ -85,7 +90,7 @@ public abstract class AbstractRenderThread extends Thread
 		finishLock = data.getFinishLock();
 		finishCond = data.getFinishCond();
 		doCancel = data.getCancelIndicator();
-		globalFragmentIndex = data.getGlobalFragmentIndex();
+		scheduler = data.getScheduler();
 		fragmentsNum = data.getFragmentsNumber();
 		fragmentQueue = data.getFragmentQueue();
 	}
@@ -102,27 +107,28 @@ public abstract class AbstractRenderThread extends Thread
 		return fragmentQueue;
 	}
 	
-	public abstract void renderFragment(int index);
+	/* index of worker for scheduler (from 0 to workers number-1) */
+	public void setWorkerIndex(int index)
+	{
+		workerIndex = index;
+	}
+	
+	/* render strips from firstStrip to lastStrip (exclusive) of fragment */
+	public abstract void renderFragment(int index, int firstStrip, int lastStrip);
 	
 	public void run()
 	{
-		while (true)
+		FragmentScheduler.Work work = new FragmentScheduler.Work();
+		while (!doCancel.get() && scheduler.nextWork(workerIndex, work))
 		{
-			int x = globalFragmentIndex.getAndIncrement();
-			//System.out.printf("X:%d\n", x);
-			/*try
-			{ Thread.sleep(10); }
-			catch(InterruptedException e)
-			{ }*/
-			renderFragment(x);
+			renderFragment(work.fragment, work.firstStrip, work.lastStrip);
 			if (doCancel.get())
 				break;
-			fragmentQueue.offer(new Integer(x));
-			if (x+1 >= fragmentsNum)
+			if (scheduler.finishWork(workerIndex, work))
 			{
-				if (x+1 == fragmentsNum)
+				fragmentQueue.offer(new Integer(work.fragment));
+				if (scheduler.getFinishedFragmentsNumber() == fragmentsNum)
 					signalizeFinish();
-				break;
 			}
 		}
 	}
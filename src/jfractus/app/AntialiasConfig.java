@@ -12,21 +12,35 @@ public class AntialiasConfig implements Serializable
 {
 	private static final long serialVersionUID = -3983305185344226332L;
 	
+	/* default maximal difference of color components (from 0 to 1) between
+	 * neighbouring pixels, which are not supersampled by adaptive method */
+	public static final float DEFAULT_THRESHOLD = 0.05f;
+	
 	public static enum Method
 	{
 		NONE,
 		NORMAL,
+		ADAPTIVE, /* only pixels at edges are supersampled */
+		/* one sample per pixel in every render, samples of successive renders
+		 * are averaged (sampling width*height is number of samples) */
+		STOCHASTIC,
 	};
 	
 	private Method method;
 	private int samplingWidth;
 	private int samplingHeight;
+	private float threshold;
 	
 	public AntialiasConfig(Method method, int sWidth, int sHeight)
+	{
+		this(method, sWidth, sHeight, DEFAULT_THRESHOLD);
+	}
+	public AntialiasConfig(Method method, int sWidth, int sHeight, float threshold)
 	{
 		this.method = method;
 		samplingWidth = sWidth;
 		samplingHeight = sHeight;
+		this.threshold = threshold;
 	}
 	
 	public Method getMethod()
@@ -52,6 +66,21 @@ public class AntialiasConfig implements Serializable
 		samplingHeight = sHeight;
 	}
 	
+	/* returns true if single render computes many samples per pixel */
+	public boolean isSupersampling()
+	{
+		return (method == Method.NORMAL || method == Method.ADAPTIVE);
+	}
+	
+	public float getThreshold()
+	{
+		return threshold;
+	}
+	public void setThreshold(float threshold)
+	{
+		this.threshold = threshold;
+	}
+	
 	public boolean equals(Object ob)
 	{
 		if (this == ob)
@@ -61,6 +90,8 @@ public class AntialiasConfig implements Serializable
 			AntialiasConfig aC = (AntialiasConfig)ob;
 			if (method == Method.NONE && method == aC.method)
 				return true;
+			if (method == Method.ADAPTIVE && threshold != aC.threshold)
+				return false;
 			return (method == aC.method && samplingWidth == aC.samplingWidth &&
 					samplingHeight == aC.samplingHeight);
 		}
@@ -69,6 +100,9 @@ public class AntialiasConfig implements Serializable
 	
 	public String toString()
 	{
+		if (method == Method.ADAPTIVE)
+			return method.toString() + ":" + samplingWidth + "x" + samplingHeight +
+					":" + threshold;
 		return method.toString() + ":" + samplingWidth + "x" + samplingHeight;
 	}
 }
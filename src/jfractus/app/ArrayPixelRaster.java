@@ -0,0 +1,48 @@
+/**
+ * ArrayPixelRaster.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import jfractus.api.PixelRaster;
+
+/* raster in array at heap (for example data of image) */
+public class ArrayPixelRaster extends PixelRaster
+{
+	private int[] data;
+
+	public ArrayPixelRaster(int width, int height)
+	{
+		this(width, height, new int[width*height]);
+	}
+	public ArrayPixelRaster(int width, int height, int[] data)
+	{
+		super(width, height);
+		this.data = data;
+	}
+	/* image must have TYPE_INT_RGB type, raster shares data with image */
+	public ArrayPixelRaster(BufferedImage image)
+	{
+		this(image.getWidth(), image.getHeight(),
+				((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+	}
+
+	public int[] getData()
+	{
+		return data;
+	}
+
+	public void getPixels(long index, int[] dest, int offset, int length)
+	{
+		System.arraycopy(data, (int)index, dest, offset, length);
+	}
+	public void setPixels(long index, int[] src, int offset, int length)
+	{
+		System.arraycopy(src, offset, data, (int)index, length);
+	}
+}
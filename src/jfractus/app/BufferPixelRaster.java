@@ -0,0 +1,155 @@
+/**
+ * BufferPixelRaster.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import jfractus.api.PixelRaster;
+
+/* raster outside heap: in direct buffers or in memory mapped file. buffer can not
+ * be larger than 2GB, so raster is divided into chunks of buffers. data is not
+ * scanned by garbage collector. buffers of threads are duplicated, so
+ * different threads can use raster together */
+public class BufferPixelRaster extends PixelRaster
+{
+	/* pixels of chunk (256 MB) */
+	public static final int DEFAULT_CHUNK_PIXELS = 1<<26;
+
+	private IntBuffer[] chunks;
+	private int chunkPixels;
+	private RandomAccessFile file;
+	private File tempFile; /* removed by dispose (null if file is not temporary) */
+
+	private BufferPixelRaster(int width, int height, int chunkPixels)
+	{
+		super(width, height);
+		this.chunkPixels = chunkPixels;
+		chunks = new IntBuffer[(int)((getPixelsNumber() + chunkPixels-1) / chunkPixels)];
+	}
+
+	private int getChunkLength(int chunk)
+	{
+		return (int)Math.min(getPixelsNumber() - (long)chunk*chunkPixels, chunkPixels);
+	}
+
+	/* raster in direct buffers (size is limited by maximal direct memory of JVM) */
+	public static BufferPixelRaster allocateDirect(int width, int height)
+	{
+		return allocateDirect(width, height, DEFAULT_CHUNK_PIXELS);
+	}
+	public static BufferPixelRaster allocateDirect(int width, int height, int chunkPixels)
+	{
+		BufferPixelRaster raster = new BufferPixelRaster(width, height, chunkPixels);
+		for (int i = 0; i < raster.chunks.length; i++)
+			raster.chunks[i] = ByteBuffer.allocateDirect(raster.getChunkLength(i)*4)
+					.order(ByteOrder.nativeOrder()).asIntBuffer();
+		return raster;
+	}
+
+	/* raster in file (contents of existing file are kept) */
+	public static BufferPixelRaster map(File file, int width, int height)
+			throws IOException
+	{
+		return map(file, width, height, DEFAULT_CHUNK_PIXELS);
+	}
+	public static BufferPixelRaster map(File file, int width, int height,
+			int chunkPixels) throws IOException
+	{
+		BufferPixelRaster raster = new BufferPixelRaster(width, height, chunkPixels);
+		raster.file = new RandomAccessFile(file, "rw");
+		try
+		{
+			raster.file.setLength(raster.getPixelsNumber()*4);
+			FileChannel channel = raster.file.getChannel();
+			for (int i = 0; i < raster.chunks.length; i++)
+				raster.chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+						(long)i*chunkPixels*4, (long)raster.getChunkLength(i)*4)
+						.order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		catch(IOException e)
+		{
+			raster.file.close();
+			throw e;
+		}
+		return raster;
+	}
+
+	/* raster in temporary file in directory (null - default temporary directory),
+	 * file is removed by dispose */
+	public static BufferPixelRaster createTemporary(File directory, int width, int height)
+			throws IOException
+	{
+		File tempFile = File.createTempFile("raster", ".tmp", directory);
+		tempFile.deleteOnExit();
+		try
+		{
+			BufferPixelRaster raster = map(tempFile, width, height);
+			raster.tempFile = tempFile;
+			return raster;
+		}
+		catch(IOException e)
+		{
+			tempFile.delete();
+			throw e;
+		}
+	}
+
+	public void getPixels(long index, int[] dest, int offset, int length)
+	{
+		while (length > 0)
+		{
+			int chunk = (int)(index / chunkPixels);
+			int pos = (int)(index - (long)chunk*chunkPixels);
+			int count = Math.min(length, chunkPixels - pos);
+			IntBuffer buffer = chunks[chunk].duplicate();
+			buffer.position(pos);
+			buffer.get(dest, offset, count);
+			index += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	public void setPixels(long index, int[] src, int offset, int length)
+	{
+		while (length > 0)
+		{
+			int chunk = (int)(index / chunkPixels);
+			int pos = (int)(index - (long)chunk*chunkPixels);
+			int count = Math.min(length, chunkPixels - pos);
+			IntBuffer buffer = chunks[chunk].duplicate();
+			buffer.position(pos);
+			buffer.put(src, offset, count);
+			index += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	/* mapped memory is freed by garbage collector */
+	public void dispose()
+	{
+		chunks = null;
+		if (file != null)
+		{
+			try
+			{ file.close(); }
+			catch(IOException e)
+			{ }
+			file = null;
+		}
+		if (tempFile != null)
+		{
+			tempFile.delete();
+			tempFile = null;
+		}
+	}
+}
@@ -0,0 +1,552 @@
+/**
+ * DiskTileCache.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.*;
+
+/* tiles stored in directory (one compressed file per tile), kept between runs.
+ * name of file contains only fingerprint of key, so full key is stored and compared
+ * when tile is read: state of render (shared by all tiles of render) once in state
+ * file, position in tile file. tiles are written by own thread, so rendering does
+ * not wait for disk (caller waits only if many tiles are waiting). files are written
+ * to temporary file and renamed, so broken files are not visible; files damaged
+ * by crash have bad checksum and are removed. if size of cache exceeds limit,
+ * least recently used files are removed */
+public class DiskTileCache
+{
+	private static final int MAGIC = 0x4a465443; /* "JFTC" */
+	private static final int VERSION = 3;
+	/* longer keys are treated as damaged */
+	private static final int MAX_KEY_LENGTH = 1<<20;
+	private static final String SUFFIX = ".tile";
+	private static final String STATE_SUFFIX = ".state";
+	private static final String TEMP_SUFFIX = ".tmp";
+	/* temporary files older than this time (in ms) are left by crashed runs */
+	private static final long TEMP_FILE_AGE = 3600000L;
+	/* maximal number of tiles waiting for writing */
+	private static final int QUEUE_CAPACITY = 256;
+
+	private static class PendingTile
+	{
+		public TileCache.Key key;
+		public int[] pixels;
+
+		public PendingTile(TileCache.Key key, int[] pixels)
+		{
+			this.key = key;
+			this.pixels = pixels;
+		}
+	}
+
+	/* ends writer thread */
+	private static final PendingTile END_TILE = new PendingTile(null, null);
+
+	private File directory;
+	private long maxSize;
+	private long size = -1; /* unknown until directory is scanned */
+	/* states whose state files are written or read (hash of state -> state) */
+	private HashMap<Long, String> knownStates = new HashMap<Long, String>();
+	/* tiles of render have same state (object), its hash is computed once */
+	private String lastState;
+	private long lastStateHash;
+
+	private BlockingQueue<PendingTile> queue =
+			new ArrayBlockingQueue<PendingTile>(QUEUE_CAPACITY);
+	private Thread writerThread;
+	private int pendingNum; /* tiles waiting for writing or being written */
+	private boolean closed;
+
+	/* maximal size in bytes */
+	public DiskTileCache(File directory, long maxSize)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+	private File getFile(TileCache.Key key)
+	{
+		return new File(directory, String.format("%016x-%dx%d", key.getFingerprint(),
+				key.getWidth(), key.getHeight()) + SUFFIX);
+	}
+
+	private synchronized long getStateHash(String state)
+	{
+		if (state == null)
+			return 0L;
+		if (state != lastState)
+		{
+			lastStateHash = new RenderFingerprint().add(state).getValue();
+			lastState = state;
+		}
+		return lastStateHash;
+	}
+
+	private File getStateFile(long stateHash)
+	{
+		return new File(directory, String.format("%016x", stateHash) + STATE_SUFFIX);
+	}
+
+	private static byte[] getBytes(String string)
+	{
+		try
+		{ return (string != null) ? string.getBytes("UTF-8") : new byte[0]; }
+		catch(UnsupportedEncodingException e)
+		{ throw new RuntimeException(e); }
+	}
+
+	private static void closeInput(InputStream input)
+	{
+		try
+		{
+			if (input != null)
+				input.close();
+		}
+		catch(IOException e)
+		{ }
+	}
+
+	/* returns true if state file of state exists (state can be null).
+	 * if write is true, missing state file is written */
+	private boolean checkState(String state, boolean write)
+	{
+		if (state == null)
+			return true;
+		long stateHash = getStateHash(state);
+		synchronized(this)
+		{
+			String known = knownStates.get(stateHash);
+			if (known == state)
+				return true;
+			if (known != null)
+			{	/* next tiles of render are compared by reference */
+				boolean same = known.equals(state);
+				if (same)
+					knownStates.put(stateHash, state);
+				return same;
+			}
+		}
+		File file = getStateFile(stateHash);
+		String stored = readState(file);
+		if (stored == null)
+		{
+			if (!write || !writeState(file, state))
+				return false;
+			stored = state;
+		}
+		synchronized(this)
+		{ knownStates.put(stateHash, stored); }
+		/* other state with same hash: its tiles are not used */
+		return stored.equals(state);
+	}
+
+	/* returns null if state file does not exist or is damaged */
+	private String readState(File file)
+	{
+		if (!file.isFile())
+			return null;
+		DataInputStream input = null;
+		String state = null;
+		try
+		{
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (input.readInt() == MAGIC && input.readInt() == VERSION)
+			{
+				int length = input.readInt();
+				if (length >= 0 && length <= MAX_KEY_LENGTH)
+				{
+					long checksum = input.readLong();
+					byte[] data = new byte[length];
+					input.readFully(data);
+					CRC32 crc = new CRC32();
+					crc.update(data);
+					if (crc.getValue() == checksum)
+						state = new String(data, "UTF-8");
+				}
+			}
+		}
+		catch(IOException e)
+		{ }
+		finally
+		{ closeInput(input); }
+		if (state == null)
+			file.delete();
+		else
+			file.setLastModified(System.currentTimeMillis());
+		return state;
+	}
+
+	private boolean writeState(File file, String state)
+	{
+		byte[] data = getBytes(state);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		File tempFile = null;
+		try
+		{
+			tempFile = createTempFile();
+			if (tempFile == null)
+				return false;
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile)));
+			try
+			{
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(data.length);
+				output.writeLong(crc.getValue());
+				output.write(data);
+			}
+			finally
+			{ output.close(); }
+			if (!commitFile(tempFile, file))
+				return false;
+			tempFile = null;
+			return true;
+		}
+		catch(IOException e)
+		{ return false; }
+		finally
+		{
+			if (tempFile != null)
+				tempFile.delete();
+		}
+	}
+
+	/* returns pixels of tile or null if file does not exist, is damaged
+	 * or belongs to other key with same fingerprint */
+	public int[] read(TileCache.Key key)
+	{
+		File file = getFile(key);
+		if (!file.isFile())
+			return null;
+		int[] pixels = new int[key.getWidth()*key.getHeight()];
+		DataInputStream input = null;
+		boolean damaged = true;
+		boolean otherKey = false;
+		try
+		{
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (input.readInt() == MAGIC && input.readInt() == VERSION &&
+					input.readInt() == key.getWidth() && input.readInt() == key.getHeight())
+			{
+				long stateHash = input.readLong();
+				int positionLength = input.readInt();
+				if (positionLength >= 0 && positionLength <= MAX_KEY_LENGTH)
+				{
+					byte[] position = new byte[positionLength];
+					input.readFully(position);
+					otherKey = stateHash != getStateHash(key.getState()) ||
+							!Arrays.equals(position, getBytes(key.getPosition())) ||
+							!checkState(key.getState(), false);
+					if (!otherKey)
+						damaged = !readPixels(input, pixels);
+				}
+			}
+		}
+		catch(IOException e)
+		{ }
+		finally
+		{ closeInput(input); }
+		/* tile of other key is not removed */
+		if (otherKey)
+			return null;
+		if (damaged)
+		{
+			removeFile(file);
+			return null;
+		}
+		/* time of modification is time of last use */
+		file.setLastModified(System.currentTimeMillis());
+		return pixels;
+	}
+
+	/* returns false if checksum is bad */
+	private static boolean readPixels(DataInputStream input, int[] pixels) throws IOException
+	{
+		long checksum = input.readLong();
+		byte[] data = new byte[pixels.length*3];
+		new DataInputStream(new InflaterInputStream(input)).readFully(data);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		if (crc.getValue() != checksum)
+			return false;
+		for (int i = 0, pos = 0; i < pixels.length; i++, pos += 3)
+			pixels[i] = 0xff000000 | ((data[pos]&0xff)<<16) |
+					((data[pos+1]&0xff)<<8) | (data[pos+2]&0xff);
+		return true;
+	}
+
+	/* tile is written by writer thread (pixels must not be modified).
+	 * errors of writing are ignored (tile is not cached) */
+	public void write(TileCache.Key key, int[] pixels)
+	{
+		synchronized(this)
+		{
+			if (closed)
+				return;
+			if (writerThread == null)
+			{
+				writerThread = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						writeTiles();
+					}
+				}, "DiskTileWriter");
+				writerThread.setDaemon(true);
+				writerThread.start();
+			}
+			pendingNum++;
+		}
+		try
+		{ queue.put(new PendingTile(key, pixels)); }
+		catch(InterruptedException e)
+		{
+			tileWritten();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeTiles()
+	{
+		while (true)
+		{
+			PendingTile tile;
+			try
+			{ tile = queue.take(); }
+			catch(InterruptedException e)
+			{ continue; }
+			if (tile == END_TILE)
+				break;
+			try
+			{ writeTile(tile.key, tile.pixels); }
+			finally
+			{ tileWritten(); }
+		}
+	}
+
+	private synchronized void tileWritten()
+	{
+		pendingNum--;
+		notifyAll();
+	}
+
+	/* waits until all tiles given to write are written */
+	public synchronized void flush() throws InterruptedException
+	{
+		while (pendingNum != 0)
+			wait();
+	}
+
+	/* writes waiting tiles and ends writer thread, later tiles are not written */
+	public void close() throws InterruptedException
+	{
+		Thread thread;
+		synchronized(this)
+		{
+			if (closed)
+				return;
+			closed = true;
+			thread = writerThread;
+		}
+		if (thread != null)
+		{
+			queue.put(END_TILE);
+			thread.join();
+		}
+	}
+
+	private void writeTile(TileCache.Key key, int[] pixels)
+	{
+		File file = getFile(key);
+		byte[] data = new byte[pixels.length*3];
+		for (int i = 0, pos = 0; i < pixels.length; i++, pos += 3)
+		{
+			data[pos] = (byte)(pixels[i]>>16);
+			data[pos+1] = (byte)(pixels[i]>>8);
+			data[pos+2] = (byte)pixels[i];
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		File tempFile = null;
+		try
+		{
+			tempFile = createTempFile();
+			if (tempFile == null || !checkState(key.getState(), true))
+				return;
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile)));
+			try
+			{
+				byte[] position = getBytes(key.getPosition());
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(key.getWidth());
+				output.writeInt(key.getHeight());
+				output.writeLong(getStateHash(key.getState()));
+				output.writeInt(position.length);
+				output.write(position);
+				output.writeLong(crc.getValue());
+				DeflaterOutputStream deflater = new DeflaterOutputStream(output);
+				deflater.write(data);
+				deflater.finish();
+			}
+			finally
+			{ output.close(); }
+
+			long oldLength = file.length();
+			if (!commitFile(tempFile, file))
+				return;
+			tempFile = null;
+			addSize(file.length() - oldLength);
+		}
+		catch(IOException e)
+		{ }
+		finally
+		{
+			if (tempFile != null)
+				tempFile.delete();
+		}
+	}
+
+	/* returns null if directory can not be created */
+	private File createTempFile() throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+			return null;
+		return File.createTempFile("tile", TEMP_SUFFIX, directory);
+	}
+
+	/* renames written temporary file to file */
+	private static boolean commitFile(File tempFile, File file)
+	{
+		if (tempFile.renameTo(file))
+			return true;
+		/* some systems do not replace existing files */
+		file.delete();
+		return tempFile.renameTo(file);
+	}
+
+	private synchronized void removeFile(File file)
+	{
+		long length = file.length();
+		if (file.delete() && size >= 0)
+			size -= length;
+	}
+
+	private synchronized void addSize(long length)
+	{
+		if (size < 0)
+			size = scanDirectory();
+		else
+			size += length;
+		if (size > maxSize)
+			evict();
+	}
+
+	/* size of cached tiles, removes temporary files left by crashed runs */
+	private long scanDirectory()
+	{
+		long total = 0;
+		File[] files = directory.listFiles();
+		if (files == null)
+			return 0;
+		long now = System.currentTimeMillis();
+		for (File file: files)
+		{
+			String name = file.getName();
+			if (name.endsWith(SUFFIX))
+				total += file.length();
+			else if (name.endsWith(TEMP_SUFFIX) && now - file.lastModified() > TEMP_FILE_AGE)
+				file.delete();
+		}
+		return total;
+	}
+
+	/* remove least recently used files until size is 3/4 of maximal size,
+	 * state files older than all remaining tiles are removed too */
+	private void evict()
+	{
+		File[] files = directory.listFiles(new FilenameFilter()
+		{
+			public boolean accept(File dir, String name)
+			{
+				return name.endsWith(SUFFIX);
+			}
+		});
+		if (files == null)
+			return;
+		final long[] times = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		size = 0;
+		for (int i = 0; i < files.length; i++)
+		{
+			times[i] = files[i].lastModified();
+			order[i] = i;
+			size += files[i].length();
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer i1, Integer i2)
+			{
+				return (times[i1] < times[i2]) ? -1 : ((times[i1] > times[i2]) ? 1 : 0);
+			}
+		});
+		long limit = maxSize - maxSize/4;
+		long oldestTime = Long.MAX_VALUE;
+		for (int i = 0; i < order.length; i++)
+		{
+			File file = files[order[i]];
+			long length = file.length();
+			if (size > limit && file.delete())
+				size -= length;
+			else
+				oldestTime = Math.min(oldestTime, times[order[i]]);
+		}
+
+		File[] stateFiles = directory.listFiles(new FilenameFilter()
+		{
+			public boolean accept(File dir, String name)
+			{
+				return name.endsWith(STATE_SUFFIX);
+			}
+		});
+		if (stateFiles == null)
+			return;
+		for (File file: stateFiles)
+		{
+			String name = file.getName();
+			try
+			{
+				long stateHash = new BigInteger(name.substring(0,
+						name.length()-STATE_SUFFIX.length()), 16).longValue();
+				/* states used by this cache are kept */
+				if (!knownStates.containsKey(stateHash) && file.lastModified() < oldestTime)
+					file.delete();
+			}
+			catch(NumberFormatException e)
+			{ }
+		}
+	}
+}
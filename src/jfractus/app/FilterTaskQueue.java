@@ -0,0 +1,154 @@
+/**
+ * FilterTaskQueue.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.*;
+
+/* filter tasks of fragments when filtering is done together with rendering.
+ * fragments form grid (columns x rows), task of fragment is ready when
+ * fragment and all neighbours (fragments in halo of filter) are rendered */
+public class FilterTaskQueue
+{
+	private ReentrantLock lock = new ReentrantLock();
+	private Condition readyCond = lock.newCondition();
+
+	private int columnsNum, rowsNum;
+	/* ranges of neighbouring columns and rows (inclusive) */
+	private int[] firstColumns, lastColumns;
+	private int[] firstRows, lastRows;
+	/* number of not rendered fragments needed by task */
+	private int[] waitingNums;
+	private ArrayDeque<Integer> readyTasks = new ArrayDeque<Integer>();
+	private int renderedNum, takenNum, filteredNum;
+	private BlockingQueue<Integer> filteredQueue = new LinkedBlockingQueue<Integer>();
+
+	/* columns (or rows) from firstColumns[i] to lastColumns[i] are neighbours of
+	 * column i (neighbourhood must be symmetric) */
+	public void start(int[] firstColumns, int[] lastColumns, int[] firstRows,
+			int[] lastRows)
+	{
+		lock.lock();
+		try
+		{
+			columnsNum = firstColumns.length;
+			rowsNum = firstRows.length;
+			this.firstColumns = firstColumns;
+			this.lastColumns = lastColumns;
+			this.firstRows = firstRows;
+			this.lastRows = lastRows;
+			waitingNums = new int[columnsNum*rowsNum];
+			for (int r = 0; r < rowsNum; r++)
+				for (int c = 0; c < columnsNum; c++)
+					waitingNums[r*columnsNum + c] = (lastRows[r]-firstRows[r]+1) *
+							(lastColumns[c]-firstColumns[c]+1);
+			readyTasks.clear();
+			filteredQueue.clear();
+			renderedNum = takenNum = filteredNum = 0;
+		}
+		finally
+		{ lock.unlock(); }
+	}
+
+	public int getFragmentsNumber()
+	{
+		return columnsNum*rowsNum;
+	}
+
+	/* fragment is rendered, tasks of its neighbours can be ready */
+	public void fragmentRendered(int fragment)
+	{
+		int row = fragment / columnsNum;
+		int column = fragment - row*columnsNum;
+		lock.lock();
+		try
+		{
+			renderedNum++;
+			boolean ready = false;
+			for (int r = firstRows[row]; r <= lastRows[row]; r++)
+				for (int c = firstColumns[column]; c <= lastColumns[column]; c++)
+				{
+					int index = r*columnsNum + c;
+					if (--waitingNums[index] == 0)
+					{
+						readyTasks.add(index);
+						ready = true;
+					}
+				}
+			if (ready)
+				readyCond.signalAll();
+		}
+		finally
+		{ lock.unlock(); }
+	}
+
+	/* returns fragment of ready task or -1. if wait is true, it waits for ready task
+	 * until all tasks are taken or canceling */
+	public int nextTask(boolean wait, AtomicBoolean cancel)
+	{
+		lock.lock();
+		try
+		{
+			while (readyTasks.isEmpty())
+			{
+				if (!wait || takenNum == getFragmentsNumber() || cancel.get())
+					return -1;
+				readyCond.await(100, TimeUnit.MILLISECONDS);
+			}
+			takenNum++;
+			/* other waiting workers can finish */
+			if (takenNum == getFragmentsNumber())
+				readyCond.signalAll();
+			return readyTasks.poll();
+		}
+		catch(InterruptedException e)
+		{ return -1; }
+		finally
+		{ lock.unlock(); }
+	}
+
+	/* returns true if all tasks are finished */
+	public boolean taskFinished(int fragment)
+	{
+		filteredQueue.offer(fragment);
+		lock.lock();
+		try
+		{
+			filteredNum++;
+			return filteredNum == getFragmentsNumber();
+		}
+		finally
+		{ lock.unlock(); }
+	}
+
+	public int getRenderedFragmentsNumber()
+	{
+		lock.lock();
+		try
+		{ return renderedNum; }
+		finally
+		{ lock.unlock(); }
+	}
+	public int getFilteredFragmentsNumber()
+	{
+		lock.lock();
+		try
+		{ return filteredNum; }
+		finally
+		{ lock.unlock(); }
+	}
+
+	/* filtered fragments (since last call) */
+	public BlockingQueue<Integer> getFilteredQueue()
+	{
+		return filteredQueue;
+	}
+}
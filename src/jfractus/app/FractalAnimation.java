@@ -59,6 +59,10 @@ public class FractalAnimation implements Serializable, DOMNodeHandler
     	keyFrames.remove(position);
     }
     
+    public int getKeyFramesNumber()
+    {
+    	return keyFrames.size();
+    }
     public FractalKeyFrame getKeyFrame(int position)
     {
     	return keyFrames.get(position);
@@ -86,6 +90,12 @@ public class FractalAnimation implements Serializable, DOMNodeHandler
     	return new FractalFrameEvaluator(keyFrames.iterator());
     }
     
+    /* timeline is not changed by later changes of animation */
+    public FractalTimeline getTimeline()
+    {
+    	return new FractalTimeline(this);
+    }
+    
 	@Override
 	public Node createNode(Document doc)
 	{
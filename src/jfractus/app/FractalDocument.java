@@ -40,7 +40,8 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 	private FractalFormula fractalFormula;
 	private InnerFunction innerFunction;
 	private OuterFunction outerFunction;
-	private OutputFilter outputFilter;
+	/* filters are applied in order */
+	private ArrayList<OutputFilter> outputFilters = new ArrayList<OutputFilter>();
 	private PlaneTransform planeTransform;
 	
 	private float colorShift;
@@ -84,13 +85,28 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 		outerFunction = outer;
 	}
 	
+	/* first output filter (null if image is not filtered) */
 	public OutputFilter getOutputFilter()
 	{
-		return outputFilter;
+		return outputFilters.isEmpty() ? null : outputFilters.get(0);
 	}
+	/* replaces first output filter, other filters are kept (null removes it) */
 	public void setOutputFilter(OutputFilter filter)
 	{
-		outputFilter = filter;
+		if (!outputFilters.isEmpty())
+			outputFilters.remove(0);
+		if (filter != null)
+			outputFilters.add(0, filter);
+	}
+	
+	public OutputFilter[] getOutputFilters()
+	{
+		return outputFilters.toArray(new OutputFilter[outputFilters.size()]);
+	}
+	public void setOutputFilters(OutputFilter[] filters)
+	{
+		outputFilters.clear();
+		outputFilters.addAll(Arrays.asList(filters));
 	}
 	
 	public PlaneTransform getPlaneTransform()
@@ -111,7 +127,7 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 		else if (OuterFunction.class.isAssignableFrom(cls))
 			return outerFunction;
 		else if (OutputFilter.class.isAssignableFrom(cls))
-			return outputFilter;
+			return getOutputFilter();
 		else if (PlaneTransform.class.isAssignableFrom(cls))
 			return planeTransform;
 		return null;
@@ -130,7 +146,7 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 		else if (OuterFunction.class.isAssignableFrom(cls))
 			outerFunction = (OuterFunction)function;
 		else if (OutputFilter.class.isAssignableFrom(cls))
-			outputFilter = (OutputFilter)function;
+			setOutputFilter((OutputFilter)function);
 		else if (PlaneTransform.class.isAssignableFrom(cls))
 			planeTransform = (PlaneTransform)function;
 	}
@@ -250,6 +266,11 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 		return fractalAnim.getFrameEvaluator();
 	}
 	
+	public FractalTimeline getTimeline()
+	{
+		return fractalAnim.getTimeline();
+	}
+	
 	public Type getDocumentType()
 	{
 		return (fractalAnim != null) ? Type.ANIMATION : Type.FRAME;
@@ -281,10 +302,10 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 				new FunctionDOMHandler(outerFunction);
 			node.appendChild(ifaceDOMHandler.createNode(doc));
 		}
-		if (outputFilter != null)
+		for (OutputFilter filter: outputFilters)
 		{
 			FunctionDOMHandler ifaceDOMHandler =
-				new FunctionDOMHandler(outputFilter);
+				new FunctionDOMHandler(filter);
 			node.appendChild(ifaceDOMHandler.createNode(doc));
 		}
 		{
@@ -345,6 +366,7 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
 			new FunctionDOMHandler(OuterFunction.class);
 		FunctionDOMHandler filterDOMHandler =
 			new FunctionDOMHandler(OutputFilter.class);
+		ArrayList<OutputFilter> tmpFilters = new ArrayList<OutputFilter>();
 		FunctionDOMHandler planeDOMHandler =
 			new FunctionDOMHandler(PlaneTransform.class);
 		
@@ -380,10 +402,9 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
     			}
     			else if (filterDOMHandler.isValidNode(child))
     			{
-    				if (filterDOMHandler.getFunction() != null)
-    					throw new DOMNodeBadStructureException
-    							("Duplicate OutputFilter element");
+    				/* filters are applied in order of elements */
     				filterDOMHandler.getFromNode(child);
+    				tmpFilters.add((OutputFilter)filterDOMHandler.getFunction());
     			}
     			else if (planeDOMHandler.isValidNode(child))
     			{
@@ -500,8 +521,7 @@ public class FractalDocument extends AbstractDOMDocumentHandler implements Seria
     		outerFunction = (OuterFunction)outerDOMHandler.getFunction();
     		planeTransform = (PlaneTransform)planeDOMHandler.getFunction();
     		
-    		if (filterDOMHandler.getFunction() != null)
-    			outputFilter = (OutputFilter)filterDOMHandler.getFunction();
+    		outputFilters = tmpFilters;
     		
     		if (frameParsed)
     		{
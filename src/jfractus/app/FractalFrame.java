@@ -7,6 +7,8 @@
 package jfractus.app;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -16,6 +18,7 @@ import org.w3c.dom.Element;
 import jfractus.dom.DOMNodeBadStructureException;
 import jfractus.dom.DOMNodeException;
 import jfractus.dom.DOMNodeHandler;
+import jfractus.dom.DOMNodeParseException;
 import jfractus.generic.Copyable;
 import jfractus.math.Matrix3D;
 
@@ -23,7 +26,15 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 {
 	private static final long serialVersionUID = -5318396289622373539L;
     
+	/* high precision center is kept only for deep zooms, where scale of transform
+	 * is smaller than this (relative to center) */
+	private static final double DEEP_ZOOM_SCALE = 1.0e-10;
+	
 	protected Matrix3D transform;
+	/* high precision center of frame (null if translation of transform is enough).
+	 * translation of transform is rounded center, if it was changed externally,
+	 * difference is added to center */
+	protected BigDecimal centerRe, centerIm;
 	
 	/* constuctors */
 	public FractalFrame()
@@ -38,7 +49,10 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 	
 	public FractalFrame copy()
 	{
-		return new FractalFrame(transform.copy());
+		FractalFrame frame = new FractalFrame(transform.copy());
+		frame.centerRe = centerRe;
+		frame.centerIm = centerIm;
+		return frame;
 	}
 	
 	/* methods for access to fields */
@@ -51,12 +65,79 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 		this.transform = transform;
 	}
 	
+	public boolean hasHighPrecisionCenter()
+	{
+		return centerRe != null;
+	}
+	
+	/* get center of frame in high precision */
+	public BigDecimal getCenterRe()
+	{
+		if (centerRe == null)
+			return new BigDecimal(transform.m[2]);
+		return centerRe.add(new BigDecimal(transform.m[2] - centerRe.doubleValue()));
+	}
+	public BigDecimal getCenterIm()
+	{
+		if (centerIm == null)
+			return new BigDecimal(transform.m[5]);
+		return centerIm.add(new BigDecimal(transform.m[5] - centerIm.doubleValue()));
+	}
+	
+	/* set high precision center (null removes it), translation is rounded center */
+	public void setCenter(BigDecimal re, BigDecimal im)
+	{
+		if (re == null || im == null)
+		{
+			centerRe = centerIm = null;
+			return;
+		}
+		/* digits enough for scale of transform */
+		double scale = Math.sqrt(Math.abs(transform.m[0]*transform.m[4] -
+				transform.m[1]*transform.m[3]));
+		int digits = 20;
+		if (scale > 0.0 && scale < 1.0)
+			digits += (int)Math.ceil(-Math.log10(scale));
+		MathContext mc = new MathContext(digits);
+		centerRe = re.round(mc);
+		centerIm = im.round(mc);
+		transform.m[2] = centerRe.doubleValue();
+		transform.m[5] = centerIm.doubleValue();
+	}
+	
+	private boolean isDeepZoom()
+	{
+		double scale = Math.sqrt(Math.abs(transform.m[0]*transform.m[4] -
+				transform.m[1]*transform.m[3]));
+		double center = Math.max(Math.max(Math.abs(transform.m[2]),
+				Math.abs(transform.m[5])), 1.0);
+		return scale < DEEP_ZOOM_SCALE * center;
+	}
+	
+	/* apply transform to frame (this.transform = transform*this.transform),
+	 * translation of transform moves center in high precision at deep zooms */
+	public void applyTransform(Matrix3D transform)
+	{
+		BigDecimal re = getCenterRe().add(new BigDecimal(transform.m[2]));
+		BigDecimal im = getCenterIm().add(new BigDecimal(transform.m[5]));
+		this.transform = transform.onlyTransform(this.transform);
+		if (centerRe != null || isDeepZoom())
+			setCenter(re, im);
+	}
+	
 	/* DOMNodeHandler inherited methods */
 	
 	public Node createNode(Document doc)
     {
 		Element elem = doc.createElement("frame");
 		elem.appendChild(transform.createNode(doc));
+		if (centerRe != null)
+		{
+			Element centerElem = doc.createElement("center");
+			centerElem.setTextContent(getCenterRe().toString() + " " +
+					getCenterIm().toString());
+			elem.appendChild(centerElem);
+		}
 	    return elem;
     }
 
@@ -71,6 +152,7 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 		if (childs != null)
 		{
 			boolean parsed = false;
+			BigDecimal newCenterRe = null, newCenterIm = null;
 			for (int i = 0; i < childs.getLength(); i++)
 			{
 				Node child = childs.item(i);
@@ -86,6 +168,30 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 					transform.getFromNode(child);
 					parsed = true;
 				}
+				else if (child.getNodeName().equals("center"))
+				{
+					if (newCenterRe != null)
+						throw new DOMNodeBadStructureException
+								("Duplicate center value");
+					String[] parts = child.getTextContent().trim().split("\\s+");
+					if (parts.length != 2)
+						throw new DOMNodeParseException("Exception at parsing center");
+					try
+					{
+						newCenterRe = new BigDecimal(parts[0]);
+						newCenterIm = new BigDecimal(parts[1]);
+					}
+					catch(NumberFormatException e)
+					{ throw new DOMNodeParseException("Exception at parsing center"); }
+				}
+			}
+			centerRe = newCenterRe;
+			centerIm = newCenterIm;
+			/* translation is rounded center (written with less digits) */
+			if (centerRe != null)
+			{
+				transform.m[2] = centerRe.doubleValue();
+				transform.m[5] = centerIm.doubleValue();
 			}
 		}
 		else throw new DOMNodeBadStructureException("Frame without any element");
@@ -102,7 +208,19 @@ public class FractalFrame implements Serializable, DOMNodeHandler, Copyable<Frac
 		if (this == ob)
 			return true;
 		else if (ob instanceof FractalFrame)
-			return transform.equals(((FractalFrame)ob).transform);
+		{
+			FractalFrame frame = (FractalFrame)ob;
+			return transform.equals(frame.transform) &&
+				equalsCenter(centerRe, frame.centerRe) &&
+				equalsCenter(centerIm, frame.centerIm);
+		}
 		else return false;
 	}
+	
+	private static boolean equalsCenter(BigDecimal a, BigDecimal b)
+	{
+		if (a == null || b == null)
+			return a == b;
+		return a.compareTo(b) == 0;
+	}
 }
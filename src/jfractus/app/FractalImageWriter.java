@@ -7,6 +7,7 @@
 package jfractus.app;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.*;
 import java.util.*;
 
@@ -15,15 +16,29 @@ import javax.imageio.event.*;
 import javax.imageio.stream.ImageOutputStream;
 import javax.swing.event.EventListenerList;
 
+import jfractus.api.PixelRaster;
+
 public class FractalImageWriter implements Serializable
 {
     private static final long serialVersionUID = -2830135943568437509L;
     
     private EventListenerList listenerList = new EventListenerList();
     
+    /* images with more pixels are rendered in bands (PNG images are written
+     * in bands, other are rendered to raster in file) */
+    private static final long STREAMING_PIXELS = 1L<<25;
+    /* default number of pixels of band */
+    private static final long BAND_PIXELS = 1L<<22;
+    private static final int MIN_BAND_HEIGHT = 64;
+    
     private FractalRenderer fractalRenderer;
     private BufferedImage image;
     private String filePattern;
+    private int bandHeight; /* 0 - chosen automatically */
+    private int encodersNum = 1;
+    /* range of written frames of animation (lastFrame -1 - to end) */
+    private int firstFrame = 0, lastFrame = -1;
+    private volatile boolean canceled;
     
     public FractalImageWriter(BufferedImage image, String filePattern)
     {
@@ -73,6 +88,59 @@ public class FractalImageWriter implements Serializable
     	return fractalRenderer;
     }
     
+    public int getBandHeight()
+    {
+    	return bandHeight;
+    }
+    /* height of bands of rendered images (0 - only large images are rendered in
+     * bands, with height chosen automatically). PNG images are written in bands,
+     * other images are rendered to raster in file */
+    public void setBandHeight(int bandHeight)
+    {
+    	this.bandHeight = bandHeight;
+    }
+    
+    public int getEncodersNumber()
+    {
+    	return encodersNum;
+    }
+    /* number of threads which encode frames of animation during rendering */
+    public void setEncodersNumber(int number)
+    {
+    	encodersNum = number;
+    }
+    
+    public int getFirstFrame()
+    {
+    	return firstFrame;
+    }
+    public int getLastFrame()
+    {
+    	return lastFrame;
+    }
+    /* only frames from first to last of animation are written (last -1 - to end),
+     * so animation can be divided between processes */
+    public void setFrameRange(int first, int last)
+    {
+    	firstFrame = first;
+    	lastFrame = last;
+    }
+    
+    /* stops current writing (called by other thread), write throws
+     * InterruptedIOException. incomplete images are not written */
+    public void cancel()
+    {
+    	canceled = true;
+    	if (fractalRenderer != null)
+    		fractalRenderer.cancelRender();
+    }
+    
+    private void checkCanceled() throws InterruptedIOException
+    {
+    	if (canceled)
+    		throw new InterruptedIOException("Writing is canceled");
+    }
+    
     public void setImage(BufferedImage image)
     {
     	this.image = image;
@@ -82,7 +150,7 @@ public class FractalImageWriter implements Serializable
     	return image;
     }
     
-    private void writeFractalImage(File outFile, String suffix, BufferedImage output,
+    private void writeFractalImage(File outFile, String suffix, RenderedImage output,
     		ImageWriteParam param)
 		throws IOException
 	{
@@ -95,9 +163,13 @@ public class FractalImageWriter implements Serializable
     		writer.addIIOWriteProgressListener(progressListener);
     		outFile.delete();
     		ImageOutputStream iios = ImageIO.createImageOutputStream(outFile);
-    		writer.setOutput(iios);
-    		writer.write(null, new IIOImage(output, null, null), param);
-    		
+    		try
+    		{
+    			writer.setOutput(iios);
+    			writer.write(null, new IIOImage(output, null, null), param);
+    		}
+    		finally
+    		{ iios.close(); }
 		}
 		finally
 		{
@@ -131,6 +203,7 @@ public class FractalImageWriter implements Serializable
     {
     	//prepareFractal();
 		String suffix = getFilenameSuffix(filePattern);
+		canceled = false;
 		
 		if (image != null)
 		{
@@ -143,35 +216,199 @@ public class FractalImageWriter implements Serializable
 		
 		if (fractal.getDocumentType() == FractalDocument.Type.FRAME)
 		{
-			BufferedImage beforeFiltering = fractalRenderer.renderFractalImage();
-			BufferedImage output = null;
-			if (fractal.getOutputFilter() != null)
-				output = fractalRenderer.filterImage(beforeFiltering);
-			else
-				output = beforeFiltering;
 			File outFile = new File(filePattern);
-			writeFractalImage(outFile, suffix, output, param);
+			writeFrame(outFile, suffix, fractal.getFractalFrame(), param);
+			checkCanceled();
 		}
+		else if (bandHeight <= 0 && (long)fractalRenderer.getImageWidth()*
+    			fractalRenderer.getImageHeight() <= STREAMING_PIXELS)
+			writeAnimation(suffix, param);
 		else
-		{
-			int framesNum = (int)fractal.computeAnimationFramesNumber();
-			FractalFrameEvaluator frameEvaluator = fractal.getFrameEvaluator();
-			float duration = 1.0f / fractal.getFractalAnimation().getFramesPerSecond();
+		{	/* large frames are rendered in bands, one by one */
+			FractalTimeline timeline = fractal.getTimeline();
+			int endFrame = getEndFrame(timeline);
 			
-			for (int i = 0; i < framesNum; i++)
+			for (int i = firstFrame; i < endFrame; i++)
 			{
-				BufferedImage beforeFiltering = fractalRenderer.renderFractalImage(
-						frameEvaluator.getFrame(duration));
-				BufferedImage output = null;
-    			if (fractal.getOutputFilter() != null)
-    				output = fractalRenderer.filterImage(beforeFiltering);
-    			else
-    				output = beforeFiltering;
-				String fileName = String.format(Locale.ENGLISH, filePattern, i);
-				File outFile = new File(fileName);
-				writeFractalImage(outFile, suffix, output, param);
+				checkCanceled();
+				File outFile = getFrameFile(i);
+				int sourceIndex = timeline.getSourceFrameIndex(i);
+				/* same frames of hold are rendered once */
+				if (sourceIndex != i && sourceIndex >= firstFrame)
+					FramePipeline.copyFile(getFrameFile(sourceIndex), outFile);
+				else
+				{	/* broken frame is not visible */
+					File partFile = FramePipeline.createPartFile(outFile);
+					try
+					{
+						boolean written = writeFrame(partFile, suffix,
+								timeline.getFrameAt(i), param);
+						checkCanceled();
+						if (written)
+							FramePipeline.commitFile(partFile, outFile);
+					}
+					finally
+					{ partFile.delete(); }
+				}
+			}
+		}
+    }
+    
+    /* end of written frames (after last frame) */
+    private int getEndFrame(FractalTimeline timeline)
+    {
+    	if (lastFrame < 0)
+    		return timeline.getFramesNumber();
+    	return Math.min(lastFrame+1, timeline.getFramesNumber());
+    }
+    
+    private File getFrameFile(int index)
+    {
+    	return new File(String.format(Locale.ENGLISH, filePattern, index));
+    }
+    
+    /* frames are filtered and encoded in pipeline while next frames are rendered */
+    private void writeAnimation(String suffix, ImageWriteParam param) throws IOException
+    {
+    	FractalDocument fractal = fractalRenderer.getFractal();
+    	FractalTimeline timeline = fractal.getTimeline();
+    	int endFrame = getEndFrame(timeline);
+		
+		/* filters which are not applied during rendering are applied by other renderer
+		 * (renderer can render only one image at once) */
+		FractalRenderer filterRenderer = null;
+		boolean filtering = !fractalRenderer.isFilteringSeparate();
+		if (!filtering)
+		{
+			filterRenderer = new FractalRenderer(fractalRenderer.getImageWidth(),
+					fractalRenderer.getImageHeight(), fractalRenderer.getAntiAliasConfig(),
+					fractal);
+			filterRenderer.setThreadNumber(fractalRenderer.getThreadsNumber());
+			filterRenderer.setWorkerPool(fractalRenderer.getWorkerPool());
+		}
+		
+		FramePipeline pipeline = new FramePipeline(suffix, param, filterRenderer,
+				encodersNum);
+		try
+		{
+			fireImageWriterProgress(0.0);
+			int next;
+			for (int i = firstFrame; i < endFrame; i = next)
+			{	/* same frames of hold are rendered once */
+				int sourceIndex = timeline.getSourceFrameIndex(i);
+				next = i+1;
+				while (next < endFrame && timeline.getSourceFrameIndex(next) == sourceIndex)
+					next++;
+				File[] files = new File[next-i];
+				for (int j = 0; j < files.length; j++)
+					files[j] = getFrameFile(i+j);
+				
+				BufferedImage frameImage = fractalRenderer.renderImage(
+						timeline.getFrameAt(i), filtering);
+				/* image of canceled rendering is not written */
+				checkCanceled();
+				pipeline.writeFrame(files, frameImage);
+				fireImageWriterProgress(100.0 * (double)pipeline.getWrittenFramesNumber() /
+						(double)(endFrame-firstFrame));
 			}
+			pipeline.finish();
+			fireImageWriterProgress(100.0);
 		}
+		finally
+		{ pipeline.abort(); }
+    }
+    
+    /* returns false if image is not written (rendering is canceled) */
+    private boolean writeFrame(File outFile, String suffix, FractalFrame frame,
+    		ImageWriteParam param) throws IOException
+    {
+    	if (bandHeight <= 0 && (long)fractalRenderer.getImageWidth()*
+    			fractalRenderer.getImageHeight() <= STREAMING_PIXELS)
+    	{
+    		BufferedImage frameImage = fractalRenderer.renderFilteredImage(frame);
+    		checkCanceled();
+    		writeFractalImage(outFile, suffix, frameImage, param);
+    		return true;
+    	}
+    	else if (suffix != null && suffix.equalsIgnoreCase("png") &&
+    			fractalRenderer.isBandRenderingPossible())
+    		return streamFractalImage(outFile, frame);
+    	else
+    		return writeRasterImage(outFile, suffix, frame, param);
+    }
+    
+    private int getBandRowsNumber()
+    {
+    	if (bandHeight > 0)
+    		return bandHeight;
+    	return Math.max((int)(BAND_PIXELS / fractalRenderer.getImageWidth()),
+    			MIN_BAND_HEIGHT);
+    }
+    
+    /* image is rendered to raster in temporary file, then image writer reads
+     * pixels of raster (whole image is in memory only if writer needs it) */
+    private boolean writeRasterImage(File outFile, String suffix, FractalFrame frame,
+    		ImageWriteParam param) throws IOException
+    {
+    	PixelRaster raster = BufferPixelRaster.createTemporary(
+    			fractalRenderer.getRasterDirectory(), fractalRenderer.getImageWidth(),
+    			fractalRenderer.getImageHeight());
+    	try
+    	{
+    		if (!fractalRenderer.renderFractalRaster(frame, getBandRowsNumber(), raster))
+    			return false;
+    		writeFractalImage(outFile, suffix, new PixelRasterImage(raster), param);
+    		return true;
+    	}
+    	finally
+    	{ raster.dispose(); }
+    }
+    
+    /* write parameters are not used. image is written to temporary file
+     * and renamed, so existing file is replaced only by complete image */
+    private boolean streamFractalImage(File outFile, FractalFrame frame) throws IOException
+    {
+    	final int width = fractalRenderer.getImageWidth();
+    	final int height = fractalRenderer.getImageHeight();
+    	int rowsNum = getBandRowsNumber();
+    	
+    	File partFile = FramePipeline.createPartFile(outFile);
+    	boolean written = false;
+    	try
+    	{
+    		OutputStream output = new BufferedOutputStream(new FileOutputStream(partFile));
+    		boolean done;
+    		try
+    		{
+    			final PNGBandWriter pngWriter = new PNGBandWriter(output, width, height);
+    			fireImageWriterProgress(0.0);
+    			done = fractalRenderer.renderFractalBands(frame, rowsNum, new ImageBandSink()
+    			{
+    				public void writeBand(int startY, int height, int[] data, int offset)
+    						throws IOException
+    				{
+    					pngWriter.writeBand(startY, height, data, offset);
+    					fireImageWriterProgress(100.0 * (double)(startY+height) /
+    							(double)pngWriter.getHeight());
+    				}
+    			});
+    			if (done)
+    				pngWriter.finish();
+    		}
+    		finally
+    		{ output.close(); }
+    		if (done)
+    		{
+    			FramePipeline.commitFile(partFile, outFile);
+    			written = true;
+    		}
+    	}
+    	finally
+    	{	/* incomplete image is not left */
+    		if (!written)
+    			partFile.delete();
+    	}
+    	return written;
     }
     
     public void write() throws IOException
@@ -7,6 +7,7 @@
 package jfractus.app;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.*;
 
 import org.w3c.dom.Document;
@@ -49,8 +50,8 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
     
     public FractalFrame evaluateFrame(FractalFrame frame2, float time)
     {
-    	Matrix3D evaluated = frame2.transform;
-    	/* interpolation */
+    	Matrix3D evaluated = frame2.transform.copy();
+    	/* interpolation (key frames are not changed) */
     	evaluated.subtract(transform);
     	evaluated.scale(time / interval);
     	evaluated.add(transform);
@@ -66,6 +67,13 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
 		intervalElem.setTextContent(String.format(Locale.ENGLISH, "%g", interval));
 		elem.appendChild(intervalElem);
 		elem.appendChild(transform.createNode(doc));
+		if (centerRe != null)
+		{
+			Element centerElem = doc.createElement("center");
+			centerElem.setTextContent(getCenterRe().toString() + " " +
+					getCenterIm().toString());
+			elem.appendChild(centerElem);
+		}
 	    return elem;
 	}
 
@@ -83,6 +91,7 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
 		{
 			Matrix3D tmpTransform = new Matrix3D();
 			float tmpInterval = 0.0f;
+			BigDecimal tmpCenterRe = null, tmpCenterIm = null;
 			
 			boolean parsedTransform = false;
 			boolean parsedInterval = false;
@@ -125,6 +134,23 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
 						throw new DOMNodeBadValueException("Bad value of interval");
 					parsedInterval = true;
 				}
+				else if (child.getNodeType() == Node.ELEMENT_NODE &&
+						child.getNodeName().equals("center"))
+				{
+					if (tmpCenterRe != null)
+						throw new DOMNodeBadStructureException
+								("Duplicate center value");
+					String[] parts = child.getTextContent().trim().split("\\s+");
+					if (parts.length != 2)
+						throw new DOMNodeParseException("Exception at parsing center");
+					try
+					{
+						tmpCenterRe = new BigDecimal(parts[0]);
+						tmpCenterIm = new BigDecimal(parts[1]);
+					}
+					catch(NumberFormatException e)
+					{ throw new DOMNodeParseException("Exception at parsing center"); }
+				}
 			}
 			if (!parsedInterval || !parsedTransform)
 				throw new DOMNodeBadStructureException
@@ -132,6 +158,14 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
 			
 			interval = tmpInterval;
 			transform = tmpTransform;
+			centerRe = tmpCenterRe;
+			centerIm = tmpCenterIm;
+			/* translation is rounded center (written with less digits) */
+			if (centerRe != null)
+			{
+				transform.m[2] = centerRe.doubleValue();
+				transform.m[5] = centerIm.doubleValue();
+			}
 		}
 		else throw new DOMNodeBadStructureException("KeyFrame without any element");
 	}
@@ -150,7 +184,7 @@ public class FractalKeyFrame extends FractalFrame implements Serializable
 		else if (ob instanceof FractalKeyFrame)
 		{
 			FractalKeyFrame keyFrame = (FractalKeyFrame)ob;
-			return interval == keyFrame.interval && transform.equals(keyFrame.transform);
+			return interval == keyFrame.interval && super.equals(keyFrame);
 		}
 		else return false;
 	}
@@ -6,8 +6,16 @@
 
 package jfractus.app;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
 import java.util.concurrent.atomic.*;
@@ -23,8 +31,58 @@ public class FractalRenderer implements Serializable
 {
     private static final long serialVersionUID = 4000312316803304018L;
     
-    private static final int FRAGMENT_WIDTH = 16;
-    private static final int FRAGMENT_HEIGHT = 16;
+    /* fragment size is power of two between these sizes */
+    private static final int MIN_FRAGMENT_SIZE = 8;
+    private static final int MAX_FRAGMENT_SIZE = 64;
+    /* maximal number of samples in fragment (pixels*antialias samples) */
+    private static final int MAX_FRAGMENT_SAMPLES = 16384;
+    /* minimal number of fragments per thread for good load balancing */
+    private static final int FRAGMENTS_PER_THREAD = 8;
+    /* fragments are divided into strips, which can be rendered by different threads */
+    private static final int STRIP_HEIGHT = 8;
+    
+    /* solid guessing: rectangles not greater than this are fully computed */
+    private static final int GUESS_MIN_SIZE = 4;
+    /* progressive passes: every pass computes pixels at multiples of its step
+     * (not computed by previous passes) and fills step x step blocks by them */
+    private static final int[] PROGRESSIVE_STEPS = { 8, 4, 2, 1 };
+    
+    /* edges of reused region (after translation) are aligned to this */
+    private static final int REUSE_ALIGNMENT = 8;
+    /* translation is treated as integer if it differs from integer less than this */
+    private static final double REUSE_TOLERANCE = 1.0e-3;
+    
+    /* default number of colors in gradient lookup table */
+    private static final int DEFAULT_GRADIENT_RESOLUTION = 4096;
+    /* stages are cached only if image has not more samples than this */
+    private static final int MAX_CACHED_SAMPLES = 1<<22;
+    
+    /* iterations number markers of not computed points */
+    private static final int NOT_COMPUTED = Integer.MIN_VALUE;
+    private static final int GUESS_PENDING = Integer.MIN_VALUE+1;
+    
+    /* perturbation or double-double is used if distance between samples
+     * (relative to center) is smaller than this */
+    private static final double DOUBLE_PRECISION_LIMIT = 1.0e-11;
+    /* float can be used (if allowed) if distance between samples (relative to center)
+     * is not smaller than this and iterations number is not greater than
+     * FLOAT_MAX_ITERATIONS */
+    private static final double FLOAT_PRECISION_LIMIT = 1.0e-4;
+    private static final int FLOAT_MAX_ITERATIONS = 1024;
+    /* precisions can not resolve samples if distance between samples (relative
+     * to center) is smaller than this (perturbation has not such limit) */
+    private static final double FLOAT_RESOLUTION_LIMIT = 1.0e-6;
+    private static final double DOUBLE_RESOLUTION_LIMIT = 1.0e-15;
+    private static final double DOUBLE_DOUBLE_PRECISION_LIMIT = 1.0e-30;
+    
+    /* precision of computations */
+    public static enum Precision
+    {
+    	FLOAT,
+    	DOUBLE,
+    	DOUBLE_DOUBLE,
+    	PERTURBATION
+    }
     
 	private FractalDocument fractal;
 	private AntialiasConfig antialiasConfig;
@@ -35,9 +93,66 @@ public class FractalRenderer implements Serializable
 	private int fragmentsPerColumn;
 	private int fragmentsPerRow;
 	private int fragmentsNumInImage;
+	/* fragments are moved left and up by offset (first fragments are cut) */
+	private int gridOffsetX, gridOffsetY;
+	private int fragWidth, fragHeight;
+	private int stripHeight = STRIP_HEIGHT;
+	private boolean solidGuessing;
+	private boolean progressive;
+	private boolean reusingPixels;
+	private boolean stageCaching;
+	private int gradientResolution = DEFAULT_GRADIENT_RESOLUTION;
+	private transient Gradient.LookupTable lookupTable; /* of current render */
+	private transient StageCache stageCache;
+	/* cache used by current render (null if not used) and reused stages */
+	private transient StageCache activeCache;
+	private StageCache.Level cacheLevel = StageCache.Level.NONE;
+	private transient TileCache tileCache;
+	private File rasterDirectory; /* of temporary rasters (null - default) */
+	/* fragments of current render taken from tile cache (null if none) */
+	private boolean[] cachedFragments;
+	/* position of first pixel of image in lattice of pixels of complex plane */
+	private BigInteger tileAnchorX, tileAnchorY;
+	private int tileAnchorFraction;
+	/* offset of samples in pixels (stochastic antialiasing) */
+	private double sampleOffsetX, sampleOffsetY;
+	private Precision precision; /* null - choose automatically */
+	/* float is chosen automatically only if allowed (quick previews) */
+	private boolean singlePrecisionAllowed;
+	/* statistics of last render */
+	private Precision renderPrecision = Precision.DOUBLE;
+	private boolean precisionExceeded;
+	private double renderTime;
+	private transient PerturbationReference reference;
+	private transient DDComplex ddCenter;
+	/* last completed render and filtering (for reusing pixels) */
+	private transient BufferedImage lastImage;
+	private FractalFrame lastFrame;
+	private long lastFingerprint;
+	private Precision lastPrecision;
+	private transient BufferedImage lastFilterInput, lastFilterOutput;
+	private long lastFilterFingerprint;
+	/* reused region: pixel (x,y) is copied from (x+reuseShiftX,y+reuseShiftY)
+	 * of reuseSource (null if nothing is reused) */
+	private transient BufferedImage reuseSource;
+	private Rectangle reuseRect;
+	private int reuseShiftX, reuseShiftY;
+	private Rectangle filterReuseRect;
+	private int filterShiftX, filterShiftY;
+	/* filter tasks done by render threads in last pass of rendering */
+	private FilterTaskQueue filterTasks = new FilterTaskQueue();
 	private int aaFragWidth, aaFragHeight;
 	private int aaOutWidth, aaOutHeight;
 	private float colorScale, colorShift;
+	/* rendering of bands: progress of band is part of progress of image
+	 * and end of band rendering is not reported */
+	private boolean renderingBands;
+	private volatile boolean bandsCanceled;
+	private double progressStart, progressShare = 1.0;
+	/* reference orbit of whole image (used by all bands) and distance of center
+	 * of band from center of image */
+	private transient PerturbationReference bandsReference;
+	private double bandShiftRe, bandShiftIm;
 	
 	public static int RENDERING_PROCESS = 1;
 	public static int FILTERING_PROCESS = 2;
@@ -54,6 +169,8 @@ public class FractalRenderer implements Serializable
 	private AbstractRenderThread.SharedData sharedData = 
 		new AbstractRenderThread.SharedData();
 	
+	private transient RenderWorkerPool workerPool;
+	
 	private EventListenerList listenerList = new EventListenerList(); 
 	
 	public FractalRenderer()
@@ -85,6 +202,8 @@ public class FractalRenderer implements Serializable
 	{
 		renderCancelLock = new ReentrantLock();
 		renderCancelCond = renderCancelLock.newCondition();
+		/* cancelRender does not wait if nothing is rendered */
+		renderCancel = true;
 	}
 	
 	public void addRenderProgressListener(RenderProgressListener l)
@@ -92,13 +211,19 @@ public class FractalRenderer implements Serializable
 		listenerList.add(RenderProgressListener.class, l);
 	}
 	public void fireRenderProgress(RenderProgressEvent.Process process, double progress)
+	{
+		fireRenderProgress(process, 1, 1, progress);
+	}
+	public void fireRenderProgress(RenderProgressEvent.Process process, int pass,
+			int passesNumber, double progress)
 	{
 		Object[] listeners = listenerList.getListenerList();
 		ArrayList<Integer> fragments = new ArrayList<Integer>();
 		
 		sharedData.getFragmentQueue().drainTo(fragments);
-		RenderProgressEvent event =
-			new RenderProgressEvent(this, process, progress, fragments, currentImage);
+		RenderProgressEvent event = new RenderProgressEvent(this, process, pass,
+				passesNumber, progressStart + progressShare*progress, fragments,
+				currentImage);
 		
 		for (int i = listeners.length - 2; i >= 0; i -= 2)
 			if (listeners[i] == RenderProgressListener.class)
@@ -107,7 +232,7 @@ public class FractalRenderer implements Serializable
 	public void fireRenderProgressDone()
 	{
 		Object[] listeners = listenerList.getListenerList();
-		RenderProgressEvent event = new RenderProgressEvent(this, true);
+		RenderProgressEvent event = new RenderProgressEvent(this, true, renderPrecision);
 		
 		for (int i = listeners.length - 2; i >= 0; i -= 2)
 			if (listeners[i] == RenderProgressListener.class)
@@ -135,6 +260,172 @@ public class FractalRenderer implements Serializable
 	public void setThreadNumber(int number)
 	{
 		threadsNum = number;
+		if (antialiasConfig != null)
+			updateVariables();
+	}
+	
+	/* get worker pool (shared pool if not set) */
+	public RenderWorkerPool getWorkerPool()
+	{
+		return (workerPool != null) ? workerPool : RenderWorkerPoolFactory.pool;
+	}
+	public void setWorkerPool(RenderWorkerPool pool)
+	{
+		workerPool = pool;
+	}
+	
+	public boolean isSolidGuessing()
+	{
+		return solidGuessing;
+	}
+	/* enable solid guessing (Mariani-Silver) mode */
+	public void setSolidGuessing(boolean guessing)
+	{
+		solidGuessing = guessing;
+	}
+	
+	public Precision getPrecision()
+	{
+		return precision;
+	}
+	/* force precision of computations (null - choose automatically by zoom) */
+	public void setPrecision(Precision precision)
+	{
+		this.precision = precision;
+	}
+	
+	public boolean isSinglePrecisionAllowed()
+	{
+		return singlePrecisionAllowed;
+	}
+	/* allow automatic choosing of float precision for shallow zooms (only for quick
+	 * previews, float loses details, so images written to files are rendered
+	 * with double or higher precision) */
+	public void setSinglePrecisionAllowed(boolean allowed)
+	{
+		singlePrecisionAllowed = allowed;
+	}
+	
+	/* get precision used in last render */
+	public Precision getRenderPrecision()
+	{
+		return renderPrecision;
+	}
+	/* returns true if precision of last render can not resolve samples
+	 * (image is blocky, formula has not higher precision) */
+	public boolean isPrecisionExceeded()
+	{
+		return precisionExceeded;
+	}
+	/* get time of last render in seconds */
+	public double getRenderTime()
+	{
+		return renderTime;
+	}
+	
+	public boolean isProgressive()
+	{
+		return progressive;
+	}
+	/* enable progressive (coarse-to-fine) mode, solid guessing is not used in this mode */
+	public void setProgressive(boolean progressive)
+	{
+		this.progressive = progressive;
+	}
+	
+	/* number of rendering passes */
+	public int getPassesNumber()
+	{
+		return progressive ? PROGRESSIVE_STEPS.length : 1;
+	}
+	
+	public boolean isReusingPixels()
+	{
+		return reusingPixels;
+	}
+	/* enable reusing pixels of last image if frame is only translated by
+	 * whole pixels (then only newly exposed regions are rendered).
+	 * returned images must not be modified when this mode is enabled */
+	public void setReusingPixels(boolean reusing)
+	{
+		reusingPixels = reusing;
+		if (!reusing)
+			lastImage = lastFilterInput = lastFilterOutput = reuseSource = null;
+	}
+	
+	public int getGradientResolution()
+	{
+		return gradientResolution;
+	}
+	/* number of colors in gradient lookup table used for coloring
+	 * (0 - colors are evaluated exactly for every sample) */
+	public void setGradientResolution(int resolution)
+	{
+		gradientResolution = resolution;
+	}
+	
+	public boolean isStageCaching()
+	{
+		return stageCaching;
+	}
+	/* enable caching of results of stages for every sample, then after change of
+	 * coloring (or inner or outer function) only changed stages are computed */
+	public void setStageCaching(boolean caching)
+	{
+		stageCaching = caching;
+		if (!caching)
+			stageCache = null;
+	}
+	
+	public TileCache getTileCache()
+	{
+		return tileCache;
+	}
+	/* tiles (fragments) of rendered images are kept in cache, then rendering
+	 * of same view with same document takes them instead of computing again.
+	 * cache can be shared by renderers (null - disabled) */
+	public void setTileCache(TileCache cache)
+	{
+		tileCache = cache;
+	}
+	
+	public File getRasterDirectory()
+	{
+		return rasterDirectory;
+	}
+	/* directory of temporary rasters in files (null - default temporary directory) */
+	public void setRasterDirectory(File directory)
+	{
+		rasterDirectory = directory;
+	}
+	
+	public double getSampleOffsetX()
+	{
+		return sampleOffsetX;
+	}
+	public double getSampleOffsetY()
+	{
+		return sampleOffsetY;
+	}
+	/* move samples by offset in pixels (from 0 to 1) for stochastic antialiasing.
+	 * images rendered with offset are not reused and not cached */
+	public void setSampleOffset(double offsetX, double offsetY)
+	{
+		sampleOffsetX = offsetX;
+		sampleOffsetY = offsetY;
+	}
+	private boolean hasSampleOffset()
+	{
+		return (sampleOffsetX != 0.0 || sampleOffsetY != 0.0);
+	}
+	
+	public FragmentScheduler getFragmentScheduler()
+	{
+		return sharedData.getScheduler();
+	}
+	public void setFragmentScheduler(FragmentScheduler scheduler)
+	{
+		sharedData.setScheduler(scheduler);
 	}
 	
 	public AntialiasConfig getAntiAliasConfig()
@@ -167,14 +458,32 @@ public class FractalRenderer implements Serializable
 		int y = index / fragmentsPerColumn;
 		int x = index - fragmentsPerColumn*y;
 		
-		x *= FRAGMENT_WIDTH;
-		y *= FRAGMENT_HEIGHT;
+		x = x*fragWidth - gridOffsetX;
+		y = y*fragHeight - gridOffsetY;
 		
-		int width = (x + FRAGMENT_WIDTH <= outWidth) ? FRAGMENT_WIDTH :
-				outWidth-x;
-		int height = (y + FRAGMENT_HEIGHT <= outHeight) ? FRAGMENT_HEIGHT :
-			outHeight-y;
-		return new Rectangle(x, y, width, height);
+		int width = Math.min(x + fragWidth, outWidth) - Math.max(x, 0);
+		int height = Math.min(y + fragHeight, outHeight) - Math.max(y, 0);
+		return new Rectangle(Math.max(x, 0), Math.max(y, 0), width, height);
+	}
+	
+	/* get rectangle of strips (from firstStrip to lastStrip exclusive) of fragment */
+	private Rectangle getFragmentPartRect(int index, int firstStrip, int lastStrip)
+	{
+		Rectangle rect = getFragmentRect(index);
+		int startY = firstStrip*stripHeight;
+		int endY = Math.min(lastStrip*stripHeight, rect.height);
+		rect.y += startY;
+		rect.height = Math.max(endY - startY, 0);
+		return rect;
+	}
+	
+	public int getFragmentWidth()
+	{
+		return fragWidth;
+	}
+	public int getFragmentHeight()
+	{
+		return fragHeight;
 	}
 	
 	public int getFragmentsNumber()
@@ -189,34 +498,151 @@ public class FractalRenderer implements Serializable
 	}
 	
 	
+	/* choose fragment size: as large as possible, but with limited number of samples
+	 * and with enough fragments for all threads */
+	private int chooseFragmentSize(int samplesNum)
+	{
+		int minFragments = FRAGMENTS_PER_THREAD * Math.max(threadsNum, 1);
+		int size = MAX_FRAGMENT_SIZE;
+		while (size > MIN_FRAGMENT_SIZE)
+		{
+			int fragmentsNum = ((outWidth+size-1)/size) * ((outHeight+size-1)/size);
+			if (size*size*samplesNum <= MAX_FRAGMENT_SAMPLES && fragmentsNum >= minFragments)
+				break;
+			size >>= 1;
+		}
+		return size;
+	}
+	
 	private void updateVariables()
 	{
-		if (antialiasConfig.getMethod() == AntialiasConfig.Method.NORMAL)
+		/* adaptive method requires buffers for all samples of fragment */
+		if (antialiasConfig.isSupersampling())
 		{
-    		aaFragWidth = FRAGMENT_WIDTH*antialiasConfig.getSamplingWidth();
-    		aaFragHeight = FRAGMENT_WIDTH*antialiasConfig.getSamplingHeight();
+			fragWidth = fragHeight = chooseFragmentSize(antialiasConfig.getSamplingWidth()*
+					antialiasConfig.getSamplingHeight());
+    		aaFragWidth = fragWidth*antialiasConfig.getSamplingWidth();
+    		aaFragHeight = fragHeight*antialiasConfig.getSamplingHeight();
     		aaOutWidth = outWidth*antialiasConfig.getSamplingWidth();
     		aaOutHeight = outHeight*antialiasConfig.getSamplingHeight();
 		}
 		else
 		{
-			aaFragWidth = FRAGMENT_WIDTH;
-    		aaFragHeight = FRAGMENT_WIDTH;
+			fragWidth = fragHeight = chooseFragmentSize(1);
+			aaFragWidth = fragWidth;
+    		aaFragHeight = fragHeight;
     		aaOutWidth = outWidth;
     		aaOutHeight = outHeight;
 		}
 		
-		fragmentsPerColumn = (outWidth/FRAGMENT_WIDTH);
-		fragmentsPerRow = (outHeight/FRAGMENT_HEIGHT);
-		
-		if (fragmentsPerColumn * FRAGMENT_WIDTH != outWidth)
-			fragmentsPerColumn++;
-		if (fragmentsPerRow * FRAGMENT_HEIGHT != outHeight)
-			fragmentsPerRow++;
-		
+		gridOffsetX = gridOffsetY = 0;
+		updateFragmentsNumber();
+	}
+	
+	private void updateFragmentsNumber()
+	{
+		fragmentsPerColumn = (outWidth+gridOffsetX+fragWidth-1) / fragWidth;
+		fragmentsPerRow = (outHeight+gridOffsetY+fragHeight-1) / fragHeight;
 		fragmentsNumInImage = fragmentsPerColumn * fragmentsPerRow;
 	}
 	
+	/* distance between samples at complex plane */
+	private double getSampleSpacing(Matrix3D transform)
+	{
+		double[] m = transform.m;
+		double scaleFactor = 1.0 / (double)Math.min(outWidth, outHeight);
+		double spacing = Math.sqrt(Math.abs(m[0]*m[4] - m[1]*m[3])) * scaleFactor;
+		if (antialiasConfig.isSupersampling())
+			spacing /= (double)Math.max(antialiasConfig.getSamplingWidth(),
+					antialiasConfig.getSamplingHeight());
+		return spacing;
+	}
+	
+	/* maximal distance of samples from center of frame */
+	private double getMaxDelta(Matrix3D transform)
+	{
+		double[] m = transform.m;
+		double scaleFactor = 1.0 / (double)Math.min(outWidth, outHeight);
+		double sx = 0.5*(double)outWidth*scaleFactor;
+		double sy = 0.5*(double)outHeight*scaleFactor;
+		return Math.max(Math.hypot(m[0]*sx + m[1]*sy, m[3]*sx + m[4]*sy),
+				Math.hypot(m[0]*sx - m[1]*sy, m[3]*sx - m[4]*sy));
+	}
+	
+	/* precision tiers other than double require formula support and
+	 * untransformed plane (coordinates are given as distances from center) */
+	private boolean isPrecisionPossible(Precision precision)
+	{
+		if (precision == Precision.DOUBLE)
+			return true;
+		if (!fractal.getPlaneTransform().isIdentity())
+			return false;
+		if (precision == Precision.FLOAT)
+			return fractal.getFractalFormula() instanceof FloatFractalFormula;
+		if (precision == Precision.DOUBLE_DOUBLE)
+			return fractal.getFractalFormula() instanceof DoubleDoubleFractalFormula;
+		return fractal.getFractalFormula() instanceof PerturbationFractalFormula;
+	}
+	
+	private static double getResolutionLimit(Precision precision)
+	{
+		switch(precision)
+		{
+		case FLOAT:
+			return FLOAT_RESOLUTION_LIMIT;
+		case DOUBLE:
+			return DOUBLE_RESOLUTION_LIMIT;
+		case DOUBLE_DOUBLE:
+			return DOUBLE_DOUBLE_PRECISION_LIMIT;
+		default:
+			return 0.0;
+		}
+	}
+	
+	private Precision choosePrecision(FractalFrame frame)
+	{
+		Matrix3D transform = frame.getTransform();
+		double center = Math.max(Math.max(Math.abs(transform.m[2]),
+				Math.abs(transform.m[5])), 1.0);
+		double spacing = getSampleSpacing(transform);
+		Precision chosen;
+		if (precision != null)
+			chosen = isPrecisionPossible(precision) ? precision : Precision.DOUBLE;
+		else if (singlePrecisionAllowed && spacing >= FLOAT_PRECISION_LIMIT*center &&
+				fractal.getFractalFormula().maxIterations <= FLOAT_MAX_ITERATIONS &&
+				isPrecisionPossible(Precision.FLOAT))
+			chosen = Precision.FLOAT;
+		else if (spacing >= DOUBLE_PRECISION_LIMIT*center)
+			chosen = Precision.DOUBLE;
+		/* perturbation iterates in doubles, so it is much faster than double-double */
+		else if (isPrecisionPossible(Precision.PERTURBATION))
+			chosen = Precision.PERTURBATION;
+		else if (isPrecisionPossible(Precision.DOUBLE_DOUBLE))
+			chosen = Precision.DOUBLE_DOUBLE;
+		else
+			chosen = Precision.DOUBLE;
+		
+		/* image is rendered, but not silently (bands are checked once for image) */
+		precisionExceeded = spacing < getResolutionLimit(chosen)*center;
+		if (precisionExceeded && !renderingBands)
+			System.err.printf(Locale.ENGLISH, "Warning: %s precision can not resolve " +
+					"samples (relative spacing %g)\n", chosen, spacing/center);
+		return chosen;
+	}
+	
+	/* compute reference orbit at center of frame with precision enough for spacing */
+	private PerturbationReference computeReference(FractalFrame frame)
+	{
+		Matrix3D transform = frame.getTransform();
+		double spacing = getSampleSpacing(transform);
+		int digits = 20;
+		if (spacing > 0.0 && spacing < 1.0)
+			digits = Math.max(digits, (int)Math.ceil(-Math.log10(spacing)) + 12);
+		return ((PerturbationFractalFormula)fractal.getFractalFormula()).computeReference(
+				frame.getCenterRe(), frame.getCenterIm(), getMaxDelta(transform),
+				new MathContext(digits));
+	}
+	
 	public void prepareFractal() throws GradientLoadingException
 	{
 		if (fractal.getGradient() == null)
@@ -235,8 +661,11 @@ public class FractalRenderer implements Serializable
 	{		
 		private Matrix3D baseMatrix;
 		
-		private Complex[] inZData; /* input transforms coordinates map */
-		private Complex[] outZData; /* input transforms coordinates map */
+		/* buffers of worker which runs this thread */
+		private double[] inRe, inIm; /* input transforms coordinates map */
+		private double[] outRe, outIm; /* output complex values map */
+		private Complex[] inZData; /* Complex[] variant for non-primitive functions */
+		private Complex[] outZData; /* Complex[] variant for non-primitive functions */
 		private int[] itData; /* iterations number data */
 		private float[] mapData; /* coloring value data */
 		private RGBColor[] renderedData;
@@ -249,6 +678,46 @@ public class FractalRenderer implements Serializable
 		private OuterFunction outerFunction;
 		private Gradient gradient;
 		
+		/* primitive variants of functions (null if not implemented) */
+		private PrimitivePlaneTransform primitivePlane;
+		private PrimitiveFractalFormula primitiveFormula;
+		private PrimitiveInnerFunction primitiveInner;
+		private PrimitiveOuterFunction primitiveOuter;
+		/* perturbation (if reference is not null) */
+		private PerturbationFractalFormula perturbationFormula;
+		/* double-double (if ddCenter is not null) */
+		private DoubleDoubleFractalFormula ddFormula;
+		private boolean withDeltas;
+		/* single precision (if renderPrecision is FLOAT) */
+		private FloatFractalFormula floatFormula;
+		private float[] floatRe, floatIm, floatOutRe, floatOutIm;
+		private double deltaStartRe, deltaStartIm;
+		private double centerRe, centerIm;
+		/* input of fractal formula (coordinates map or distances from center) */
+		private double[] formulaRe, formulaIm;
+		
+		private boolean inZValid; /* inZData holds current coordinates map */
+		
+		/* solid guessing batch of gathered points */
+		private double[] batchRe, batchIm, batchOutRe, batchOutIm;
+		private int[] batchItData;
+		private int[] batchIndices;
+		private int batchSize;
+		
+		private int passStep; /* step of progressive pass (0 if not progressive) */
+		private Rectangle[] rects = new Rectangle[4]; /* not reused parts of fragment */
+		
+		private StageCache cache; /* null if stages are not cached */
+		private StageCache.Level level;
+		private int[] sampleIndices; /* indices of computed samples in cache */
+		
+		/* colors of samples are indices in lookup table (if it is not null) */
+		private Gradient.LookupTable colorTable;
+		private int[] colorIndices;
+		private float sumRed, sumGreen, sumBlue;
+		/* adaptive antialiasing: colors of pixels and indices of edge pixels */
+		private int[] pixelColors, edgePixels;
+		
 		public MainRenderThread(FractalFrame frame, int[] outData)
 		{
 			//this.outputImage = output;
@@ -260,19 +729,24 @@ public class FractalRenderer implements Serializable
 			innerFunction = fractal.getInnerFunction();
 			outerFunction = fractal.getOuterFunction();
 			
-			inZData = new Complex[aaFragWidth*aaFragHeight];
-			outZData = new Complex[aaFragWidth*aaFragHeight];
-			itData = new int[aaFragWidth*aaFragHeight];
-			mapData = new float[aaFragWidth*aaFragHeight];
-			renderedData = new RGBColor[aaFragWidth*aaFragHeight];
-			//outData = new int[FRAGMENT_WIDTH*FRAGMENT_HEIGHT];
-			
-			for (int i = 0; i < aaFragWidth*aaFragHeight; i++)
-			{
-				inZData[i] = new Complex();
-				outZData[i] = new Complex();
-				renderedData[i] = new RGBColor();
-			}
+			if (planeTransform instanceof PrimitivePlaneTransform)
+				primitivePlane = (PrimitivePlaneTransform)planeTransform;
+			if (fractalFormula instanceof PrimitiveFractalFormula)
+				primitiveFormula = (PrimitiveFractalFormula)fractalFormula;
+			if (innerFunction instanceof PrimitiveInnerFunction)
+				primitiveInner = (PrimitiveInnerFunction)innerFunction;
+			if (outerFunction instanceof PrimitiveOuterFunction)
+				primitiveOuter = (PrimitiveOuterFunction)outerFunction;
+			if (reference != null)
+				perturbationFormula = (PerturbationFractalFormula)fractalFormula;
+			if (ddCenter != null)
+				ddFormula = (DoubleDoubleFractalFormula)fractalFormula;
+			withDeltas = (perturbationFormula != null || ddFormula != null);
+			if (renderPrecision == Precision.FLOAT)
+				floatFormula = (FloatFractalFormula)fractalFormula;
+			cache = activeCache;
+			level = cacheLevel;
+			colorTable = lookupTable;
 			
 			baseMatrix = frame.getTransform().copy();
 			/* only scale kernel, not translations */
@@ -283,9 +757,14 @@ public class FractalRenderer implements Serializable
 					
 			Vector2D translation = new Vector2D(-0.5*(float)aaOutWidth,
 					-0.5*(float)aaOutHeight);
+			if (hasSampleOffset())
+			{
+				translation.x += sampleOffsetX*(double)(aaOutWidth/outWidth);
+				translation.y += sampleOffsetY*(double)(aaOutHeight/outHeight);
+			}
 			
 			//Vector3D baseVector =
-			if (antialiasConfig.getMethod() == AntialiasConfig.Method.NORMAL)
+			if (antialiasConfig.isSupersampling())
 			{
 				double sX = scaleFactor / (float)antialiasConfig.getSamplingWidth();
 				double sY = scaleFactor / (float)antialiasConfig.getSamplingHeight();
@@ -298,10 +777,367 @@ public class FractalRenderer implements Serializable
 			else
 				baseMatrix.onlyScale(scaleFactor, scaleFactor);
 			
+			/* start of distances from center (without rounding of center) */
+			deltaStartRe = baseMatrix.m[0]*translation.x + baseMatrix.m[1]*translation.y;
+			deltaStartIm = baseMatrix.m[3]*translation.x + baseMatrix.m[4]*translation.y;
+			centerRe = baseMatrix.m[2];
+			centerIm = baseMatrix.m[5];
+			if (reference != null && reference == bandsReference)
+			{	/* distances from center of image */
+				deltaStartRe += bandShiftRe;
+				deltaStartIm += bandShiftIm;
+				centerRe -= bandShiftRe;
+				centerIm -= bandShiftIm;
+			}
 			translation.transform(baseMatrix);
 			baseMatrix.setColumn(2, translation.x, translation.y, 1.0);
 		}
 		
+		private void attachBuffers(RenderBuffers buffers)
+		{
+			/* Complex[] buffers only if any function requires them */
+			boolean withComplex = (primitivePlane == null || primitiveFormula == null ||
+					primitiveInner == null || primitiveOuter == null);
+			/* adaptive antialiasing computes pixels of fragment with neighbours */
+			int capacity = aaFragWidth*aaFragHeight;
+			if (antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+				capacity = Math.max(capacity, (fragWidth+2)*(fragHeight+2));
+			buffers.ensureCapacity(capacity, withComplex);
+			inRe = buffers.inRe;
+			inIm = buffers.inIm;
+			outRe = buffers.outRe;
+			outIm = buffers.outIm;
+			inZData = buffers.inZData;
+			outZData = buffers.outZData;
+			itData = buffers.itData;
+			mapData = buffers.mapData;
+			renderedData = buffers.renderedData;
+			formulaRe = inRe;
+			formulaIm = inIm;
+			if (floatFormula != null)
+			{
+				buffers.ensureFloatCapacity();
+				floatRe = buffers.floatRe;
+				floatIm = buffers.floatIm;
+				floatOutRe = buffers.floatOutRe;
+				floatOutIm = buffers.floatOutIm;
+			}
+			if (withDeltas)
+			{
+				buffers.ensureDeltaCapacity();
+				formulaRe = buffers.deltaRe;
+				formulaIm = buffers.deltaIm;
+			}
+			if (solidGuessing)
+			{
+				buffers.ensureBatchCapacity();
+				batchRe = buffers.batchRe;
+				batchIm = buffers.batchIm;
+				batchOutRe = buffers.batchOutRe;
+				batchOutIm = buffers.batchOutIm;
+				batchItData = buffers.batchItData;
+				batchIndices = buffers.batchIndices;
+			}
+			if (cache != null)
+			{
+				buffers.ensureIndexCapacity();
+				sampleIndices = buffers.sampleIndices;
+			}
+			if (colorTable != null)
+			{
+				buffers.ensureColorCapacity();
+				colorIndices = buffers.colorIndices;
+			}
+			if (antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+			{
+				buffers.ensureAdaptiveCapacity();
+				pixelColors = buffers.pixelColors;
+				edgePixels = buffers.edgePixels;
+			}
+		}
+		
+		public void run()
+		{
+			boolean done = false;
+			try
+			{
+				attachBuffers(RenderWorkerPool.getLocalBuffers());
+				renderFragments();
+				done = true;
+			}
+			finally
+			{	/* other threads do not wait for fragments of failed thread */
+				if (!done)
+					sharedData.getCancelIndicator().set(true);
+			}
+		}
+		
+		protected void renderFragments()
+		{
+			super.run();
+		}
+		
+		public void setPassStep(int step)
+		{
+			passStep = step;
+		}
+		
+		private void toComplex(int length, double[] re, double[] im, Complex[] dest)
+		{
+			for (int i = 0; i < length; i++)
+				dest[i].set(re[i], im[i]);
+		}
+		private void fromComplex(int length, Complex[] src, double[] re, double[] im)
+		{
+			for (int i = 0; i < length; i++)
+			{
+				re[i] = src[i].re;
+				im[i] = src[i].im;
+			}
+		}
+		
+		/* run plane transform on first length items of coordinates map */
+		private void computePlane(int length)
+		{
+			inZValid = false;
+			if (primitivePlane != null)
+				primitivePlane.compute(length, inRe, inIm);
+			else
+			{
+				toComplex(length, inRe, inIm, inZData);
+				planeTransform.compute(length, inZData);
+				fromComplex(length, inZData, inRe, inIm);
+				inZValid = true;
+			}
+		}
+		
+		/* run fractal formula on given arrays (coordinates map or gathered points) */
+		private void computeFormula(int length, double[] zRe, double[] zIm, int[] outItData,
+				double[] outZRe, double[] outZIm)
+		{
+			if (perturbationFormula != null)
+				perturbationFormula.compute(length, outItData, reference, zRe, zIm,
+						outZRe, outZIm);
+			else if (ddFormula != null)
+				ddFormula.compute(length, outItData, ddCenter, zRe, zIm, outZRe, outZIm);
+			else if (floatFormula != null)
+			{
+				for (int i = 0; i < length; i++)
+				{
+					floatRe[i] = (float)zRe[i];
+					floatIm[i] = (float)zIm[i];
+				}
+				floatFormula.compute(length, outItData, floatRe, floatIm,
+						floatOutRe, floatOutIm);
+				for (int i = 0; i < length; i++)
+				{
+					outZRe[i] = floatOutRe[i];
+					outZIm[i] = floatOutIm[i];
+				}
+			}
+			else if (primitiveFormula != null)
+				primitiveFormula.compute(length, outItData, zRe, zIm, outZRe, outZIm);
+			else
+			{
+				if (zRe != inRe || !inZValid)
+					toComplex(length, zRe, zIm, inZData);
+				inZValid = (zRe == inRe);
+				fractalFormula.compute(length, outItData, inZData, outZData);
+				fromComplex(length, outZData, outZRe, outZIm);
+			}
+		}
+		
+		/* run inner and outer function on first length items */
+		private void computeColoring(int length)
+		{
+			if (primitiveInner != null)
+				primitiveInner.compute(length, itData, inRe, inIm, mapData);
+			else
+			{
+				if (!inZValid)
+					toComplex(length, inRe, inIm, inZData);
+				innerFunction.compute(length, itData, inZData, mapData);
+			}
+			
+			if (primitiveOuter != null)
+				primitiveOuter.compute(length, itData, outRe, outIm, mapData);
+			else
+			{
+				toComplex(length, outRe, outIm, outZData);
+				outerFunction.compute(length, itData, outZData, mapData);
+			}
+		}
+		
+		/* run plane transform, fractal formula, inner and outer function on
+		 * first length items of coordinates map, primitive variants are preferred */
+		private void computeStages(int length)
+		{
+			if (level == StageCache.Level.COLORING)
+			{	/* only coloring by gradient is required */
+				for (int i = 0; i < length; i++)
+				{
+					itData[i] = cache.itData[sampleIndices[i]];
+					mapData[i] = cache.mapData[sampleIndices[i]];
+				}
+				return;
+			}
+			computePlane(length);
+			if (level == StageCache.Level.FORMULA)
+				for (int i = 0; i < length; i++)
+				{
+					int index = sampleIndices[i];
+					itData[i] = cache.itData[index];
+					outRe[i] = cache.outRe[index];
+					outIm[i] = cache.outIm[index];
+				}
+			else
+				computeFormula(length, formulaRe, formulaIm, itData, outRe, outIm);
+			computeColoring(length);
+			storeStages(length);
+		}
+		
+		/* put results of computed stages into cache */
+		private void storeStages(int length)
+		{
+			if (cache == null)
+				return;
+			for (int i = 0; i < length; i++)
+			{
+				int index = sampleIndices[i];
+				if (level == StageCache.Level.NONE)
+				{
+					cache.itData[index] = itData[i];
+					cache.outRe[index] = outRe[i];
+					cache.outIm[index] = outIm[i];
+				}
+				cache.mapData[index] = mapData[i];
+			}
+		}
+		
+		/*
+		 * solid guessing (Mariani-Silver): compute border of rectangle, if all border points
+		 * have same iterations number, fill interior, otherwise subdivide rectangle.
+		 * filled points get interpolated output values. only interior points (and
+		 * escaped points if outer function uses only iterations) are filled, output values
+		 * of escaped points are not interpolated (smooth coloring needs |z| > bailout)
+		 */
+		
+		/* add point to batch if not computed */
+		private void addToBatch(int pos)
+		{
+			if (itData[pos] == NOT_COMPUTED)
+			{
+				itData[pos] = GUESS_PENDING;
+				batchIndices[batchSize++] = pos;
+			}
+		}
+		
+		/* compute all points from batch */
+		private void flushBatch()
+		{
+			if (batchSize == 0)
+				return;
+			for (int i = 0; i < batchSize; i++)
+			{
+				batchRe[i] = formulaRe[batchIndices[i]];
+				batchIm[i] = formulaIm[batchIndices[i]];
+			}
+			computeFormula(batchSize, batchRe, batchIm, batchItData, batchOutRe, batchOutIm);
+			for (int i = 0; i < batchSize; i++)
+			{
+				int pos = batchIndices[i];
+				itData[pos] = batchItData[i];
+				outRe[pos] = batchOutRe[i];
+				outIm[pos] = batchOutIm[i];
+			}
+			batchSize = 0;
+		}
+		
+		private void addRowToBatch(int width, int y, int x0, int x1)
+		{
+			for (int x = x0; x < x1; x++)
+				addToBatch(y*width + x);
+		}
+		private void addColumnToBatch(int width, int x, int y0, int y1)
+		{
+			for (int y = y0; y < y1; y++)
+				addToBatch(y*width + x);
+		}
+		
+		private void guessRect(int width, int x0, int y0, int w, int h)
+		{
+			/* small rectangle: compute all */
+			if (w <= GUESS_MIN_SIZE || h <= GUESS_MIN_SIZE)
+			{
+				for (int y = y0; y < y0+h; y++)
+					addRowToBatch(width, y, x0, x0+w);
+				flushBatch();
+				return;
+			}
+			
+			int x1 = x0+w-1, y1 = y0+h-1;
+			/* border is already computed (by caller) */
+			int first = itData[y0*width + x0];
+			boolean solid = true;
+			for (int x = x0; x <= x1 && solid; x++)
+				solid = itData[y0*width + x] == first && itData[y1*width + x] == first;
+			for (int y = y0; y <= y1 && solid; y++)
+				solid = itData[y*width + x0] == first && itData[y*width + x1] == first;
+			
+			if (solid && first >= 0 && !outerFunction.isIterationsOnly())
+			{	/* escaped points: compute interior */
+				for (int y = y0+1; y < y1; y++)
+					addRowToBatch(width, y, x0+1, x1);
+				flushBatch();
+				return;
+			}
+			if (solid)
+			{
+				for (int y = y0+1; y < y1; y++)
+				{
+					int left = y*width + x0, right = y*width + x1;
+					double scale = 1.0 / (double)(w-1);
+					for (int x = x0+1; x < x1; x++)
+					{
+						int pos = y*width + x;
+						double t = (double)(x-x0) * scale;
+						itData[pos] = first;
+						outRe[pos] = outRe[left] + t*(outRe[right]-outRe[left]);
+						outIm[pos] = outIm[left] + t*(outIm[right]-outIm[left]);
+					}
+				}
+				return;
+			}
+			
+			/* compute cross lines, then subdivide into four rectangles sharing borders */
+			int mx = x0 + w/2, my = y0 + h/2;
+			addRowToBatch(width, my, x0+1, x1);
+			addColumnToBatch(width, mx, y0+1, y1);
+			flushBatch();
+			
+			guessRect(width, x0, y0, mx-x0+1, my-y0+1);
+			guessRect(width, mx, y0, x1-mx+1, my-y0+1);
+			guessRect(width, x0, my, mx-x0+1, y1-my+1);
+			guessRect(width, mx, my, x1-mx+1, y1-my+1);
+		}
+		
+		/* compute formula with solid guessing on width*height coordinates map */
+		private void computeGuessedFormula(int width, int height)
+		{
+			Arrays.fill(itData, 0, width*height, NOT_COMPUTED);
+			if (width <= GUESS_MIN_SIZE || height <= GUESS_MIN_SIZE)
+			{
+				guessRect(width, 0, 0, width, height);
+				return;
+			}
+			addRowToBatch(width, 0, 0, width);
+			addRowToBatch(width, height-1, 0, width);
+			addColumnToBatch(width, 0, 1, height-1);
+			addColumnToBatch(width, width-1, 1, height-1);
+			flushBatch();
+			guessRect(width, 0, 0, width, height);
+		}
+		
 		public void sampleRender(int startX, int startY, int width, int height)
 		{
 			int sampWidth = antialiasConfig.getSamplingWidth();
@@ -317,24 +1153,12 @@ public class FractalRenderer implements Serializable
     			for (int y = 0; y < height; y++)
     				for (int x = 0; x < width; x++)
     				{
-    					float r = 0.0f, g = 0.0f, b = 0.0f;
     					int pos = (y*aaWidth*sampHeight + x*sampWidth);
     					int outPos = ((y+startY)*outWidth + x + startX);
     					for (int aaY = 0; aaY < sampHeight; aaY++)
     						for (int aaX = 0; aaX < sampWidth; aaX++)
-    						{
-    							RGBColor pixel = renderedData[pos + aaY*aaWidth + aaX];
-    							r += pixel.red;
-    							g += pixel.green;
-    							b += pixel.blue;
-    						}
-    					r *= scaleRGB;
-    					g *= scaleRGB;
-    					b *= scaleRGB;
-    					outData[outPos] = 0xff000000 |
-    							(((int)(r * 255.0f + 0.5f))<<16) |
-    							(((int)(g * 255.0f + 0.5f))<<8) |
-    							((int)(b * 255.0f + 0.5f));
+    							addSampleColor(pos + aaY*aaWidth + aaX);
+    					outData[outPos] = getAverageColor(scaleRGB);
     				}
 			}
 			else
@@ -344,22 +1168,43 @@ public class FractalRenderer implements Serializable
     				for (int x = 0; x < width; x++)
     				{
     					int pos = ((startY+y)*outWidth + x + startX);
-    					RGBColor pixel = renderedData[y*width+x];
-    					outData[pos] = 0xff000000 |
-    							(((int)(pixel.red * 255.0f + 0.5f))<<16) |
-    							(((int)(pixel.green * 255.0f + 0.5f))<<8) |
-    							((int)(pixel.blue * 255.0f + 0.5f));
+    					outData[pos] = getSampleColor(y*width+x);
     				}
 			}
 		}
 		
-		public void renderFragment(int index)
+		public void renderFragment(int index, int firstStrip, int lastStrip)
 		{
-			Rectangle fragRect = getFragmentRect(index);
-			
-			int aaX;
-			int aaY;
-			
+			/* pixels of cached tiles are already copied */
+			if (cachedFragments != null && cachedFragments[index])
+				return;
+			Rectangle fragRect = getFragmentPartRect(index, firstStrip, lastStrip);
+			if (fragRect.height == 0)
+				return;
+			/* reused pixels are already copied */
+			int rectsNum = subtractRect(fragRect, reuseRect, rects);
+			for (int i = 0; i < rectsNum; i++)
+			{
+				/* last pass of adaptive antialiasing must know all neighbours */
+				if (passStep > 1 || (passStep == 1 &&
+						antialiasConfig.getMethod() != AntialiasConfig.Method.ADAPTIVE))
+					renderPass(rects[i]);
+				else
+					renderRect(rects[i]);
+			}
+		}
+		
+		private void renderRect(Rectangle fragRect)
+		{
+			if (antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+			{
+				renderAdaptiveRect(fragRect);
+				return;
+			}
+			
+			int aaX;
+			int aaY;
+			
 			if (antialiasConfig.getMethod() == AntialiasConfig.Method.NORMAL)
 			{
 				aaX = fragRect.x * antialiasConfig.getSamplingWidth();
@@ -385,57 +1230,308 @@ public class FractalRenderer implements Serializable
 				aaHeight = fragRect.height;
 			}
 			
-			Matrix3D pixelTransform = baseMatrix.copy();
-			Vector2D vec = new Vector2D(aaX, aaY);
-			vec.transform(pixelTransform);
-			pixelTransform.setColumn(2, vec.x, vec.y, 1.0);
-			//pixelTransform.translate(x, y);
-			
 			int length = aaWidth*aaHeight;
 			
-			/* matrix transforms data computations */
+			/* matrix transforms data computations. coordinates are computed from
+			 * image origin, so they do not depend on fragments layout.
+			 * with perturbation or double-double, distances from center are computed */
 			{
-				Complex zStart = new Complex(pixelTransform.m[2], pixelTransform.m[5]);
-        		Complex xBase = new Complex(pixelTransform.m[0], pixelTransform.m[3]);
-        		Complex yBase = new Complex(pixelTransform.m[1], pixelTransform.m[4]);
-        		Complex xInc = new Complex(0.0, 0.0);
-        		Complex yInc = new Complex(0.0, 0.0);
-        		Complex xz = new Complex(0.0, 0.0);
+				double zStartRe = baseMatrix.m[2], zStartIm = baseMatrix.m[5];
+				if (withDeltas)
+				{
+					zStartRe = deltaStartRe;
+					zStartIm = deltaStartIm;
+				}
+				double xBaseRe = baseMatrix.m[0], xBaseIm = baseMatrix.m[3];
+				double yBaseRe = baseMatrix.m[1], yBaseIm = baseMatrix.m[4];
         		
         		for (int y = 0; y < aaHeight; y++)
         		{
-        			yInc.set(yBase);
-        			yInc.multiply((double)y);
+        			double yIncRe = yBaseRe*(double)(aaY+y);
+        			double yIncIm = yBaseIm*(double)(aaY+y);
         			for (int x = 0; x < aaWidth; x++)
         			{
-        				xInc.set(xBase);
-        				xInc.multiply((double)x);
-        				xInc.add(yInc);
-        				xz.set(zStart);
-        				xz.add(xInc);
-        				inZData[aaWidth*y + x].set(xz);
+        				int pos = aaWidth*y + x;
+        				formulaRe[pos] = zStartRe + (xBaseRe*(double)(aaX+x) + yIncRe);
+        				formulaIm[pos] = zStartIm + (xBaseIm*(double)(aaX+x) + yIncIm);
         			}
         		}
+        		if (cache != null)
+        			for (int y = 0; y < aaHeight; y++)
+        				for (int x = 0; x < aaWidth; x++)
+        					sampleIndices[aaWidth*y + x] = (aaY+y)*aaOutWidth + aaX+x;
+        		/* approximated coordinates for inner function */
+        		if (withDeltas)
+        			for (int pos = 0; pos < length; pos++)
+        			{
+        				inRe[pos] = centerRe + formulaRe[pos];
+        				inIm[pos] = centerIm + formulaIm[pos];
+        			}
 			}
 			
-			planeTransform.compute(length, inZData);
-			fractalFormula.compute(length, itData, inZData, outZData);
-			innerFunction.compute(length, itData, inZData, mapData);
-			outerFunction.compute(length, itData, outZData, mapData);
+			if (solidGuessing && level == StageCache.Level.NONE)
+			{
+				computePlane(length);
+				computeGuessedFormula(aaWidth, aaHeight);
+				computeColoring(length);
+				storeStages(length);
+			}
+			else
+				computeStages(length);
 			
+			computeColors(length);
+			sampleRender(fragRect.x, fragRect.y, fragRect.width, fragRect.height);
+		}
+		
+		/* evaluate colors of first length items from gradient */
+		private void computeColors(int length)
+		{
 			float cScale = 1.0f / colorScale;
 			float cShift = colorShift / colorScale;
-			for(int tmpY = 0; tmpY < aaHeight; tmpY++)
-				for(int tmpX = 0; tmpX < aaWidth; tmpX++)
-				{
-					int pos = tmpY*aaWidth + tmpX;
-					float gradPos = (itData[pos] >= 0) ?
-							(mapData[pos]*cScale + cShift) : mapData[pos];
-					gradPos %= 1.0f;
+			for (int pos = 0; pos < length; pos++)
+			{
+				float gradPos = (itData[pos] >= 0) ?
+						(mapData[pos]*cScale + cShift) : mapData[pos];
+				gradPos %= 1.0f;
+				if (colorTable != null)
+					colorIndices[pos] = colorTable.getIndex(gradPos);
+				else
 					gradient.evaluateColor(gradPos, renderedData[pos]);
+			}
+		}
+		
+		/* color of sample in ARGB format */
+		private int getSampleColor(int pos)
+		{
+			if (colorTable != null)
+				return colorTable.getPacked(colorIndices[pos]);
+			RGBColor pixel = renderedData[pos];
+			return 0xff000000 | (((int)(pixel.red * 255.0f + 0.5f))<<16) |
+					(((int)(pixel.green * 255.0f + 0.5f))<<8) |
+					((int)(pixel.blue * 255.0f + 0.5f));
+		}
+		/* add color of sample to sums of components */
+		private void addSampleColor(int pos)
+		{
+			if (colorTable != null)
+			{
+				int index = colorIndices[pos];
+				sumRed += colorTable.getRed(index);
+				sumGreen += colorTable.getGreen(index);
+				sumBlue += colorTable.getBlue(index);
+			}
+			else
+			{
+				RGBColor pixel = renderedData[pos];
+				sumRed += pixel.red;
+				sumGreen += pixel.green;
+				sumBlue += pixel.blue;
+			}
+		}
+		/* scaled sums of components in ARGB format (sums are cleared) */
+		private int getAverageColor(float scale)
+		{
+			float r = sumRed*scale, g = sumGreen*scale, b = sumBlue*scale;
+			sumRed = sumGreen = sumBlue = 0.0f;
+			return 0xff000000 | (((int)(r * 255.0f + 0.5f))<<16) |
+					(((int)(g * 255.0f + 0.5f))<<8) | ((int)(b * 255.0f + 0.5f));
+		}
+		
+		/* set coordinates of sample at pos from its position in antialiased image
+		 * (computed as in renderRect) */
+		private void setSample(int pos, int aaX, int aaY)
+		{
+			double zStartRe = baseMatrix.m[2], zStartIm = baseMatrix.m[5];
+			if (withDeltas)
+			{
+				zStartRe = deltaStartRe;
+				zStartIm = deltaStartIm;
+			}
+			formulaRe[pos] = zStartRe + (baseMatrix.m[0]*(double)aaX +
+					baseMatrix.m[1]*(double)aaY);
+			formulaIm[pos] = zStartIm + (baseMatrix.m[3]*(double)aaX +
+					baseMatrix.m[4]*(double)aaY);
+			if (withDeltas)
+			{
+				inRe[pos] = centerRe + formulaRe[pos];
+				inIm[pos] = centerIm + formulaIm[pos];
+			}
+		}
+		
+		/* returns true if colors differ more than threshold in any component */
+		private boolean isColorDifferent(int color1, int color2, int threshold)
+		{
+			return Math.abs(((color1>>16)&0xff) - ((color2>>16)&0xff)) > threshold ||
+					Math.abs(((color1>>8)&0xff) - ((color2>>8)&0xff)) > threshold ||
+					Math.abs((color1&0xff) - (color2&0xff)) > threshold;
+		}
+		
+		/* adaptive antialiasing: pixels (with neighbours) are computed by first
+		 * sample, then pixels which differ from any neighbour are supersampled */
+		private void renderAdaptiveRect(Rectangle rect)
+		{
+			int sampWidth = antialiasConfig.getSamplingWidth();
+			int sampHeight = antialiasConfig.getSamplingHeight();
+			int samplesNum = sampWidth*sampHeight;
+			int threshold = (int)(antialiasConfig.getThreshold()*255.0f);
+			
+			int extX = Math.max(rect.x-1, 0);
+			int extY = Math.max(rect.y-1, 0);
+			int extWidth = Math.min(rect.x+rect.width+1, outWidth) - extX;
+			int extHeight = Math.min(rect.y+rect.height+1, outHeight) - extY;
+			int length = extWidth*extHeight;
+			for (int y = 0; y < extHeight; y++)
+				for (int x = 0; x < extWidth; x++)
+					setSample(y*extWidth + x, (extX+x)*sampWidth, (extY+y)*sampHeight);
+			
+			if (solidGuessing)
+			{
+				computePlane(length);
+				computeGuessedFormula(extWidth, extHeight);
+				computeColoring(length);
+			}
+			else
+				computeStages(length);
+			computeColors(length);
+			for (int pos = 0; pos < length; pos++)
+				pixelColors[pos] = getSampleColor(pos);
+			
+			/* find edge pixels (all their samples are computed, as in normal method) */
+			int edgesNum = 0;
+			int samplePos = 0;
+			for (int y = rect.y; y < rect.y+rect.height; y++)
+				for (int x = rect.x; x < rect.x+rect.width; x++)
+				{
+					int pos = (y-extY)*extWidth + x-extX;
+					int color = pixelColors[pos];
+					boolean edge = (x > extX && isColorDifferent(color, pixelColors[pos-1],
+								threshold)) ||
+							(x < extX+extWidth-1 && isColorDifferent(color,
+								pixelColors[pos+1], threshold)) ||
+							(y > extY && isColorDifferent(color, pixelColors[pos-extWidth],
+								threshold)) ||
+							(y < extY+extHeight-1 && isColorDifferent(color,
+								pixelColors[pos+extWidth], threshold));
+					if (!edge)
+					{
+						outData[y*outWidth + x] = color;
+						continue;
+					}
+					edgePixels[edgesNum++] = y*outWidth + x;
+					for (int sy = 0; sy < sampHeight; sy++)
+						for (int sx = 0; sx < sampWidth; sx++)
+							setSample(samplePos++, x*sampWidth + sx, y*sampHeight + sy);
 				}
+			if (edgesNum == 0)
+				return;
 			
-			sampleRender(fragRect.x, fragRect.y, fragRect.width, fragRect.height);
+			computeStages(samplePos);
+			computeColors(samplePos);
+			float scaleRGB = 1.0f / (float)samplesNum;
+			for (int i = 0; i < edgesNum; i++)
+			{
+				for (int j = 0; j < samplesNum; j++)
+					addSampleColor(i*samplesNum + j);
+				outData[edgePixels[i]] = getAverageColor(scaleRGB);
+			}
+		}
+		
+		/* returns true if pixel is computed in pass with given step */
+		private boolean isPassPixel(int x, int y, int step)
+		{
+			if ((x % step) != 0 || (y % step) != 0)
+				return false;
+			/* pixels of previous passes */
+			return step == PROGRESSIVE_STEPS[0] || (x % (2*step)) != 0 || (y % (2*step)) != 0;
+		}
+		
+		/* progressive pass: compute pixels of pass, and fill blocks of them
+		 * (blocks do not cover pixels of previous passes). pixel of block which
+		 * is cut by rectangle can be outside of rectangle */
+		private void renderPass(Rectangle rect)
+		{
+			int step = passStep;
+			int sampWidth = 1, sampHeight = 1;
+			if (antialiasConfig.getMethod() == AntialiasConfig.Method.NORMAL)
+			{
+				sampWidth = antialiasConfig.getSamplingWidth();
+				sampHeight = antialiasConfig.getSamplingHeight();
+			}
+			int samplesNum = sampWidth*sampHeight;
+			/* adaptive antialiasing: previews by first samples of pixels */
+			int scaleX = sampWidth, scaleY = sampHeight;
+			if (antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+			{
+				scaleX = antialiasConfig.getSamplingWidth();
+				scaleY = antialiasConfig.getSamplingHeight();
+			}
+			
+			/* coordinates are computed as in renderFragment */
+			double zStartRe = baseMatrix.m[2], zStartIm = baseMatrix.m[5];
+			if (withDeltas)
+			{
+				zStartRe = deltaStartRe;
+				zStartIm = deltaStartIm;
+			}
+			double xBaseRe = baseMatrix.m[0], xBaseIm = baseMatrix.m[3];
+			double yBaseRe = baseMatrix.m[1], yBaseIm = baseMatrix.m[4];
+			int startX = rect.x - rect.x%step, startY = rect.y - rect.y%step;
+			int pos = 0;
+			for (int y = startY; y < rect.y+rect.height; y += step)
+				for (int x = startX; x < rect.x+rect.width; x += step)
+				{
+					if (!isPassPixel(x, y, step))
+						continue;
+					for (int sy = 0; sy < sampHeight; sy++)
+					{
+						double yIncRe = yBaseRe*(double)(y*scaleY + sy);
+						double yIncIm = yBaseIm*(double)(y*scaleY + sy);
+						for (int sx = 0; sx < sampWidth; sx++, pos++)
+						{
+							double aaX = (double)(x*scaleX + sx);
+							formulaRe[pos] = zStartRe + (xBaseRe*aaX + yIncRe);
+							formulaIm[pos] = zStartIm + (xBaseIm*aaX + yIncIm);
+							if (cache != null)
+								sampleIndices[pos] = (y*scaleY + sy)*aaOutWidth +
+										x*scaleX + sx;
+							if (withDeltas)
+							{
+								inRe[pos] = centerRe + formulaRe[pos];
+								inIm[pos] = centerIm + formulaIm[pos];
+							}
+						}
+					}
+				}
+			if (pos == 0)
+				return;
+			
+			computeStages(pos);
+			computeColors(pos);
+			
+			float scaleRGB = 1.0f / (float)samplesNum;
+			int base = 0;
+			for (int y = startY; y < rect.y+rect.height; y += step)
+				for (int x = startX; x < rect.x+rect.width; x += step)
+				{
+					if (!isPassPixel(x, y, step))
+						continue;
+					int color;
+					if (samplesNum != 1)
+					{
+						for (int i = 0; i < samplesNum; i++)
+							addSampleColor(base + i);
+						color = getAverageColor(scaleRGB);
+					}
+					else
+						color = getSampleColor(base);
+					base += samplesNum;
+					
+					int endX = Math.min(x+step, rect.x+rect.width);
+					int endY = Math.min(y+step, rect.y+rect.height);
+					for (int by = Math.max(y, rect.y); by < endY; by++)
+						for (int bx = Math.max(x, rect.x); bx < endX; bx++)
+							outData[by*outWidth + bx] = color;
+				}
 		}
 		
 		public int[] getImageData()
@@ -448,30 +1544,537 @@ public class FractalRenderer implements Serializable
 	{
 		private int[] inData;
 		private int[] outData;
+		/* used instead of arrays if they are not null */
+		private PixelRaster inRaster, outRaster;
 		
-		private OutputFilter outFilter;
+		private OutputFilter[] outFilters;
+		private Rectangle[] rects = new Rectangle[4];
+		/* blocks computed by filters of chain and windows of image for them */
+		private Rectangle[] blockRects;
+		private int[] windowData, windowOutData;
 		
-		public OutputFilterThread(int[] inData, int[] outData)
+		public OutputFilterThread(OutputFilter[] filters, int[] inData, int[] outData)
 		{
 			this.inData = inData;
 			this.outData = outData;
 			
-			outFilter = fractal.getOutputFilter();
+			outFilters = filters;
+			blockRects = new Rectangle[filters.length];
+		}
+		
+		public OutputFilterThread(OutputFilter[] filters, PixelRaster input,
+				PixelRaster output)
+		{
+			this(filters, (int[])null, (int[])null);
+			inRaster = input;
+			outRaster = output;
 		}
 		
-		public void renderFragment(int index)
+		public void renderFragment(int index, int firstStrip, int lastStrip)
 		{
-			Rectangle fragRect = getFragmentRect(index);
-			outFilter.compute(outWidth, outHeight, fragRect.x, fragRect.y,
-					fragRect.width, fragRect.height, inData, outData);
+			Rectangle fragRect = getFragmentPartRect(index, firstStrip, lastStrip);
+			if (fragRect.height == 0)
+				return;
+			/* reused pixels are already copied */
+			int rectsNum = subtractRect(fragRect, filterReuseRect, rects);
+			for (int i = 0; i < rectsNum; i++)
+			{
+				if (outFilters.length != 1)
+					filterBlock(rects[i]);
+				else if (inRaster != null)
+					outFilters[0].compute(inRaster, outRaster, rects[i].x, rects[i].y,
+							rects[i].width, rects[i].height);
+				else
+					outFilters[0].compute(outWidth, outHeight, rects[i].x, rects[i].y,
+							rects[i].width, rects[i].height, inData, outData);
+			}
 		}
+		
+		/* filters are applied to window of image (block with halo), which
+		 * is treated as whole image. block computed by filter is extended by halo
+		 * of next filters, so every filter uses only computed pixels */
+		private void filterBlock(Rectangle rect)
+		{
+			Rectangle imageRect = new Rectangle(0, 0, outWidth, outHeight);
+			int last = outFilters.length-1;
+			blockRects[last] = rect;
+			for (int i = last; i > 0; i--)
+				blockRects[i-1] = growRect(blockRects[i],
+						outFilters[i].getHaloRadius()).intersection(imageRect);
+			Rectangle window = growRect(blockRects[0],
+					outFilters[0].getHaloRadius()).intersection(imageRect);
+			
+			int windowSize = window.width*window.height;
+			if (windowData == null || windowData.length < windowSize)
+			{
+				windowData = new int[windowSize];
+				windowOutData = new int[windowSize];
+			}
+			if (inRaster != null)
+				inRaster.getRect(window.x, window.y, window.width, window.height,
+						windowData, 0);
+			else
+				for (int y = 0; y < window.height; y++)
+					System.arraycopy(inData, (window.y+y)*outWidth + window.x,
+							windowData, y*window.width, window.width);
+			
+			for (int i = 0; i <= last; i++)
+			{
+				Rectangle block = blockRects[i];
+				outFilters[i].compute(window.width, window.height, block.x-window.x,
+						block.y-window.y, block.width, block.height,
+						windowData, windowOutData);
+				int[] temp = windowData;
+				windowData = windowOutData;
+				windowOutData = temp;
+			}
+			
+			for (int y = 0; y < rect.height; y++)
+			{
+				int pos = (rect.y-window.y+y)*window.width + rect.x-window.x;
+				if (outRaster != null)
+					outRaster.setPixels((long)(rect.y+y)*outWidth + rect.x, windowData, pos,
+							rect.width);
+				else
+					System.arraycopy(windowData, pos, outData, (rect.y+y)*outWidth + rect.x,
+							rect.width);
+			}
+		}
+	}
+	
+	/* render thread which also filters fragments whose neighbours are rendered */
+	protected class RenderFilterThread extends MainRenderThread
+	{
+		private OutputFilterThread filterThread;
+		private boolean filtering;
+		
+		public RenderFilterThread(FractalFrame frame, int[] outData, OutputFilter[] filters,
+				int[] filterOutData)
+		{
+			super(frame, outData);
+			filterThread = new OutputFilterThread(filters, outData, filterOutData);
+		}
+		
+		/* enabled in last pass of rendering */
+		public void setFiltering(boolean filtering)
+		{
+			this.filtering = filtering;
+		}
+		
+		protected void renderFragments()
+		{
+			if (!filtering)
+			{
+				super.renderFragments();
+				return;
+			}
+			FragmentScheduler.Work work = new FragmentScheduler.Work();
+			boolean rendering = true;
+			int stripsNum = (fragHeight+stripHeight-1)/stripHeight;
+			while (!doCancel.get())
+			{
+				/* ready fragments are filtered first (their pixels are in cache) */
+				int task = filterTasks.nextTask(!rendering, doCancel);
+				if (task >= 0)
+				{
+					filterThread.renderFragment(task, 0, stripsNum);
+					if (filterTasks.taskFinished(task))
+						signalizeFinish();
+					continue;
+				}
+				if (!rendering)
+					break;
+				if (!scheduler.nextWork(workerIndex, work))
+				{
+					rendering = false;
+					continue;
+				}
+				renderFragment(work.fragment, work.firstStrip, work.lastStrip);
+				if (doCancel.get())
+					break;
+				if (scheduler.finishWork(workerIndex, work))
+				{
+					fragmentQueue.offer(new Integer(work.fragment));
+					filterTasks.fragmentRendered(work.fragment);
+				}
+			}
+		}
+	}
+	
+	/* prepares filter tasks: neighbours of fragment are fragments in its halo */
+	private void startFilterTasks(int halo)
+	{
+		int[] firstColumns = new int[fragmentsPerColumn];
+		int[] lastColumns = new int[fragmentsPerColumn];
+		for (int i = 0; i < fragmentsPerColumn; i++)
+		{
+			Rectangle rect = getFragmentRect(i);
+			firstColumns[i] = Math.max((rect.x-halo+gridOffsetX) / fragWidth, 0);
+			lastColumns[i] = Math.min((rect.x+rect.width-1+halo+gridOffsetX) / fragWidth,
+					fragmentsPerColumn-1);
+		}
+		int[] firstRows = new int[fragmentsPerRow];
+		int[] lastRows = new int[fragmentsPerRow];
+		for (int i = 0; i < fragmentsPerRow; i++)
+		{
+			Rectangle rect = getFragmentRect(i*fragmentsPerColumn);
+			firstRows[i] = Math.max((rect.y-halo+gridOffsetY) / fragHeight, 0);
+			lastRows[i] = Math.min((rect.y+rect.height-1+halo+gridOffsetY) / fragHeight,
+					fragmentsPerRow-1);
+		}
+		filterTasks.start(firstColumns, lastColumns, firstRows, lastRows);
+	}
+	
+	private static Rectangle growRect(Rectangle rect, int size)
+	{
+		return new Rectangle(rect.x-size, rect.y-size, rect.width+2*size,
+				rect.height+2*size);
+	}
+	
+	/* sum of halo radii of filters (negative if one of them is unknown) */
+	private static int getHaloRadius(OutputFilter[] filters)
+	{
+		int halo = 0;
+		for (OutputFilter filter: filters)
+		{
+			if (filter.getHaloRadius() < 0)
+				return -1;
+			halo += filter.getHaloRadius();
+		}
+		return halo;
+	}
+	
+	/* fingerprint of everything (except frame) which determines rendered image */
+	private long computeFingerprint()
+	{
+		RenderFingerprint fingerprint = new RenderFingerprint();
+		fingerprint.add(outWidth).add(outHeight);
+		return addRenderState(fingerprint).getValue();
+	}
+	
+	/* document and options which determine colors of pixels (without frame) */
+	private RenderFingerprint addRenderState(RenderFingerprint fingerprint)
+	{
+		fingerprint.add(antialiasConfig.getMethod().ordinal())
+				.add(antialiasConfig.getSamplingWidth())
+				.add(antialiasConfig.getSamplingHeight()).add(antialiasConfig.getThreshold())
+				.add(solidGuessing ? 1 : 0).add(colorScale).add(colorShift)
+				.add(gradientResolution);
+		fingerprint.add(fractal.getPlaneTransform()).add(fractal.getFractalFormula())
+				.add(fractal.getInnerFunction()).add(fractal.getOuterFunction())
+				.add(fractal.getGradient());
+		return fingerprint;
+	}
+	
+	/* find position of image in lattice of pixels of complex plane (pixel (x,y)
+	 * of lattice is at x*a + y*b, where a and b are vectors of pixel), then
+	 * fragments are aligned to lattice and tiles of moved images are same.
+	 * returns false if frame is degenerated */
+	private boolean prepareTileAnchor(FractalFrame frame)
+	{
+		Matrix3D m = frame.getTransform();
+		double scaleFactor = (outWidth < outHeight) ? 
+				1.0 / (double)outWidth : 1.0 / (double)outHeight;
+		double a = m.m[0]*scaleFactor, b = m.m[1]*scaleFactor;
+		double c = -m.m[3]*scaleFactor, d = -m.m[4]*scaleFactor;
+		double det = a*d - b*c;
+		if (det == 0.0 || Double.isNaN(det) || Double.isInfinite(det))
+			return false;
+		BigDecimal centerRe = frame.getCenterRe(), centerIm = frame.getCenterIm();
+		BigDecimal detValue = new BigDecimal(det);
+		BigDecimal posX = new BigDecimal(d).multiply(centerRe).subtract(
+				new BigDecimal(b).multiply(centerIm)).divide(detValue, 12, RoundingMode.FLOOR)
+				.subtract(new BigDecimal(0.5*(double)outWidth));
+		BigDecimal posY = new BigDecimal(a).multiply(centerIm).subtract(
+				new BigDecimal(c).multiply(centerRe)).divide(detValue, 12, RoundingMode.FLOOR)
+				.subtract(new BigDecimal(0.5*(double)outHeight));
+		/* lattices which differ by less than 1/1000 of pixel are treated as same */
+		BigDecimal fraction = new BigDecimal(1000);
+		BigInteger scaledX = posX.multiply(fraction).setScale(0, RoundingMode.HALF_EVEN)
+				.toBigInteger();
+		BigInteger scaledY = posY.multiply(fraction).setScale(0, RoundingMode.HALF_EVEN)
+				.toBigInteger();
+		BigInteger[] divX = scaledX.divideAndRemainder(BigInteger.valueOf(1000));
+		BigInteger[] divY = scaledY.divideAndRemainder(BigInteger.valueOf(1000));
+		/* floor division */
+		if (divX[1].signum() < 0)
+		{
+			divX[0] = divX[0].subtract(BigInteger.ONE);
+			divX[1] = divX[1].add(BigInteger.valueOf(1000));
+		}
+		if (divY[1].signum() < 0)
+		{
+			divY[0] = divY[0].subtract(BigInteger.ONE);
+			divY[1] = divY[1].add(BigInteger.valueOf(1000));
+		}
+		tileAnchorX = divX[0];
+		tileAnchorY = divY[0];
+		tileAnchorFraction = divX[1].intValue()*1000 + divY[1].intValue();
+		return true;
 	}
 	
-	private void manageRenderWork(FractalFrame frame, BufferedImage output)
+	/* key of tiles of frame (without their positions) */
+	private RenderFingerprint computeTileKey(FractalFrame frame)
 	{
-		AtomicInteger globalFragmentIndex = sharedData.getGlobalFragmentIndex();
+		RenderFingerprint key = addRenderState(new RenderFingerprint(true));
+		key.add(renderPrecision.ordinal()).add(fragWidth).add(fragHeight)
+				.add(sampleOffsetX).add(sampleOffsetY).add(tileAnchorFraction);
+		Matrix3D m = frame.getTransform();
+		double scaleFactor = (outWidth < outHeight) ? 
+				1.0 / (double)outWidth : 1.0 / (double)outHeight;
+		key.add(m.m[0]*scaleFactor).add(m.m[1]*scaleFactor).add(m.m[3]*scaleFactor)
+				.add(m.m[4]*scaleFactor);
+		return key;
+	}
+	
+	/* tileState - canonical form of tileKey (shared by tiles) */
+	private TileCache.Key getTileKey(RenderFingerprint tileKey, String tileState,
+			Rectangle rect)
+	{
+		BigInteger x = tileAnchorX.add(BigInteger.valueOf(rect.x));
+		BigInteger y = tileAnchorY.add(BigInteger.valueOf(rect.y));
+		RenderFingerprint key = new RenderFingerprint();
+		key.add(tileKey.getValue()).add(x).add(y);
+		return new TileCache.Key(key.getValue(), rect.width, rect.height,
+				tileState, x + ";" + y);
+	}
+	
+	/* copy cached tiles to image, returns number of cached fragments */
+	private int loadCachedTiles(RenderFingerprint tileKey, int[] outData)
+	{
+		cachedFragments = null;
+		int cachedNum = 0;
+		String tileState = tileKey.getCanonical();
+		for (int i = 0; i < fragmentsNumInImage; i++)
+		{
+			Rectangle rect = getFragmentRect(i);
+			int[] pixels = tileCache.get(getTileKey(tileKey, tileState, rect));
+			if (pixels == null)
+				continue;
+			for (int y = 0; y < rect.height; y++)
+				System.arraycopy(pixels, y*rect.width, outData, (rect.y+y)*outWidth + rect.x,
+						rect.width);
+			if (cachedFragments == null)
+				cachedFragments = new boolean[fragmentsNumInImage];
+			cachedFragments[i] = true;
+			cachedNum++;
+		}
+		return cachedNum;
+	}
+	
+	/* put rendered (not cached) fragments to tile cache */
+	private void storeTiles(RenderFingerprint tileKey, int[] outData)
+	{
+		String tileState = tileKey.getCanonical();
+		for (int i = 0; i < fragmentsNumInImage; i++)
+		{
+			if (cachedFragments != null && cachedFragments[i])
+				continue;
+			Rectangle rect = getFragmentRect(i);
+			int[] pixels = new int[rect.width*rect.height];
+			for (int y = 0; y < rect.height; y++)
+				System.arraycopy(outData, (rect.y+y)*outWidth + rect.x, pixels, y*rect.width,
+						rect.width);
+			tileCache.put(getTileKey(tileKey, tileState, rect), pixels);
+		}
+	}
+	
+	/* finds region of last image which can be reused by frame,
+	 * frame must be translated by whole number of pixels */
+	private void prepareReuse(FractalFrame frame, long fingerprint)
+	{
+		reuseSource = null;
+		reuseRect = null;
+		if (!reusingPixels || lastImage == null || fingerprint != lastFingerprint ||
+				renderPrecision != lastPrecision || hasSampleOffset())
+			return;
+		Matrix3D m = frame.getTransform();
+		Matrix3D lastM = lastFrame.getTransform();
+		if (m.m[0] != lastM.m[0] || m.m[1] != lastM.m[1] ||
+				m.m[3] != lastM.m[3] || m.m[4] != lastM.m[4])
+			return;
+		
+		/* solve translation of center in pixels (y axis of image is inverted) */
+		double scaleFactor = (outWidth < outHeight) ? 
+				1.0 / (double)outWidth : 1.0 / (double)outHeight;
+		double a = m.m[0]*scaleFactor, b = m.m[1]*scaleFactor;
+		double c = -m.m[3]*scaleFactor, d = -m.m[4]*scaleFactor;
+		double det = a*d - b*c;
+		if (det == 0.0)
+			return;
+		double tRe = frame.getCenterRe().subtract(lastFrame.getCenterRe()).doubleValue();
+		double tIm = frame.getCenterIm().subtract(lastFrame.getCenterIm()).doubleValue();
+		double shiftX = (tRe*d - b*tIm) / det;
+		double shiftY = (a*tIm - c*tRe) / det;
+		long roundX = Math.round(shiftX);
+		long roundY = Math.round(shiftY);
+		if (Math.abs(shiftX-roundX) > REUSE_TOLERANCE ||
+				Math.abs(shiftY-roundY) > REUSE_TOLERANCE ||
+				Math.abs(roundX) >= outWidth || Math.abs(roundY) >= outHeight)
+			return;
+		
+		reuseShiftX = (int)roundX;
+		reuseShiftY = (int)roundY;
+		/* aligned edges, so progressive passes are not broken at them */
+		int startX = Math.max(-reuseShiftX, 0);
+		int endX = Math.min(outWidth - reuseShiftX, outWidth);
+		int startY = Math.max(-reuseShiftY, 0);
+		int endY = Math.min(outHeight - reuseShiftY, outHeight);
+		if (startX != 0)
+			startX = (startX + REUSE_ALIGNMENT-1) / REUSE_ALIGNMENT * REUSE_ALIGNMENT;
+		if (endX != outWidth)
+			endX = endX / REUSE_ALIGNMENT * REUSE_ALIGNMENT;
+		if (startY != 0)
+			startY = (startY + REUSE_ALIGNMENT-1) / REUSE_ALIGNMENT * REUSE_ALIGNMENT;
+		if (endY != outHeight)
+			endY = endY / REUSE_ALIGNMENT * REUSE_ALIGNMENT;
+		if (startX >= endX || startY >= endY)
+			return;
+		reuseRect = new Rectangle(startX, startY, endX-startX, endY-startY);
+		reuseSource = lastImage;
+	}
+	
+	/* chooses stage cache for frame (adds key of formula stage to key), if pixels
+	 * are reused, cached results are moved with them */
+	private void prepareStageCache(FractalFrame frame, RenderFingerprint key)
+	{
+		activeCache = null;
+		cacheLevel = StageCache.Level.NONE;
+		/* adaptive antialiasing computes different samples in every render */
+		if (!stageCaching || (long)aaOutWidth*aaOutHeight > MAX_CACHED_SAMPLES ||
+				antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+		{
+			stageCache = null;
+			return;
+		}
+		if (hasSampleOffset())
+			return;
+		
+		Matrix3D m = frame.getTransform();
+		key.add(aaOutWidth).add(aaOutHeight).add(antialiasConfig.getMethod().ordinal())
+				.add(antialiasConfig.getSamplingWidth())
+				.add(antialiasConfig.getSamplingHeight())
+				.add(solidGuessing ? 1 : 0).add(renderPrecision.ordinal());
+		for (int i = 0; i < 6; i++)
+			key.add(m.m[i]);
+		if (frame.hasHighPrecisionCenter())
+			key.add(frame.getCenterRe()).add(frame.getCenterIm());
+		key.add(fractal.getPlaneTransform()).add(fractal.getFractalFormula());
+		
+		if (stageCache == null)
+			stageCache = new StageCache();
+		stageCache.ensureSize(aaOutWidth, aaOutHeight);
+		if (reuseRect != null)
+		{
+			if (stageCache.getImage() != reuseSource)
+			{	/* cache does not match reused pixels */
+				stageCache.invalidate();
+				return;
+			}
+			int sampWidth = aaOutWidth / outWidth, sampHeight = aaOutHeight / outHeight;
+			stageCache.shift(new Rectangle(reuseRect.x*sampWidth, reuseRect.y*sampHeight,
+					reuseRect.width*sampWidth, reuseRect.height*sampHeight),
+					reuseShiftX*sampWidth, reuseShiftY*sampHeight);
+		}
+		activeCache = stageCache;
+	}
+	
+	/* finds region of last filtered image which can be reused for input
+	 * (rendering - input is rendered now, reused region of render is known) */
+	private void prepareFilterReuse(BufferedImage input, long fingerprint,
+			boolean rendering)
+	{
+		filterReuseRect = null;
+		int halo = getHaloRadius(fractal.getOutputFilters());
+		if (!reusingPixels || lastFilterInput == null || halo < 0 ||
+				fingerprint != lastFilterFingerprint)
+			return;
+		if (!rendering && input == lastFilterInput)
+		{	/* same image */
+			filterReuseRect = new Rectangle(0, 0, outWidth, outHeight);
+			filterShiftX = filterShiftY = 0;
+			return;
+		}
+		if ((!rendering && input != lastImage) || reuseRect == null ||
+				reuseSource != lastFilterInput)
+			return;
+		
+		/* pixels near newly rendered regions and near image edges (if image
+		 * is moved in that axis) depend on other pixels than before */
+		int startX = reuseRect.x, endX = reuseRect.x + reuseRect.width;
+		int startY = reuseRect.y, endY = reuseRect.y + reuseRect.height;
+		if (startX != 0 || reuseShiftX != 0)
+			startX += halo;
+		if (endX != outWidth || reuseShiftX != 0)
+			endX -= halo;
+		if (startY != 0 || reuseShiftY != 0)
+			startY += halo;
+		if (endY != outHeight || reuseShiftY != 0)
+			endY -= halo;
+		if (startX < endX && startY < endY)
+		{
+			filterReuseRect = new Rectangle(startX, startY, endX-startX, endY-startY);
+			filterShiftX = reuseShiftX;
+			filterShiftY = reuseShiftY;
+		}
+	}
+	
+	/* copy rectangle of pixels from source moved by shift */
+	private void copyReusedPixels(int[] source, int[] dest, Rectangle rect,
+			int shiftX, int shiftY)
+	{
+		for (int y = rect.y; y < rect.y+rect.height; y++)
+			System.arraycopy(source, (y+shiftY)*outWidth + rect.x+shiftX,
+					dest, y*outWidth + rect.x, rect.width);
+	}
+	
+	private static int[] getImageData(BufferedImage image)
+	{
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+	
+	/* rect minus hole as up to four rectangles, returns number of rectangles */
+	private static int subtractRect(Rectangle rect, Rectangle hole, Rectangle[] out)
+	{
+		if (hole == null || !rect.intersects(hole))
+		{
+			out[0] = rect;
+			return 1;
+		}
+		Rectangle common = rect.intersection(hole);
+		int count = 0;
+		if (common.y > rect.y)
+			out[count++] = new Rectangle(rect.x, rect.y, rect.width, common.y-rect.y);
+		if (common.y+common.height < rect.y+rect.height)
+			out[count++] = new Rectangle(rect.x, common.y+common.height, rect.width,
+					rect.y+rect.height - common.y-common.height);
+		if (common.x > rect.x)
+			out[count++] = new Rectangle(rect.x, common.y, common.x-rect.x, common.height);
+		if (common.x+common.width < rect.x+rect.width)
+			out[count++] = new Rectangle(common.x+common.width, common.y,
+					rect.x+rect.width - common.x-common.width, common.height);
+		return count;
+	}
+	
+	/* filtered - image for filtered pixels (null if image is not filtered),
+	 * filters must have known halo */
+	private void manageRenderWork(FractalFrame frame, BufferedImage output,
+			BufferedImage filtered)
+	{
+		FragmentScheduler scheduler = sharedData.getScheduler();
 		ReentrantLock finishLock = sharedData.getFinishLock();
 		Condition finishCond = sharedData.getFinishCond();
+		
+		/* fragments are aligned to lattice of pixels for tile cache */
+		gridOffsetX = gridOffsetY = 0;
+		if (tileCache != null && prepareTileAnchor(frame))
+		{
+			gridOffsetX = tileAnchorX.mod(BigInteger.valueOf(fragWidth)).intValue();
+			gridOffsetY = tileAnchorY.mod(BigInteger.valueOf(fragHeight)).intValue();
+		}
+		else
+			tileAnchorX = tileAnchorY = null;
+		updateFragmentsNumber();
 		sharedData.setFragmentsNumber(fragmentsNumInImage);
 		
 		long time = System.nanoTime();
@@ -485,88 +2088,288 @@ public class FractalRenderer implements Serializable
 		outData = dBuffer.getData();
 		currentImage = output;
 		
-		MainRenderThread[] renderThreads = new MainRenderThread[threadsNum];
+		renderPrecision = choosePrecision(frame);
+		
+		long fingerprint = computeFingerprint();
+		prepareReuse(frame, fingerprint);
+		if (reuseRect != null)
+			copyReusedPixels(getImageData(reuseSource), outData, reuseRect,
+					reuseShiftX, reuseShiftY);
+		RenderFingerprint stageKey = new RenderFingerprint();
+		prepareStageCache(frame, stageKey);
+		long formulaKey = stageKey.getValue();
+		long coloringKey = stageKey.add(fractal.getInnerFunction())
+				.add(fractal.getOuterFunction()).getValue();
+		if (activeCache != null)
+		{
+			cacheLevel = (reuseRect != null) ? StageCache.Level.NONE :
+					activeCache.getLevel(formulaKey, coloringKey);
+			activeCache.begin(cacheLevel);
+		}
 		
-		for(int i = 0; i < threadsNum; i++)
+		/* tiles of same view rendered earlier are taken from tile cache */
+		RenderFingerprint tileKey = null;
+		int cachedTilesNum = 0;
+		cachedFragments = null;
+		if (tileAnchorX != null)
 		{
-			renderThreads[i] = new MainRenderThread(frame, outData);
+			tileKey = computeTileKey(frame);
+			cachedTilesNum = loadCachedTiles(tileKey, outData);
+		}
+		if (cachedTilesNum != 0 && activeCache != null)
+		{	/* stages of cached tiles are not computed */
+			activeCache.invalidate();
+			activeCache = null;
+			cacheLevel = StageCache.Level.NONE;
+		}
+		
+		/* not needed if fractal formula is not computed */
+		boolean withFormula = (cacheLevel == StageCache.Level.NONE) && (reuseRect == null ||
+				reuseRect.width != outWidth || reuseRect.height != outHeight) &&
+				cachedTilesNum < fragmentsNumInImage;
+		reference = null;
+		if (withFormula && renderPrecision == Precision.PERTURBATION)
+			reference = (bandsReference != null) ? bandsReference : computeReference(frame);
+		ddCenter = (withFormula && renderPrecision == Precision.DOUBLE_DOUBLE) ?
+				new DDComplex(DoubleDouble.valueOf(frame.getCenterRe()),
+						DoubleDouble.valueOf(frame.getCenterIm())) : null;
+		
+		lookupTable = (gradientResolution > 0) ?
+				fractal.getGradient().getLookupTable(gradientResolution) : null;
+		
+		/* fragments are filtered by render threads in last pass */
+		long filterFingerprint = 0;
+		OutputFilter[] filters = null;
+		if (filtered != null)
+		{
+			filters = fractal.getOutputFilters();
+			filterFingerprint = prepareFilters(output, getImageData(filtered), true);
+			startFilterTasks(getHaloRadius(filters));
+		}
+		
+		int tasksNum = Math.max(threadsNum, 1);
+		MainRenderThread[] renderThreads = new MainRenderThread[tasksNum];
+		
+		for(int i = 0; i < tasksNum; i++)
+		{
+			renderThreads[i] = (filtered != null) ? new RenderFilterThread(frame, outData,
+					filters, getImageData(filtered)) : new MainRenderThread(frame, outData);
 			renderThreads[i].setSharedData(sharedData);
-			renderThreads[i].start();
+			renderThreads[i].setWorkerIndex(i);
 		}
 		
-		finishLock.lock();
-		try
+		RenderWorkerPool pool = getWorkerPool();
+		pool.ensureSize(tasksNum);
+		
+		int passesNum = getPassesNumber();
+		double passStart = 0.0;
+		for (int pass = 0; pass < passesNum; pass++)
 		{
-			while(globalFragmentIndex.get() < fragmentsNumInImage)
+			/* share of pixels computed by pass: 1/64 by first, 3/step^2 by next */
+			double passShare = 1.0;
+			if (progressive)
 			{
-				finishCond.await(100, TimeUnit.MILLISECONDS);
-				int x = globalFragmentIndex.get();
-				x = (fragmentsNumInImage < x) ? fragmentsNumInImage : x;
-				fireRenderProgress(RenderProgressEvent.Process.RENDERING,
-						100.0 * (double)x / (double)fragmentsNumInImage);
-				
-				/* if canceling */
-				if (sharedData.getCancelIndicator().get())
-					break;
-    		}
+				int step = PROGRESSIVE_STEPS[pass];
+				for (MainRenderThread thread: renderThreads)
+					thread.setPassStep(step);
+				passShare = (pass == 0) ? 1.0/(step*step) : 3.0/(step*step);
+			}
+			
+			boolean withFilters = (filtered != null && pass+1 == passesNum);
+			if (filtered != null)
+				for (MainRenderThread thread: renderThreads)
+					((RenderFilterThread)thread).setFiltering(withFilters);
+			
+			/* solid guessing works better on whole fragments */
+			stripHeight = (solidGuessing && !progressive) ? fragHeight : STRIP_HEIGHT;
+			scheduler.start(fragmentsNumInImage, (fragHeight+stripHeight-1)/stripHeight,
+					tasksNum);
+			
+			RenderWorkerPool.Job job = pool.submit(renderThreads);
+			
+			finishLock.lock();
+			try
+			{
+				boolean rendered = false;
+				while(((withFilters) ? filterTasks.getFilteredFragmentsNumber() :
+						scheduler.getFinishedFragmentsNumber()) < fragmentsNumInImage &&
+						!job.isDone())
+				{
+					finishCond.await(100, TimeUnit.MILLISECONDS);
+					if (!rendered)
+					{
+						int x = scheduler.getFinishedFragmentsNumber();
+						fireRenderProgress(RenderProgressEvent.Process.RENDERING, pass+1,
+								passesNum, 100.0 * (passStart +
+								passShare*(double)x / (double)fragmentsNumInImage));
+						/* filtered fragments are shown after rendering */
+						rendered = withFilters &&
+								filterTasks.getRenderedFragmentsNumber() == fragmentsNumInImage;
+						if (rendered)
+						{
+							renderProcess.set(FILTERING_PROCESS);
+							currentImage = filtered;
+						}
+					}
+					if (rendered)
+					{
+						filterTasks.getFilteredQueue().drainTo(sharedData.getFragmentQueue());
+						fireRenderProgress(RenderProgressEvent.Process.FILTERING,
+								100.0 * (double)filterTasks.getFilteredFragmentsNumber() /
+								(double)fragmentsNumInImage);
+					}
+					
+					/* if canceling */
+					if (sharedData.getCancelIndicator().get())
+						break;
+	    		}
+			}
+			catch(InterruptedException e)
+			{ }
+			finally
+			{ finishLock.unlock(); }
+			
+			job.awaitUninterruptibly();
+			if (sharedData.getCancelIndicator().get())
+				break;
+			passStart += passShare;
+			/* whole pass is ready */
+			if (pass+1 < passesNum)
+				fireRenderProgress(RenderProgressEvent.Process.RENDERING, pass+1, passesNum,
+						100.0 * passStart);
 		}
-		catch(InterruptedException e)
-		{ }
-		finally
-		{ finishLock.unlock(); }
 		
-		try
+		reference = null;
+		ddCenter = null;
+		
+		if (activeCache != null && !sharedData.getCancelIndicator().get())
+			activeCache.finish(formulaKey, coloringKey, output);
+		if (tileAnchorX != null && !sharedData.getCancelIndicator().get())
+			storeTiles(tileKey, outData);
+		cachedFragments = null;
+		activeCache = null;
+		cacheLevel = StageCache.Level.NONE;
+		
+		if (sharedData.getCancelIndicator().get())
+			reuseSource = null;
+		else if (reusingPixels && !hasSampleOffset())
 		{
-			for (MainRenderThread t: renderThreads)
-				t.join();
+			lastImage = output;
+			lastFrame = frame.copy();
+			lastFingerprint = fingerprint;
+			lastPrecision = renderPrecision;
+			if (filtered != null)
+			{
+				lastFilterInput = output;
+				lastFilterOutput = filtered;
+				lastFilterFingerprint = filterFingerprint;
+			}
 		}
-		catch(InterruptedException e)
-		{ }
 		
 		long endTime = System.nanoTime();
 		
-		System.out.printf("Total Time: %f\n", (double)(endTime-time)*1.0e-9);
+		renderTime = (double)(endTime-time)*1.0e-9;
+		System.out.printf("Total Time: %f, Precision: %s\n", renderTime, renderPrecision);
+	}
+	
+	/* copies reused filtered pixels, returns fingerprint of filters */
+	private long prepareFilters(BufferedImage input, int[] outData, boolean rendering)
+	{
+		OutputFilter[] filters = fractal.getOutputFilters();
+		RenderFingerprint fingerprint = new RenderFingerprint();
+		fingerprint.add(outWidth).add(outHeight).add(filters.length);
+		for (OutputFilter filter: filters)
+			fingerprint.add(filter);
+		prepareFilterReuse(input, fingerprint.getValue(), rendering);
+		if (filterReuseRect != null)
+			copyReusedPixels(getImageData(lastFilterOutput), outData, filterReuseRect,
+					filterShiftX, filterShiftY);
+		return fingerprint.getValue();
 	}
 	
 	private void manageFilterWork(BufferedImage input, BufferedImage output)
 	{
-		AtomicInteger globalFragmentIndex = sharedData.getGlobalFragmentIndex();
+		OutputFilter[] filters = fractal.getOutputFilters();
+		int[] inData = getImageData(input);
+		int[] outData = getImageData(output);
+		currentImage = output;
+		
+		long fingerprint = prepareFilters(input, outData, false);
+		
+		if (filters.length == 1 || getHaloRadius(filters) >= 0)
+			runFilterPass(filters, inData, outData);
+		else
+		{	/* filter which uses unknown pixels needs whole output of previous filters */
+			int[] passInData = inData;
+			for (int i = 0; i < filters.length; i++)
+			{
+				int[] passOutData = (i == filters.length-1) ? outData :
+						new int[outWidth*outHeight];
+				runFilterPass(new OutputFilter[] { filters[i] }, passInData, passOutData);
+				if (sharedData.getCancelIndicator().get())
+					break;
+				passInData = passOutData;
+			}
+		}
+		
+		if (reusingPixels && !sharedData.getCancelIndicator().get())
+		{
+			lastFilterInput = input;
+			lastFilterOutput = output;
+			lastFilterFingerprint = fingerprint;
+		}
+	}
+	
+	/* applies chain of filters to every block of image */
+	private void runFilterPass(OutputFilter[] filters, int[] inData, int[] outData)
+	{
+		OutputFilterThread[] filterThreads = new OutputFilterThread[Math.max(threadsNum, 1)];
+		for(int i = 0; i < filterThreads.length; i++)
+			filterThreads[i] = new OutputFilterThread(filters, inData, outData);
+		runFilterThreads(filterThreads, getHaloRadius(filters));
+	}
+	private void runFilterPass(OutputFilter[] filters, PixelRaster input,
+			PixelRaster output)
+	{
+		OutputFilterThread[] filterThreads = new OutputFilterThread[Math.max(threadsNum, 1)];
+		for(int i = 0; i < filterThreads.length; i++)
+			filterThreads[i] = new OutputFilterThread(filters, input, output);
+		runFilterThreads(filterThreads, getHaloRadius(filters));
+	}
+	
+	private void runFilterThreads(OutputFilterThread[] filterThreads, int halo)
+	{
+		FragmentScheduler scheduler = sharedData.getScheduler();
 		ReentrantLock finishLock = sharedData.getFinishLock();
 		Condition finishCond = sharedData.getFinishCond();
 		sharedData.setFragmentsNumber(fragmentsNumInImage);
 		
 		sharedData.getFragmentQueue().clear();
-		sharedData.reset();
 		
-		int[] inData = null;
+		int tasksNum = filterThreads.length;
+		for(int i = 0; i < tasksNum; i++)
 		{
-			WritableRaster inputRaster = input.getRaster();
-			DataBufferInt inputDBuffer = ((DataBufferInt)inputRaster.getDataBuffer());
-			inData = inputDBuffer.getData();
+			filterThreads[i].setSharedData(sharedData);
+			filterThreads[i].setWorkerIndex(i);
 		}
 		
-		WritableRaster raster = output.getRaster();
-		DataBufferInt dBuffer = ((DataBufferInt)raster.getDataBuffer());
-		int[] outData = dBuffer.getData();
-		currentImage = output;
-		
-		OutputFilterThread[] filterThreads = new OutputFilterThread[threadsNum];
+		/* filter computes halo rows of every strip, strips are higher than halo */
+		stripHeight = Math.min(Math.max(STRIP_HEIGHT, 4*halo), fragHeight);
+		scheduler.start(fragmentsNumInImage, (fragHeight+stripHeight-1)/stripHeight,
+				tasksNum);
 		
-		for(int i = 0; i < threadsNum; i++)
-		{
-			filterThreads[i] = new OutputFilterThread(inData, outData);
-			filterThreads[i].setSharedData(sharedData);
-			filterThreads[i].start();
-		}
+		RenderWorkerPool pool = getWorkerPool();
+		pool.ensureSize(tasksNum);
+		RenderWorkerPool.Job job = pool.submit(filterThreads);
 		
 		finishLock.lock();
 		try
 		{
-			while(globalFragmentIndex.get() < fragmentsNumInImage)
+			while(scheduler.getFinishedFragmentsNumber() < fragmentsNumInImage &&
+					!job.isDone())
 			{
 				finishCond.await(100, TimeUnit.MILLISECONDS);
-				int x = globalFragmentIndex.get();
-				x = (fragmentsNumInImage < x) ? fragmentsNumInImage : x;
+				int x = scheduler.getFinishedFragmentsNumber();
 				fireRenderProgress(RenderProgressEvent.Process.FILTERING,
 						100.0 * (double)x / (double)fragmentsNumInImage);
 				
@@ -580,16 +2383,18 @@ public class FractalRenderer implements Serializable
 		finally
 		{ finishLock.unlock(); }
 		
-		try
-		{
-			for (OutputFilterThread t: filterThreads)
-				t.join();
-		}
-		catch(InterruptedException e)
-		{ }
+		job.awaitUninterruptibly();
 	}
 	
 	public BufferedImage renderFractalImage(FractalFrame frame)
+	{
+		return renderFractalImage(frame, null);
+	}
+	
+	/* renders image and filters it to filtered image (if it is not null). fragment is
+	 * filtered as soon as its neighbours are rendered, without waiting for whole image.
+	 * returns image before filtering */
+	public BufferedImage renderFractalImage(FractalFrame frame, BufferedImage filtered)
 	{
 		sharedData.reset();
 		renderProcess.set(RENDERING_PROCESS);
@@ -599,14 +2404,35 @@ public class FractalRenderer implements Serializable
 		
 		BufferedImage output = new BufferedImage(outWidth, outHeight,
 				BufferedImage.TYPE_INT_RGB);
-		manageRenderWork(frame, output);
-		
-		fireRenderProgressDone();
-		
-		renderCancelLock.lock();
-		renderCancel = true;
-		renderCancelCond.signal();
-		renderCancelLock.unlock();
+		try
+		{
+			if (filtered != null && fractal.getOutputFilter() == null)
+			{
+				manageRenderWork(frame, output, null);
+				filtered.setData(output.getRaster());
+			}
+			else if (filtered != null && getHaloRadius(fractal.getOutputFilters()) < 0)
+			{	/* filters need whole rendered image */
+				manageRenderWork(frame, output, null);
+				if (!sharedData.getCancelIndicator().get())
+				{
+					renderProcess.set(FILTERING_PROCESS);
+					manageFilterWork(output, filtered);
+				}
+			}
+			else
+				manageRenderWork(frame, output, filtered);
+		}
+		finally
+		{	/* cancelRender is not blocked if rendering failed */
+			if (!renderingBands)
+				fireRenderProgressDone();
+			
+			renderCancelLock.lock();
+			renderCancel = true;
+			renderCancelCond.signal();
+			renderCancelLock.unlock();
+		}
 		return output;
 	}
 	
@@ -618,19 +2444,258 @@ public class FractalRenderer implements Serializable
 		
 		BufferedImage output = new BufferedImage(outWidth, outHeight,
 				BufferedImage.TYPE_INT_RGB);
-		manageFilterWork(image, output);
+		try
+		{
+			manageFilterWork(image, output);
+		}
+		finally
+		{
+			if (!renderingBands)
+				fireRenderProgressDone();
+			
+			renderCancelLock.lock();
+			renderCancel = true;
+			renderCancelCond.signal();
+			renderCancelLock.unlock();
+		}
+		return output;
+	}
+	
+	/* rendered image with applied filters. fragments are filtered during rendering,
+	 * but with stochastic antialiasing images of all samples are averaged first */
+	public BufferedImage renderFilteredImage(FractalFrame frame)
+	{
+		return renderImage(frame, true);
+	}
+	
+	/* filtering - filters are applied, image is averaged (stochastic antialiasing) */
+	public BufferedImage renderImage(FractalFrame frame, boolean filtering)
+	{
+		if (antialiasConfig.getMethod() != AntialiasConfig.Method.STOCHASTIC)
+		{
+			if (!filtering || fractal.getOutputFilter() == null)
+				return renderFractalImage(frame);
+			BufferedImage filtered = new BufferedImage(outWidth, outHeight,
+					BufferedImage.TYPE_INT_RGB);
+			renderFractalImage(frame, filtered);
+			return filtered;
+		}
 		
+		int samplesNum = antialiasConfig.getSamplingWidth()*
+				antialiasConfig.getSamplingHeight();
+		SampleAccumulator accumulator = new SampleAccumulator(outWidth, outHeight);
+		double[] offset = new double[2];
+		for (int i = 0; i < samplesNum; i++)
+		{
+			SampleAccumulator.getSampleOffset(i, offset);
+			setSampleOffset(offset[0], offset[1]);
+			accumulator.addImage(renderFractalImage(frame));
+		}
+		setSampleOffset(0.0, 0.0);
+		if (filtering && fractal.getOutputFilter() != null)
+			return filterImage(accumulator.getImage());
+		return accumulator.getImage();
+	}
+	
+	/* returns true if filters are not applied during rendering (filters need whole
+	 * image or stochastic antialiasing is used), so image can be rendered without
+	 * filters and filtered by filterImage later without loss of time */
+	public boolean isFilteringSeparate()
+	{
+		return fractal.getOutputFilter() != null &&
+				(antialiasConfig.getMethod() == AntialiasConfig.Method.STOCHASTIC ||
+				getHaloRadius(fractal.getOutputFilters()) < 0);
+	}
+	
+	/* returns true if image can be rendered in bands (filters have known halo) */
+	public boolean isBandRenderingPossible()
+	{
+		return getHaloRadius(fractal.getOutputFilters()) >= 0;
+	}
+	
+	/* renders image (rendered by renderFilteredImage) in bands of rows given to sink
+	 * from top of image. only one band (with rows around it used by filters and
+	 * adaptive antialiasing) is in memory. returns false if rendering is canceled */
+	public boolean renderFractalBands(FractalFrame frame, int bandHeight, ImageBandSink sink)
+			throws IOException
+	{
+		if (!isBandRenderingPossible())
+			throw new IllegalStateException("Filters with unknown halo");
+		boolean done = renderBands(frame, bandHeight, sink, true);
 		fireRenderProgressDone();
-		
-		renderCancelLock.lock();
-		renderCancel = true;
-		renderCancelCond.signal();
-		renderCancelLock.unlock();
-		return output;
+		return done;
+	}
+	
+	/* renders raster (of size of image) as renderFilteredImage in bands.
+	 * if filters have unknown halo, bands are rendered to temporary raster,
+	 * which is filtered. returns false if rendering is canceled */
+	public boolean renderFractalRaster(FractalFrame frame, int bandHeight,
+			final PixelRaster output) throws IOException
+	{
+		final int width = outWidth;
+		boolean filtering = isBandRenderingPossible();
+		/* checked before rendering */
+		if (!filtering && (long)outWidth*outHeight > PixelRaster.MAX_ARRAY_LENGTH)
+			throw new IllegalStateException("Image is too large for filters with " +
+					"unknown halo (they need whole image in array)");
+		final PixelRaster rendered = filtering ? output :
+				BufferPixelRaster.createTemporary(rasterDirectory, outWidth, outHeight);
+		try
+		{
+			boolean done = renderBands(frame, bandHeight, new ImageBandSink()
+			{
+				public void writeBand(int startY, int height, int[] data, int offset)
+				{
+					rendered.setPixels((long)startY*width, data, offset, height*width);
+				}
+			}, filtering);
+			if (done && !filtering)
+			{
+				sharedData.reset();
+				renderProcess.set(FILTERING_PROCESS);
+				manageRasterFilterWork(rendered, output);
+				done = !bandsCanceled;
+			}
+			fireRenderProgressDone();
+			return done;
+		}
+		finally
+		{
+			if (rendered != output)
+				rendered.dispose();
+		}
+	}
+	
+	/* filters input raster to output raster (rasters have size of image) */
+	public void filterRaster(PixelRaster input, PixelRaster output) throws IOException
+	{
+		sharedData.reset();
+		renderCancel = false;
+		renderProcess.set(FILTERING_PROCESS);
+		try
+		{
+			manageRasterFilterWork(input, output);
+		}
+		finally
+		{
+			fireRenderProgressDone();
+			
+			renderCancelLock.lock();
+			renderCancel = true;
+			renderCancelCond.signal();
+			renderCancelLock.unlock();
+		}
+	}
+	
+	private void manageRasterFilterWork(PixelRaster input, PixelRaster output)
+			throws IOException
+	{
+		OutputFilter[] filters = fractal.getOutputFilters();
+		if (filters.length == 1 || getHaloRadius(filters) >= 0)
+		{
+			runFilterPass(filters, input, output);
+			return;
+		}
+		/* filter which uses unknown pixels needs whole output of previous filters */
+		PixelRaster passInput = input;
+		for (int i = 0; i < filters.length && !sharedData.getCancelIndicator().get(); i++)
+		{
+			PixelRaster passOutput = (i == filters.length-1) ? output :
+					BufferPixelRaster.createTemporary(rasterDirectory, outWidth, outHeight);
+			try
+			{
+				runFilterPass(new OutputFilter[] { filters[i] }, passInput, passOutput);
+			}
+			finally
+			{
+				if (passInput != input)
+					passInput.dispose();
+			}
+			passInput = passOutput;
+		}
+		if (passInput != output && passInput != input)
+			passInput.dispose();
+	}
+	
+	/* filtering - filters are applied to bands (they must have known halo) */
+	private boolean renderBands(FractalFrame frame, int bandHeight, ImageBandSink sink,
+			boolean filtering) throws IOException
+	{
+		int width = outWidth, height = outHeight;
+		int margin = filtering ? getHaloRadius(fractal.getOutputFilters()) : 0;
+		if (antialiasConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+			margin++;
+		Precision oldPrecision = precision;
+		/* bands have same precision and reference orbit as whole image */
+		precision = choosePrecision(frame);
+		if (precision == Precision.PERTURBATION)
+			bandsReference = computeReference(frame);
+		renderingBands = true;
+		bandsCanceled = false;
+		try
+		{
+			for (int startY = 0; startY < height; startY += bandHeight)
+			{
+				int rowsNum = Math.min(bandHeight, height-startY);
+				int bandStartY = Math.max(startY-margin, 0);
+				int bandEndY = Math.min(startY+rowsNum+margin, height);
+				progressStart = 100.0 * (double)startY / (double)height;
+				progressShare = (double)rowsNum / (double)height;
+				
+				setImageSize(width, bandEndY-bandStartY);
+				double[] shift = new double[2];
+				FractalFrame bandFrame = getBandFrame(frame, width, height, bandStartY,
+						bandEndY-bandStartY, shift);
+				bandShiftRe = shift[0];
+				bandShiftIm = shift[1];
+				BufferedImage image = renderImage(bandFrame, filtering);
+				if (bandsCanceled)
+					return false;
+				sink.writeBand(startY, rowsNum, getImageData(image),
+						(startY-bandStartY)*width);
+			}
+		}
+		finally
+		{
+			renderingBands = false;
+			bandsReference = null;
+			progressStart = 0.0;
+			progressShare = 1.0;
+			precision = oldPrecision;
+			setImageSize(width, height);
+		}
+		return true;
+	}
+	
+	/* frame which renders band (rows from startY) of image with given size
+	 * as whole image, shift - distance of center of band from center of image */
+	private static FractalFrame getBandFrame(FractalFrame frame, int width, int height,
+			int startY, int bandHeight, double[] shift)
+	{
+		double scaleFactor = 1.0 / (double)Math.min(width, height);
+		double bandScaleFactor = 1.0 / (double)Math.min(width, bandHeight);
+		/* center of band is moved from center of image (y axis of image is inverted) */
+		double rowsShift = scaleFactor * ((double)startY + 0.5*(double)bandHeight -
+				0.5*(double)height);
+		FractalFrame bandFrame = frame.copy();
+		Matrix3D m = bandFrame.getTransform();
+		shift[0] = m.m[1]*rowsShift;
+		shift[1] = -m.m[4]*rowsShift;
+		m.onlyScale(scaleFactor / bandScaleFactor);
+		if (frame.hasHighPrecisionCenter())
+			bandFrame.setCenter(frame.getCenterRe().add(new BigDecimal(shift[0])),
+					frame.getCenterIm().add(new BigDecimal(shift[1])));
+		else
+		{
+			m.m[2] += shift[0];
+			m.m[5] += shift[1];
+		}
+		return bandFrame;
 	}
 	
 	public void cancelRender()
 	{
+		bandsCanceled = true;
 		sharedData.getCancelIndicator().set(true);
 		try
 		{
@@ -0,0 +1,134 @@
+/**
+ * FractalTimeline.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.math.BigDecimal;
+
+import jfractus.math.Matrix3D;
+
+/* immutable sequence of frames of animation. any frame is evaluated directly
+ * (binary search of key frames), so frames can be rendered in any order,
+ * by many threads or processes. frame at key frame is exact copy of key frame.
+ * frames after last key frame repeat it */
+public final class FractalTimeline
+{
+	/* positions (in frames) nearer than this are same */
+	private static final double EPSILON = 1.0e-6;
+
+	private final FractalFrame[] keyFrames;
+	/* positions of key frames in frames (prefix sums of intervals) */
+	private final double[] positions;
+	/* start of hold (same frames) which ends at key frame */
+	private final double[] holdPositions;
+	private final float framesPerSecond;
+	private final int framesNum;
+
+	public FractalTimeline(FractalAnimation animation)
+	{
+		int keyFramesNum = animation.getKeyFramesNumber();
+		if (keyFramesNum == 0)
+			throw new IllegalArgumentException("Animation has not key frames");
+
+		framesPerSecond = animation.getFramesPerSecond();
+		keyFrames = new FractalFrame[keyFramesNum];
+		positions = new double[keyFramesNum];
+		holdPositions = new double[keyFramesNum];
+		double time = 0.0;
+		for (int i = 0; i < keyFramesNum; i++)
+		{
+			FractalKeyFrame keyFrame = animation.getKeyFrame(i);
+			keyFrames[i] = keyFrame.copy();
+			positions[i] = time*framesPerSecond;
+			if (i != 0 && keyFrames[i].equals(keyFrames[i-1]))
+				holdPositions[i] = holdPositions[i-1];
+			else
+				holdPositions[i] = positions[i];
+			time += keyFrame.getInterval();
+		}
+		framesNum = (int)Math.floor(time*framesPerSecond + EPSILON);
+	}
+
+	public int getFramesNumber()
+	{
+		return framesNum;
+	}
+	public float getFramesPerSecond()
+	{
+		return framesPerSecond;
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= framesNum)
+			throw new IndexOutOfBoundsException("Frame index out of range: " + index);
+	}
+
+	/* last key frame at or before position */
+	private int findKeyFrame(double position)
+	{
+		int low = 0, high = keyFrames.length-1;
+		while (low < high)
+		{
+			int mid = (low+high+1)>>>1;
+			if (positions[mid] <= position + EPSILON)
+				low = mid;
+			else
+				high = mid-1;
+		}
+		return low;
+	}
+
+	/* returns true if frame at position of key frame segment is same as key frame */
+	private boolean isKeyFrameHeld(int keyIndex, double position)
+	{
+		return keyIndex == keyFrames.length-1 ||
+				position - positions[keyIndex] <= EPSILON ||
+				keyFrames[keyIndex].equals(keyFrames[keyIndex+1]);
+	}
+
+	/* returns new frame (can be modified by caller) */
+	public FractalFrame getFrameAt(int index)
+	{
+		checkIndex(index);
+		int keyIndex = findKeyFrame(index);
+		if (isKeyFrameHeld(keyIndex, index))
+			return keyFrames[keyIndex].copy();
+
+		/* interpolation */
+		FractalFrame frame1 = keyFrames[keyIndex];
+		FractalFrame frame2 = keyFrames[keyIndex+1];
+		double ratio = (index - positions[keyIndex]) /
+				(positions[keyIndex+1] - positions[keyIndex]);
+		Matrix3D evaluated = frame2.getTransform().copy();
+		evaluated.subtract(frame1.getTransform());
+		evaluated.scale(ratio);
+		evaluated.add(frame1.getTransform());
+
+		FractalFrame frame = new FractalFrame(evaluated);
+		if (frame1.hasHighPrecisionCenter() || frame2.hasHighPrecisionCenter())
+		{
+			BigDecimal bigRatio = new BigDecimal(ratio);
+			BigDecimal re1 = frame1.getCenterRe(), im1 = frame1.getCenterIm();
+			frame.setCenter(
+					re1.add(frame2.getCenterRe().subtract(re1).multiply(bigRatio)),
+					im1.add(frame2.getCenterIm().subtract(im1).multiply(bigRatio)));
+		}
+		return frame;
+	}
+
+	/* index of first frame of consecutive same frames (hold of key frame) which
+	 * contain frame, such frames can be rendered once */
+	public int getSourceFrameIndex(int index)
+	{
+		checkIndex(index);
+		int keyIndex = findKeyFrame(index);
+		if (!isKeyFrameHeld(keyIndex, index))
+			return index;
+		int first = (int)Math.ceil(holdPositions[keyIndex] - EPSILON);
+		return Math.min(Math.max(first, 0), index);
+	}
+}
@@ -6,6 +6,7 @@
 
 package jfractus.app;
 
+import java.io.File;
 import java.io.Serializable;
 
 import java.util.prefs.*;
@@ -52,6 +53,46 @@ public class FractusPreferences implements Serializable
 		firePreferencesChange(FractusPreferencesEvent.Change.THREAD_NUMBER);
 	}
 	
+	/* maximal time of refining image by stochastic antialiasing (in seconds) */
+	public int getRefiningTimeLimit()
+	{
+		return prefs.getInt("RefiningTimeLimit", 60);
+	}
+	public void setRefiningTimeLimit(int seconds)
+	{
+		prefs.putInt("RefiningTimeLimit", seconds);
+		firePreferencesChange(FractusPreferencesEvent.Change.REFINING_TIME_LIMIT);
+	}
+	
+	/* directory of disk tile cache (empty - disk cache is not used) */
+	public String getTileCacheDirectory()
+	{
+		return prefs.get("TileCacheDirectory", "");
+	}
+	public void setTileCacheDirectory(String directory)
+	{
+		prefs.put("TileCacheDirectory", directory);
+		firePreferencesChange(FractusPreferencesEvent.Change.TILE_CACHE);
+	}
+	/* maximal size of disk tile cache in megabytes */
+	public int getTileCacheMaxSize()
+	{
+		return prefs.getInt("TileCacheMaxSize", 1024);
+	}
+	public void setTileCacheMaxSize(int size)
+	{
+		prefs.putInt("TileCacheMaxSize", size);
+		firePreferencesChange(FractusPreferencesEvent.Change.TILE_CACHE);
+	}
+	/* returns null if disk tile cache is not used */
+	public DiskTileCache createDiskTileCache()
+	{
+		String directory = getTileCacheDirectory();
+		if (directory.length() == 0)
+			return null;
+		return new DiskTileCache(new File(directory), (long)getTileCacheMaxSize()<<20);
+	}
+	
 	public void setDefaultImageWidth(int width)
 	{
 		prefs.putInt("DefaultImageWidth", width);
@@ -81,19 +122,33 @@ public class FractusPreferences implements Serializable
 	public AntialiasConfig getDefaultAntialiasConfig()
 	{
 		String methodName = prefs.get("DefaultAAMethod", "none");
-		AntialiasConfig.Method method = (methodName.equals("normal")) ?
-				AntialiasConfig.Method.NORMAL : AntialiasConfig.Method.NONE;
+		AntialiasConfig.Method method = AntialiasConfig.Method.NONE;
+		if (methodName.equals("normal"))
+			method = AntialiasConfig.Method.NORMAL;
+		else if (methodName.equals("adaptive"))
+			method = AntialiasConfig.Method.ADAPTIVE;
+		else if (methodName.equals("stochastic"))
+			method = AntialiasConfig.Method.STOCHASTIC;
 		int sampWidth = prefs.getInt("DefaultSampWidth", 2);
 		int sampHeight = prefs.getInt("DefaultSampHeight", 2);
-		return new AntialiasConfig(method, sampWidth, sampHeight);
+		float threshold = prefs.getFloat("DefaultAAThreshold",
+				AntialiasConfig.DEFAULT_THRESHOLD);
+		return new AntialiasConfig(method, sampWidth, sampHeight, threshold);
 	}
 	
 	public void setDefaultAntialiasConfig(AntialiasConfig aaConfig)
 	{
-		prefs.put("DefaultAAMethod",
-				(aaConfig.getMethod() == AntialiasConfig.Method.NONE) ? "none" : "normal");
+		String methodName = "none";
+		if (aaConfig.getMethod() == AntialiasConfig.Method.NORMAL)
+			methodName = "normal";
+		else if (aaConfig.getMethod() == AntialiasConfig.Method.ADAPTIVE)
+			methodName = "adaptive";
+		else if (aaConfig.getMethod() == AntialiasConfig.Method.STOCHASTIC)
+			methodName = "stochastic";
+		prefs.put("DefaultAAMethod", methodName);
 		prefs.putInt("DefaultSampWidth", aaConfig.getSamplingWidth());
 		prefs.putInt("DefaultSampHeight", aaConfig.getSamplingHeight());
+		prefs.putFloat("DefaultAAThreshold", aaConfig.getThreshold());
 		firePreferencesChange(FractusPreferencesEvent.Change.DEFAULT_AA_CONFIG);
 	}
 }
@@ -17,6 +17,8 @@ public class FractusPreferencesEvent extends EventObject
 		THREAD_NUMBER,
 		DEFAULT_IMAGE_SIZE,
 		DEFAULT_AA_CONFIG,
+		REFINING_TIME_LIMIT,
+		TILE_CACHE,
 	}
 	
 	private Change change; 
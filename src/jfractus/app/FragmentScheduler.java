@@ -0,0 +1,31 @@
+/**
+ * FragmentScheduler.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+/* distributes fragments between render threads. fragment is divided into horizontal strips,
+ * and scheduler can give parts of fragment (range of strips) to different threads */
+public interface FragmentScheduler
+{
+	/* work unit: strips from firstStrip to lastStrip (exclusive) of fragment */
+	public static class Work
+	{
+		public int fragment;
+		public int firstStrip;
+		public int lastStrip;
+	}
+
+	/* prepare scheduler for new pass */
+	public void start(int fragmentsNum, int stripsPerFragment, int workersNum);
+
+	/* get next work for worker, returns false if nothing left */
+	public boolean nextWork(int worker, Work work);
+
+	/* mark work as done, returns true if whole fragment is finished */
+	public boolean finishWork(int worker, Work work);
+
+	public int getFinishedFragmentsNumber();
+}
@@ -0,0 +1,373 @@
+/**
+ * FramePipeline.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Iterator;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageOutputStream;
+
+/* filters and writes rendered frames of animation in own threads, so caller renders
+ * next frame while previous frame is filtered and frame before it is encoded.
+ * queues between stages are bounded, caller waits if filtering or encoding
+ * is slower than rendering. every encoder thread reuses one image writer.
+ * frame is written to temporary file and renamed, so broken frames are not visible
+ * (also for other processes which write same frames) */
+public class FramePipeline
+{
+	private static class Frame
+	{
+		public File[] files; /* image is written to first file, others are copies */
+		public BufferedImage image;
+
+		public Frame(File[] files, BufferedImage image)
+		{
+			this.files = files;
+			this.image = image;
+		}
+	}
+
+	/* ends thread which takes it */
+	private static final Frame END_FRAME = new Frame(null, null);
+	private static final String PART_SUFFIX = ".part";
+
+	private String suffix;
+	private ImageWriteParam param;
+	private FractalRenderer filterRenderer; /* null - frames are not filtered */
+
+	private BlockingQueue<Frame> filterQueue;
+	private BlockingQueue<Frame> encodeQueue;
+	private Thread filterThread;
+	private Thread[] encoderThreads;
+	private boolean finished;
+
+	private volatile boolean aborted;
+	private volatile Throwable error; /* first error of stages */
+	private AtomicInteger writtenNum = new AtomicInteger();
+
+	/* filterRenderer - renderer which applies filters to frames (null if frames are
+	 * filtered by rendering), param - parameters of image writer (can be null) */
+	public FramePipeline(String suffix, ImageWriteParam param,
+			FractalRenderer filterRenderer, int encodersNum)
+	{
+		this.suffix = suffix;
+		this.param = param;
+		this.filterRenderer = filterRenderer;
+		encodersNum = Math.max(encodersNum, 1);
+
+		/* writer of format is checked before rendering */
+		if (!ImageIO.getImageWritersBySuffix(suffix).hasNext())
+			throw new IllegalArgumentException("Unsupported image format: " + suffix);
+
+		encodeQueue = new ArrayBlockingQueue<Frame>(encodersNum);
+		encoderThreads = new Thread[encodersNum];
+		for (int i = 0; i < encodersNum; i++)
+		{
+			encoderThreads[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					encodeFrames();
+				}
+			}, "FrameEncoder-" + i);
+			encoderThreads[i].setDaemon(true);
+			encoderThreads[i].start();
+		}
+		if (filterRenderer != null)
+		{
+			filterQueue = new ArrayBlockingQueue<Frame>(1);
+			filterThread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					filterFrames();
+				}
+			}, "FrameFilter");
+			filterThread.setDaemon(true);
+			filterThread.start();
+		}
+	}
+
+	public int getEncodersNumber()
+	{
+		return encoderThreads.length;
+	}
+
+	/* number of frames already written */
+	public int getWrittenFramesNumber()
+	{
+		return writtenNum.get();
+	}
+
+	private void setError(Throwable e)
+	{
+		synchronized(this)
+		{
+			if (error == null)
+				error = e;
+		}
+		aborted = true;
+	}
+
+	private void checkError() throws IOException
+	{
+		Throwable e = error;
+		if (e instanceof IOException)
+			throw (IOException)e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException)e;
+		if (e instanceof Error)
+			throw (Error)e;
+	}
+
+	/* puts frame to queue even if thread is interrupted */
+	private static void putFrame(BlockingQueue<Frame> queue, Frame frame)
+	{
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				queue.put(frame);
+				break;
+			}
+			catch(InterruptedException e)
+			{ interrupted = true; }
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private static Frame takeFrame(BlockingQueue<Frame> queue)
+	{
+		while (true)
+		{
+			try
+			{ return queue.take(); }
+			catch(InterruptedException e)
+			{ }
+		}
+	}
+
+	private void filterFrames()
+	{
+		while (true)
+		{
+			Frame frame = takeFrame(filterQueue);
+			if (frame == END_FRAME)
+				break;
+			/* after error frames are skipped, so caller is not blocked */
+			if (aborted)
+				continue;
+			try
+			{
+				frame.image = filterRenderer.filterImage(frame.image);
+				putFrame(encodeQueue, frame);
+			}
+			catch(Throwable e)
+			{ setError(e); }
+		}
+		for (int i = 0; i < encoderThreads.length; i++)
+			putFrame(encodeQueue, END_FRAME);
+	}
+
+	private void encodeFrames()
+	{
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(suffix);
+		ImageWriter writer = writers.next();
+		try
+		{
+			while (true)
+			{
+				Frame frame = takeFrame(encodeQueue);
+				if (frame == END_FRAME)
+					break;
+				if (aborted)
+					continue;
+				try
+				{
+					writeFrame(writer, frame.files[0], frame.image);
+					for (int i = 1; i < frame.files.length; i++)
+						copyFile(frame.files[0], frame.files[i]);
+					writtenNum.addAndGet(frame.files.length);
+				}
+				catch(Throwable e)
+				{ setError(e); }
+			}
+		}
+		finally
+		{ writer.dispose(); }
+	}
+
+	private void writeFrame(ImageWriter writer, File file, BufferedImage image)
+			throws IOException
+	{
+		File partFile = createPartFile(file);
+		ImageOutputStream ios = ImageIO.createImageOutputStream(partFile);
+		if (ios == null)
+		{
+			partFile.delete();
+			throw new IOException("Can not create file: " + file);
+		}
+		boolean done = false;
+		try
+		{
+			try
+			{
+				writer.setOutput(ios);
+				writer.write(null, new IIOImage(image, null, null), param);
+			}
+			finally
+			{
+				writer.setOutput(null);
+				ios.close();
+			}
+			commitFile(partFile, file);
+			done = true;
+		}
+		finally
+		{	/* incomplete image is not left */
+			if (!done)
+				partFile.delete();
+		}
+	}
+
+	/* temporary file in directory of file (unique for every writer) */
+	static File createPartFile(File file) throws IOException
+	{
+		File directory = file.getAbsoluteFile().getParentFile();
+		return File.createTempFile("frame", PART_SUFFIX, directory);
+	}
+
+	/* renames written temporary file to file */
+	static void commitFile(File partFile, File file) throws IOException
+	{
+		if (!partFile.renameTo(file))
+		{	/* some systems do not replace existing files */
+			file.delete();
+			if (!partFile.renameTo(file))
+				throw new IOException("Can not rename file: " + partFile);
+		}
+	}
+
+	/* copies written frame (same frames are encoded once) */
+	static void copyFile(File source, File dest) throws IOException
+	{
+		File partFile = createPartFile(dest);
+		boolean done = false;
+		try
+		{
+			FileInputStream input = new FileInputStream(source);
+			try
+			{
+				FileOutputStream output = new FileOutputStream(partFile);
+				try
+				{
+					FileChannel channel = input.getChannel();
+					long size = channel.size();
+					for (long pos = 0; pos < size;)
+						pos += channel.transferTo(pos, size-pos, output.getChannel());
+				}
+				finally
+				{ output.close(); }
+			}
+			finally
+			{ input.close(); }
+			commitFile(partFile, dest);
+			done = true;
+		}
+		finally
+		{
+			if (!done)
+				partFile.delete();
+		}
+	}
+
+	public void writeFrame(File file, BufferedImage image) throws IOException
+	{
+		writeFrame(new File[] { file }, image);
+	}
+
+	/* gives rendered frame to pipeline, waits if queue is full. image is written
+	 * to all files (frames are same). throws error of earlier frame */
+	public void writeFrame(File[] files, BufferedImage image) throws IOException
+	{
+		if (finished)
+			throw new IllegalStateException("Pipeline is finished");
+		checkError();
+		Frame frame = new Frame(files, image);
+		try
+		{
+			if (filterQueue != null)
+				filterQueue.put(frame);
+			else
+				encodeQueue.put(frame);
+		}
+		catch(InterruptedException e)
+		{
+			abort();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private void endThreads()
+	{
+		if (finished)
+			return;
+		finished = true;
+		if (filterQueue != null)
+			putFrame(filterQueue, END_FRAME);
+		else
+			for (int i = 0; i < encoderThreads.length; i++)
+				putFrame(encodeQueue, END_FRAME);
+
+		boolean interrupted = false;
+		if (filterThread != null)
+			interrupted |= joinThread(filterThread);
+		for (Thread thread: encoderThreads)
+			interrupted |= joinThread(thread);
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/* returns true if current thread was interrupted */
+	private static boolean joinThread(Thread thread)
+	{
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				thread.join();
+				break;
+			}
+			catch(InterruptedException e)
+			{ interrupted = true; }
+		}
+		return interrupted;
+	}
+
+	/* waits for writing of all frames, throws first error of stages */
+	public void finish() throws IOException
+	{
+		endThreads();
+		checkError();
+	}
+
+	/* waiting frames are not written */
+	public void abort()
+	{
+		aborted = true;
+		endThreads();
+	}
+}
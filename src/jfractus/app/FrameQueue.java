@@ -0,0 +1,257 @@
+/**
+ * FrameQueue.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.*;
+import java.util.*;
+
+/* queue of frames of animation in shared directory. frames are divided into chunks,
+ * workers (processes, also at other machines) lease chunks. every chunk has
+ * files: chunk file, lease file (created atomically by worker which leases chunk,
+ * contains identifier of worker) and done file (chunk is written). lease which is
+ * not renewed within lease timeout is taken by other worker (worker is dead),
+ * so clocks of machines should not differ much */
+public class FrameQueue
+{
+	/* lease timeout in milliseconds */
+	public static final long DEFAULT_LEASE_TIMEOUT = 60000L;
+	/* maximal frames number of chunk */
+	private static final int MAX_CHUNK_FRAMES = 32;
+
+	private static final String CHUNK_SUFFIX = ".chunk";
+	private static final String LEASE_SUFFIX = ".lease";
+	private static final String DONE_SUFFIX = ".done";
+	private static final String STALE_SUFFIX = ".stale";
+
+	public static class Lease
+	{
+		private String chunkName;
+		private String workerId;
+		private int firstFrame, lastFrame;
+
+		private Lease(String chunkName, String workerId, int firstFrame, int lastFrame)
+		{
+			this.chunkName = chunkName;
+			this.workerId = workerId;
+			this.firstFrame = firstFrame;
+			this.lastFrame = lastFrame;
+		}
+
+		public int getFirstFrame()
+		{
+			return firstFrame;
+		}
+		/* last frame is in chunk */
+		public int getLastFrame()
+		{
+			return lastFrame;
+		}
+		public String getWorkerId()
+		{
+			return workerId;
+		}
+	}
+
+	private File directory;
+	private long leaseTimeout;
+
+	public FrameQueue(File directory)
+	{
+		this(directory, DEFAULT_LEASE_TIMEOUT);
+	}
+	public FrameQueue(File directory, long leaseTimeout)
+	{
+		this.directory = directory;
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	/* creates chunks of frames from first to last (existing chunks are kept,
+	 * so interrupted rendering is continued) */
+	public static FrameQueue create(File directory, int firstFrame, int lastFrame,
+			int chunkFrames) throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Can not create directory: " + directory);
+		for (int first = firstFrame; first <= lastFrame; first += chunkFrames)
+		{
+			int last = Math.min(first+chunkFrames-1, lastFrame);
+			new File(directory, getChunkName(first, last) + CHUNK_SUFFIX).createNewFile();
+		}
+		return new FrameQueue(directory);
+	}
+
+	/* several chunks for every worker (failed chunk is rendered again) */
+	public static int chooseChunkFrames(int framesNum, int workersNum)
+	{
+		return Math.max(Math.min(framesNum / (4*Math.max(workersNum, 1)),
+				MAX_CHUNK_FRAMES), 1);
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+	public long getLeaseTimeout()
+	{
+		return leaseTimeout;
+	}
+
+	private static String getChunkName(int first, int last)
+	{
+		return String.format(Locale.ENGLISH, "%08d-%08d", first, last);
+	}
+
+	/* names of chunks (without suffix) in order of frames */
+	private String[] getChunkNames() throws IOException
+	{
+		String[] fileNames = directory.list();
+		if (fileNames == null)
+			throw new IOException("Can not read directory: " + directory);
+		ArrayList<String> names = new ArrayList<String>();
+		for (String fileName: fileNames)
+			if (fileName.endsWith(CHUNK_SUFFIX))
+				names.add(fileName.substring(0, fileName.length()-CHUNK_SUFFIX.length()));
+		Collections.sort(names);
+		return names.toArray(new String[names.size()]);
+	}
+
+	private File getFile(String chunkName, String suffix)
+	{
+		return new File(directory, chunkName + suffix);
+	}
+
+	private static String readWorkerId(File leaseFile)
+	{
+		try
+		{
+			BufferedReader reader = new BufferedReader(new FileReader(leaseFile));
+			try
+			{ return reader.readLine(); }
+			finally
+			{ reader.close(); }
+		}
+		catch(IOException e)
+		{ return null; }
+	}
+
+	/* leases first free chunk, returns null if all chunks are leased or done */
+	public Lease acquire(String workerId) throws IOException
+	{
+		for (String name: getChunkNames())
+		{
+			if (getFile(name, DONE_SUFFIX).exists())
+				continue;
+			File leaseFile = getFile(name, LEASE_SUFFIX);
+			if (leaseFile.exists())
+			{
+				long lastModified = leaseFile.lastModified();
+				if (lastModified == 0L ||
+						System.currentTimeMillis() - lastModified <= leaseTimeout)
+					continue;
+				/* only one worker takes stale lease by renaming */
+				File staleFile = new File(directory, leaseFile.getName() + "." +
+						System.nanoTime() + STALE_SUFFIX);
+				if (!leaseFile.renameTo(staleFile))
+					continue;
+				/* other worker could take stale lease and create new lease
+				 * before renaming, then new lease is given back */
+				lastModified = staleFile.lastModified();
+				if (lastModified != 0L &&
+						System.currentTimeMillis() - lastModified <= leaseTimeout)
+				{
+					if (leaseFile.exists() || !staleFile.renameTo(leaseFile))
+						staleFile.delete();
+					continue;
+				}
+				staleFile.delete();
+			}
+			if (!leaseFile.createNewFile())
+				continue;
+
+			Writer writer = new FileWriter(leaseFile);
+			try
+			{ writer.write(workerId + "\n"); }
+			finally
+			{ writer.close(); }
+
+			int separator = name.indexOf('-');
+			return new Lease(name, workerId, Integer.parseInt(name.substring(0, separator)),
+					Integer.parseInt(name.substring(separator+1)));
+		}
+		return null;
+	}
+
+	/* returns true if lease is still owned by worker */
+	public boolean isOwner(Lease lease)
+	{
+		String workerId = readWorkerId(getFile(lease.chunkName, LEASE_SUFFIX));
+		return lease.workerId.equals(workerId);
+	}
+
+	/* worker must renew lease more frequently than lease timeout,
+	 * returns false if lease is lost */
+	public boolean renew(Lease lease)
+	{
+		if (!isOwner(lease))
+			return false;
+		getFile(lease.chunkName, LEASE_SUFFIX).setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	/* marks chunk as done, returns false if lease is lost (chunk is not marked) */
+	public boolean complete(Lease lease) throws IOException
+	{
+		if (!isOwner(lease))
+			return false;
+		getFile(lease.chunkName, DONE_SUFFIX).createNewFile();
+		release(lease);
+		return true;
+	}
+
+	/* chunk can be leased again */
+	public void release(Lease lease)
+	{
+		if (isOwner(lease))
+			getFile(lease.chunkName, LEASE_SUFFIX).delete();
+	}
+
+	/* releases leases of (failed) worker, returns number of released chunks */
+	public int releaseLeases(String workerId) throws IOException
+	{
+		int count = 0;
+		for (String name: getChunkNames())
+		{
+			File leaseFile = getFile(name, LEASE_SUFFIX);
+			if (workerId.equals(readWorkerId(leaseFile)) && leaseFile.delete())
+				count++;
+		}
+		return count;
+	}
+
+	/* returns true if all chunks are done */
+	public boolean isFinished() throws IOException
+	{
+		for (String name: getChunkNames())
+			if (!getFile(name, DONE_SUFFIX).exists())
+				return false;
+		return true;
+	}
+
+	/* removes files of queue and directory */
+	public void delete()
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File file: files)
+				if (file.getName().endsWith(CHUNK_SUFFIX) ||
+						file.getName().endsWith(LEASE_SUFFIX) ||
+						file.getName().endsWith(DONE_SUFFIX) ||
+						file.getName().endsWith(STALE_SUFFIX))
+					file.delete();
+		directory.delete();
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * FrameWorker.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/* worker which leases chunks of frames from queue and writes them
+ * by image writer, until all frames of queue are written. lease is renewed
+ * during rendering. if writing fails, chunk is released for other workers.
+ * if lease is lost (taken by other worker), writing of chunk is canceled */
+public class FrameWorker
+{
+	/* system property with identifier of worker (set by coordinator) */
+	public static final String WORKER_ID_PROPERTY = "jfractus.workerId";
+	/* waiting for chunks leased by other workers (which can fail) */
+	private static final long POLL_INTERVAL = 1000L;
+
+	private FrameQueue queue;
+	private FractalImageWriter imageWriter;
+	private String workerId;
+
+	public FrameWorker(FrameQueue queue, FractalImageWriter imageWriter, String workerId)
+	{
+		this.queue = queue;
+		this.imageWriter = imageWriter;
+		this.workerId = workerId;
+	}
+
+	/* identifier from system property or name of JVM (process id and host) */
+	public static String getDefaultWorkerId()
+	{
+		String workerId = System.getProperty(WORKER_ID_PROPERTY);
+		if (workerId != null)
+			return workerId;
+		return ManagementFactory.getRuntimeMXBean().getName();
+	}
+
+	public String getWorkerId()
+	{
+		return workerId;
+	}
+
+	public void run() throws IOException
+	{
+		long renewPeriod = Math.max(queue.getLeaseTimeout() / 4, 1L);
+		Timer renewTimer = new Timer("LeaseRenewer", true);
+		try
+		{
+			while (!queue.isFinished())
+			{
+				final FrameQueue.Lease lease = queue.acquire(workerId);
+				if (lease == null)
+				{
+					try
+					{ Thread.sleep(POLL_INTERVAL); }
+					catch(InterruptedException e)
+					{ throw new InterruptedIOException(); }
+					continue;
+				}
+
+				final AtomicBoolean lost = new AtomicBoolean();
+				TimerTask renewTask = new TimerTask()
+				{
+					public void run()
+					{
+						if (!queue.renew(lease) && !lost.getAndSet(true))
+						{
+							cancel();
+							imageWriter.cancel();
+						}
+					}
+				};
+				renewTimer.schedule(renewTask, renewPeriod, renewPeriod);
+				boolean done = false;
+				try
+				{
+					imageWriter.setFrameRange(lease.getFirstFrame(), lease.getLastFrame());
+					try
+					{ imageWriter.write(); }
+					catch(InterruptedIOException e)
+					{	/* canceled because lease is lost, other worker writes chunk */
+						if (!lost.get())
+							throw e;
+					}
+					if (!lost.get())
+						done = queue.complete(lease);
+				}
+				finally
+				{
+					renewTask.cancel();
+					if (!done)
+						queue.release(lease);
+				}
+			}
+		}
+		finally
+		{ renewTimer.cancel(); }
+	}
+}
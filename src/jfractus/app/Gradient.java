@@ -177,6 +177,9 @@ public class Gradient extends AbstractDOMDocumentHandler implements Serializable
 	
 	/* private definitions */
 	private Point[] points;
+	/* last built lookup table and points from which it was built */
+	private transient LookupTable lookupTable;
+	private transient float[] lookupState;
 	
 	/* constructor and methods */
 	public Gradient()
@@ -397,6 +400,88 @@ public class Gradient extends AbstractDOMDocumentHandler implements Serializable
 			points[index].evaluateColor(points[index+1], position, destColor);
 	}
 	
+	/* colors of gradient at size uniformly distributed positions from 0 to 1 */
+	public static class LookupTable
+	{
+		private int size;
+		/* colors in ARGB integer format */
+		private int[] packed;
+		/* red, green and blue components of colors */
+		private float[] components;
+		
+		private LookupTable(Gradient gradient, int size)
+		{
+			this.size = size;
+			packed = new int[size];
+			components = new float[3*size];
+			RGBColor color = new RGBColor();
+			float scale = 1.0f / (float)(size-1);
+			for (int i = 0; i < size; i++)
+			{
+				gradient.evaluateColor(Math.min((float)i*scale, 1.0f), color);
+				components[3*i] = color.red;
+				components[3*i+1] = color.green;
+				components[3*i+2] = color.blue;
+				packed[i] = 0xff000000 | (((int)(color.red * 255.0f + 0.5f))<<16) |
+						(((int)(color.green * 255.0f + 0.5f))<<8) |
+						((int)(color.blue * 255.0f + 0.5f));
+			}
+		}
+		
+		public int size()
+		{
+			return size;
+		}
+		
+		/* index of nearest position (positions out of range are clamped) */
+		public int getIndex(float position)
+		{
+			if (position <= 0.0f || position != position)
+				return 0;
+			if (position >= 1.0f)
+				return size-1;
+			return (int)(position*(float)(size-1) + 0.5f);
+		}
+		
+		public int getPacked(int index)
+		{
+			return packed[index];
+		}
+		public float getRed(int index)
+		{
+			return components[3*index];
+		}
+		public float getGreen(int index)
+		{
+			return components[3*index+1];
+		}
+		public float getBlue(int index)
+		{
+			return components[3*index+2];
+		}
+	}
+	
+	/* returns lookup table with given size, table is built again only if
+	 * points have been changed (also directly) since last call */
+	public synchronized LookupTable getLookupTable(int size)
+	{
+		float[] state = new float[4*points.length];
+		for (int i = 0; i < points.length; i++)
+		{
+			state[4*i] = points[i].position;
+			state[4*i+1] = points[i].color.red;
+			state[4*i+2] = points[i].color.green;
+			state[4*i+3] = points[i].color.blue;
+		}
+		if (lookupTable == null || lookupTable.size != size ||
+				!Arrays.equals(state, lookupState))
+		{
+			lookupTable = new LookupTable(this, size);
+			lookupState = state;
+		}
+		return lookupTable;
+	}
+	
 	public boolean isRemovable(int index)
 	{
 		return (index > 0 && index < points.length-1);
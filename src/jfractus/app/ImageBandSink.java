@@ -0,0 +1,18 @@
+/**
+ * ImageBandSink.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.IOException;
+
+/* receives image in bands of rows (from top of image) */
+public interface ImageBandSink
+{
+	/* rows from startY to startY+height-1, pixel (x,y) is at
+	 * offset + (y-startY)*width + x of data (in ARGB integer format) */
+	public void writeBand(int startY, int height, int[] data, int offset)
+			throws IOException;
+}
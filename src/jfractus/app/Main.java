@@ -7,6 +7,7 @@
 package jfractus.app;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.awt.Dimension;
 import javax.swing.*;
@@ -17,6 +18,9 @@ import jfractus.app.ui.MainWindow;
 
 public class Main
 {
+	/* size of tile cache in memory (64 MB) */
+	private static final long BATCH_TILE_CACHE_SIZE = 64L<<20;
+	
 	static private Options cliOptions;
 	
 	private static void createAndShowGUI()
@@ -32,9 +36,19 @@ public class Main
 		cliOptions.addOption("a", "antialias", true, Resources.getString("CLIAntialias"));
 		cliOptions.addOption("A", "sampling-size", true,
 				Resources.getString("CLISamplingSize"));
+		cliOptions.addOption("T", "aa-threshold", true,
+				Resources.getString("CLIAAThreshold"));
+		cliOptions.addOption("C", "tile-cache", true, Resources.getString("CLITileCache"));
 		cliOptions.addOption("L", "libraries", true, Resources.getString("CLILibraries"));
 		cliOptions.addOption("S", "image-size", true, Resources.getString("CLIImageSize"));
+		cliOptions.addOption("b", "band-height", true, Resources.getString("CLIBandHeight"));
+		cliOptions.addOption("r", "raster-dir", true, Resources.getString("CLIRasterDir"));
 		cliOptions.addOption("t", "threads", true, Resources.getString("CLIThreads"));
+		cliOptions.addOption("e", "encoders", true, Resources.getString("CLIEncoders"));
+		cliOptions.addOption("F", "frames", true, Resources.getString("CLIFrames"));
+		cliOptions.addOption("W", "workers", true, Resources.getString("CLIWorkers"));
+		cliOptions.addOption("Q", "queue", true, Resources.getString("CLIQueue"));
+		cliOptions.addOption("g", "guessing", false, Resources.getString("CLIGuessing"));
 		cliOptions.addOption("p", "progress", false, Resources.getString("CLIProgress"));
 		cliOptions.addOption("P", "save-prefs", false, Resources.getString("CLISavePrefs"));
 		cliOptions.addOption("h", "help", false, Resources.getString("CLIHelp"));
@@ -110,6 +124,60 @@ public class Main
 		
 		dim.setSize(outWidth, outHeight);
 	}
+	
+	/* range of frames: first-last, first- (to end) or single frame */
+	private static void parseFrameRange(String rangeStr, int[] range)
+			throws ArgumentParseException, BadValueOfArgumentException
+	{
+		int separator = rangeStr.indexOf('-');
+		try
+		{
+			if (separator < 0)
+				range[0] = range[1] = Integer.parseInt(rangeStr.trim());
+			else
+			{
+				range[0] = Integer.parseInt(rangeStr.substring(0, separator).trim());
+				String lastStr = rangeStr.substring(separator+1).trim();
+				range[1] = (lastStr.length() != 0) ? Integer.parseInt(lastStr) : -1;
+			}
+		}
+		catch(NumberFormatException e)
+		{ throw new ArgumentParseException("Command line parse exception"); }
+		
+		if (range[0] < 0 || (range[1] >= 0 && range[1] < range[0]))
+			throw new BadValueOfArgumentException("Bad value of argument");
+	}
+	
+	/* frames of animation are divided between worker processes by queue */
+	private static void runCoordinator(String[] args, FractalDocument fractal,
+			String filePattern, int[] frameRange, int workersNum, String queueDirName)
+			throws IOException
+	{
+		FractalTimeline timeline = fractal.getTimeline();
+		int lastFrame = frameRange[1];
+		if (lastFrame < 0 || lastFrame >= timeline.getFramesNumber())
+			lastFrame = timeline.getFramesNumber()-1;
+		
+		/* by default queue is in directory of frames (can be shared with other machines) */
+		boolean temporary = (queueDirName == null);
+		File queueDir = temporary ? new File(new File(filePattern).getAbsoluteFile().
+				getParentFile(), ".jfractus-queue-" + System.currentTimeMillis()) :
+				new File(queueDirName);
+		FrameQueue queue = FrameQueue.create(queueDir, frameRange[0], lastFrame,
+				FrameQueue.chooseChunkFrames(lastFrame-frameRange[0]+1, workersNum));
+		
+		String[] workerArgs = WorkerCoordinator.removeOption(args, "W", "workers", true);
+		workerArgs = WorkerCoordinator.removeOption(workerArgs, "Q", "queue", true);
+		workerArgs = WorkerCoordinator.removeOption(workerArgs, "F", "frames", true);
+		workerArgs = WorkerCoordinator.removeOption(workerArgs, "P", "save-prefs", false);
+		String[] queueArgs = { "--queue", queueDir.getAbsolutePath() };
+		List<String> command = WorkerCoordinator.createJavaCommand(queueArgs);
+		command.addAll(Arrays.asList(workerArgs));
+		
+		new WorkerCoordinator(queue, command, workersNum).run();
+		if (temporary)
+			queue.delete();
+	}
 
 	public static void main(String[] args)
 	{		
@@ -136,6 +204,11 @@ public class Main
 		AntialiasConfig aaConfig = FractusPreferencesFactory.prefs.
 				getDefaultAntialiasConfig();
 		boolean printProgress = cmdLine.hasOption("progress");
+		String tileCacheDir = FractusPreferencesFactory.prefs.getTileCacheDirectory();
+		int bandHeight = 0;
+		int encodersNum = 1;
+		int[] frameRange = { 0, -1 };
+		int workersNum = 0;
 		
 		try
 		{
@@ -143,6 +216,7 @@ public class Main
 			String imageSizeString = cmdLine.getOptionValue("image-size");
 			String aaMethodString = cmdLine.getOptionValue("antialias");
 			String samplingSizeString = cmdLine.getOptionValue("sampling-size");
+			String aaThresholdString = cmdLine.getOptionValue("aa-threshold");
 			
 			if (functionsLibPaths != null)
 				FunctionsLoaderFactory.loader.setClassPathsFromString(functionsLibPaths);
@@ -153,6 +227,10 @@ public class Main
 					aaConfig.setMethod(AntialiasConfig.Method.NONE);
 				else if (aaMethodString.equals("normal"))
 					aaConfig.setMethod(AntialiasConfig.Method.NORMAL);
+				else if (aaMethodString.equals("adaptive"))
+					aaConfig.setMethod(AntialiasConfig.Method.ADAPTIVE);
+				else if (aaMethodString.equals("stochastic"))
+					aaConfig.setMethod(AntialiasConfig.Method.STOCHASTIC);
 				else throw new BadValueOfArgumentException("Bad value of argument");
 			}
 			if (threadsNumString != null)
@@ -165,6 +243,30 @@ public class Main
 				parseSize(samplingSizeString, samplingSize);
 				aaConfig.setSamplingSize(samplingSize.width, samplingSize.height);
 			}
+			if (aaThresholdString != null)
+				aaConfig.setThreshold(Float.valueOf(aaThresholdString).floatValue());
+			if (cmdLine.hasOption("band-height"))
+			{
+				bandHeight = Integer.valueOf(cmdLine.getOptionValue("band-height")).intValue();
+				if (bandHeight <= 0)
+					throw new BadValueOfArgumentException("Bad value of argument");
+			}
+			if (cmdLine.hasOption("encoders"))
+			{
+				encodersNum = Integer.valueOf(cmdLine.getOptionValue("encoders")).intValue();
+				if (encodersNum <= 0)
+					throw new BadValueOfArgumentException("Bad value of argument");
+			}
+			if (cmdLine.hasOption("frames"))
+				parseFrameRange(cmdLine.getOptionValue("frames"), frameRange);
+			if (cmdLine.hasOption("workers"))
+			{
+				workersNum = Integer.valueOf(cmdLine.getOptionValue("workers")).intValue();
+				if (workersNum <= 0)
+					throw new BadValueOfArgumentException("Bad value of argument");
+			}
+			if (cmdLine.hasOption("tile-cache"))
+				tileCacheDir = cmdLine.getOptionValue("tile-cache");
 			
 			if (cmdLine.hasOption("save-prefs"))
 			{
@@ -173,6 +275,7 @@ public class Main
 				FractusPreferencesFactory.prefs.setDefaultImageSize(outSize.width,
 						outSize.height);
 				FractusPreferencesFactory.prefs.setDefaultAntialiasConfig(aaConfig);
+				FractusPreferencesFactory.prefs.setTileCacheDirectory(tileCacheDir);
 			}
 		}
 		catch (ArgumentParseException e)
@@ -215,11 +318,33 @@ public class Main
 			{
     			FractalDocument fractal = new FractalDocument();
     			fractal.readFromFile(new File(cmdArgs[0]));
+    			if (workersNum > 0 &&
+    					fractal.getDocumentType() == FractalDocument.Type.ANIMATION)
+    			{
+    				runCoordinator(args, fractal, cmdArgs[1], frameRange, workersNum,
+    						cmdLine.getOptionValue("queue"));
+    				return;
+    			}
+    			
     			FractalRenderer renderer = new FractalRenderer
     					(outSize.width, outSize.height, aaConfig, fractal);
     			FractalImageWriter imageWriter = new FractalImageWriter(renderer, cmdArgs[1]);
     			
     			renderer.setThreadNumber(threadsNum);
+    			imageWriter.setBandHeight(bandHeight);
+    			imageWriter.setEncodersNumber(encodersNum);
+    			if (cmdLine.hasOption("raster-dir"))
+    				renderer.setRasterDirectory(new File(cmdLine.getOptionValue("raster-dir")));
+    			renderer.setSolidGuessing(cmdLine.hasOption("guessing"));
+    			DiskTileCache diskCache = null;
+    			if (tileCacheDir.length() != 0)
+    			{	/* tiles rendered by earlier runs are reused */
+    				TileCache tileCache = new TileCache(BATCH_TILE_CACHE_SIZE);
+    				diskCache = new DiskTileCache(new File(tileCacheDir),
+    						(long)FractusPreferencesFactory.prefs.getTileCacheMaxSize()<<20);
+    				tileCache.setDiskCache(diskCache);
+    				renderer.setTileCache(tileCache);
+    			}
     			renderer.prepareFractal();
     			if (printProgress)
     			{
@@ -228,10 +353,26 @@ public class Main
     						new CMDLineImageWriteProgressListener());
     			}
 
-    			imageWriter.write();
+    			if (cmdLine.hasOption("queue"))
+    			{	/* frames are leased from queue of coordinator */
+    				FrameQueue queue = new FrameQueue(new File(cmdLine.getOptionValue("queue")));
+    				new FrameWorker(queue, imageWriter, FrameWorker.getDefaultWorkerId()).run();
+    			}
+    			else
+    			{
+    				imageWriter.setFrameRange(frameRange[0], frameRange[1]);
+    				imageWriter.write();
+    			}
+    			/* tiles waiting for writing are written before exit */
+    			if (diskCache != null)
+    				diskCache.close();
 			}
 			catch (Exception e)
-			{ System.err.println(e.getMessage()); }
+			{
+				System.err.println(e.getMessage());
+				/* failure is visible for coordinator and schedulers */
+				System.exit(1);
+			}
 		}
 	}
 
@@ -0,0 +1,198 @@
+/**
+ * PNGBandWriter.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/* PNG encoder which gets image in bands of rows, so whole image is never in memory.
+ * pixels are written as 8-bit RGB. filter of every row is chosen by minimal
+ * sum of absolute values of filtered bytes (heuristic from PNG specification) */
+public class PNGBandWriter implements ImageBandSink
+{
+	private static final byte[] SIGNATURE = { (byte)137, 80, 78, 71, 13, 10, 26, 10 };
+	/* maximal size of data of IDAT chunk */
+	private static final int CHUNK_SIZE = 1<<16;
+	private static final int BYTES_PER_PIXEL = 3;
+	private static final int FILTERS_NUMBER = 5;
+
+	private DataOutputStream output;
+	private int width, height;
+	private int rowsNum; /* written rows */
+	private Deflater deflater;
+	private CRC32 crc = new CRC32();
+	private byte[] chunkData = new byte[CHUNK_SIZE];
+	private int chunkLength;
+	/* current and previous row (first byte is filter type) */
+	private byte[] row, prevRow;
+	private byte[][] filteredRows = new byte[FILTERS_NUMBER][];
+
+	/* writes header of image */
+	public PNGBandWriter(OutputStream output, int width, int height) throws IOException
+	{
+		this.output = new DataOutputStream(output);
+		this.width = width;
+		this.height = height;
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		int rowLength = width*BYTES_PER_PIXEL + 1;
+		row = new byte[rowLength];
+		prevRow = new byte[rowLength];
+		for (int i = 0; i < FILTERS_NUMBER; i++)
+			filteredRows[i] = new byte[rowLength];
+
+		this.output.write(SIGNATURE);
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(width);
+		header.writeInt(height);
+		header.writeByte(8); /* bit depth */
+		header.writeByte(2); /* color type: RGB */
+		header.writeByte(0); /* compression: deflate */
+		header.writeByte(0); /* filter method: adaptive */
+		header.writeByte(0); /* no interlace */
+		writeChunk("IHDR", headerBytes.toByteArray(), headerBytes.size());
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+	public int getHeight()
+	{
+		return height;
+	}
+
+	public void writeBand(int startY, int height, int[] data, int offset)
+			throws IOException
+	{
+		if (startY != rowsNum || rowsNum + height > this.height)
+			throw new IllegalArgumentException("Band is not next band of image");
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0, pos = 1; x < width; x++, pos += BYTES_PER_PIXEL)
+			{
+				int pixel = data[offset + y*width + x];
+				row[pos] = (byte)(pixel>>16);
+				row[pos+1] = (byte)(pixel>>8);
+				row[pos+2] = (byte)pixel;
+			}
+			deflate(filterRow(), false);
+			byte[] temp = prevRow;
+			prevRow = row;
+			row = temp;
+			rowsNum++;
+		}
+	}
+
+	/* writes rest of data and end of image (all rows must be written),
+	 * output stream is not closed */
+	public void finish() throws IOException
+	{
+		if (rowsNum != height)
+			throw new IllegalStateException("Not all rows are written");
+		deflate(null, true);
+		if (chunkLength != 0)
+			writeChunk("IDAT", chunkData, chunkLength);
+		deflater.end();
+		writeChunk("IEND", chunkData, 0);
+		output.flush();
+	}
+
+	/* filtered row with minimal sum of absolute values */
+	private byte[] filterRow()
+	{
+		int length = row.length;
+		boolean firstRow = (rowsNum == 0);
+		byte[] best = null;
+		long bestSum = Long.MAX_VALUE;
+		for (int type = 0; type < FILTERS_NUMBER; type++)
+		{
+			/* previous row is zero at first row, so Up is same as None */
+			if (firstRow && type == 2)
+				continue;
+			byte[] out = filteredRows[type];
+			out[0] = (byte)type;
+			long sum = 0;
+			for (int i = 1; i < length; i++)
+			{
+				int a = (i > BYTES_PER_PIXEL) ? row[i-BYTES_PER_PIXEL]&0xff : 0;
+				int b = firstRow ? 0 : prevRow[i]&0xff;
+				int c = (!firstRow && i > BYTES_PER_PIXEL) ?
+						prevRow[i-BYTES_PER_PIXEL]&0xff : 0;
+				int predictor;
+				switch(type)
+				{
+				case 1:
+					predictor = a;
+					break;
+				case 2:
+					predictor = b;
+					break;
+				case 3:
+					predictor = (a+b)>>1;
+					break;
+				case 4:
+					predictor = paethPredictor(a, b, c);
+					break;
+				default:
+					predictor = 0;
+					break;
+				}
+				byte value = (byte)(row[i] - predictor);
+				out[i] = value;
+				sum += Math.abs(value);
+			}
+			if (sum < bestSum)
+			{
+				bestSum = sum;
+				best = out;
+			}
+		}
+		return best;
+	}
+
+	private static int paethPredictor(int a, int b, int c)
+	{
+		int p = a + b - c;
+		int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc)
+			return a;
+		return (pb <= pc) ? b : c;
+	}
+
+	/* compressed data are written in IDAT chunks */
+	private void deflate(byte[] input, boolean finish) throws IOException
+	{
+		if (input != null)
+			deflater.setInput(input);
+		if (finish)
+			deflater.finish();
+		while (finish ? !deflater.finished() : !deflater.needsInput())
+		{
+			chunkLength += deflater.deflate(chunkData, chunkLength,
+					CHUNK_SIZE - chunkLength);
+			if (chunkLength == CHUNK_SIZE)
+			{
+				writeChunk("IDAT", chunkData, chunkLength);
+				chunkLength = 0;
+			}
+		}
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException
+	{
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		crc.reset();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		output.writeInt(length);
+		output.write(typeBytes);
+		output.write(data, 0, length);
+		output.writeInt((int)crc.getValue());
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * PixelRasterImage.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.Vector;
+
+import jfractus.api.PixelRaster;
+
+/* image (in RGB format) whose pixels are read from raster when they are requested,
+ * so image writers which request rows (as PNG and BMP writers) do not
+ * need whole image in memory. tiles are bands of rows */
+public class PixelRasterImage implements RenderedImage
+{
+	private static final int TILE_HEIGHT = 64;
+
+	private PixelRaster raster;
+	private ColorModel colorModel = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+	private int tileHeight;
+
+	public PixelRasterImage(PixelRaster raster)
+	{
+		this.raster = raster;
+		tileHeight = Math.min(TILE_HEIGHT, raster.getHeight());
+	}
+
+	public PixelRaster getPixelRaster()
+	{
+		return raster;
+	}
+
+	public Vector<RenderedImage> getSources()
+	{
+		return null;
+	}
+	public Object getProperty(String name)
+	{
+		return java.awt.Image.UndefinedProperty;
+	}
+	public String[] getPropertyNames()
+	{
+		return null;
+	}
+
+	public ColorModel getColorModel()
+	{
+		return colorModel;
+	}
+	public SampleModel getSampleModel()
+	{
+		return colorModel.createCompatibleSampleModel(raster.getWidth(), tileHeight);
+	}
+
+	public int getWidth()
+	{
+		return raster.getWidth();
+	}
+	public int getHeight()
+	{
+		return raster.getHeight();
+	}
+	public int getMinX()
+	{
+		return 0;
+	}
+	public int getMinY()
+	{
+		return 0;
+	}
+
+	public int getNumXTiles()
+	{
+		return 1;
+	}
+	public int getNumYTiles()
+	{
+		return (raster.getHeight() + tileHeight-1) / tileHeight;
+	}
+	public int getMinTileX()
+	{
+		return 0;
+	}
+	public int getMinTileY()
+	{
+		return 0;
+	}
+	public int getTileWidth()
+	{
+		return raster.getWidth();
+	}
+	public int getTileHeight()
+	{
+		return tileHeight;
+	}
+	public int getTileGridXOffset()
+	{
+		return 0;
+	}
+	public int getTileGridYOffset()
+	{
+		return 0;
+	}
+
+	public Raster getTile(int tileX, int tileY)
+	{
+		int y = tileY*tileHeight;
+		return getData(new Rectangle(0, y, raster.getWidth(),
+				Math.min(tileHeight, raster.getHeight()-y)));
+	}
+
+	/* whole image must fit in array */
+	public Raster getData()
+	{
+		return getData(new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+	}
+
+	private static void checkArraySize(int width, int height)
+	{
+		if ((long)width*height > PixelRaster.MAX_ARRAY_LENGTH)
+			throw new IllegalStateException("Image region " + width + "x" + height +
+					" is too large for array, it must be read by tiles");
+	}
+
+	public Raster getData(Rectangle rect)
+	{
+		checkArraySize(rect.width, rect.height);
+		WritableRaster out = Raster.createWritableRaster(
+				colorModel.createCompatibleSampleModel(rect.width, rect.height),
+				new Point(rect.x, rect.y));
+		copyData(out);
+		return out;
+	}
+
+	public WritableRaster copyData(WritableRaster out)
+	{
+		if (out == null)
+		{
+			checkArraySize(raster.getWidth(), raster.getHeight());
+			out = colorModel.createCompatibleWritableRaster(raster.getWidth(),
+					raster.getHeight());
+		}
+		Rectangle rect = out.getBounds().intersection(
+				new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+		int[] row = new int[rect.width];
+		for (int y = rect.y; y < rect.y+rect.height; y++)
+		{
+			raster.getPixels((long)y*raster.getWidth() + rect.x, row, 0, rect.width);
+			out.setDataElements(rect.x, y, rect.width, 1, row);
+		}
+		return out;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * RenderBuffers.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import jfractus.math.Complex;
+
+/* fragment working buffers, owned by worker thread and reused between renders */
+public class RenderBuffers
+{
+	public double[] inRe, inIm; /* input transforms coordinates map */
+	public double[] outRe, outIm; /* output complex values map */
+	public Complex[] inZData; /* Complex[] variant for non-primitive functions */
+	public Complex[] outZData;
+	public int[] itData; /* iterations number data */
+	public float[] mapData; /* coloring value data */
+	public RGBColor[] renderedData;
+	/* gathered points for batch computing (solid guessing) */
+	public double[] batchRe, batchIm, batchOutRe, batchOutIm;
+	public int[] batchItData;
+	public int[] batchIndices;
+	/* distances from reference point (perturbation) */
+	public double[] deltaRe, deltaIm;
+	/* single precision input and output of formula */
+	public float[] floatRe, floatIm, floatOutRe, floatOutIm;
+	/* indices of samples in image (stage caching) */
+	public int[] sampleIndices;
+	/* indices of colors in gradient lookup table */
+	public int[] colorIndices;
+	/* colors of pixels and positions of edge pixels (adaptive antialiasing) */
+	public int[] pixelColors, edgePixels;
+
+	private int capacity;
+
+	public RenderBuffers()
+	{
+		capacity = 0;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/* reallocate buffers only if they are smaller than required */
+	public void ensureCapacity(int size, boolean withComplex)
+	{
+		if (size > capacity)
+		{
+			inRe = new double[size];
+			inIm = new double[size];
+			outRe = new double[size];
+			outIm = new double[size];
+			itData = new int[size];
+			mapData = new float[size];
+			RGBColor[] oldRendered = renderedData;
+			renderedData = new RGBColor[size];
+			for (int i = 0; i < size; i++)
+				renderedData[i] = (oldRendered != null && i < oldRendered.length) ?
+						oldRendered[i] : new RGBColor();
+			inZData = null;
+			outZData = null;
+			batchRe = null;
+			deltaRe = deltaIm = null;
+			floatRe = null;
+			sampleIndices = null;
+			colorIndices = null;
+			pixelColors = edgePixels = null;
+			capacity = size;
+		}
+		if (withComplex && inZData == null)
+		{
+			inZData = new Complex[capacity];
+			outZData = new Complex[capacity];
+			for (int i = 0; i < capacity; i++)
+			{
+				inZData[i] = new Complex();
+				outZData[i] = new Complex();
+			}
+		}
+	}
+
+	/* allocate batch buffers with current capacity */
+	public void ensureBatchCapacity()
+	{
+		if (batchRe == null)
+		{
+			batchRe = new double[capacity];
+			batchIm = new double[capacity];
+			batchOutRe = new double[capacity];
+			batchOutIm = new double[capacity];
+			batchItData = new int[capacity];
+			batchIndices = new int[capacity];
+		}
+	}
+
+	/* allocate delta buffers with current capacity */
+	public void ensureDeltaCapacity()
+	{
+		if (deltaRe == null)
+		{
+			deltaRe = new double[capacity];
+			deltaIm = new double[capacity];
+		}
+	}
+
+	/* allocate sample indices with current capacity */
+	public void ensureIndexCapacity()
+	{
+		if (sampleIndices == null)
+			sampleIndices = new int[capacity];
+	}
+
+	/* allocate color indices with current capacity */
+	public void ensureColorCapacity()
+	{
+		if (colorIndices == null)
+			colorIndices = new int[capacity];
+	}
+
+	/* allocate adaptive antialiasing buffers with current capacity */
+	public void ensureAdaptiveCapacity()
+	{
+		if (pixelColors == null)
+		{
+			pixelColors = new int[capacity];
+			edgePixels = new int[capacity];
+		}
+	}
+
+	/* allocate single precision buffers with current capacity */
+	public void ensureFloatCapacity()
+	{
+		if (floatRe == null)
+		{
+			floatRe = new float[capacity];
+			floatIm = new float[capacity];
+			floatOutRe = new float[capacity];
+			floatOutIm = new float[capacity];
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * RenderFingerprint.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.lang.reflect.Array;
+
+import jfractus.api.Function;
+
+/* 64-bit FNV-1a hash of state which determines rendered pixels.
+ * used to check whether previously rendered pixels can be reused.
+ * optionally keeps canonical form of hashed state (exact key without collisions) */
+public final class RenderFingerprint
+{
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private long hash = FNV_OFFSET;
+	private StringBuilder canonical; /* null - not kept */
+
+	public RenderFingerprint()
+	{
+	}
+	public RenderFingerprint(boolean keepCanonical)
+	{
+		if (keepCanonical)
+			canonical = new StringBuilder();
+	}
+
+	public long getValue()
+	{
+		return hash;
+	}
+	/* returns canonical form or null if it is not kept */
+	public String getCanonical()
+	{
+		return (canonical != null) ? canonical.toString() : null;
+	}
+
+	public RenderFingerprint add(long value)
+	{
+		if (canonical != null)
+			canonical.append(Long.toHexString(value)).append(';');
+		for (int i = 0; i < 8; i++, value >>>= 8)
+		{
+			hash ^= value & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return this;
+	}
+	public RenderFingerprint add(int value)
+	{
+		return add((long)value);
+	}
+	public RenderFingerprint add(double value)
+	{
+		return add(Double.doubleToLongBits(value));
+	}
+	public RenderFingerprint add(float value)
+	{
+		return add(Float.floatToIntBits(value));
+	}
+	public RenderFingerprint add(String value)
+	{
+		add(value.length());
+		if (canonical != null)
+			canonical.append(value);
+		for (int i = 0; i < value.length(); i++)
+		{
+			hash ^= value.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return this;
+	}
+
+	/* values are hashed by their string forms (arrays element by element) */
+	public RenderFingerprint add(Object value)
+	{
+		if (value == null)
+			return add(0L);
+		if (value.getClass().isArray())
+		{
+			int length = Array.getLength(value);
+			add(length);
+			for (int i = 0; i < length; i++)
+				add(Array.get(value, i));
+			return this;
+		}
+		return add(value.toString());
+	}
+
+	/* class and parameters of function */
+	public RenderFingerprint add(Function function)
+	{
+		if (function == null)
+			return add(0L);
+		add(function.getClass().getName());
+		int count = function.getParametersCount();
+		for (int i = 0; i < count; i++)
+			add(function.getValue(i));
+		return this;
+	}
+
+	public RenderFingerprint add(Gradient gradient)
+	{
+		add(gradient.size());
+		for (int i = 0; i < gradient.size(); i++)
+		{
+			RGBColor color = gradient.getColor(i);
+			add(gradient.getPosition(i)).add(color.red).add(color.green).add(color.blue);
+		}
+		return this;
+	}
+}
@@ -27,12 +27,24 @@ public class RenderProgressEvent extends EventObject
     private double progressInPercent;
     private BufferedImage currentImage;
     private ArrayList<Integer> fragments;
+    private int pass;
+    private int passesNumber;
+    private FractalRenderer.Precision precision;
     
 	public RenderProgressEvent(Object source, Process process, double progress,
 			ArrayList<Integer> fragments, BufferedImage image)
+	{
+		this(source, process, 1, 1, progress, fragments, image);
+	}
+	
+	/* event of progressive rendering: pass is counted from 1 */
+	public RenderProgressEvent(Object source, Process process, int pass, int passesNumber,
+			double progress, ArrayList<Integer> fragments, BufferedImage image)
 	{
 		super(source);
 		frame = totalFrames = 1;
+		this.pass = pass;
+		this.passesNumber = passesNumber;
 		done = false;
 		this.process = process; 
 		progressInPercent = progress;
@@ -47,6 +59,7 @@ public class RenderProgressEvent extends EventObject
 		super(source);
 		this.frame = frame;
 		this.totalFrames = totalFrames;
+		pass = passesNumber = 1;
 		done = false;
 		this.process = process; 
 		progressInPercent = progress;
@@ -55,9 +68,17 @@ public class RenderProgressEvent extends EventObject
 	}
 	
 	public RenderProgressEvent(Object source, boolean done)
+	{
+		this(source, done, null);
+	}
+	
+	/* precision - precision of rendered image (can be null) */
+	public RenderProgressEvent(Object source, boolean done,
+			FractalRenderer.Precision precision)
 	{
 		super(source);
 		this.done = done;
+		this.precision = precision;
 	}
 	
 	public int getFrame()
@@ -69,6 +90,15 @@ public class RenderProgressEvent extends EventObject
 		return totalFrames;
 	}
 	
+	public int getPass()
+	{
+		return pass;
+	}
+	public int getPassesNumber()
+	{
+		return passesNumber;
+	}
+	
 	public Process getProcess()
 	{
 		return process;
@@ -91,4 +121,9 @@ public class RenderProgressEvent extends EventObject
 	{
 		return done;
 	}
+	/* precision of rendered image (only at done event, null if unknown) */
+	public FractalRenderer.Precision getPrecision()
+	{
+		return precision;
+	}
 }
@@ -0,0 +1,214 @@
+/**
+ * RenderWorkerPool.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/* pool of long-lived render workers. each worker owns RenderBuffers which live
+ * as long as worker, therefore renders do not pay thread start-up and allocation costs */
+public class RenderWorkerPool
+{
+	/* task which retires worker that takes it */
+	private static final Runnable RETIRE_TASK = new Runnable()
+	{
+		public void run()
+		{
+		}
+	};
+
+	private BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<Runnable>();
+	private int workersNum;
+	private int workerCounter;
+	private boolean shutdown;
+
+	/* tasks of job, failure of any task is thrown by waiting methods */
+	public static class Job
+	{
+		private CountDownLatch latch;
+		private volatile Throwable failure; /* first failure of tasks */
+
+		private Job(int tasksNum)
+		{
+			latch = new CountDownLatch(tasksNum);
+		}
+
+		public boolean isDone()
+		{
+			return latch.getCount() == 0;
+		}
+
+		/* returns first failure of tasks or null */
+		public Throwable getFailure()
+		{
+			return failure;
+		}
+
+		private void setFailure(Throwable e)
+		{
+			synchronized(this)
+			{
+				if (failure == null)
+					failure = e;
+			}
+		}
+
+		private void checkFailure()
+		{
+			Throwable e = failure;
+			if (e instanceof RuntimeException)
+				throw (RuntimeException)e;
+			if (e instanceof Error)
+				throw (Error)e;
+			if (e != null)
+				throw new RuntimeException(e);
+		}
+
+		public void await() throws InterruptedException
+		{
+			latch.await();
+			checkFailure();
+		}
+
+		/* wait for finishing, even if interrupted (interrupt status will be restored) */
+		public void awaitUninterruptibly()
+		{
+			boolean interrupted = false;
+			while (true)
+			{
+				try
+				{
+					latch.await();
+					break;
+				}
+				catch(InterruptedException e)
+				{ interrupted = true; }
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			checkFailure();
+		}
+	}
+
+	private static class JobTask implements Runnable
+	{
+		private Runnable task;
+		private Job job;
+
+		public JobTask(Runnable task, Job job)
+		{
+			this.task = task;
+			this.job = job;
+		}
+
+		public void run()
+		{
+			try
+			{ task.run(); }
+			catch(Throwable e)
+			{ job.setFailure(e); }
+			finally
+			{ job.latch.countDown(); }
+		}
+	}
+
+	private class Worker extends Thread
+	{
+		private RenderBuffers buffers = new RenderBuffers();
+
+		public Worker(int id)
+		{
+			super("RenderWorker-" + id);
+			setDaemon(true);
+		}
+
+		public void run()
+		{
+			while (true)
+			{
+				Runnable task;
+				try
+				{ task = taskQueue.take(); }
+				catch(InterruptedException e)
+				{ continue; }
+
+				if (task == RETIRE_TASK)
+					break;
+				/* worker is not lost if task fails (failures of job tasks
+				 * are recorded in job) */
+				try
+				{ task.run(); }
+				catch(Throwable e)
+				{ }
+			}
+		}
+	}
+
+	public RenderWorkerPool()
+	{
+		this(0);
+	}
+
+	public RenderWorkerPool(int size)
+	{
+		setSize(size);
+	}
+
+	public synchronized int getSize()
+	{
+		return workersNum;
+	}
+
+	/* resize pool. retiring workers finish their current task before exit */
+	public synchronized void setSize(int size)
+	{
+		if (size < 0)
+			throw new IllegalArgumentException("Size must be non-negative");
+		if (shutdown)
+			throw new IllegalStateException("Pool is shut down");
+
+		for (; workersNum < size; workersNum++)
+			new Worker(workerCounter++).start();
+		for (; workersNum > size; workersNum--)
+			taskQueue.offer(RETIRE_TASK);
+	}
+
+	/* grow pool if it is smaller than size */
+	public synchronized void ensureSize(int size)
+	{
+		if (workersNum < size)
+			setSize(size);
+	}
+
+	/* submit tasks, which will be executed concurrently if pool has enough workers */
+	public synchronized Job submit(Runnable[] tasks)
+	{
+		if (workersNum == 0)
+			setSize(1);
+		Job job = new Job(tasks.length);
+		for (Runnable task: tasks)
+			taskQueue.offer(new JobTask(task, job));
+		return job;
+	}
+
+	/* retire all workers, queued tasks will be finished */
+	public synchronized void shutdown()
+	{
+		setSize(0);
+		shutdown = true;
+	}
+
+	/* get buffers of current worker (or new buffers if thread is not worker) */
+	public static RenderBuffers getLocalBuffers()
+	{
+		Thread thread = Thread.currentThread();
+		if (thread instanceof Worker)
+			return ((Worker)thread).buffers;
+		return new RenderBuffers();
+	}
+}
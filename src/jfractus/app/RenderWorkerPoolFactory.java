@@ -0,0 +1,27 @@
+/**
+ * RenderWorkerPoolFactory.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+/* render worker pool shared by all renderers. pool follows threads number from preferences */
+public class RenderWorkerPoolFactory
+{
+	public static final RenderWorkerPool pool = createPool();
+
+	private static RenderWorkerPool createPool()
+	{
+		final RenderWorkerPool pool = new RenderWorkerPool();
+		FractusPreferencesFactory.prefs.addPreferencesListener(new FractusPreferencesListener()
+		{
+			public void preferencesChanged(FractusPreferencesEvent e)
+			{
+				if (e.getChange() == FractusPreferencesEvent.Change.THREAD_NUMBER)
+					pool.setSize(FractusPreferencesFactory.prefs.getThreadsNumber());
+			}
+		});
+		return pool;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * SampleAccumulator.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/* sums of images rendered with different sample offsets (stochastic antialiasing).
+ * offsets are taken from Halton sequence (bases 2 and 3), so few samples
+ * cover pixel more evenly than regular grid */
+public class SampleAccumulator
+{
+	private int width, height;
+	private int samplesNum;
+	/* sums of red, green and blue components of pixels */
+	private int[] sums;
+
+	public SampleAccumulator(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		sums = new int[3*width*height];
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/* number of accumulated images */
+	public int getSamplesNumber()
+	{
+		return samplesNum;
+	}
+
+	/* offset of sample (in pixels, from 0 to 1) for image with given index.
+	 * first offset is zero (same as image rendered without antialiasing) */
+	public static void getSampleOffset(int index, double[] offset)
+	{
+		offset[0] = radicalInverse(index, 2);
+		offset[1] = radicalInverse(index, 3);
+	}
+
+	private static double radicalInverse(int index, int base)
+	{
+		double value = 0.0;
+		double digitScale = 1.0 / (double)base;
+		for (double scale = digitScale; index > 0; index /= base, scale *= digitScale)
+			value += (double)(index % base) * scale;
+		return value;
+	}
+
+	public void clear()
+	{
+		samplesNum = 0;
+		Arrays.fill(sums, 0);
+	}
+
+	/* image must have TYPE_INT_RGB type and size of accumulator */
+	public void addImage(BufferedImage image)
+	{
+		int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		for (int i = 0, pos = 0; i < data.length; i++, pos += 3)
+		{
+			int color = data[i];
+			sums[pos] += (color>>16)&0xff;
+			sums[pos+1] += (color>>8)&0xff;
+			sums[pos+2] += color&0xff;
+		}
+		samplesNum++;
+	}
+
+	/* average of accumulated images */
+	public BufferedImage getImage()
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		if (samplesNum == 0)
+			return image;
+		int half = samplesNum>>1;
+		for (int i = 0, pos = 0; i < data.length; i++, pos += 3)
+			data[i] = 0xff000000 | (((sums[pos]+half)/samplesNum)<<16) |
+					(((sums[pos+1]+half)/samplesNum)<<8) | ((sums[pos+2]+half)/samplesNum);
+		return image;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * SequentialFragmentScheduler.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* gives whole fragments in order from one shared counter */
+public class SequentialFragmentScheduler implements FragmentScheduler
+{
+	private AtomicInteger fragmentIndex = new AtomicInteger();
+	private AtomicInteger finishedFragments = new AtomicInteger();
+	private int fragmentsNum;
+	private int stripsPerFragment;
+
+	public void start(int fragmentsNum, int stripsPerFragment, int workersNum)
+	{
+		this.fragmentsNum = fragmentsNum;
+		this.stripsPerFragment = stripsPerFragment;
+		fragmentIndex.set(0);
+		finishedFragments.set(0);
+	}
+
+	public boolean nextWork(int worker, Work work)
+	{
+		int x = fragmentIndex.getAndIncrement();
+		if (x >= fragmentsNum)
+			return false;
+		work.fragment = x;
+		work.firstStrip = 0;
+		work.lastStrip = stripsPerFragment;
+		return true;
+	}
+
+	public boolean finishWork(int worker, Work work)
+	{
+		finishedFragments.incrementAndGet();
+		return true;
+	}
+
+	public int getFinishedFragmentsNumber()
+	{
+		return finishedFragments.get();
+	}
+}
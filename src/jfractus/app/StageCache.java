@@ -0,0 +1,112 @@
+/**
+ * StageCache.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/* results of stages of last render for every sample of image. if only functions
+ * after fractal formula (or only coloring) are changed, cached results are used
+ * instead of computing earlier stages again */
+public class StageCache
+{
+	/* stages whose results are reused */
+	public static enum Level
+	{
+		NONE,
+		FORMULA, /* iterations and output values of fractal formula */
+		COLORING /* also values of inner and outer functions */
+	}
+
+	public int[] itData;
+	public double[] outRe, outIm;
+	public float[] mapData;
+
+	private int width, height;
+	private long formulaKey, coloringKey;
+	private boolean formulaValid, coloringValid;
+	private BufferedImage image;
+
+	/* width and height in samples */
+	public void ensureSize(int width, int height)
+	{
+		if (this.width == width && this.height == height)
+			return;
+		invalidate();
+		this.width = width;
+		this.height = height;
+		int size = width*height;
+		itData = new int[size];
+		outRe = new double[size];
+		outIm = new double[size];
+		mapData = new float[size];
+	}
+
+	public void invalidate()
+	{
+		formulaValid = coloringValid = false;
+		image = null;
+	}
+
+	/* image rendered from cached results (null if cache is not complete) */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	/* keys are fingerprints of state which determines results of stages */
+	public Level getLevel(long formulaKey, long coloringKey)
+	{
+		if (coloringValid && this.coloringKey == coloringKey &&
+				formulaValid && this.formulaKey == formulaKey)
+			return Level.COLORING;
+		if (formulaValid && this.formulaKey == formulaKey)
+			return Level.FORMULA;
+		return Level.NONE;
+	}
+
+	/* results of not reused stages will be overwritten */
+	public void begin(Level level)
+	{
+		image = null;
+		if (level == Level.NONE)
+			formulaValid = false;
+		if (level != Level.COLORING)
+			coloringValid = false;
+	}
+
+	/* all samples of image are stored */
+	public void finish(long formulaKey, long coloringKey, BufferedImage image)
+	{
+		this.formulaKey = formulaKey;
+		this.coloringKey = coloringKey;
+		formulaValid = coloringValid = true;
+		this.image = image;
+	}
+
+	/* move results: sample (x,y) of rect is taken from (x+shiftX,y+shiftY) */
+	public void shift(Rectangle rect, int shiftX, int shiftY)
+	{
+		/* rows are moved in order, which does not overwrite not moved rows */
+		int start = rect.y, end = rect.y + rect.height, step = 1;
+		if (shiftY < 0)
+		{
+			start = end-1;
+			end = rect.y-1;
+			step = -1;
+		}
+		for (int y = start; y != end; y += step)
+		{
+			int src = (y+shiftY)*width + rect.x+shiftX;
+			int dest = y*width + rect.x;
+			System.arraycopy(itData, src, itData, dest, rect.width);
+			System.arraycopy(outRe, src, outRe, dest, rect.width);
+			System.arraycopy(outIm, src, outIm, dest, rect.width);
+			System.arraycopy(mapData, src, mapData, dest, rect.width);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * TileCache.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* pixels of rendered tiles (fragments of image) with bounded size.
+ * least recently used tiles are removed first. tiles not found in memory are
+ * searched in disk cache (if it is set) */
+public class TileCache
+{
+	/* tile is identified by fingerprint of state which determines its pixels
+	 * (document, render options, position in complex plane) and its size */
+	public static final class Key
+	{
+		private long fingerprint;
+		private int width, height;
+		/* full key which was hashed to fingerprint (can be null): state is shared
+		 * by all tiles of render (document, options), position is own for tile */
+		private String state, position;
+
+		public Key(long fingerprint, int width, int height)
+		{
+			this(fingerprint, width, height, null, null);
+		}
+		public Key(long fingerprint, int width, int height, String state, String position)
+		{
+			this.fingerprint = fingerprint;
+			this.width = width;
+			this.height = height;
+			this.state = state;
+			this.position = position;
+		}
+
+		public long getFingerprint()
+		{
+			return fingerprint;
+		}
+		/* canonical state shared by tiles of render (null if unknown) */
+		public String getState()
+		{
+			return state;
+		}
+		/* canonical position of tile (null if unknown) */
+		public String getPosition()
+		{
+			return position;
+		}
+		public int getWidth()
+		{
+			return width;
+		}
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public boolean equals(Object ob)
+		{
+			if (this == ob)
+				return true;
+			if (!(ob instanceof Key))
+				return false;
+			Key key = (Key)ob;
+			return fingerprint == key.fingerprint && width == key.width &&
+					height == key.height && equalsString(state, key.state) &&
+					equalsString(position, key.position);
+		}
+
+		private static boolean equalsString(String s1, String s2)
+		{
+			return (s1 == null) ? s2 == null : s1.equals(s2);
+		}
+
+		public int hashCode()
+		{
+			return (int)(fingerprint ^ (fingerprint>>>32)) ^ (width*31 + height);
+		}
+	}
+
+	private LinkedHashMap<Key, int[]> tiles = new LinkedHashMap<Key, int[]>(16, 0.75f, true);
+	private long maxPixels;
+	private long pixelsNum;
+	private DiskTileCache diskCache;
+
+	/* maximal size in bytes */
+	public TileCache(long maxSize)
+	{
+		maxPixels = maxSize/4;
+	}
+
+	public synchronized long getMaxSize()
+	{
+		return maxPixels*4;
+	}
+	public synchronized void setMaxSize(long maxSize)
+	{
+		maxPixels = maxSize/4;
+		evict();
+	}
+	/* current size in bytes */
+	public synchronized long getSize()
+	{
+		return pixelsNum*4;
+	}
+	public synchronized int getTilesNumber()
+	{
+		return tiles.size();
+	}
+
+	public synchronized DiskTileCache getDiskCache()
+	{
+		return diskCache;
+	}
+	/* null - tiles are kept only in memory */
+	public synchronized void setDiskCache(DiskTileCache cache)
+	{
+		diskCache = cache;
+	}
+
+	/* returns pixels of tile (row by row) or null if tile is not cached */
+	public int[] get(Key key)
+	{
+		DiskTileCache disk;
+		synchronized(this)
+		{
+			int[] pixels = tiles.get(key);
+			if (pixels != null || diskCache == null)
+				return pixels;
+			disk = diskCache;
+		}
+		int[] pixels = disk.read(key);
+		if (pixels != null)
+			putInMemory(key, pixels);
+		return pixels;
+	}
+
+	/* pixels must not be modified after putting */
+	public void put(Key key, int[] pixels)
+	{
+		DiskTileCache disk = getDiskCache();
+		putInMemory(key, pixels);
+		if (disk != null)
+			disk.write(key, pixels);
+	}
+
+	private synchronized void putInMemory(Key key, int[] pixels)
+	{
+		if (pixels.length > maxPixels)
+			return;
+		int[] old = tiles.put(key, pixels);
+		if (old != null)
+			pixelsNum -= old.length;
+		pixelsNum += pixels.length;
+		evict();
+	}
+
+	public synchronized void clear()
+	{
+		tiles.clear();
+		pixelsNum = 0;
+	}
+
+	private void evict()
+	{
+		Iterator<Map.Entry<Key, int[]>> iter = tiles.entrySet().iterator();
+		while (pixelsNum > maxPixels && iter.hasNext())
+		{
+			pixelsNum -= iter.next().getValue().length;
+			iter.remove();
+		}
+	}
+}
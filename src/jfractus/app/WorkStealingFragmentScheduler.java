@@ -0,0 +1,177 @@
+/**
+ * WorkStealingFragmentScheduler.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* work-stealing scheduler. every worker has own deque of fragments (distributed
+ * round-robin), takes them from the front and steals from back of other deques.
+ * fragment is rendered strip by strip, and when no whole fragments are left,
+ * idle worker steals half of remaining strips of fragment rendered by other worker.
+ * stolen range can be split again, so expensive fragments are shared by many workers */
+public class WorkStealingFragmentScheduler implements FragmentScheduler
+{
+	/* range of strips of fragment, guarded by itself */
+	private static class Split
+	{
+		private int fragment;
+		private int next;
+		private int end;
+
+		public Split(int fragment, int next, int end)
+		{
+			this.fragment = fragment;
+			this.next = next;
+			this.end = end;
+		}
+	}
+
+	private ArrayList<LinkedBlockingDeque<Integer>> queues;
+	private AtomicReferenceArray<Split> currentSplits;
+	private AtomicIntegerArray remainingStrips;
+	private AtomicInteger finishedFragments = new AtomicInteger();
+	private int stripsPerFragment;
+
+	public void start(int fragmentsNum, int stripsPerFragment, int workersNum)
+	{
+		this.stripsPerFragment = stripsPerFragment;
+		queues = new ArrayList<LinkedBlockingDeque<Integer>>(workersNum);
+		for (int i = 0; i < workersNum; i++)
+			queues.add(new LinkedBlockingDeque<Integer>());
+		for (int i = 0; i < fragmentsNum; i++)
+			queues.get(i % workersNum).offerLast(i);
+		currentSplits = new AtomicReferenceArray<Split>(workersNum);
+		remainingStrips = new AtomicIntegerArray(fragmentsNum);
+		for (int i = 0; i < fragmentsNum; i++)
+			remainingStrips.set(i, stripsPerFragment);
+		finishedFragments.set(0);
+	}
+
+	private Integer stealFragment(int worker)
+	{
+		int workersNum = queues.size();
+		/* victim with largest number of fragments */
+		int victim = -1;
+		int maxSize = 0;
+		for (int i = 0; i < workersNum; i++)
+		{
+			int size = queues.get(i).size();
+			if (i != worker && size > maxSize)
+			{
+				victim = i;
+				maxSize = size;
+			}
+		}
+		if (victim < 0)
+			return null;
+		Integer fragment = queues.get(victim).pollLast();
+		if (fragment != null)
+			return fragment;
+		/* victim's queue drained meanwhile, try any other */
+		for (int i = 0; i < workersNum; i++)
+			if (i != worker && (fragment = queues.get(i).pollLast()) != null)
+				return fragment;
+		return null;
+	}
+
+	private Split stealSplit(int worker)
+	{
+		while (true)
+		{
+			/* split with largest number of remaining strips */
+			Split victim = null;
+			int maxRemaining = 1;
+			for (int i = 0; i < currentSplits.length(); i++)
+			{
+				Split split = currentSplits.get(i);
+				if (i == worker || split == null)
+					continue;
+				int remaining;
+				synchronized(split)
+				{ remaining = split.end - split.next; }
+				if (remaining > maxRemaining)
+				{
+					victim = split;
+					maxRemaining = remaining;
+				}
+			}
+			if (victim == null)
+				return null;
+			synchronized(victim)
+			{
+				int remaining = victim.end - victim.next;
+				if (remaining >= 2)
+				{
+					int middle = victim.next + (remaining+1)/2;
+					Split stolen = new Split(victim.fragment, middle, victim.end);
+					victim.end = middle;
+					return stolen;
+				}
+			}
+		}
+	}
+
+	public boolean nextWork(int worker, Work work)
+	{
+		Split split = currentSplits.get(worker);
+		if (split != null)
+		{
+			synchronized(split)
+			{
+				if (split.next < split.end)
+				{
+					work.fragment = split.fragment;
+					work.firstStrip = split.next++;
+					work.lastStrip = split.next;
+					return true;
+				}
+			}
+		}
+
+		Integer fragment = queues.get(worker).pollFirst();
+		if (fragment == null)
+			fragment = stealFragment(worker);
+		if (fragment != null)
+			split = new Split(fragment, 0, stripsPerFragment);
+		else
+		{
+			split = stealSplit(worker);
+			if (split == null)
+			{
+				currentSplits.set(worker, null);
+				return false;
+			}
+		}
+
+		work.fragment = split.fragment;
+		work.firstStrip = split.next++;
+		work.lastStrip = split.next;
+		currentSplits.set(worker, split);
+		return true;
+	}
+
+	public boolean finishWork(int worker, Work work)
+	{
+		int left = remainingStrips.addAndGet(work.fragment,
+				work.firstStrip - work.lastStrip);
+		if (left == 0)
+		{
+			finishedFragments.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	public int getFinishedFragmentsNumber()
+	{
+		return finishedFragments.get();
+	}
+}
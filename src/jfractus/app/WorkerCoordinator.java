@@ -0,0 +1,200 @@
+/**
+ * WorkerCoordinator.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/* runs worker processes (JVMs) which render frames of queue. every worker has own
+ * heap, so garbage collection of one worker does not stop others. chunks of failed
+ * worker are released at once and worker is started again. other workers
+ * (at other machines) can use same queue */
+public class WorkerCoordinator
+{
+	/* restarts of failed workers (for every worker) */
+	private static final int MAX_RESTARTS = 3;
+	private static final long POLL_INTERVAL = 500L;
+
+	private FrameQueue queue;
+	private List<String> workerCommand;
+	private int workersNum;
+
+	private Process[] processes;
+	private String[] workerIds;
+	private int startsNum;
+
+	/* workerCommand - command which runs worker (without identifier of worker) */
+	public WorkerCoordinator(FrameQueue queue, List<String> workerCommand, int workersNum)
+	{
+		this.queue = queue;
+		this.workerCommand = workerCommand;
+		this.workersNum = workersNum;
+	}
+
+	/* command of JVM which runs Main with arguments (with options of this JVM) */
+	public static List<String> createJavaCommand(String[] args)
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java");
+		for (String arg: ManagementFactory.getRuntimeMXBean().getInputArguments())
+			if (!arg.startsWith("-D" + FrameWorker.WORKER_ID_PROPERTY + "=") &&
+					!arg.startsWith("-agentlib") && !arg.startsWith("-Xrunjdwp"))
+				command.add(arg);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Main.class.getName());
+		command.addAll(Arrays.asList(args));
+		return command;
+	}
+
+	/* removes option with value (in all forms of GNU syntax) from arguments */
+	public static String[] removeOption(String[] args, String shortName, String longName,
+			boolean hasValue)
+	{
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if (arg.equals("-" + shortName) || arg.equals("--" + longName))
+			{
+				if (hasValue)
+					i++;
+			}
+			else if (!(hasValue && (arg.startsWith("--" + longName + "=") ||
+					(arg.startsWith("-" + shortName) && !arg.startsWith("--")))))
+				result.add(arg);
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private void startWorker(int index) throws IOException
+	{
+		workerIds[index] = ManagementFactory.getRuntimeMXBean().getName() +
+				"-worker" + index + "-" + startsNum;
+		startsNum++;
+		List<String> command = new ArrayList<String>();
+		command.add(workerCommand.get(0));
+		command.add("-D" + FrameWorker.WORKER_ID_PROPERTY + "=" + workerIds[index]);
+		command.addAll(workerCommand.subList(1, workerCommand.size()));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		final Process process = builder.start();
+		processes[index] = process;
+		process.getOutputStream().close();
+
+		/* output of worker is printed */
+		Thread outputThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				byte[] buffer = new byte[4096];
+				InputStream input = process.getInputStream();
+				try
+				{
+					int length;
+					while ((length = input.read(buffer)) > 0)
+					{
+						System.out.write(buffer, 0, length);
+						System.out.flush();
+					}
+				}
+				catch(IOException e)
+				{ }
+			}
+		}, "WorkerOutput-" + index);
+		outputThread.setDaemon(true);
+		outputThread.start();
+	}
+
+	/* returns exit value, or -1 if process is running */
+	private static int getExitValue(Process process)
+	{
+		try
+		{
+			int exitValue = process.exitValue();
+			return (exitValue >= 0) ? exitValue : 1;
+		}
+		catch(IllegalThreadStateException e)
+		{ return -1; }
+	}
+
+	private void destroyWorkers()
+	{
+		for (Process process: processes)
+			if (process != null)
+				process.destroy();
+	}
+
+	/* runs workers until all frames are written */
+	public void run() throws IOException
+	{
+		processes = new Process[workersNum];
+		workerIds = new String[workersNum];
+		startsNum = 0;
+
+		/* workers are killed with coordinator */
+		Thread shutdownHook = new Thread()
+		{
+			public void run()
+			{
+				destroyWorkers();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		try
+		{
+			for (int i = 0; i < workersNum; i++)
+				startWorker(i);
+
+			boolean running = true;
+			while (running)
+			{
+				try
+				{ Thread.sleep(POLL_INTERVAL); }
+				catch(InterruptedException e)
+				{ throw new InterruptedIOException(); }
+
+				running = false;
+				for (int i = 0; i < workersNum; i++)
+				{
+					if (processes[i] == null)
+						continue;
+					int exitValue = getExitValue(processes[i]);
+					if (exitValue < 0)
+					{
+						running = true;
+						continue;
+					}
+					processes[i] = null;
+					if (exitValue == 0)
+						continue;
+					/* frames of failed worker are leased again */
+					queue.releaseLeases(workerIds[i]);
+					if (!queue.isFinished() && startsNum < workersNum*(MAX_RESTARTS+1))
+					{
+						startWorker(i);
+						running = true;
+					}
+				}
+			}
+		}
+		finally
+		{
+			destroyWorkers();
+			try
+			{ Runtime.getRuntime().removeShutdownHook(shutdownHook); }
+			catch(IllegalStateException e)
+			{ }
+		}
+
+		if (!queue.isFinished())
+			throw new IOException("Workers failed, not all frames are written");
+	}
+}
@@ -14,7 +14,12 @@ import org.junit.runners.Suite.*;
 @SuiteClasses({FractalFrameTest.class, FractalKeyFrameTest.class,
 	FractalAnimationTest.class, FractalDocumentTest.class, RGBColorTest.class,
 	GradientTest.class, GradientLocatorTest.class, FunctionDOMHandlerTest.class,
-	CopyFunctionTest.class})
+	CopyFunctionTest.class, RenderWorkerPoolTest.class,
+	FragmentSchedulerTest.class, SampleAccumulatorTest.class,
+	TileCacheTest.class, DiskTileCacheTest.class,
+	GaussianBlurTest.class, FilterTaskQueueTest.class, PNGBandWriterTest.class,
+	PixelRasterTest.class, FramePipelineTest.class, FractalTimelineTest.class,
+	FrameQueueTest.class, FractalRendererTest.class})
 public class ApplicationTestSuite
 {
 }
@@ -0,0 +1,122 @@
+/**
+ * DiskTileCacheTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jfractus.app.DiskTileCache;
+import jfractus.app.TileCache;
+
+public class DiskTileCacheTest
+{
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException
+	{
+		directory = File.createTempFile("tiles", "");
+		directory.delete();
+		directory.mkdir();
+	}
+	
+	@After
+	public void removeDirectory()
+	{
+		for (File file: directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+	
+	private static int[] createTile(int seed)
+	{
+		int[] pixels = new int[16*16];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xff000000 | (int)((i*seed*2654435761L) & 0xffffffL);
+		return pixels;
+	}
+	
+	@Test
+	public void testReadWrite() throws Exception
+	{
+		DiskTileCache cache = new DiskTileCache(directory, 1<<20);
+		TileCache.Key key = new TileCache.Key(0x123456789abcdefL, 16, 16);
+		int[] pixels = createTile(7);
+		assertNull(cache.read(key));
+		cache.write(key, pixels);
+		cache.flush();
+		assertArrayEquals(pixels, new DiskTileCache(directory, 1<<20).read(key));
+		assertNull(cache.read(new TileCache.Key(0x123456789abcdefL, 8, 32)));
+		
+		/* damaged file is removed */
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		file.setLength(file.length()/2);
+		file.close();
+		assertNull(cache.read(key));
+		assertEquals(0, directory.listFiles().length);
+	}
+	
+	@Test
+	public void testFullKey() throws Exception
+	{
+		DiskTileCache cache = new DiskTileCache(directory, 1<<20);
+		TileCache.Key key = new TileCache.Key(0x42L, 16, 16, "formula;1", "2;3");
+		int[] pixels = createTile(3);
+		cache.write(key, pixels);
+		cache.write(new TileCache.Key(0x43L, 16, 16, "formula;1", "2;4"), createTile(4));
+		cache.close();
+		/* state is stored once for both tiles */
+		assertEquals(3, directory.listFiles().length);
+		
+		cache = new DiskTileCache(directory, 1<<20);
+		assertArrayEquals(pixels, cache.read(
+				new TileCache.Key(0x42L, 16, 16, "formula;1", "2;3")));
+		/* other key with same fingerprint (same file name) */
+		assertNull(cache.read(new TileCache.Key(0x42L, 16, 16, "formula;2", "2;3")));
+		assertNull(cache.read(new TileCache.Key(0x42L, 16, 16, "formula;1", "2;4")));
+		assertNull(cache.read(new TileCache.Key(0x42L, 16, 16)));
+		assertEquals(3, directory.listFiles().length);
+		assertArrayEquals(pixels, cache.read(key));
+	}
+	
+	@Test
+	public void testEviction() throws Exception
+	{
+		DiskTileCache cache = new DiskTileCache(directory, 1<<20);
+		TileCache.Key[] keys = new TileCache.Key[8];
+		for (int i = 0; i < keys.length; i++)
+		{
+			keys[i] = new TileCache.Key(i, 16, 16);
+			cache.write(keys[i], createTile(i+1));
+		}
+		cache.flush();
+		long size = 0;
+		for (File file: directory.listFiles())
+			size += file.length();
+		
+		/* first tile is used recently */
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < keys.length; i++)
+			new File(directory, String.format("%016x-16x16.tile", i)).setLastModified(
+					time - 100000 + i*1000);
+		assertNotNull(cache.read(keys[0]));
+		
+		cache = new DiskTileCache(directory, size);
+		cache.write(new TileCache.Key(100, 16, 16), createTile(100));
+		cache.flush();
+		assertTrue(directory.listFiles().length < keys.length);
+		assertNotNull(cache.read(keys[0]));
+		assertNull(cache.read(keys[1]));
+	}
+}
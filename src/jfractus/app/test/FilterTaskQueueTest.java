@@ -0,0 +1,55 @@
+/**
+ * FilterTaskQueueTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import jfractus.app.FilterTaskQueue;
+
+public class FilterTaskQueueTest
+{
+	@Test
+	public void testDependencies()
+	{
+		/* 3x2 grid, neighbours are adjacent columns and rows */
+		FilterTaskQueue queue = new FilterTaskQueue();
+		queue.start(new int[] { 0, 0, 1 }, new int[] { 1, 2, 2 },
+				new int[] { 0, 0 }, new int[] { 1, 1 });
+		AtomicBoolean cancel = new AtomicBoolean();
+		assertEquals(6, queue.getFragmentsNumber());
+		
+		queue.fragmentRendered(0);
+		queue.fragmentRendered(1);
+		queue.fragmentRendered(3);
+		assertEquals(-1, queue.nextTask(false, cancel));
+		queue.fragmentRendered(4);
+		/* fragments 0 and 3 need columns 0 and 1 */
+		int first = queue.nextTask(false, cancel);
+		int second = queue.nextTask(false, cancel);
+		assertEquals(3, first + second);
+		assertTrue(first == 0 || first == 3);
+		assertEquals(-1, queue.nextTask(false, cancel));
+		
+		queue.fragmentRendered(2);
+		queue.fragmentRendered(5);
+		int tasksSum = 0;
+		for (int i = 0; i < 4; i++)
+			tasksSum += queue.nextTask(true, cancel);
+		assertEquals(1+2+4+5, tasksSum);
+		/* all tasks are taken */
+		assertEquals(-1, queue.nextTask(true, cancel));
+		
+		for (int i = 0; i < 5; i++)
+			assertFalse(queue.taskFinished(i));
+		assertTrue(queue.taskFinished(5));
+		assertEquals(6, queue.getFilteredQueue().size());
+	}
+}
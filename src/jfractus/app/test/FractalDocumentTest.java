@@ -27,8 +27,10 @@ import jfractus.app.FractalAnimation;
 import jfractus.math.Matrix3D;
 import jfractus.math.Vector3D;
 
+import jfractus.api.OutputFilter;
 import jfractus.dom.DOMNodeException;
 import jfractus.dom.DOMDocumentException;
+import jfractus.functions.filters.*;
 import jfractus.functions.fractals.*;
 import jfractus.functions.planes.*;
 
@@ -88,6 +90,11 @@ public class FractalDocumentTest
 		fractalDocument.setColorScale(1.6f);
 		/* gradient name */
 		fractalDocument.setGradientLocator("Gray1.grad");
+		/* chain of filters */
+		GaussianBlur blur = new GaussianBlur();
+		blur.radius = 1.7;
+		blur.boxApproximation = true;
+		fractalDocument.setOutputFilters(new OutputFilter[] { blur, new Emboss() });
 		/* fractal frame */
 		FractalAnimation anim = new FractalAnimation(30.0f);
 		anim.addKeyFrame(new FractalKeyFrame(0.69f, new Matrix3D(
@@ -119,11 +126,13 @@ public class FractalDocumentTest
 		if (!Utilities.equalsFunctions
 				(doc1.getPlaneTransform(), doc2.getPlaneTransform()))
 			return false;
-		if (((doc1.getOutputFilter() != null) != (doc2.getOutputFilter() != null)))
-			return false;
-		if (doc1.getOutputFilter() != null &&
-				Utilities.equalsFunctions(doc1.getOutputFilter(), doc2.getOutputFilter()))
+		OutputFilter[] filters1 = doc1.getOutputFilters();
+		OutputFilter[] filters2 = doc2.getOutputFilters();
+		if (filters1.length != filters2.length)
 			return false;
+		for (int i = 0; i < filters1.length; i++)
+			if (!Utilities.equalsFunctions(filters1[i], filters2[i]))
+				return false;
 		
 		if (doc1.getGradientLocator() != null)
 		{
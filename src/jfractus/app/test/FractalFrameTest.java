@@ -8,6 +8,8 @@ package jfractus.app.test;
 
 import static org.junit.Assert.*;
 
+import java.math.BigDecimal;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -126,5 +128,43 @@ public class FractalFrameTest
 		newFrame.setTransform(new Matrix3D(transformData2));
 		assertTrue(!fractalFrame.equals(newFrame));
 	}
-
+	
+	@Test
+	public void testCenter()
+	{
+		final double[] transformData = {
+			1.0e-30, 0.0, -0.75,
+			0.0, 1.0e-30, 0.1,
+			0.0, 0.0, 1.0
+		};
+		BigDecimal centerRe = new BigDecimal("-0.7500000000000000000000000000000123");
+		BigDecimal centerIm = new BigDecimal("0.1000000000000000000000000000000456");
+		
+		prepareDocument();
+		fractalFrame.setTransform(new Matrix3D(transformData));
+		fractalFrame.setCenter(centerRe, centerIm);
+		assertEquals(0, centerRe.compareTo(fractalFrame.getCenterRe()));
+		assertEquals(0, centerIm.compareTo(fractalFrame.getCenterIm()));
+		
+		Node elem = fractalFrame.createNode(document);
+		FractalFrame newFrame = new FractalFrame();
+		try
+		{ newFrame.getFromNode(elem); }
+		catch (DOMNodeException e)
+		{ fail("Exception was thrown"); }
+		assertEquals(fractalFrame, newFrame);
+		assertEquals(fractalFrame, fractalFrame.copy());
+		
+		/* translation smaller than ulp of center is kept */
+		Matrix3D translation = new Matrix3D();
+		translation.identity();
+		translation.translate(1.0e-31, -2.0e-31);
+		newFrame.applyTransform(translation);
+		BigDecimal error = newFrame.getCenterRe().subtract(centerRe).subtract(
+				new BigDecimal(1.0e-31)).abs();
+		assertTrue(error.compareTo(new BigDecimal(1.0e-45)) < 0);
+		error = newFrame.getCenterIm().subtract(centerIm).add(new BigDecimal(2.0e-31)).abs();
+		assertTrue(error.compareTo(new BigDecimal(1.0e-45)) < 0);
+		assertTrue(!fractalFrame.equals(newFrame));
+	}
 }
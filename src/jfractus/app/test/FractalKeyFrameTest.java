@@ -8,6 +8,8 @@ package jfractus.app.test;
 
 import static org.junit.Assert.*;
 
+import java.math.BigDecimal;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -67,6 +69,41 @@ public class FractalKeyFrameTest
 		assertEquals(fractalKeyFrame, newKeyFrame);
 	}
 
+	@Test
+	public void testCenterNode()
+	{
+		final double[] transformData = {
+			1.0e-20, 0.0, 0.0,
+			0.0, 1.0e-20, 0.0,
+			0.0, 0.0, 1.0
+		};
+		final BigDecimal centerRe =
+			new BigDecimal("-0.743643887037158704752191506114774");
+		final BigDecimal centerIm =
+			new BigDecimal("0.131825904205311970493132056385139");
+		
+		prepareDocument();
+		fractalKeyFrame.setInterval(0.44f);
+		fractalKeyFrame.setTransform(new Matrix3D(transformData));
+		fractalKeyFrame.setCenter(centerRe, centerIm);
+		Node elem = fractalKeyFrame.createNode(document);
+		
+		FractalKeyFrame newKeyFrame = new FractalKeyFrame();
+		try
+		{ newKeyFrame.getFromNode(elem); }
+		catch (DOMNodeException e)
+		{ fail("Exception was thrown"); }
+		
+		assertTrue(newKeyFrame.hasHighPrecisionCenter());
+		assertEquals(0, fractalKeyFrame.getCenterRe().compareTo(newKeyFrame.getCenterRe()));
+		assertEquals(0, fractalKeyFrame.getCenterIm().compareTo(newKeyFrame.getCenterIm()));
+		assertEquals(fractalKeyFrame, newKeyFrame);
+		
+		/* key frame without center */
+		newKeyFrame.setCenter(null, null);
+		assertTrue(!fractalKeyFrame.equals(newKeyFrame));
+	}
+
 	@Test
 	public void testGetFromNode()
 	{
@@ -0,0 +1,111 @@
+/**
+ * FractalRendererTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import jfractus.api.FractalFormula;
+import jfractus.app.AntialiasConfig;
+import jfractus.app.FractalDocument;
+import jfractus.app.FractalFrame;
+import jfractus.app.FractalRenderer;
+import jfractus.app.Gradient;
+import jfractus.app.RGBColor;
+import jfractus.functions.fractals.*;
+import jfractus.functions.outers.Smooth;
+import jfractus.functions.planes.NoTransform;
+import jfractus.math.Matrix3D;
+
+public class FractalRendererTest
+{
+	private static final int IMAGE_SIZE = 16;
+
+	private static FractalDocument createDocument(FractalFormula formula, double scale)
+	{
+		return createDocument(formula, scale, -0.75, 0.1);
+	}
+	
+	private static FractalDocument createDocument(FractalFormula formula, double scale,
+			double centerRe, double centerIm)
+	{
+		FractalDocument fractal = new FractalDocument();
+		formula.maxIterations = 64;
+		fractal.setFractalFormula(formula);
+		fractal.setInnerFunction(new jfractus.functions.inners.Default());
+		fractal.setOuterFunction(new jfractus.functions.outers.Default());
+		fractal.setPlaneTransform(new NoTransform());
+		fractal.setColorScale(1.0f);
+		fractal.setGradient(new Gradient(new RGBColor(0.0f, 0.0f, 0.0f),
+				new RGBColor(1.0f, 1.0f, 1.0f)));
+		Matrix3D transform = new Matrix3D();
+		transform.identity();
+		transform.m[0] = transform.m[4] = scale;
+		transform.m[2] = centerRe;
+		transform.m[5] = centerIm;
+		fractal.setFractalFrame(new FractalFrame(transform));
+		return fractal;
+	}
+
+	private static FractalRenderer render(FractalDocument fractal)
+	{
+		FractalRenderer renderer = new FractalRenderer(IMAGE_SIZE, IMAGE_SIZE,
+				new AntialiasConfig(AntialiasConfig.Method.NONE, 1, 1), fractal);
+		renderer.setThreadNumber(2);
+		renderer.renderFractalImage();
+		return renderer;
+	}
+
+	@Test
+	public void testPrecisionTiers()
+	{
+		/* relative spacing of samples is scale/16 */
+		FractalRenderer renderer = render(createDocument(new Julia(), 1.0e-8));
+		assertEquals(FractalRenderer.Precision.DOUBLE, renderer.getRenderPrecision());
+		assertFalse(renderer.isPrecisionExceeded());
+
+		renderer = render(createDocument(new Julia(), 1.0e-20));
+		assertEquals(FractalRenderer.Precision.DOUBLE_DOUBLE, renderer.getRenderPrecision());
+		assertFalse(renderer.isPrecisionExceeded());
+
+		/* double-double can not resolve samples, formula has not perturbation */
+		renderer = render(createDocument(new Julia(), 1.0e-30));
+		assertEquals(FractalRenderer.Precision.DOUBLE_DOUBLE, renderer.getRenderPrecision());
+		assertTrue(renderer.isPrecisionExceeded());
+
+		renderer = render(createDocument(new Mandelbrot(), 1.0e-30));
+		assertEquals(FractalRenderer.Precision.PERTURBATION, renderer.getRenderPrecision());
+		assertFalse(renderer.isPrecisionExceeded());
+
+		/* formula without higher precisions */
+		renderer = render(createDocument(new Newton(), 1.0e-16));
+		assertEquals(FractalRenderer.Precision.DOUBLE, renderer.getRenderPrecision());
+		assertTrue(renderer.isPrecisionExceeded());
+	}
+
+	@Test
+	public void testSolidGuessingWithSmooth()
+	{
+		/* region outside set: bands of same iterations number are solid */
+		FractalDocument fractal = createDocument(new Mandelbrot(), 0.5, -1.6, 0.6);
+		fractal.setOuterFunction(new Smooth());
+		FractalRenderer renderer = new FractalRenderer(64, 64,
+				new AntialiasConfig(AntialiasConfig.Method.NONE, 1, 1), fractal);
+		renderer.setThreadNumber(2);
+		BufferedImage image = renderer.renderFractalImage();
+		int[] expected = ((DataBufferInt)image.getRaster().getDataBuffer()).getData().clone();
+		
+		renderer.setSolidGuessing(true);
+		image = renderer.renderFractalImage();
+		int[] guessed = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		assertArrayEquals(expected, guessed);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * FractalTimelineTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import jfractus.app.*;
+import jfractus.math.Matrix3D;
+
+public class FractalTimelineTest
+{
+	private static Matrix3D createTransform(double scale, double x, double y)
+	{
+		Matrix3D transform = new Matrix3D();
+		transform.identity();
+		transform.m[0] = transform.m[4] = scale;
+		transform.m[2] = x;
+		transform.m[5] = y;
+		return transform;
+	}
+	
+	private static void assertTransformEquals(Matrix3D expected, Matrix3D actual)
+	{
+		for (int i = 0; i < 9; i++)
+			assertEquals(expected.m[i], actual.m[i], 1.0e-6);
+	}
+	
+	@Test
+	public void testFrames()
+	{
+		FractalAnimation animation = new FractalAnimation(25.0f);
+		animation.addKeyFrame(new FractalKeyFrame(0.4f, createTransform(3.0, -0.5, 0.0)));
+		animation.addKeyFrame(new FractalKeyFrame(0.2f, createTransform(1.0, -0.7, 0.2)));
+		animation.addKeyFrame(new FractalKeyFrame(0.0f, createTransform(0.5, -0.7, 0.3)));
+		FractalKeyFrame firstKeyFrame = new FractalKeyFrame(0.4f, createTransform(3.0, -0.5, 0.0));
+		
+		FractalTimeline timeline = animation.getTimeline();
+		assertEquals(15, timeline.getFramesNumber());
+		FractalFrameEvaluator evaluator = animation.getFrameEvaluator();
+		FractalFrame[] frames = new FractalFrame[timeline.getFramesNumber()];
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = evaluator.getFrame(1.0f/25.0f);
+		
+		/* frames in any order are same as evaluated sequentially */
+		for (int i = frames.length-1; i >= 0; i--)
+			assertTransformEquals(frames[i].getTransform(),
+					timeline.getFrameAt(i).getTransform());
+		assertEquals(animation.getKeyFrame(1).getTransform(),
+				timeline.getFrameAt(10).getTransform());
+		/* key frames are not changed by evaluation */
+		assertEquals(firstKeyFrame, animation.getKeyFrame(0));
+		
+		/* returned frame is not shared */
+		timeline.getFrameAt(5).getTransform().m[0] = 100.0;
+		assertTransformEquals(frames[5].getTransform(), timeline.getFrameAt(5).getTransform());
+	}
+	
+	@Test
+	public void testHolds()
+	{
+		FractalAnimation animation = new FractalAnimation(10.0f);
+		animation.addKeyFrame(new FractalKeyFrame(0.2f, createTransform(2.0, 0.0, 0.0)));
+		animation.addKeyFrame(new FractalKeyFrame(0.2f, createTransform(2.0, 0.0, 0.0)));
+		animation.addKeyFrame(new FractalKeyFrame(0.2f, createTransform(1.0, 0.5, 0.0)));
+		animation.addKeyFrame(new FractalKeyFrame(0.2f, createTransform(1.0, 0.5, 0.0)));
+		
+		FractalTimeline timeline = animation.getTimeline();
+		assertEquals(8, timeline.getFramesNumber());
+		int[] sourceIndices = { 0, 0, 0, 3, 4, 4, 4, 4 };
+		for (int i = 0; i < sourceIndices.length; i++)
+		{
+			assertEquals(sourceIndices[i], timeline.getSourceFrameIndex(i));
+			assertEquals(timeline.getFrameAt(sourceIndices[i]), timeline.getFrameAt(i));
+		}
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testIndexOutOfRange()
+	{
+		FractalAnimation animation = new FractalAnimation(10.0f);
+		animation.addKeyFrame(new FractalKeyFrame(0.5f, createTransform(2.0, 0.0, 0.0)));
+		animation.getTimeline().getFrameAt(5);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * FragmentSchedulerTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import jfractus.app.FragmentScheduler;
+import jfractus.app.SequentialFragmentScheduler;
+import jfractus.app.WorkStealingFragmentScheduler;
+
+public class FragmentSchedulerTest
+{
+	private static final int FRAGMENTS_NUM = 37;
+	private static final int STRIPS_NUM = 8;
+
+	/* run scheduler in workers and check that every strip is given once */
+	private void checkScheduler(final FragmentScheduler scheduler, int workersNum)
+			throws Exception
+	{
+		final AtomicIntegerArray strips = new AtomicIntegerArray(FRAGMENTS_NUM*STRIPS_NUM);
+		final AtomicIntegerArray finished = new AtomicIntegerArray(FRAGMENTS_NUM);
+		scheduler.start(FRAGMENTS_NUM, STRIPS_NUM, workersNum);
+
+		Thread[] threads = new Thread[workersNum];
+		for (int i = 0; i < workersNum; i++)
+		{
+			final int worker = i;
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					FragmentScheduler.Work work = new FragmentScheduler.Work();
+					while (scheduler.nextWork(worker, work))
+					{
+						for (int s = work.firstStrip; s < work.lastStrip; s++)
+							strips.incrementAndGet(work.fragment*STRIPS_NUM + s);
+						Thread.yield();
+						if (scheduler.finishWork(worker, work))
+							finished.incrementAndGet(work.fragment);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t: threads)
+			t.join();
+
+		for (int i = 0; i < FRAGMENTS_NUM*STRIPS_NUM; i++)
+			assertEquals(1, strips.get(i));
+		for (int i = 0; i < FRAGMENTS_NUM; i++)
+			assertEquals(1, finished.get(i));
+		assertEquals(FRAGMENTS_NUM, scheduler.getFinishedFragmentsNumber());
+	}
+
+	@Test
+	public void testSequential() throws Exception
+	{
+		FragmentScheduler scheduler = new SequentialFragmentScheduler();
+		checkScheduler(scheduler, 1);
+		checkScheduler(scheduler, 4);
+	}
+
+	@Test
+	public void testWorkStealing() throws Exception
+	{
+		FragmentScheduler scheduler = new WorkStealingFragmentScheduler();
+		checkScheduler(scheduler, 1);
+		checkScheduler(scheduler, 3);
+		checkScheduler(scheduler, 16);
+		checkScheduler(scheduler, 64);
+	}
+
+	@Test
+	public void testStealSplits() throws Exception
+	{
+		/* one fragment, second worker must steal strips from first */
+		FragmentScheduler scheduler = new WorkStealingFragmentScheduler();
+		FragmentScheduler.Work work = new FragmentScheduler.Work();
+		scheduler.start(1, STRIPS_NUM, 2);
+		assertTrue(scheduler.nextWork(0, work));
+		assertEquals(0, work.firstStrip);
+		assertEquals(1, work.lastStrip);
+		assertTrue(scheduler.nextWork(1, work));
+		assertEquals(0, work.fragment);
+		assertEquals(5, work.firstStrip);
+		assertEquals(6, work.lastStrip);
+	}
+}
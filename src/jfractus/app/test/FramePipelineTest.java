@@ -0,0 +1,94 @@
+/**
+ * FramePipelineTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import jfractus.app.FramePipeline;
+
+public class FramePipelineTest
+{
+	private static BufferedImage createFrame(int index)
+	{
+		BufferedImage image = new BufferedImage(23, 17, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++)
+				image.setRGB(x, y, ((x*11 + index)&0xff)<<16 | ((y*13)&0xff)<<8 | index*7);
+		return image;
+	}
+	
+	private static File createTempDirectory() throws IOException
+	{
+		File dir = File.createTempFile("frames", "");
+		dir.delete();
+		assertTrue(dir.mkdir());
+		return dir;
+	}
+	
+	@Test
+	public void testWriteFrames() throws IOException
+	{
+		int framesNum = 9;
+		File dir = createTempDirectory();
+		try
+		{
+			FramePipeline pipeline = new FramePipeline("png", null, null, 2);
+			for (int i = 0; i < framesNum; i++)
+				pipeline.writeFrame(new File(dir, "frame" + i + ".png"), createFrame(i));
+			pipeline.finish();
+			assertEquals(framesNum, pipeline.getWrittenFramesNumber());
+			
+			for (int i = 0; i < framesNum; i++)
+			{
+				BufferedImage expected = createFrame(i);
+				BufferedImage image = ImageIO.read(new File(dir, "frame" + i + ".png"));
+				for (int y = 0; y < expected.getHeight(); y++)
+					for (int x = 0; x < expected.getWidth(); x++)
+						assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+		finally
+		{
+			for (File file: dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+	}
+	
+	@Test
+	public void testError()
+	{
+		/* directory does not exist */
+		File dir = new File(System.getProperty("java.io.tmpdir"), "nonexistent-frames");
+		FramePipeline pipeline = new FramePipeline("png", null, null, 1);
+		try
+		{
+			for (int i = 0; i < 20; i++)
+				pipeline.writeFrame(new File(dir, "frame" + i + ".png"), createFrame(i));
+			pipeline.finish();
+			fail("Error is not thrown");
+		}
+		catch(IOException e)
+		{ }
+		finally
+		{ pipeline.abort(); }
+		assertEquals(0, pipeline.getWrittenFramesNumber());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsupportedFormat()
+	{
+		new FramePipeline("xyz", null, null, 1);
+	}
+}
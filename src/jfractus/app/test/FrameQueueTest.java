@@ -0,0 +1,118 @@
+/**
+ * FrameQueueTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jfractus.app.FrameQueue;
+
+public class FrameQueueTest
+{
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException
+	{
+		directory = File.createTempFile("queue", "");
+		directory.delete();
+	}
+	
+	@After
+	public void deleteDirectory()
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File file: files)
+				file.delete();
+		directory.delete();
+	}
+	
+	@Test
+	public void testLeases() throws IOException
+	{
+		FrameQueue queue = FrameQueue.create(directory, 0, 9, 3);
+		FrameQueue.Lease lease1 = queue.acquire("worker1");
+		FrameQueue.Lease lease2 = queue.acquire("worker2");
+		assertEquals(0, lease1.getFirstFrame());
+		assertEquals(2, lease1.getLastFrame());
+		assertEquals(3, lease2.getFirstFrame());
+		assertEquals(5, lease2.getLastFrame());
+		
+		/* other process sees same queue */
+		FrameQueue queue2 = new FrameQueue(directory);
+		FrameQueue.Lease lease3 = queue2.acquire("worker3");
+		assertEquals(6, lease3.getFirstFrame());
+		FrameQueue.Lease lease4 = queue2.acquire("worker3");
+		assertEquals(9, lease4.getFirstFrame());
+		assertEquals(9, lease4.getLastFrame());
+		assertNull(queue.acquire("worker1"));
+		
+		/* released chunk is leased again */
+		queue.release(lease2);
+		FrameQueue.Lease lease5 = queue.acquire("worker1");
+		assertEquals(3, lease5.getFirstFrame());
+		assertFalse(queue.renew(lease2));
+		assertTrue(queue.renew(lease5));
+		
+		/* chunks of failed worker */
+		assertEquals(2, queue.releaseLeases("worker3"));
+		FrameQueue.Lease lease6 = queue.acquire("worker2");
+		assertEquals(6, lease6.getFirstFrame());
+		FrameQueue.Lease lease7 = queue.acquire("worker1");
+		assertEquals(9, lease7.getFirstFrame());
+		
+		assertTrue(queue.complete(lease1));
+		assertTrue(queue.complete(lease5));
+		assertTrue(queue.complete(lease6));
+		assertFalse(queue.isFinished());
+		assertTrue(queue.complete(lease7));
+		assertTrue(queue2.isFinished());
+		assertNull(queue2.acquire("worker3"));
+	}
+	
+	@Test
+	public void testStaleLease() throws IOException
+	{
+		FrameQueue queue = FrameQueue.create(directory, 10, 13, 4);
+		FrameQueue.Lease lease = queue.acquire("worker1");
+		assertEquals(10, lease.getFirstFrame());
+		assertEquals(13, lease.getLastFrame());
+		
+		FrameQueue queue2 = new FrameQueue(directory, 1000L);
+		assertNull(queue2.acquire("worker2"));
+		/* lease is not renewed */
+		File leaseFile = new File(directory, "00000010-00000013.lease");
+		assertTrue(leaseFile.setLastModified(System.currentTimeMillis() - 5000L));
+		FrameQueue.Lease lease2 = queue2.acquire("worker2");
+		assertNotNull(lease2);
+		assertFalse(queue.isOwner(lease));
+		
+		/* only owner of lease marks chunk */
+		assertFalse(queue.complete(lease));
+		assertFalse(queue.isFinished());
+		assertTrue(queue2.isOwner(lease2));
+		assertTrue(queue2.complete(lease2));
+		assertTrue(queue.isFinished());
+		
+		queue.delete();
+		assertFalse(directory.exists());
+	}
+	
+	@Test
+	public void testChunkFrames()
+	{
+		assertEquals(1, FrameQueue.chooseChunkFrames(3, 4));
+		assertEquals(5, FrameQueue.chooseChunkFrames(40, 2));
+		assertEquals(32, FrameQueue.chooseChunkFrames(100000, 2));
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * GaussianBlurTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import jfractus.functions.filters.GaussianBlur;
+
+public class GaussianBlurTest
+{
+	private static final int WIDTH = 67;
+	private static final int HEIGHT = 41;
+	
+	private static int[] createImage()
+	{
+		Random random = new Random(17);
+		int[] data = new int[WIDTH*HEIGHT];
+		for (int i = 0; i < data.length; i++)
+			data[i] = random.nextInt(0x1000000);
+		return data;
+	}
+	
+	private static GaussianBlur createFilter(double radius, boolean boxApproximation)
+	{
+		GaussianBlur filter = new GaussianBlur();
+		filter.radius = radius;
+		filter.boxApproximation = boxApproximation;
+		filter.initialize();
+		return filter;
+	}
+	
+	/* 2D kernel computed directly */
+	private static int blurPixel(int[] data, double radius, int px, int py, int shift)
+	{
+		int kernelSize = (int)Math.ceil(radius*6.0) | 1;
+		int kernelShift = kernelSize>>1;
+		double expFactor = -0.5 / (radius*radius);
+		double sum = 0.0;
+		double weightsSum = 0.0;
+		for (int fy = -kernelShift; fy <= kernelShift; fy++)
+			for (int fx = -kernelShift; fx <= kernelShift; fx++)
+			{
+				double x = (double)fx / (double)kernelSize;
+				double y = (double)fy / (double)kernelSize;
+				double weight = Math.exp(expFactor*(x*x+y*y));
+				int gx = Math.min(Math.max(px+fx, 0), WIDTH-1);
+				int gy = Math.min(Math.max(py+fy, 0), HEIGHT-1);
+				weightsSum += weight;
+				sum += weight*((data[gy*WIDTH + gx]>>shift)&0xff);
+			}
+		return (int)(sum/weightsSum + 0.5);
+	}
+	
+	@Test
+	public void testBlur()
+	{
+		int[] data = createImage();
+		for (double radius: new double[] { 0.8, 2.3 })
+		{
+			GaussianBlur filter = createFilter(radius, false);
+			int[] outData = new int[data.length];
+			filter.compute(WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, data, outData);
+			for (int y = 0; y < HEIGHT; y++)
+				for (int x = 0; x < WIDTH; x++)
+					for (int shift = 0; shift < 24; shift += 8)
+						assertEquals(blurPixel(data, radius, x, y, shift),
+								(outData[y*WIDTH + x]>>shift)&0xff, 1);
+		}
+	}
+	
+	@Test
+	public void testBlocks()
+	{
+		int[] data = createImage();
+		for (boolean box: new boolean[] { false, true })
+		{
+			GaussianBlur filter = createFilter(3.0, box);
+			int[] outData = new int[data.length];
+			filter.compute(WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, data, outData);
+			int[] blocksData = new int[data.length];
+			for (int y = 0; y < HEIGHT; y += 16)
+				for (int x = 0; x < WIDTH; x += 16)
+					filter.compute(WIDTH, HEIGHT, x, y, Math.min(16, WIDTH-x),
+							Math.min(16, HEIGHT-y), data, blocksData);
+			assertArrayEquals(outData, blocksData);
+		}
+	}
+	
+	@Test
+	public void testBoxApproximation()
+	{
+		int[] data = new int[WIDTH*HEIGHT];
+		Arrays.fill(data, 0x5a81c3);
+		GaussianBlur filter = createFilter(5.0, true);
+		assertTrue(filter.getHaloRadius() > 0);
+		int[] outData = new int[data.length];
+		filter.compute(WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, data, outData);
+		assertArrayEquals(data, outData);
+		
+		/* approximation is close to kernel for smooth images */
+		for (int y = 0; y < HEIGHT; y++)
+			for (int x = 0; x < WIDTH; x++)
+				data[y*WIDTH + x] = (x*3)<<16 | (y*5)<<8 | (x+y);
+		filter.compute(WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, data, outData);
+		int[] kernelData = new int[data.length];
+		createFilter(5.0, false).compute(WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, data, kernelData);
+		for (int i = 0; i < data.length; i++)
+			for (int shift = 0; shift < 24; shift += 8)
+				assertEquals((kernelData[i]>>shift)&0xff, (outData[i]>>shift)&0xff, 8);
+	}
+}
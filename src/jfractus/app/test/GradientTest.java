@@ -481,6 +481,37 @@ public class GradientTest
 					 new RGBColor(0.12f, 0.33f, 0.43f), destColor);
 	}
 
+	@Test
+	public void testLookupTable() throws OutOfGradientRangeException
+	{
+		final Gradient.Point[] points = {
+			new Gradient.Point(0.0f, new RGBColor(0.1f, 0.66f, 0.57f)),
+			new Gradient.Point(0.3f, new RGBColor(0.75f, 0.71f, 0.7f)),
+			new Gradient.Point(1.0f, new RGBColor(0.12f, 0.33f, 0.43f))
+		};
+		gradient.setPoints(points);
+		
+		Gradient.LookupTable table = gradient.getLookupTable(11);
+		assertEquals(11, table.size());
+		RGBColor destColor = new RGBColor();
+		gradient.evaluateColor(0.6f, destColor);
+		int index = table.getIndex(0.61f);
+		assertEquals(6, index);
+		assertEqualsRGBColor(destColor, new RGBColor(table.getRed(index),
+				table.getGreen(index), table.getBlue(index)));
+		assertEquals(0xff000000 | (122<<16) | (140<<8) | 149, table.getPacked(index));
+		assertEquals(0, table.getIndex(-0.5f));
+		assertEquals(10, table.getIndex(1.5f));
+		assertSame(table, gradient.getLookupTable(11));
+		
+		/* table is built again after changes */
+		gradient.setPoint(0.6f, new RGBColor(1.0f, 0.0f, 0.0f));
+		table = gradient.getLookupTable(11);
+		assertEquals(1.0f, table.getRed(6), 1.0e-5f);
+		gradient.getColor(1).blue = 0.25f;
+		assertEquals(0.25f, gradient.getLookupTable(11).getBlue(3), 1.0e-5f);
+	}
+
 	@Test
 	public void testEqualsObject()
 	{
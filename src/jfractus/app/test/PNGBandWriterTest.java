@@ -0,0 +1,85 @@
+/**
+ * PNGBandWriterTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import jfractus.app.PNGBandWriter;
+
+public class PNGBandWriterTest
+{
+	private static int[] createImage(int width, int height)
+	{
+		int[] pixels = new int[width*height];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+			{	/* gradients and noise (all filters of rows are used) */
+				int noise = (int)(((y*width + x)*2654435761L)>>>24) & 0x1f;
+				pixels[y*width + x] = 0xff000000 | (((x*3 + noise)&0xff)<<16) |
+						(((y*5)&0xff)<<8) | (((x+y)*7 + noise)&0xff);
+			}
+		return pixels;
+	}
+	
+	@Test
+	public void testWriteBands() throws IOException
+	{
+		int width = 67, height = 45;
+		int[] pixels = createImage(width, height);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PNGBandWriter writer = new PNGBandWriter(output, width, height);
+		/* bands of different heights, given with rows around them */
+		int[] bandHeights = { 1, 10, 16, 18 };
+		int startY = 0;
+		for (int bandHeight: bandHeights)
+		{
+			int[] band = new int[(bandHeight+2)*width];
+			for (int y = -1; y <= bandHeight; y++)
+				if (startY+y >= 0 && startY+y < height)
+					System.arraycopy(pixels, (startY+y)*width, band, (y+1)*width, width);
+			writer.writeBand(startY, bandHeight, band, width);
+			startY += bandHeight;
+		}
+		writer.finish();
+		
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				assertEquals(pixels[y*width + x], image.getRGB(x, y));
+	}
+	
+	@Test
+	public void testBandsOrder() throws IOException
+	{
+		PNGBandWriter writer = new PNGBandWriter(new ByteArrayOutputStream(), 8, 8);
+		int[] band = new int[8*4];
+		writer.writeBand(0, 4, band, 0);
+		try
+		{
+			writer.writeBand(0, 4, band, 0);
+			fail();
+		}
+		catch(IllegalArgumentException e)
+		{ }
+		try
+		{
+			writer.finish();
+			fail();
+		}
+		catch(IllegalStateException e)
+		{ }
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * PixelRasterTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import jfractus.api.PixelRaster;
+import jfractus.app.ArrayPixelRaster;
+import jfractus.app.BufferPixelRaster;
+import jfractus.app.PixelRasterImage;
+import jfractus.functions.filters.GaussianBlur;
+
+public class PixelRasterTest
+{
+	private static int[] createImage(int width, int height)
+	{
+		int[] pixels = new int[width*height];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = 0xff000000 | (int)((i*2654435761L) & 0xffffffL);
+		return pixels;
+	}
+	
+	/* rows cross boundaries of chunks */
+	private static void checkRaster(PixelRaster raster)
+	{
+		int width = raster.getWidth(), height = raster.getHeight();
+		int[] pixels = createImage(width, height);
+		raster.setRect(0, 0, width, height, pixels, 0);
+		int[] read = new int[width*height];
+		raster.getPixels(0, read, 0, read.length);
+		assertArrayEquals(pixels, read);
+		
+		int[] rect = new int[7*5];
+		raster.getRect(3, 2, 7, 5, rect, 0);
+		for (int y = 0; y < 5; y++)
+			for (int x = 0; x < 7; x++)
+				assertEquals(pixels[(y+2)*width + x+3], rect[y*7 + x]);
+	}
+	
+	@Test
+	public void testDirect()
+	{
+		PixelRaster raster = BufferPixelRaster.allocateDirect(37, 29, 100);
+		assertEquals(37*29, raster.getPixelsNumber());
+		checkRaster(raster);
+		raster.dispose();
+	}
+	
+	@Test
+	public void testMapped() throws IOException
+	{
+		File file = File.createTempFile("raster", ".tmp");
+		try
+		{
+			PixelRaster raster = BufferPixelRaster.map(file, 37, 29, 100);
+			checkRaster(raster);
+			raster.dispose();
+			assertEquals(37*29*4, file.length());
+			
+			/* contents are kept */
+			raster = BufferPixelRaster.map(file, 37, 29);
+			int[] pixels = new int[37*29];
+			raster.getPixels(0, pixels, 0, pixels.length);
+			assertArrayEquals(createImage(37, 29), pixels);
+			raster.dispose();
+		}
+		finally
+		{ file.delete(); }
+	}
+	
+	@Test
+	public void testFilterRaster()
+	{
+		int width = 45, height = 33;
+		int[] pixels = createImage(width, height);
+		GaussianBlur filter = new GaussianBlur();
+		filter.radius = 1.5;
+		filter.initialize();
+		int[] expected = new int[width*height];
+		filter.compute(width, height, 0, 0, width, height, pixels, expected);
+		
+		/* blocks computed from rasters are same as computed from whole image */
+		PixelRaster input = new ArrayPixelRaster(width, height, pixels);
+		PixelRaster output = BufferPixelRaster.allocateDirect(width, height, 64);
+		for (int y = 0; y < height; y += 10)
+			for (int x = 0; x < width; x += 16)
+				filter.compute(input, output, x, y, Math.min(16, width-x),
+						Math.min(10, height-y));
+		int[] result = new int[width*height];
+		output.getPixels(0, result, 0, result.length);
+		assertArrayEquals(expected, result);
+	}
+	
+	@Test
+	public void testLargeImage()
+	{
+		/* raster without storage, larger than array */
+		PixelRaster raster = new PixelRaster(50000, 50000)
+		{
+			public void getPixels(long index, int[] dest, int offset, int length)
+			{
+				for (int i = 0; i < length; i++)
+					dest[offset+i] = (int)((index+i) % 50000);
+			}
+			public void setPixels(long index, int[] src, int offset, int length)
+			{
+			}
+		};
+		PixelRasterImage image = new PixelRasterImage(raster);
+		try
+		{
+			image.getData();
+			fail("Whole image is copied to array");
+		}
+		catch(IllegalStateException e)
+		{ }
+		/* tiles are read */
+		java.awt.image.Raster tile = image.getTile(0, 2);
+		assertEquals(50000, tile.getWidth());
+		assertEquals(128, tile.getMinY());
+		assertEquals(7, tile.getSample(7, 130, 2));
+	}
+}
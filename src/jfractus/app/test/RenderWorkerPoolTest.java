@@ -0,0 +1,145 @@
+/**
+ * RenderWorkerPoolTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jfractus.app.RenderBuffers;
+import jfractus.app.RenderWorkerPool;
+
+public class RenderWorkerPoolTest
+{
+	private RenderWorkerPool pool;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		pool = new RenderWorkerPool(2);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		pool.shutdown();
+	}
+
+	@Test
+	public void testSubmit() throws Exception
+	{
+		final AtomicInteger counter = new AtomicInteger();
+		Runnable[] tasks = new Runnable[5];
+		for (int i = 0; i < tasks.length; i++)
+			tasks[i] = new Runnable()
+			{
+				public void run()
+				{
+					counter.incrementAndGet();
+				}
+			};
+		RenderWorkerPool.Job job = pool.submit(tasks);
+		job.await();
+		assertTrue(job.isDone());
+		assertEquals(5, counter.get());
+	}
+
+	@Test
+	public void testResize() throws Exception
+	{
+		assertEquals(2, pool.getSize());
+		pool.ensureSize(1);
+		assertEquals(2, pool.getSize());
+		pool.ensureSize(4);
+		assertEquals(4, pool.getSize());
+		pool.setSize(1);
+		assertEquals(1, pool.getSize());
+
+		/* remaining worker must still execute tasks */
+		final AtomicInteger counter = new AtomicInteger();
+		Runnable[] tasks = new Runnable[3];
+		for (int i = 0; i < tasks.length; i++)
+			tasks[i] = new Runnable()
+			{
+				public void run()
+				{
+					counter.incrementAndGet();
+				}
+			};
+		pool.submit(tasks).await();
+		assertEquals(3, counter.get());
+	}
+
+	@Test
+	public void testFailure() throws Exception
+	{
+		pool.setSize(1);
+		final AtomicInteger counter = new AtomicInteger();
+		Runnable[] tasks = new Runnable[3];
+		for (int i = 0; i < tasks.length; i++)
+		{
+			final boolean failing = (i == 1);
+			tasks[i] = new Runnable()
+			{
+				public void run()
+				{
+					counter.incrementAndGet();
+					if (failing)
+						throw new OutOfMemoryError("Test failure");
+				}
+			};
+		}
+		RenderWorkerPool.Job job = pool.submit(tasks);
+		try
+		{
+			job.awaitUninterruptibly();
+			fail("Failure of task is not thrown");
+		}
+		catch(OutOfMemoryError e)
+		{ assertEquals("Test failure", e.getMessage()); }
+		assertTrue(job.isDone());
+		assertNotNull(job.getFailure());
+		assertEquals(3, counter.get());
+
+		/* worker is not lost */
+		assertEquals(1, pool.getSize());
+		counter.set(0);
+		pool.submit(new Runnable[] { tasks[0] }).await();
+		assertEquals(1, counter.get());
+	}
+
+	@Test
+	public void testLocalBuffers() throws Exception
+	{
+		pool.setSize(1);
+		final RenderBuffers[] buffers = new RenderBuffers[2];
+		for (int i = 0; i < 2; i++)
+		{
+			final int index = i;
+			Runnable[] tasks = new Runnable[] { new Runnable()
+			{
+				public void run()
+				{
+					buffers[index] = RenderWorkerPool.getLocalBuffers();
+					buffers[index].ensureCapacity(256, false);
+				}
+			} };
+			pool.submit(tasks).await();
+		}
+		/* same worker, same buffers */
+		assertSame(buffers[0], buffers[1]);
+		assertEquals(256, buffers[1].getCapacity());
+		assertNull(buffers[1].inZData);
+		buffers[1].ensureCapacity(64, true);
+		assertEquals(256, buffers[1].getCapacity());
+		assertEquals(256, buffers[1].inZData.length);
+	}
+}
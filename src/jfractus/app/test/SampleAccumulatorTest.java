@@ -0,0 +1,54 @@
+/**
+ * SampleAccumulatorTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import jfractus.app.SampleAccumulator;
+
+public class SampleAccumulatorTest
+{
+	@Test
+	public void testSampleOffsets()
+	{
+		double[][] expected = { { 0.0, 0.0 }, { 0.5, 1.0/3.0 }, { 0.25, 2.0/3.0 },
+				{ 0.75, 1.0/9.0 }, { 0.125, 4.0/9.0 } };
+		double[] offset = new double[2];
+		for (int i = 0; i < expected.length; i++)
+		{
+			SampleAccumulator.getSampleOffset(i, offset);
+			assertEquals(expected[i][0], offset[0], 1e-12);
+			assertEquals(expected[i][1], offset[1], 1e-12);
+		}
+	}
+	
+	@Test
+	public void testAverage()
+	{
+		SampleAccumulator accumulator = new SampleAccumulator(2, 1);
+		BufferedImage image1 = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		BufferedImage image2 = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		image1.setRGB(0, 0, 0x0010ff00);
+		image1.setRGB(1, 0, 0x00808080);
+		image2.setRGB(0, 0, 0x001300ff);
+		image2.setRGB(1, 0, 0x00808080);
+		accumulator.addImage(image1);
+		accumulator.addImage(image2);
+		assertEquals(2, accumulator.getSamplesNumber());
+		BufferedImage average = accumulator.getImage();
+		/* averages are rounded */
+		assertEquals(0x128080, average.getRGB(0, 0) & 0xffffff);
+		assertEquals(0x808080, average.getRGB(1, 0) & 0xffffff);
+		
+		accumulator.clear();
+		assertEquals(0, accumulator.getSamplesNumber());
+	}
+}
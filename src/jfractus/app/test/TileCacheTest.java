@@ -0,0 +1,49 @@
+/**
+ * TileCacheTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.app.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import jfractus.app.TileCache;
+
+public class TileCacheTest
+{
+	@Test
+	public void testLeastRecentlyUsed()
+	{
+		/* space for 3 tiles of 4 pixels */
+		TileCache cache = new TileCache(48);
+		TileCache.Key key1 = new TileCache.Key(1, 2, 2);
+		TileCache.Key key2 = new TileCache.Key(2, 2, 2);
+		TileCache.Key key3 = new TileCache.Key(1, 4, 1);
+		TileCache.Key key4 = new TileCache.Key(4, 2, 2);
+		int[] tile1 = new int[4], tile2 = new int[4], tile3 = new int[4];
+		cache.put(key1, tile1);
+		cache.put(key2, tile2);
+		cache.put(key3, tile3);
+		assertEquals(3, cache.getTilesNumber());
+		assertEquals(48, cache.getSize());
+		
+		assertSame(tile1, cache.get(new TileCache.Key(1, 2, 2)));
+		cache.put(key4, new int[4]);
+		/* second tile is least recently used */
+		assertNull(cache.get(key2));
+		assertSame(tile1, cache.get(key1));
+		assertSame(tile3, cache.get(key3));
+		assertEquals(48, cache.getSize());
+		
+		/* too large tile is not cached */
+		cache.put(key2, new int[13]);
+		assertNull(cache.get(key2));
+		cache.setMaxSize(16);
+		assertEquals(1, cache.getTilesNumber());
+		cache.clear();
+		assertEquals(0, cache.getSize());
+	}
+}
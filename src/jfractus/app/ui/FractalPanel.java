@@ -309,7 +309,8 @@ public class FractalPanel extends JPanel
     		fractal.setFunction(type, null);
     	if (OutputFilter.class.isAssignableFrom(type))
     	{
-    		if (function != null)
+    		/* other filters of chain can be left */
+    		if (fractal.getOutputFilter() != null)
     			fractalViewer.doFilter();
     		else
     			fractalViewer.setRenderedImageAsBeforeFilteringImage();
@@ -401,12 +402,22 @@ public class FractalPanel extends JPanel
 			Resources.getString("RenderingProgress");
 		private final String filteringProgressText =
 			Resources.getString("FilteringProgress");
+		private final String finishedText =
+			Resources.getString("FinishedWithPrecision");
+		private final String precisionExceededText =
+			Resources.getString("FinishedPrecisionExceeded");
     	
         public void updateProgress(RenderProgressEvent e)
         {
         	if (e.hasDone())
         	{
         		progressBar.setValue(100);
+        		if (e.getPrecision() != null)
+        		{
+        			boolean exceeded = fractalViewer.getFractalRenderer().isPrecisionExceeded();
+        			progressBar.setString(String.format(exceeded ? precisionExceededText :
+        					finishedText, e.getPrecision()));
+        		}
         		return;
         	}
         	progressBar.setValue((int)(e.getProgress() + 0.5));
@@ -22,6 +22,9 @@ import jfractus.math.*;
 public class FractalViewer extends JComponent
 {
     private static final long serialVersionUID = -1029155701823518035L;
+    
+    /* tiles rendered by all viewers (64 MB) */
+    private static final TileCache tileCache = new TileCache(64L<<20);
 
     private FractalDocument fractal;
     private AntialiasConfig aaConfig;
@@ -39,6 +42,9 @@ public class FractalViewer extends JComponent
     private ArrayList<Integer> totalFragments; 
     private BitSet filteredFragments;
     private int currentRendererProcess;
+    /* images of stochastic antialiasing are not shown until they are averaged */
+    private RenderWorker refiningWorker;
+    private SampleAccumulator sampleAccumulator;
     
     private class InteractionStatus
     {
@@ -215,6 +221,16 @@ public class FractalViewer extends JComponent
     	this.fractal = fractal;
     	fractalRenderer = new FractalRenderer(imageWidth, imageHeight, aaConfig, fractal);
     	fractalRenderer.addRenderProgressListener(new RenderProgressEventListener());
+    	/* low resolution image is shown quickly and refined */
+    	fractalRenderer.setProgressive(true);
+    	/* after panning only newly exposed regions are rendered */
+    	fractalRenderer.setReusingPixels(true);
+    	/* after change of coloring only changed stages are computed */
+    	fractalRenderer.setStageCaching(true);
+    	/* returning to earlier view (or parameters) takes tiles from cache */
+    	fractalRenderer.setTileCache(tileCache);
+    	/* single precision at shallow zooms (viewer shows draft quickly) */
+    	fractalRenderer.setSinglePrecisionAllowed(true);
     	
     	setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
     	
@@ -481,20 +497,83 @@ public class FractalViewer extends JComponent
         			(FractusPreferencesFactory.prefs.getThreadsNumber());
         	fractalRenderer.setImageSize(imageWidth, imageHeight);
         	fractalRenderer.setAntialiasConfig(aaConfig);
+        	updateDiskTileCache();
 
         	if (!onlyFilter)
-        		beforeFiltering = fractalRenderer.renderFractalImage();
-        	
-        	if (fractal.getOutputFilter() != null && !isCancelled())
+        	{
+        		fractalRenderer.setSampleOffset(0.0, 0.0);
+        		if (fractal.getOutputFilter() != null)
+        		{	/* fragments are filtered during rendering */
+        			BufferedImage filtered = new BufferedImage(imageWidth, imageHeight,
+        					BufferedImage.TYPE_INT_RGB);
+        			filteredFragments = new BitSet();
+        			beforeFiltering = fractalRenderer.renderFractalImage(
+        					fractal.getFractalFrame(), filtered);
+        			finalImage = filtered;
+        		}
+        		else
+        			finalImage = beforeFiltering = fractalRenderer.renderFractalImage();
+        	}
+        	else if (fractal.getOutputFilter() != null && !isCancelled())
         	{
         		filteredFragments = new BitSet(fractalRenderer.getFragmentsNumber());
         		finalImage = fractalRenderer.filterImage(beforeFiltering);
         	}
         	else
         		finalImage = beforeFiltering;
+        	
+        	if (!onlyFilter && !isCancelled() &&
+        			aaConfig.getMethod() == AntialiasConfig.Method.STOCHASTIC)
+        		refineImage();
 	        return null;
         }
         
+        /* stochastic antialiasing: images with next sample offsets are averaged
+         * and shown, until all samples are computed or time limit is reached */
+        private void refineImage()
+        {
+        	int samplesNum = aaConfig.getSamplingWidth()*aaConfig.getSamplingHeight();
+        	long endTime = System.nanoTime() + (long)FractusPreferencesFactory.prefs.
+        			getRefiningTimeLimit()*1000000000L;
+        	if (sampleAccumulator == null || sampleAccumulator.getWidth() != imageWidth ||
+        			sampleAccumulator.getHeight() != imageHeight)
+        		sampleAccumulator = new SampleAccumulator(imageWidth, imageHeight);
+        	sampleAccumulator.clear();
+        	sampleAccumulator.addImage(beforeFiltering);
+        	
+        	lock.lock();
+        	refiningWorker = this;
+        	currentImage = null;
+        	lock.unlock();
+        	repaint();
+        	
+        	double[] offset = new double[2];
+        	for (int i = 1; i < samplesNum && System.nanoTime() < endTime; i++)
+        	{
+        		SampleAccumulator.getSampleOffset(i, offset);
+        		fractalRenderer.setSampleOffset(offset[0], offset[1]);
+        		BufferedImage image = fractalRenderer.renderFractalImage();
+        		if (isCancelled())
+        			break;
+        		sampleAccumulator.addImage(image);
+        		image = sampleAccumulator.getImage();
+        		BufferedImage filtered = image;
+        		if (fractal.getOutputFilter() != null)
+        			filtered = fractalRenderer.filterImage(image);
+        		if (isCancelled())
+        			break;
+        		beforeFiltering = image;
+        		finalImage = filtered;
+        		repaint();
+        	}
+        	fractalRenderer.setSampleOffset(0.0, 0.0);
+        	
+        	lock.lock();
+        	if (refiningWorker == this)
+        		refiningWorker = null;
+        	lock.unlock();
+        }
+        
         protected void done()
         {
         	lock.lock();
@@ -507,10 +586,40 @@ public class FractalViewer extends JComponent
         }
     }
     
+    /* disk tile cache is set from preferences */
+    private static void updateDiskTileCache()
+    {
+    	synchronized(tileCache)
+    	{
+    		String directory = FractusPreferencesFactory.prefs.getTileCacheDirectory();
+    		long maxSize = (long)FractusPreferencesFactory.prefs.getTileCacheMaxSize()<<20;
+    		DiskTileCache diskCache = tileCache.getDiskCache();
+    		if (directory.length() == 0)
+    			tileCache.setDiskCache(null);
+    		else if (diskCache == null ||
+    				!diskCache.getDirectory().getPath().equals(directory) ||
+    				diskCache.getMaxSize() != maxSize)
+    			tileCache.setDiskCache(FractusPreferencesFactory.prefs.createDiskTileCache());
+    		else
+    			return;
+    		/* old cache writes waiting tiles */
+    		if (diskCache != null)
+    		{
+    			try
+    			{ diskCache.close(); }
+    			catch(InterruptedException e)
+    			{ Thread.currentThread().interrupt(); }
+    		}
+    	}
+    }
+    
     public void doRender()
     {
     	if (currentRenderWorker != null)
     		cancelRender();
+    	lock.lock();
+    	refiningWorker = null;
+    	lock.unlock();
     	totalFragments.clear();
     	finalImage = null;
     	repaint();
@@ -533,6 +642,9 @@ public class FractalViewer extends JComponent
     	
     	if (currentRenderWorker != null)
     		cancelRender();
+    	lock.lock();
+    	refiningWorker = null;
+    	lock.unlock();
     	totalFragments.clear();
     	finalImage = null;
     	renderingFinished.set(false); 
@@ -659,7 +771,7 @@ public class FractalViewer extends JComponent
     					transformType == TransformType.NORMAL_ZOOMOUT)
     					transform.inverse();
     				
-    				frame.setTransform(transform.onlyTransform(prevTransform));
+    				frame.applyTransform(transform);
     			}
     			else if (transformType == TransformType.ROTATE)
     			{
@@ -682,7 +794,7 @@ public class FractalViewer extends JComponent
     				
     				transform.onlyTransform(rotation);
     				
-    				frame.setTransform(transform.onlyTransform(prevTransform));
+    				frame.applyTransform(transform);
     			}
     			else if (transformType == TransformType.TRANSLATE)
     			{
@@ -692,7 +804,10 @@ public class FractalViewer extends JComponent
     						(points[1].y - points[0].y) * scaleFactor);
     				t.onlyTransform(prevTransform);
     				
-    				frame.setTransform(prevTransform.translate(t.x, -t.y));
+    				Matrix3D transform = new Matrix3D();
+    				transform.identity();
+    				transform.translate(t.x, -t.y);
+    				frame.applyTransform(transform);
     			}
     			else if (transformType == TransformType.TRANSFORM ||
     				transformType == TransformType.INVERSE_TRANSFORM)
@@ -743,7 +858,7 @@ public class FractalViewer extends JComponent
 				if (transformType == TransformType.INVERSE_TRANSFORM)
 					transform.inverse();
 				
-				frame.setTransform(transform.onlyTransform(prevTransform));
+				frame.applyTransform(transform);
 				
     			fireFractalFrameChange();
     			undoManager.doOp(Operation.getFrameOp(oldFrame, frame.copy()));
@@ -972,9 +1087,19 @@ public class FractalViewer extends JComponent
         	
         	ArrayList<Integer> fragments = e.getFragments();
         	lock.lock();
-        	totalFragments.addAll(fragments);
+        	if (refiningWorker != null)
+        	{
+        		lock.unlock();
+        		return;
+        	}
+        	/* fragments are refined by next passes of progressive rendering */
+        	if (e.getPass() == 1)
+        		totalFragments.addAll(fragments);
         	currentImage = e.getCurrentImage();
         	currentRendererProcess = fractalRenderer.getRenderingProcess();
+        	/* not filtered fragments are shown from rendered image */
+        	if (e.getProcess() == RenderProgressEvent.Process.RENDERING)
+        		beforeFiltering = currentImage;
         	if (currentRendererProcess == FractalRenderer.FILTERING_PROCESS)
         	{
         		for (Iterator<Integer> iter = fragments.iterator(); iter.hasNext();)
@@ -1155,7 +1155,7 @@ public class MainWindow extends JFrame
         	
         	toolAntialiasCombo.setSelectedIndex(match+1);
     	}
-    	else if (aaConfig.getMethod() == AntialiasConfig.Method.NORMAL)
+    	else if (aaConfig.getMethod() != AntialiasConfig.Method.NONE)
     		toolAntialiasCombo.setSelectedIndex(antialiasSamplings.length+1);
     	else
     		toolAntialiasCombo.setSelectedIndex(0);
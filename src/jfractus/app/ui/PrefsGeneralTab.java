@@ -18,6 +18,9 @@ public class PrefsGeneralTab extends JPanel implements PreferencesTab
     private static final long serialVersionUID = -2799336096658495976L;
 
     private JSpinner threadsSpinner;
+    private JSpinner refiningTimeSpinner;
+    private JTextField tileCacheDirField;
+    private JSpinner tileCacheSizeSpinner;
     
     public PrefsGeneralTab()
     {
@@ -26,6 +29,16 @@ public class PrefsGeneralTab extends JPanel implements PreferencesTab
     	JLabel label = new JLabel(Resources.getString("ThreadsNumberLabel"));
     	threadsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 256, 1));
     	threadsSpinner.setEditor(new JSpinner.NumberEditor(threadsSpinner, "###"));
+    	JLabel refiningTimeLabel = new JLabel(Resources.getString("RefiningTimeLimitLabel"));
+    	refiningTimeSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 1000000, 10));
+    	refiningTimeSpinner.setEditor(new JSpinner.NumberEditor
+    			(refiningTimeSpinner, "#######"));
+    	JLabel tileCacheDirLabel = new JLabel(Resources.getString("TileCacheDirLabel"));
+    	tileCacheDirField = new JTextField();
+    	JLabel tileCacheSizeLabel = new JLabel(Resources.getString("TileCacheSizeLabel"));
+    	tileCacheSizeSpinner = new JSpinner(new SpinnerNumberModel(1024, 1, 1000000, 64));
+    	tileCacheSizeSpinner.setEditor(new JSpinner.NumberEditor
+    			(tileCacheSizeSpinner, "#######"));
     	
     	JPanel threadsPanel = new JPanel();
     	threadsPanel.setLayout(new GridBagLayout());
@@ -50,6 +63,33 @@ public class PrefsGeneralTab extends JPanel implements PreferencesTab
         	gbc2.weightx = 1.0;
         	gbc2.gridx = 1;
         	threadsPanel.add(threadsSpinner, gbc2);
+        	
+        	gbc2.weightx = 0.0;
+        	gbc2.gridx = 0;
+        	gbc2.gridy = 1;
+        	threadsPanel.add(refiningTimeLabel, gbc2);
+        	
+        	gbc2.weightx = 1.0;
+        	gbc2.gridx = 1;
+        	threadsPanel.add(refiningTimeSpinner, gbc2);
+        	
+        	gbc2.weightx = 0.0;
+        	gbc2.gridx = 0;
+        	gbc2.gridy = 2;
+        	threadsPanel.add(tileCacheDirLabel, gbc2);
+        	
+        	gbc2.weightx = 1.0;
+        	gbc2.gridx = 1;
+        	threadsPanel.add(tileCacheDirField, gbc2);
+        	
+        	gbc2.weightx = 0.0;
+        	gbc2.gridx = 0;
+        	gbc2.gridy = 3;
+        	threadsPanel.add(tileCacheSizeLabel, gbc2);
+        	
+        	gbc2.weightx = 1.0;
+        	gbc2.gridx = 1;
+        	threadsPanel.add(tileCacheSizeSpinner, gbc2);
     	}
     	
     	gbc.gridy = 0;
@@ -67,15 +107,51 @@ public class PrefsGeneralTab extends JPanel implements PreferencesTab
     	threadsSpinner.setValue(threadsNum);
     }
     
+    public int getRefiningTimeLimit()
+    {
+    	return ((Number)refiningTimeSpinner.getValue()).intValue();
+    }
+    public void setRefiningTimeLimit(int seconds)
+    {
+    	refiningTimeSpinner.setValue(seconds);
+    }
+    
+    public String getTileCacheDirectory()
+    {
+    	return tileCacheDirField.getText().trim();
+    }
+    public void setTileCacheDirectory(String directory)
+    {
+    	tileCacheDirField.setText(directory);
+    }
+    public int getTileCacheMaxSize()
+    {
+    	return ((Number)tileCacheSizeSpinner.getValue()).intValue();
+    }
+    public void setTileCacheMaxSize(int size)
+    {
+    	tileCacheSizeSpinner.setValue(size);
+    }
+    
     public void applyPreferences()
     {
     	int oldThreadsNumber = FractusPreferencesFactory.prefs.getThreadsNumber();
     	int newThreadsNumber = getThreadsNumber();
     	if (oldThreadsNumber != newThreadsNumber)
     		FractusPreferencesFactory.prefs.setThreadsNumber(newThreadsNumber);
+    	if (FractusPreferencesFactory.prefs.getRefiningTimeLimit() != getRefiningTimeLimit())
+    		FractusPreferencesFactory.prefs.setRefiningTimeLimit(getRefiningTimeLimit());
+    	if (!FractusPreferencesFactory.prefs.getTileCacheDirectory().equals(
+    			getTileCacheDirectory()))
+    		FractusPreferencesFactory.prefs.setTileCacheDirectory(getTileCacheDirectory());
+    	if (FractusPreferencesFactory.prefs.getTileCacheMaxSize() != getTileCacheMaxSize())
+    		FractusPreferencesFactory.prefs.setTileCacheMaxSize(getTileCacheMaxSize());
     }
     public void fetchPreferences()
     {
     	setThreadsNumber(FractusPreferencesFactory.prefs.getThreadsNumber());
+    	setRefiningTimeLimit(FractusPreferencesFactory.prefs.getRefiningTimeLimit());
+    	setTileCacheDirectory(FractusPreferencesFactory.prefs.getTileCacheDirectory());
+    	setTileCacheMaxSize(FractusPreferencesFactory.prefs.getTileCacheMaxSize());
     }
 }
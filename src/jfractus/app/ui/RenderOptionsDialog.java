@@ -29,6 +29,8 @@ public class RenderOptionsDialog extends GenericDialog
 	private JSpinner sampWidthSpinner;
 	private JLabel sampHeightLabel;
 	private JSpinner sampHeightSpinner;
+	private JLabel thresholdLabel;
+	private JSpinner thresholdSpinner;
 	
 	public RenderOptionsDialog(Window owner)
 	{
@@ -53,6 +55,7 @@ public class RenderOptionsDialog extends GenericDialog
 		JLabel aaMethodLabel = new JLabel(Resources.getString("AntialiasMethodLabel"));
 		sampWidthLabel = new JLabel(Resources.getString("SamplingWidthLabel"));
 		sampHeightLabel = new JLabel(Resources.getString("SamplingHeightLabel"));
+		thresholdLabel = new JLabel(Resources.getString("AAThresholdLabel"));
 		
 		imageWidthSpinner = new JSpinner(new SpinnerNumberModel(640, 1, 1000000000, 10));
 		imageWidthSpinner.setEditor(new JSpinner.NumberEditor
@@ -62,7 +65,8 @@ public class RenderOptionsDialog extends GenericDialog
 				(imageHeightSpinner, "###########"));
 		
 		String[] antialiasMethodNames = { Resources.getString("AANone"),
-				Resources.getString("AANormal") };
+				Resources.getString("AANormal"), Resources.getString("AAAdaptive"),
+				Resources.getString("AAStochastic") };
 		aaMethodCombo = new JComboBox(antialiasMethodNames);
 		aaMethodCombo.addActionListener(new AntialiasMethodActionListener());
 		
@@ -72,11 +76,16 @@ public class RenderOptionsDialog extends GenericDialog
 		sampHeightSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 1000000000, 1));
 		sampHeightSpinner.setEditor(new JSpinner.NumberEditor
 				(sampHeightSpinner, "###########"));
+		thresholdSpinner = new JSpinner(new SpinnerNumberModel
+				(AntialiasConfig.DEFAULT_THRESHOLD, 0.0, 1.0, 0.01));
+		thresholdSpinner.setEditor(new JSpinner.NumberEditor(thresholdSpinner, "0.000"));
 
 		sampWidthLabel.setEnabled(false);
 		sampHeightSpinner.setEnabled(false);
 		sampWidthLabel.setEnabled(false);
 		sampHeightSpinner.setEnabled(false);
+		thresholdLabel.setEnabled(false);
+		thresholdSpinner.setEnabled(false);
 		
 		JPanel imageSizePanel = new JPanel();
 		imageSizePanel.setBorder(new TitledBorder(Resources.getString("ImageSize")));
@@ -138,6 +147,14 @@ public class RenderOptionsDialog extends GenericDialog
 			gbc.weightx = 1.0;
 			gbc.gridx = 1;
 			antialiasPanel.add(sampHeightSpinner, gbc);
+			
+			gbc.gridy = 3;
+			gbc.weightx = 0.0;
+			gbc.gridx = 0;
+			antialiasPanel.add(thresholdLabel, gbc);
+			gbc.weightx = 1.0;
+			gbc.gridx = 1;
+			antialiasPanel.add(thresholdSpinner, gbc);
 		}
 		
 		GridBagConstraints gbc = new GridBagConstraints();
@@ -197,6 +214,9 @@ public class RenderOptionsDialog extends GenericDialog
 				sampWidthSpinner.setEnabled(true);
 				sampHeightSpinner.setEnabled(true);
 			}
+			boolean adaptive = (aaMethodCombo.getSelectedIndex() == 2);
+			thresholdLabel.setEnabled(adaptive);
+			thresholdSpinner.setEnabled(adaptive);
 		}	
 	}
 	
@@ -220,19 +240,21 @@ public class RenderOptionsDialog extends GenericDialog
 	
 	public AntialiasConfig getAntialiasConfig()
 	{
-		AntialiasConfig.Method method = (aaMethodCombo.getSelectedIndex() == 0) ?
-				AntialiasConfig.Method.NONE : AntialiasConfig.Method.NORMAL;
+		/* items of combo are in order of methods */
+		AntialiasConfig.Method method =
+				AntialiasConfig.Method.values()[aaMethodCombo.getSelectedIndex()];
 		
 		return new AntialiasConfig(method,
 				((Number)sampWidthSpinner.getValue()).intValue(),
-				((Number)sampHeightSpinner.getValue()).intValue());
+				((Number)sampHeightSpinner.getValue()).intValue(),
+				((Number)thresholdSpinner.getValue()).floatValue());
 	}
 	public void setAntialiasConfig(AntialiasConfig aaConfig)
 	{
-		aaMethodCombo.setSelectedIndex(
-				aaConfig.getMethod() == AntialiasConfig.Method.NONE ? 0 : 1);
+		aaMethodCombo.setSelectedIndex(aaConfig.getMethod().ordinal());
 		sampWidthSpinner.setValue(aaConfig.getSamplingWidth());
 		sampHeightSpinner.setValue(aaConfig.getSamplingHeight());
+		thresholdSpinner.setValue((double)aaConfig.getThreshold());
 		
 	}
 	
@@ -88,4 +88,10 @@ public class Emboss extends OutputFilter
 			}
 		}
 	}
+	
+	@Override
+	public int getHaloRadius()
+	{
+		return 1;
+	}
 }
@@ -10,92 +10,307 @@ import jfractus.api.OutputFilter;
 import jfractus.api.Parameter;
 import jfractus.app.Resources;
 
+/* kernel is separable: image is blurred horizontally and then vertically.
+ * values are accumulated in fixed point (8 fractional bits between passes).
+ * box approximation uses three box blurs with same variance as kernel,
+ * its cost does not depend on radius */
 public class GaussianBlur extends OutputFilter
 {
 	public static final String radiusUserName = Resources.getString("Radius");
 	@Parameter
 	public double radius;
-	
+	public static final String boxApproximationUserName =
+			Resources.getString("BoxApproximation");
+	@Parameter
+	public boolean boxApproximation;
+
+	private static final int WEIGHT_BITS = 14;
+	private static final int FRACTION_BITS = 8;
+	private static final int BOX_BITS = 24;
+	private static final int BOXES_NUMBER = 3;
+
 	private int kernelSize;
 	private int kernelShift;
-	private double[] kernel;
-	
+	private int[] kernel;
+	private int[] boxRadii = new int[BOXES_NUMBER];
+	private int haloRadius;
+
+	/* buffers of thread (filter is used by many threads) */
+	private static class Buffers
+	{
+		public int[] rowR, rowG, rowB;
+		public int[] sumR, sumG, sumB;
+		public int[] tempData;
+
+		public void ensureCapacity(int rowLength, int tempLength)
+		{
+			if (rowR == null || rowR.length < rowLength)
+			{
+				rowR = new int[rowLength];
+				rowG = new int[rowLength];
+				rowB = new int[rowLength];
+				sumR = new int[rowLength];
+				sumG = new int[rowLength];
+				sumB = new int[rowLength];
+			}
+			if (tempData == null || tempData.length < tempLength)
+				tempData = new int[tempLength];
+		}
+	}
+
+	private static final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>()
+	{
+		protected Buffers initialValue()
+		{
+			return new Buffers();
+		}
+	};
+
 	public GaussianBlur()
 	{
 		resetValues();
 	}
-	
+
 	public void resetValues()
 	{
 		radius = 0.8;
+		boxApproximation = false;
 		initialize();
 	}
-	
+
 	public void initialize()
 	{
 		kernelSize = (int)Math.ceil(radius*6.0);
 		if ((kernelSize & 1) != 1)
 			kernelSize++;
-		
-		double scaleFactor = 1.0 / (2.0*Math.PI * radius * radius);
+		kernelShift = kernelSize>>1;
+
+		/* 2D kernel is product of two 1D kernels */
 		double expFactor = -0.5 / (radius*radius);
 		double posFactor = 1.0 / (double)kernelSize;
-		
-		kernel = new double[kernelSize*kernelSize];
+
+		double[] values = new double[kernelSize];
 		double kernelFactor = 0.0;
-		for (int iy = 0; iy < kernelSize; iy++)
-			for (int ix = 0; ix < kernelSize; ix++)
-			{
-				int pos = iy*kernelSize + ix;
-				double x = (ix + 0.5) * posFactor - 0.5;
-				double y = (iy + 0.5) * posFactor - 0.5;
-				kernel[pos] = scaleFactor*Math.exp(expFactor*(x*x+y*y));
-				kernelFactor += kernel[pos];
-			}
+		for (int i = 0; i < kernelSize; i++)
+		{
+			double x = (i + 0.5) * posFactor - 0.5;
+			values[i] = Math.exp(expFactor*x*x);
+			kernelFactor += values[i];
+		}
 		kernelFactor = 1.0 / kernelFactor;
-		for (int i = 0; i < kernelSize*kernelSize; i++)
-			kernel[i] *= kernelFactor;
-		
-		kernelShift = kernelSize>>1;
+
+		double variance = 0.0;
+		kernel = new int[kernelSize];
+		int weightsSum = 0;
+		for (int i = 0; i < kernelSize; i++)
+		{
+			values[i] *= kernelFactor;
+			variance += values[i] * (double)((i-kernelShift)*(i-kernelShift));
+			kernel[i] = (int)Math.round(values[i] * (double)(1<<WEIGHT_BITS));
+			weightsSum += kernel[i];
+		}
+		/* sum of weights must be exactly one */
+		kernel[kernelShift] += (1<<WEIGHT_BITS) - weightsSum;
+
+		/* widths of boxes (wl or wl+2) chosen for variance of kernel */
+		int lowerWidth = (int)Math.floor(Math.sqrt(4.0*variance + 1.0));
+		if ((lowerWidth & 1) != 1)
+			lowerWidth--;
+		int lowerBoxes = (int)Math.round((12.0*variance - BOXES_NUMBER*lowerWidth*lowerWidth -
+				4*BOXES_NUMBER*lowerWidth - 3*BOXES_NUMBER) / (-4.0*lowerWidth - 4.0));
+		haloRadius = 0;
+		for (int i = 0; i < BOXES_NUMBER; i++)
+		{
+			boxRadii[i] = (i < lowerBoxes) ? (lowerWidth>>1) : (lowerWidth>>1)+1;
+			haloRadius += boxRadii[i];
+		}
+		if (!boxApproximation)
+			haloRadius = kernelShift;
 	}
-	
+
 	@Override
 	public void compute(int inputWidth, int inputHeight, int startX,
 	        int startY, int width, int height, int[] data, int[] outData)
 	{
-		for (int y = 0; y < height; y++)
+		int rowsNum = height + 2*haloRadius;
+		int planeSize = rowsNum*width;
+		Buffers buffers = threadBuffers.get();
+		buffers.ensureCapacity(width + 2*haloRadius, 3*planeSize);
+		int[] rowR = buffers.rowR, rowG = buffers.rowG, rowB = buffers.rowB;
+		int[] tempData = buffers.tempData;
+
+		/* horizontal pass for rows of block and halo rows */
+		for (int row = 0; row < rowsNum; row++)
 		{
-			int index = (startY+y)*inputWidth + startX;
-			for (int x = 0; x < width; x++)
+			int y = startY - haloRadius + row;
+			y = (y >= 0) ? ((y < inputHeight) ? y : inputHeight-1) : 0;
+			loadRow(data, y*inputWidth, inputWidth, startX - haloRadius,
+					width + 2*haloRadius, rowR, rowG, rowB);
+			if (boxApproximation)
 			{
-				double destR = 0.0;
-				double destG = 0.0;
-				double destB = 0.0;
-				
-				for (int fY = -kernelShift; fY <= kernelShift; fY++)
-					for (int fX = -kernelShift; fX <= kernelShift; fX++)
+				blurRowBoxes(rowR, width);
+				blurRowBoxes(rowG, width);
+				blurRowBoxes(rowB, width);
+				System.arraycopy(rowR, 0, tempData, row*width, width);
+				System.arraycopy(rowG, 0, tempData, planeSize + row*width, width);
+				System.arraycopy(rowB, 0, tempData, 2*planeSize + row*width, width);
+			}
+			else
+			{
+				blurRow(rowR, width, tempData, row*width);
+				blurRow(rowG, width, tempData, planeSize + row*width);
+				blurRow(rowB, width, tempData, 2*planeSize + row*width);
+			}
+		}
+
+		/* vertical pass */
+		if (boxApproximation)
+		{
+			blurColumnsBoxes(tempData, 0, width, rowsNum, buffers.sumR);
+			blurColumnsBoxes(tempData, planeSize, width, rowsNum, buffers.sumG);
+			blurColumnsBoxes(tempData, 2*planeSize, width, rowsNum, buffers.sumB);
+			int round = 1<<(FRACTION_BITS-1);
+			for (int y = 0; y < height; y++)
+			{
+				int index = (startY+y)*inputWidth + startX;
+				int pos = y*width;
+				for (int x = 0; x < width; x++, pos++)
+					outData[index + x] = (((tempData[pos]+round)>>FRACTION_BITS)<<16) |
+							(((tempData[planeSize + pos]+round)>>FRACTION_BITS)<<8) |
+							((tempData[2*planeSize + pos]+round)>>FRACTION_BITS);
+			}
+		}
+		else
+		{
+			int shift = WEIGHT_BITS + FRACTION_BITS;
+			int round = 1<<(shift-1);
+			int[] sumR = buffers.sumR, sumG = buffers.sumG, sumB = buffers.sumB;
+			for (int y = 0; y < height; y++)
+			{
+				/* rows are added in order (sequential access of memory) */
+				for (int x = 0; x < width; x++)
+					sumR[x] = sumG[x] = sumB[x] = round;
+				for (int k = 0; k < kernelSize; k++)
+				{
+					int weight = kernel[k];
+					int pos = (y+k)*width;
+					for (int x = 0; x < width; x++, pos++)
 					{
-						int gX = x + startX + fX;
-						int gY = y + startY + fY;
-						gX = (gX >= 0) ? ((gX < inputWidth) ? gX : inputWidth-1) : 0;
-						gY = (gY >= 0) ? ((gY < inputHeight) ? gY : inputHeight-1) : 0;
-						int pixel = data[gY*inputWidth + gX];
-						
-						double r = (double)((pixel >> 16) & 0xff);
-						double g = (double)((pixel >> 8) & 0xff);
-						double b = (double)(pixel & 0xff);
-						
-						double factor = kernel[(fY+kernelShift)*kernelSize + fX+kernelShift];
-						destR += r*factor;
-						destG += g*factor;
-						destB += b*factor;
+						sumR[x] += weight*tempData[pos];
+						sumG[x] += weight*tempData[planeSize + pos];
+						sumB[x] += weight*tempData[2*planeSize + pos];
 					}
-				
-				outData[index + x] = (((int)(destR + 0.5)&0xff)<<16) |
-						(((int)(destG + 0.5)&0xff)<<8) |
-						((int)(destB + 0.5)&0xff);
+				}
+				int index = (startY+y)*inputWidth + startX;
+				for (int x = 0; x < width; x++)
+					outData[index + x] = ((sumR[x]>>shift)<<16) | ((sumG[x]>>shift)<<8) |
+							(sumB[x]>>shift);
 			}
 		}
 	}
 
+	/* components of pixels from startX to startX+length-1 (edge pixels outside image) */
+	private static void loadRow(int[] data, int rowIndex, int inputWidth, int startX,
+			int length, int[] rowR, int[] rowG, int[] rowB)
+	{
+		int i = 0;
+		int pixel = data[rowIndex];
+		for (; i < length && startX+i < 0; i++)
+		{
+			rowR[i] = (pixel>>16)&0xff;
+			rowG[i] = (pixel>>8)&0xff;
+			rowB[i] = pixel&0xff;
+		}
+		int end = Math.min(length, inputWidth - startX);
+		for (; i < end; i++)
+		{
+			pixel = data[rowIndex + startX + i];
+			rowR[i] = (pixel>>16)&0xff;
+			rowG[i] = (pixel>>8)&0xff;
+			rowB[i] = pixel&0xff;
+		}
+		pixel = data[rowIndex + inputWidth-1];
+		for (; i < length; i++)
+		{
+			rowR[i] = (pixel>>16)&0xff;
+			rowG[i] = (pixel>>8)&0xff;
+			rowB[i] = pixel&0xff;
+		}
+	}
+
+	private void blurRow(int[] row, int width, int[] dest, int destPos)
+	{
+		int shift = WEIGHT_BITS - FRACTION_BITS;
+		int round = 1<<(shift-1);
+		for (int x = 0; x < width; x++)
+		{
+			int value = round;
+			for (int k = 0; k < kernelSize; k++)
+				value += kernel[k]*row[x+k];
+			dest[destPos + x] = value>>shift;
+		}
+	}
+
+	/* result is in first width elements of row */
+	private void blurRowBoxes(int[] row, int width)
+	{
+		int length = width + 2*haloRadius;
+		for (int i = 0; i < length; i++)
+			row[i] <<= FRACTION_BITS;
+		for (int b = 0; b < BOXES_NUMBER; b++)
+		{
+			int boxWidth = 2*boxRadii[b] + 1;
+			long factor = ((1L<<BOX_BITS) + (boxWidth>>1)) / boxWidth;
+			long round = 1L<<(BOX_BITS-1);
+			length -= boxWidth-1;
+			int sum = 0;
+			for (int i = 0; i < boxWidth-1; i++)
+				sum += row[i];
+			/* row[i] is not read after replacing */
+			for (int i = 0; i < length; i++)
+			{
+				sum += row[i + boxWidth-1];
+				int first = row[i];
+				row[i] = (int)((sum*factor + round)>>BOX_BITS);
+				sum -= first;
+			}
+		}
+	}
+
+	/* result is in first rowsNum-2*haloRadius rows */
+	private void blurColumnsBoxes(int[] data, int offset, int width, int rowsNum,
+			int[] sums)
+	{
+		for (int b = 0; b < BOXES_NUMBER; b++)
+		{
+			int boxWidth = 2*boxRadii[b] + 1;
+			long factor = ((1L<<BOX_BITS) + (boxWidth>>1)) / boxWidth;
+			long round = 1L<<(BOX_BITS-1);
+			rowsNum -= boxWidth-1;
+			for (int x = 0; x < width; x++)
+				sums[x] = 0;
+			for (int y = 0; y < boxWidth-1; y++)
+				for (int x = 0, pos = offset + y*width; x < width; x++, pos++)
+					sums[x] += data[pos];
+			for (int y = 0; y < rowsNum; y++)
+			{
+				int pos = offset + y*width;
+				int lastPos = pos + (boxWidth-1)*width;
+				for (int x = 0; x < width; x++, pos++, lastPos++)
+				{
+					int sum = sums[x] + data[lastPos];
+					int first = data[pos];
+					data[pos] = (int)((sum*factor + round)>>BOX_BITS);
+					sums[x] = sum - first;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getHaloRadius()
+	{
+		return haloRadius;
+	}
+
 }
@@ -21,5 +21,11 @@ public class Negate extends OutputFilter
 				outData[index + x] = data[index + x] ^ 0xffffff;
 		}
 	}
+	
+	@Override
+	public int getHaloRadius()
+	{
+		return 0;
+	}
 
 }
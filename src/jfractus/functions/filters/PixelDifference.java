@@ -49,5 +49,11 @@ public class PixelDifference extends OutputFilter
 			}
 		}
 	}
+	
+	@Override
+	public int getHaloRadius()
+	{
+		return 1;
+	}
 
 }
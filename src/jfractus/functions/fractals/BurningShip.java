@@ -6,12 +6,22 @@
 
 package jfractus.functions.fractals;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import jfractus.api.DoubleDoubleFractalFormula;
+import jfractus.api.FloatFractalFormula;
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PerturbationFractalFormula;
+import jfractus.api.PerturbationReference;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
+import jfractus.math.DDComplex;
 
-public class BurningShip extends FractalFormula
+public class BurningShip extends FractalFormula implements PrimitiveFractalFormula,
+		PerturbationFractalFormula, DoubleDoubleFractalFormula, FloatFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
@@ -47,5 +57,60 @@ public class BurningShip extends FractalFormula
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		int i = 0;
+		if (LaneKernels.isUsable(length))
+			i = LaneKernels.quadratic(LaneKernels.QUADRATIC_ABS, false, 0.0, 0.0,
+					maxIterations, bailout, length, itData, zRe, zIm, outZRe, outZIm);
+		for (; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				double aRe = Math.abs(re);
+				double aIm = Math.abs(im);
+				re = aRe*aRe - aIm*aIm + cRe;
+				im = 2.0*aRe*aIm + cIm;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+	
+	public PerturbationReference computeReference(BigDecimal centerRe, BigDecimal centerIm,
+			double maxDelta, MathContext mc)
+	{
+		return PerturbationKernels.reference(LaneKernels.QUADRATIC_ABS, centerRe, centerIm,
+				maxIterations, bailout, mc);
+	}
+	
+	public void compute(int length, int[] itData, PerturbationReference reference,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		PerturbationKernels.compute(LaneKernels.QUADRATIC_ABS, reference, maxIterations, bailout,
+				0.0, length, itData, dcRe, dcIm, outZRe, outZIm);
+	}
+	
+	public void compute(int length, int[] itData, DDComplex center,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		DoubleDoubleKernels.quadratic(LaneKernels.QUADRATIC_ABS, false, 0.0, 0.0, maxIterations,
+				bailout, 0.0, center, length, itData,
+				dcRe, dcIm, outZRe, outZIm);
+	}
+	
+	public void compute(int length, int[] itData, float[] zRe, float[] zIm,
+			float[] outZRe, float[] outZIm)
+	{
+		FloatKernels.compute(FloatKernels.QUADRATIC_ABS, false, 0.0f, 0.0f, maxIterations,
+				(float)bailout, 0.0, length, itData,
+				zRe, zIm, outZRe, outZIm);
+	}
 }
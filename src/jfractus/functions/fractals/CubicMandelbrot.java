@@ -6,12 +6,15 @@
 
 package jfractus.functions.fractals;
 
+import jfractus.api.FloatFractalFormula;
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class CubicMandelbrot extends FractalFormula
+public class CubicMandelbrot extends FractalFormula implements PrimitiveFractalFormula,
+		FloatFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
@@ -42,4 +45,38 @@ public class CubicMandelbrot extends FractalFormula
 				itData[i] = -1;
 		}
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		int i = 0;
+		if (LaneKernels.isUsable(length))
+			i = LaneKernels.cubic(maxIterations, bailout, length, itData,
+					zRe, zIm, outZRe, outZIm);
+		for (; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				double re2 = re*re - im*im;
+				double im2 = 2.0*re*im;
+				double tmp = re;
+				re = re*re2 - im2*im + cRe;
+				im = tmp*im2 + im*re2 + cIm;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+	
+	public void compute(int length, int[] itData, float[] zRe, float[] zIm,
+			float[] outZRe, float[] outZIm)
+	{
+		FloatKernels.compute(FloatKernels.CUBIC, false, 0.0f, 0.0f, maxIterations,
+				(float)bailout, 0.0, length, itData, zRe, zIm, outZRe, outZIm);
+	}
 }
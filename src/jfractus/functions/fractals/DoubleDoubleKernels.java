@@ -0,0 +1,69 @@
+/**
+ * DoubleDoubleKernels.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.functions.fractals;
+
+import jfractus.math.DDComplex;
+
+/* double-double kernels for quadratic formulas (z^2+c, conjugate and absolute variants).
+ * point is center+dc, where center is double-double and dc is double,
+ * so coordinates keep about 106 bits although dc is small */
+final class DoubleDoubleKernels
+{
+	private DoubleDoubleKernels()
+	{
+	}
+	
+	/* if julia is true, z0 is point from data and c is (pRe,pIm),
+	 * otherwise z0 = 0 and c is point from data.
+	 * if periodicity is greater than zero, points in attracting cycle are finished early
+	 * (orbit is compared in doubles) */
+	public static void quadratic(int variant, boolean julia, double pRe, double pIm,
+			int maxIterations, double bailout, double periodicity, DDComplex center,
+			int length, int[] itData, double[] dcRe, double[] dcIm,
+			double[] outZRe, double[] outZIm)
+	{
+		DDComplex z = new DDComplex();
+		DDComplex c = new DDComplex();
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		for (int i = 0; i < length; i++)
+		{
+			if (julia)
+			{
+				z.set(center).add(dcRe[i], dcIm[i]);
+				c.set(pRe, pIm);
+			}
+			else
+			{
+				z.set(0.0, 0.0);
+				c.set(center).add(dcRe[i], dcIm[i]);
+			}
+			int it;
+			if (checker != null)
+				checker.reset(z.re.doubleValue(), z.im.doubleValue());
+			for (it = 0; it < maxIterations && z.norm2() <= bailout; it++)
+			{
+				if (variant == LaneKernels.QUADRATIC_CONJ)
+					z.conj();
+				else if (variant == LaneKernels.QUADRATIC_ABS)
+				{
+					z.re.abs();
+					z.im.abs();
+				}
+				z.square().add(c);
+				if (checker != null &&
+						checker.check(z.re.doubleValue(), z.im.doubleValue()))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = z.re.doubleValue();
+			outZIm[i] = z.im.doubleValue();
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/**
+ * FloatKernels.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.functions.fractals;
+
+/* single precision kernels for quadratic and cubic formulas.
+ * all points are iterated together, step by step, in simple loops over arrays
+ * (without branches), which are vectorized by JIT (8 or 16 floats per instruction).
+ * bailout is checked after every block of steps: points that escaped in block are
+ * iterated again from start of block by scalar code (to get exact iterations number)
+ * and removed from arrays, so results are same as from scalar code.
+ * with periodicity checking points are iterated by scalar code */
+final class FloatKernels
+{
+	public static final int QUADRATIC = LaneKernels.QUADRATIC;
+	public static final int QUADRATIC_CONJ = LaneKernels.QUADRATIC_CONJ;
+	public static final int QUADRATIC_ABS = LaneKernels.QUADRATIC_ABS;
+	public static final int CUBIC = 3;
+	
+	/* number of steps between bailout checks */
+	private static final int STEPS = 8;
+	
+	/* working arrays of thread */
+	private static class Work
+	{
+		private int capacity;
+		private float[] re, im, cRe, cIm, savedRe, savedIm, maxNorm;
+		private int[] index;
+		
+		private void ensureCapacity(int size)
+		{
+			if (size <= capacity)
+				return;
+			re = new float[size];
+			im = new float[size];
+			cRe = new float[size];
+			cIm = new float[size];
+			savedRe = new float[size];
+			savedIm = new float[size];
+			maxNorm = new float[size];
+			index = new int[size];
+			capacity = size;
+		}
+	}
+	
+	private static final ThreadLocal<Work> localWork = new ThreadLocal<Work>()
+	{
+		protected Work initialValue()
+		{
+			return new Work();
+		}
+	};
+	
+	private FloatKernels()
+	{
+	}
+	
+	/* do steps on first active points, maxNorm gets maximal norm before steps */
+	private static void steps(int variant, int steps, int active, float[] re, float[] im,
+			float[] cRe, float[] cIm, float[] maxNorm)
+	{
+		for (int i = 0; i < active; i++)
+			maxNorm[i] = 0.0f;
+		for (int s = 0; s < steps; s++)
+		{
+			switch (variant)
+			{
+			case QUADRATIC:
+				for (int i = 0; i < active; i++)
+				{
+					float r = re[i], m = im[i];
+					float rr = r*r, mm = m*m;
+					maxNorm[i] = Math.max(maxNorm[i], rr + mm);
+					re[i] = rr - mm + cRe[i];
+					im[i] = 2.0f*r*m + cIm[i];
+				}
+				break;
+			case QUADRATIC_CONJ:
+				for (int i = 0; i < active; i++)
+				{
+					float r = re[i], m = im[i];
+					float rr = r*r, mm = m*m;
+					maxNorm[i] = Math.max(maxNorm[i], rr + mm);
+					re[i] = rr - mm + cRe[i];
+					im[i] = -2.0f*r*m + cIm[i];
+				}
+				break;
+			case QUADRATIC_ABS:
+				for (int i = 0; i < active; i++)
+				{
+					float r = re[i], m = im[i];
+					float rr = r*r, mm = m*m;
+					maxNorm[i] = Math.max(maxNorm[i], rr + mm);
+					re[i] = rr - mm + cRe[i];
+					im[i] = 2.0f*Math.abs(r)*Math.abs(m) + cIm[i];
+				}
+				break;
+			default:
+				for (int i = 0; i < active; i++)
+				{
+					float r = re[i], m = im[i];
+					float rr = r*r, mm = m*m;
+					maxNorm[i] = Math.max(maxNorm[i], rr + mm);
+					float r2 = rr - mm;
+					float m2 = 2.0f*r*m;
+					re[i] = r*r2 - m2*m + cRe[i];
+					im[i] = r*m2 + m*r2 + cIm[i];
+				}
+				break;
+			}
+		}
+	}
+	
+	/* one step of scalar code */
+	private static float stepRe(int variant, float r, float m, float cRe)
+	{
+		float rr = r*r, mm = m*m;
+		if (variant == CUBIC)
+			return r*(rr - mm) - 2.0f*r*m*m + cRe;
+		return rr - mm + cRe;
+	}
+	private static float stepIm(int variant, float r, float m, float cIm)
+	{
+		switch (variant)
+		{
+		case QUADRATIC:
+			return 2.0f*r*m + cIm;
+		case QUADRATIC_CONJ:
+			return -2.0f*r*m + cIm;
+		case QUADRATIC_ABS:
+			return 2.0f*Math.abs(r)*Math.abs(m) + cIm;
+		default:
+			return r*(2.0f*r*m) + m*(r*r - m*m) + cIm;
+		}
+	}
+	
+	/* scalar code with periodicity checking */
+	private static void computeChecked(int variant, boolean julia, float pRe, float pIm,
+			int maxIterations, float bailout, PeriodicityChecker checker, int length,
+			int[] itData, float[] zRe, float[] zIm, float[] outZRe, float[] outZIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			float r, m, cRe, cIm;
+			if (julia)
+			{
+				r = zRe[i];
+				m = zIm[i];
+				cRe = pRe;
+				cIm = pIm;
+			}
+			else
+			{
+				r = m = 0.0f;
+				cRe = zRe[i];
+				cIm = zIm[i];
+			}
+			checker.reset(r, m);
+			int n;
+			for (n = 0; n < maxIterations && r*r + m*m <= bailout; n++)
+			{
+				float tmp = stepRe(variant, r, m, cRe);
+				m = stepIm(variant, r, m, cIm);
+				r = tmp;
+				if (checker.check(r, m))
+				{
+					n = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = r;
+			outZIm[i] = m;
+			itData[i] = (n == maxIterations) ? -1 : n;
+		}
+	}
+	
+	/* if julia is true, z0 is point from data and c is (pRe,pIm),
+	 * otherwise z0 = 0 and c is point from data.
+	 * if periodicity is greater than zero, points in attracting cycle are finished early */
+	public static void compute(int variant, boolean julia, float pRe, float pIm,
+			int maxIterations, float bailout, double periodicity, int length, int[] itData,
+			float[] zRe, float[] zIm, float[] outZRe, float[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		if (checker != null)
+		{
+			computeChecked(variant, julia, pRe, pIm, maxIterations, bailout, checker,
+					length, itData, zRe, zIm, outZRe, outZIm);
+			return;
+		}
+		Work work = localWork.get();
+		work.ensureCapacity(length);
+		float[] re = work.re, im = work.im, cRe = work.cRe, cIm = work.cIm;
+		float[] savedRe = work.savedRe, savedIm = work.savedIm;
+		int[] index = work.index;
+		for (int i = 0; i < length; i++)
+		{
+			index[i] = i;
+			if (julia)
+			{
+				re[i] = zRe[i];
+				im[i] = zIm[i];
+				cRe[i] = pRe;
+				cIm[i] = pIm;
+			}
+			else
+			{
+				re[i] = im[i] = 0.0f;
+				cRe[i] = zRe[i];
+				cIm[i] = zIm[i];
+			}
+		}
+		
+		int active = length;
+		for (int it = 0; it < maxIterations && active != 0;)
+		{
+			int steps = Math.min(STEPS, maxIterations - it);
+			System.arraycopy(re, 0, savedRe, 0, active);
+			System.arraycopy(im, 0, savedIm, 0, active);
+			steps(variant, steps, active, re, im, cRe, cIm, work.maxNorm);
+			
+			float[] maxNorm = work.maxNorm;
+			for (int i = 0; i < active;)
+			{
+				/* also catches NaN */
+				if (maxNorm[i] <= bailout)
+				{
+					i++;
+					continue;
+				}
+				/* escaped in this block: repeat steps by scalar code */
+				float r = savedRe[i], m = savedIm[i];
+				int n = it;
+				while (n < maxIterations && r*r + m*m <= bailout)
+				{
+					float tmp = stepRe(variant, r, m, cRe[i]);
+					m = stepIm(variant, r, m, cIm[i]);
+					r = tmp;
+					n++;
+				}
+				int pos = index[i];
+				outZRe[pos] = r;
+				outZIm[pos] = m;
+				itData[pos] = (n == maxIterations) ? -1 : n;
+				/* move last active point to this place */
+				active--;
+				re[i] = re[active];
+				im[i] = im[active];
+				cRe[i] = cRe[active];
+				cIm[i] = cIm[active];
+				savedRe[i] = savedRe[active];
+				savedIm[i] = savedIm[active];
+				maxNorm[i] = maxNorm[active];
+				index[i] = index[active];
+			}
+			it += steps;
+		}
+		/* not escaped points */
+		for (int i = 0; i < active; i++)
+		{
+			int pos = index[i];
+			outZRe[pos] = re[i];
+			outZIm[pos] = im[i];
+			itData[pos] = -1;
+		}
+	}
+}
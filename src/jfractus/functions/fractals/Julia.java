@@ -6,16 +6,24 @@
 
 package jfractus.functions.fractals;
 
+import jfractus.api.DoubleDoubleFractalFormula;
+import jfractus.api.FloatFractalFormula;
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
+import jfractus.math.DDComplex;
 
-public class Julia extends FractalFormula
+public class Julia extends FractalFormula implements PrimitiveFractalFormula,
+		DoubleDoubleFractalFormula, FloatFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
 	public double bailout;
+	public static final String periodicityUserName = Resources.getString("Periodicity");
+	@Parameter
+	public double periodicity;
 	
 	public static final String pointUserName = Resources.getString("Point");
 	@Parameter
@@ -30,6 +38,7 @@ public class Julia extends FractalFormula
 	{
 		maxIterations = 16;
 		bailout = 4.0;
+		periodicity = 0.0;
 		point = new Complex(0.0, 0.0);
 	}
 	
@@ -38,16 +47,74 @@ public class Julia extends FractalFormula
 	        Complex[] outZData)
 	{
 		Complex z = new Complex();
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
 		for (int i = 0; i < length; i++)
 		{
 			z.set(zData[i]);
+			if (checker != null)
+				checker.reset(z.re, z.im);
 			for (itData[i] = 0;
 					itData[i] < maxIterations &&  z.norm2() <= bailout; itData[i]++)
+			{
 				z.square().add(point);
+				if (checker != null && checker.check(z.re, z.im))
+				{
+					itData[i] = maxIterations;
+					break;
+				}
+			}
 			outZData[i].set(z);
 			if (itData[i] == maxIterations)
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		double pRe = point.re;
+		double pIm = point.im;
+		int i = 0;
+		if (checker == null && LaneKernels.isUsable(length))
+			i = LaneKernels.quadratic(LaneKernels.QUADRATIC, true, pRe, pIm,
+					maxIterations, bailout, length, itData, zRe, zIm, outZRe, outZIm);
+		for (; i < length; i++)
+		{
+			double re = zRe[i], im = zIm[i];
+			int it;
+			if (checker != null)
+				checker.reset(re, im);
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				double tmp = re;
+				re = re*re - im*im + pRe;
+				im = 2.0*tmp*im + pIm;
+				if (checker != null && checker.check(re, im))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+	
+	public void compute(int length, int[] itData, DDComplex center,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		DoubleDoubleKernels.quadratic(LaneKernels.QUADRATIC, true, point.re, point.im,
+				maxIterations, bailout, periodicity, center, length, itData,
+				dcRe, dcIm, outZRe, outZIm);
+	}
+	
+	public void compute(int length, int[] itData, float[] zRe, float[] zIm,
+			float[] outZRe, float[] outZIm)
+	{
+		FloatKernels.compute(FloatKernels.QUADRATIC, true, (float)point.re, (float)point.im,
+				maxIterations, (float)bailout, periodicity, length, itData,
+				zRe, zIm, outZRe, outZIm);
+	}
 }
@@ -0,0 +1,265 @@
+/**
+ * LaneKernels.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.functions.fractals;
+
+/* escape-time kernels that iterate four points at once (lanes).
+ * each lane is masked: after bailout its z and counter are frozen while others continue
+ * (by selects, not branches per lane).
+ * four independent dependency chains keep the FPU pipelines busy. quadratic and cubic
+ * return number of processed points (multiple of LANES); rest is left to scalar code */
+final class LaneKernels
+{
+	public static final int LANES = 4;
+
+	public static final int QUADRATIC = 0;
+	public static final int QUADRATIC_CONJ = 1;
+	public static final int QUADRATIC_ABS = 2;
+
+	/* maximal integer power handled by intPower kernel */
+	public static final int MAX_INT_POWER = 64;
+
+	/* can be disabled by -Djfractus.laneKernels=false */
+	private static final boolean enabled =
+		!"false".equals(System.getProperty("jfractus.laneKernels"));
+
+	private LaneKernels()
+	{
+	}
+
+	public static boolean isUsable(int length)
+	{
+		return enabled && length >= LANES;
+	}
+
+	/* returns true if power is integer that can be computed by multiplications */
+	public static boolean isIntPower(double power)
+	{
+		return power >= 2.0 && power <= MAX_INT_POWER && power == Math.rint(power);
+	}
+
+	/* z = z^2 + c (or conjugate/absolute variants). if julia is true, z0 is point from data
+	 * and c is (pRe,pIm), otherwise z0 = 0 and c is point from data */
+	public static int quadratic(int variant, boolean julia, double pRe, double pIm,
+			int maxIterations, double bailout, int length, int[] itData,
+			double[] zRe, double[] zIm, double[] outZRe, double[] outZIm)
+	{
+		final double imSign = (variant == QUADRATIC_CONJ) ? -2.0 : 2.0;
+		final boolean absIm = (variant == QUADRATIC_ABS);
+		int blockEnd = length - length%LANES;
+		for (int i = 0; i < blockEnd; i += LANES)
+		{
+			double cRe0, cIm0, cRe1, cIm1, cRe2, cIm2, cRe3, cIm3;
+			double re0, im0, re1, im1, re2, im2, re3, im3;
+			if (julia)
+			{
+				re0 = zRe[i]; im0 = zIm[i];
+				re1 = zRe[i+1]; im1 = zIm[i+1];
+				re2 = zRe[i+2]; im2 = zIm[i+2];
+				re3 = zRe[i+3]; im3 = zIm[i+3];
+				cRe0 = cRe1 = cRe2 = cRe3 = pRe;
+				cIm0 = cIm1 = cIm2 = cIm3 = pIm;
+			}
+			else
+			{
+				re0 = im0 = re1 = im1 = re2 = im2 = re3 = im3 = 0.0;
+				cRe0 = zRe[i]; cIm0 = zIm[i];
+				cRe1 = zRe[i+1]; cIm1 = zIm[i+1];
+				cRe2 = zRe[i+2]; cIm2 = zIm[i+2];
+				cRe3 = zRe[i+3]; cIm3 = zIm[i+3];
+			}
+			int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+			for (int it = 0; it < maxIterations; it++)
+			{
+				double rr0 = re0*re0, ii0 = im0*im0;
+				double rr1 = re1*re1, ii1 = im1*im1;
+				double rr2 = re2*re2, ii2 = im2*im2;
+				double rr3 = re3*re3, ii3 = im3*im3;
+				/* lane is active when it has not escaped in any previous iteration */
+				boolean a0 = n0 == it && rr0 + ii0 <= bailout;
+				boolean a1 = n1 == it && rr1 + ii1 <= bailout;
+				boolean a2 = n2 == it && rr2 + ii2 <= bailout;
+				boolean a3 = n3 == it && rr3 + ii3 <= bailout;
+				if (!(a0 | a1 | a2 | a3))
+					break;
+				double t0 = imSign*re0*im0;
+				double t1 = imSign*re1*im1;
+				double t2 = imSign*re2*im2;
+				double t3 = imSign*re3*im3;
+				if (absIm)
+				{
+					t0 = Math.abs(t0);
+					t1 = Math.abs(t1);
+					t2 = Math.abs(t2);
+					t3 = Math.abs(t3);
+				}
+				/* selects instead of branches per lane (conditional moves) */
+				double nRe0 = rr0 - ii0 + cRe0, nIm0 = t0 + cIm0;
+				double nRe1 = rr1 - ii1 + cRe1, nIm1 = t1 + cIm1;
+				double nRe2 = rr2 - ii2 + cRe2, nIm2 = t2 + cIm2;
+				double nRe3 = rr3 - ii3 + cRe3, nIm3 = t3 + cIm3;
+				re0 = a0 ? nRe0 : re0; im0 = a0 ? nIm0 : im0;
+				re1 = a1 ? nRe1 : re1; im1 = a1 ? nIm1 : im1;
+				re2 = a2 ? nRe2 : re2; im2 = a2 ? nIm2 : im2;
+				re3 = a3 ? nRe3 : re3; im3 = a3 ? nIm3 : im3;
+				n0 += a0 ? 1 : 0;
+				n1 += a1 ? 1 : 0;
+				n2 += a2 ? 1 : 0;
+				n3 += a3 ? 1 : 0;
+			}
+			outZRe[i] = re0; outZIm[i] = im0;
+			outZRe[i+1] = re1; outZIm[i+1] = im1;
+			outZRe[i+2] = re2; outZIm[i+2] = im2;
+			outZRe[i+3] = re3; outZIm[i+3] = im3;
+			itData[i] = (n0 == maxIterations) ? -1 : n0;
+			itData[i+1] = (n1 == maxIterations) ? -1 : n1;
+			itData[i+2] = (n2 == maxIterations) ? -1 : n2;
+			itData[i+3] = (n3 == maxIterations) ? -1 : n3;
+		}
+		return blockEnd;
+	}
+
+	/* z = z^3 + c, z0 = 0 */
+	public static int cubic(int maxIterations, double bailout, int length, int[] itData,
+			double[] zRe, double[] zIm, double[] outZRe, double[] outZIm)
+	{
+		int blockEnd = length - length%LANES;
+		for (int i = 0; i < blockEnd; i += LANES)
+		{
+			double cRe0 = zRe[i], cIm0 = zIm[i];
+			double cRe1 = zRe[i+1], cIm1 = zIm[i+1];
+			double cRe2 = zRe[i+2], cIm2 = zIm[i+2];
+			double cRe3 = zRe[i+3], cIm3 = zIm[i+3];
+			double re0 = 0.0, im0 = 0.0, re1 = 0.0, im1 = 0.0;
+			double re2 = 0.0, im2 = 0.0, re3 = 0.0, im3 = 0.0;
+			int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+			for (int it = 0; it < maxIterations; it++)
+			{
+				double rr0 = re0*re0, ii0 = im0*im0;
+				double rr1 = re1*re1, ii1 = im1*im1;
+				double rr2 = re2*re2, ii2 = im2*im2;
+				double rr3 = re3*re3, ii3 = im3*im3;
+				boolean a0 = n0 == it && rr0 + ii0 <= bailout;
+				boolean a1 = n1 == it && rr1 + ii1 <= bailout;
+				boolean a2 = n2 == it && rr2 + ii2 <= bailout;
+				boolean a3 = n3 == it && rr3 + ii3 <= bailout;
+				if (!(a0 | a1 | a2 | a3))
+					break;
+				/* z^2 */
+				double sRe0 = rr0 - ii0, sIm0 = 2.0*re0*im0;
+				double sRe1 = rr1 - ii1, sIm1 = 2.0*re1*im1;
+				double sRe2 = rr2 - ii2, sIm2 = 2.0*re2*im2;
+				double sRe3 = rr3 - ii3, sIm3 = 2.0*re3*im3;
+				double nRe0 = re0*sRe0 - sIm0*im0 + cRe0, nIm0 = re0*sIm0 + im0*sRe0 + cIm0;
+				double nRe1 = re1*sRe1 - sIm1*im1 + cRe1, nIm1 = re1*sIm1 + im1*sRe1 + cIm1;
+				double nRe2 = re2*sRe2 - sIm2*im2 + cRe2, nIm2 = re2*sIm2 + im2*sRe2 + cIm2;
+				double nRe3 = re3*sRe3 - sIm3*im3 + cRe3, nIm3 = re3*sIm3 + im3*sRe3 + cIm3;
+				re0 = a0 ? nRe0 : re0; im0 = a0 ? nIm0 : im0;
+				re1 = a1 ? nRe1 : re1; im1 = a1 ? nIm1 : im1;
+				re2 = a2 ? nRe2 : re2; im2 = a2 ? nIm2 : im2;
+				re3 = a3 ? nRe3 : re3; im3 = a3 ? nIm3 : im3;
+				n0 += a0 ? 1 : 0;
+				n1 += a1 ? 1 : 0;
+				n2 += a2 ? 1 : 0;
+				n3 += a3 ? 1 : 0;
+			}
+			outZRe[i] = re0; outZIm[i] = im0;
+			outZRe[i+1] = re1; outZIm[i+1] = im1;
+			outZRe[i+2] = re2; outZIm[i+2] = im2;
+			outZRe[i+3] = re3; outZIm[i+3] = im3;
+			itData[i] = (n0 == maxIterations) ? -1 : n0;
+			itData[i+1] = (n1 == maxIterations) ? -1 : n1;
+			itData[i+2] = (n2 == maxIterations) ? -1 : n2;
+			itData[i+3] = (n3 == maxIterations) ? -1 : n3;
+		}
+		return blockEnd;
+	}
+
+	/* z = z^power + c for integer power (binary exponentiation per lane).
+	 * if julia is true, z0 is point from data and c is (pRe,pIm), otherwise z0 = 0.
+	 * processes all points (lanes past the end are masked out), so that results
+	 * do not depend on the position of point in the block.
+	 * if periodicity is greater than zero, lanes in attracting cycle are finished early */
+	public static int intPower(int power, boolean julia, double pRe, double pIm,
+			int maxIterations, double bailout, double periodicity, int length, int[] itData,
+			double[] zRe, double[] zIm, double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker[] checkers = null;
+		if (periodicity > 0.0)
+		{
+			checkers = new PeriodicityChecker[LANES];
+			for (int l = 0; l < LANES; l++)
+				checkers[l] = new PeriodicityChecker(periodicity);
+		}
+		double[] re = new double[LANES];
+		double[] im = new double[LANES];
+		double[] cRe = new double[LANES];
+		double[] cIm = new double[LANES];
+		int[] n = new int[LANES];
+		/* exponent bits from highest, without leading one */
+		int topBit = Integer.highestOneBit(power);
+		for (int i = 0; i < length; i += LANES)
+		{
+			int lanes = Math.min(LANES, length-i);
+			for (int l = 0; l < LANES; l++)
+			{
+				n[l] = (l < lanes) ? 0 : -1;
+				if (l >= lanes)
+					continue;
+				if (julia)
+				{
+					re[l] = zRe[i+l]; im[l] = zIm[i+l];
+					cRe[l] = pRe; cIm[l] = pIm;
+				}
+				else
+				{
+					re[l] = 0.0; im[l] = 0.0;
+					cRe[l] = zRe[i+l]; cIm[l] = zIm[i+l];
+				}
+				if (checkers != null)
+					checkers[l].reset(re[l], im[l]);
+			}
+			for (int it = 0; it < maxIterations; it++)
+			{
+				boolean anyActive = false;
+				for (int l = 0; l < LANES; l++)
+					if (n[l] == it && re[l]*re[l] + im[l]*im[l] <= bailout)
+					{
+						double bRe = re[l], bIm = im[l];
+						double pwRe = bRe, pwIm = bIm;
+						for (int bit = topBit>>1; bit != 0; bit >>= 1)
+						{
+							double tmp = pwRe;
+							pwRe = pwRe*pwRe - pwIm*pwIm;
+							pwIm = 2.0*tmp*pwIm;
+							if ((power & bit) != 0)
+							{
+								tmp = pwRe;
+								pwRe = pwRe*bRe - pwIm*bIm;
+								pwIm = tmp*bIm + pwIm*bRe;
+							}
+						}
+						re[l] = pwRe + cRe[l];
+						im[l] = pwIm + cIm[l];
+						n[l]++;
+						/* cycle: finish lane as interior point */
+						if (checkers != null && checkers[l].check(re[l], im[l]))
+							n[l] = maxIterations;
+						anyActive = true;
+					}
+				if (!anyActive)
+					break;
+			}
+			for (int l = 0; l < lanes; l++)
+			{
+				outZRe[i+l] = re[l];
+				outZIm[i+l] = im[l];
+				itData[i+l] = (n[l] == maxIterations) ? -1 : n[l];
+			}
+		}
+		return length;
+	}
+}
@@ -8,10 +8,11 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Magnet1 extends FractalFormula
+public class Magnet1 extends FractalFormula implements PrimitiveFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
@@ -50,5 +51,35 @@ public class Magnet1 extends FractalFormula
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				/* ((z^2 + c - 1) / (2z + c - 2))^2 */
+				double xRe = re*2.0 + cRe - 2.0;
+				double xIm = im*2.0 + cIm;
+				double tmp = re;
+				re = re*re - im*im + cRe - 1.0;
+				im = 2.0*tmp*im + cIm;
+				double norm2 = xRe*xRe + xIm*xIm;
+				tmp = re;
+				re = (re*xRe + im*xIm) / norm2;
+				im = (im*xRe - tmp*xIm) / norm2;
+				tmp = re;
+				re = re*re - im*im;
+				im = 2.0*tmp*im;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
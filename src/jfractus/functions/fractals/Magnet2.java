@@ -8,10 +8,11 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Magnet2 extends FractalFormula
+public class Magnet2 extends FractalFormula implements PrimitiveFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
@@ -61,5 +62,46 @@ public class Magnet2 extends FractalFormula
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			/* c1 = c-1, c2 = c-2 */
+			double c1Re = zRe[i] - 1.0;
+			double c2Re = zRe[i] - 2.0;
+			double cIm = zIm[i];
+			double c1c2Re = c1Re*c2Re - cIm*cIm;
+			double c1c2Im = c1Re*cIm + cIm*c2Re;
+			double re = 0.0, im = 0.0;
+			int it;
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				/* ((z^3 + 3(c-1)z + (c-1)(c-2)) /
+				 *  (3z^2 + 3(c-2)z + (c-1)(c-2) + 1))^2 */
+				double a1Re = (c1Re*re - cIm*im)*3.0;
+				double a1Im = (c1Re*im + cIm*re)*3.0;
+				double a2Re = (c2Re*re - cIm*im)*3.0;
+				double a2Im = (c2Re*im + cIm*re)*3.0;
+				double re2 = re*re - im*im;
+				double im2 = 2.0*re*im;
+				double xRe = re2*3.0 + a2Re + c1c2Re + 1.0;
+				double xIm = im2*3.0 + a2Im + c1c2Im;
+				double tmp = re;
+				re = re*re2 - im2*im + a1Re + c1c2Re;
+				im = tmp*im2 + im*re2 + a1Im + c1c2Im;
+				double norm2 = xRe*xRe + xIm*xIm;
+				tmp = re;
+				re = (re*xRe + im*xIm) / norm2;
+				im = (im*xRe - tmp*xIm) / norm2;
+				tmp = re;
+				re = re*re - im*im;
+				im = 2.0*tmp*im;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
@@ -6,16 +6,29 @@
 
 package jfractus.functions.fractals;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import jfractus.api.DoubleDoubleFractalFormula;
+import jfractus.api.FloatFractalFormula;
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PerturbationFractalFormula;
+import jfractus.api.PerturbationReference;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
+import jfractus.math.DDComplex;
 
-public final class Mandelbrot extends FractalFormula
+public final class Mandelbrot extends FractalFormula implements PrimitiveFractalFormula,
+		PerturbationFractalFormula, DoubleDoubleFractalFormula, FloatFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
 	public double bailout;
+	public static final String periodicityUserName = Resources.getString("Periodicity");
+	@Parameter
+	public double periodicity;
 	
 	public Mandelbrot()
 	{
@@ -26,21 +39,97 @@ public final class Mandelbrot extends FractalFormula
 	{
 		maxIterations = 16;
 		bailout = 4.0;
+		periodicity = 0.0;
 	}
 	
 	@Override
 	public void compute(int length, int[] itData, Complex[] zData, Complex[] outZData)
 	{
 		Complex z = new Complex();
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
 		for (int i = 0; i < length; i++)
 		{
 			z.set(0.0, 0.0);
+			if (checker != null)
+				checker.reset(z.re, z.im);
 			for (itData[i] = 0;
 					itData[i] < maxIterations &&  z.norm2() <= bailout; itData[i]++)
+			{
 				z.square().add(zData[i]);
+				if (checker != null && checker.check(z.re, z.im))
+				{
+					itData[i] = maxIterations;
+					break;
+				}
+			}
 			outZData[i].set(z);
 			if (itData[i] == maxIterations)
 				itData[i] = -1;
 		}
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		int i = 0;
+		if (checker == null && LaneKernels.isUsable(length))
+			i = LaneKernels.quadratic(LaneKernels.QUADRATIC, false, 0.0, 0.0,
+					maxIterations, bailout, length, itData, zRe, zIm, outZRe, outZIm);
+		for (; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			if (checker != null)
+				checker.reset(re, im);
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				double tmp = re;
+				re = re*re - im*im + cRe;
+				im = 2.0*tmp*im + cIm;
+				if (checker != null && checker.check(re, im))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+	
+	public PerturbationReference computeReference(BigDecimal centerRe, BigDecimal centerIm,
+			double maxDelta, MathContext mc)
+	{
+		PerturbationReference ref = PerturbationKernels.reference(LaneKernels.QUADRATIC,
+				centerRe, centerIm, maxIterations, bailout, mc);
+		PerturbationKernels.series(ref, maxIterations, maxDelta);
+		return ref;
+	}
+	
+	public void compute(int length, int[] itData, PerturbationReference reference,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		PerturbationKernels.compute(LaneKernels.QUADRATIC, reference, maxIterations, bailout,
+				periodicity, length, itData, dcRe, dcIm, outZRe, outZIm);
+	}
+	
+	public void compute(int length, int[] itData, DDComplex center,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		DoubleDoubleKernels.quadratic(LaneKernels.QUADRATIC, false, 0.0, 0.0, maxIterations,
+				bailout, periodicity, center, length, itData,
+				dcRe, dcIm, outZRe, outZIm);
+	}
+	
+	public void compute(int length, int[] itData, float[] zRe, float[] zIm,
+			float[] outZRe, float[] outZIm)
+	{
+		FloatKernels.compute(FloatKernels.QUADRATIC, false, 0.0f, 0.0f, maxIterations,
+				(float)bailout, periodicity, length, itData,
+				zRe, zIm, outZRe, outZIm);
+	}
 }
@@ -8,10 +8,11 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Newton extends FractalFormula
+public class Newton extends FractalFormula implements PrimitiveFractalFormula
 {
 	public final static String epsilonUserName = Resources.getString("Epsilon");
 	@Parameter
@@ -69,5 +70,37 @@ public class Newton extends FractalFormula
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double re = zRe[i], im = zIm[i];
+			int it;
+			for (it = 0; it < maxIterations; it++)
+			{
+				/* z - (z^3 - 1) / (3z^2) */
+				double re2 = re*re - im*im;
+				double im2 = 2.0*re*im;
+				double pRe = re*re2 - im2*im - 1.0;
+				double pIm = re*im2 + im*re2;
+				double dRe = re2*3.0;
+				double dIm = im2*3.0;
+				double norm2 = dRe*dRe + dIm*dIm;
+				double qRe = (pRe*dRe + pIm*dIm) / norm2;
+				double qIm = (pIm*dRe - pRe*dIm) / norm2;
+				double lastRe = re, lastIm = im;
+				re -= qRe;
+				im -= qIm;
+				double resRe = re - lastRe;
+				double resIm = im - lastIm;
+				if (resRe*resRe + resIm*resIm < epsilon2)
+					break;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
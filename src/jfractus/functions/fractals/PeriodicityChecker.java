@@ -0,0 +1,54 @@
+/**
+ * PeriodicityChecker.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.functions.fractals;
+
+/* Brent's cycle detection for orbits: z is saved at iterations which are powers of two,
+ * and if later z is closer than tolerance to saved z, orbit fell into attracting cycle */
+final class PeriodicityChecker
+{
+	private double tolerance2;
+	private double savedRe, savedIm;
+	private int step;
+	private int period;
+
+	public PeriodicityChecker(double tolerance)
+	{
+		tolerance2 = tolerance*tolerance;
+	}
+
+	/* returns checker or null if periodicity checking is disabled (tolerance <= 0) */
+	public static PeriodicityChecker create(double tolerance)
+	{
+		return (tolerance > 0.0) ? new PeriodicityChecker(tolerance) : null;
+	}
+
+	/* start new orbit from z */
+	public void reset(double re, double im)
+	{
+		savedRe = re;
+		savedIm = im;
+		step = 0;
+		period = 1;
+	}
+
+	/* returns true if z is in cycle */
+	public boolean check(double re, double im)
+	{
+		double dRe = re - savedRe;
+		double dIm = im - savedIm;
+		if (dRe*dRe + dIm*dIm < tolerance2)
+			return true;
+		if (++step == period)
+		{
+			savedRe = re;
+			savedIm = im;
+			step = 0;
+			period <<= 1;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * PerturbationKernels.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.functions.fractals;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import jfractus.api.PerturbationReference;
+
+/* perturbation kernels for quadratic formulas (z^2+c, conjugate and absolute variants).
+ * reference orbit Z is computed in BigDecimal, point is z = Z + delta and only delta
+ * is iterated in doubles: delta' = (2Z+delta)*delta + dc.
+ * if |z| < |delta| (or reference orbit is ended) delta is rebased to z with Z = Z[0] = 0.
+ * it removes glitches, because delta is never larger than the point itself */
+final class PerturbationKernels
+{
+	/* series approximation is used while cubic term is smaller than linear term times this */
+	private static final double SERIES_TOLERANCE = 1.0e-9;
+	private static final BigDecimal TWO = BigDecimal.valueOf(2);
+	
+	private PerturbationKernels()
+	{
+	}
+	
+	/* compute reference orbit of z^2+c from z0 = 0 */
+	public static PerturbationReference reference(int variant, BigDecimal cRe, BigDecimal cIm,
+			int maxIterations, double bailout, MathContext mc)
+	{
+		PerturbationReference ref = new PerturbationReference(maxIterations+1);
+		BigDecimal re = BigDecimal.ZERO, im = BigDecimal.ZERO;
+		double[] orbitRe = ref.orbitRe, orbitIm = ref.orbitIm;
+		int n = 0;
+		while (true)
+		{
+			double dRe = re.doubleValue(), dIm = im.doubleValue();
+			orbitRe[n] = dRe;
+			orbitIm[n] = dIm;
+			if (n == maxIterations || dRe*dRe + dIm*dIm > bailout)
+				break;
+			if (variant == LaneKernels.QUADRATIC_ABS)
+			{
+				re = re.abs();
+				im = im.abs();
+			}
+			BigDecimal newRe = re.multiply(re, mc).subtract(im.multiply(im, mc), mc).add(cRe, mc);
+			BigDecimal newIm = TWO.multiply(re, mc).multiply(im, mc);
+			if (variant == LaneKernels.QUADRATIC_CONJ)
+				newIm = newIm.negate();
+			re = newRe;
+			im = newIm.add(cIm, mc);
+			n++;
+		}
+		ref.length = n;
+		return ref;
+	}
+	
+	/* compute coefficients A,B,C of delta = A*dc + B*dc^2 + C*dc^3 for z^2+c:
+	 * A' = 2ZA + 1, B' = 2ZB + A^2, C' = 2ZC + 2AB */
+	public static void series(PerturbationReference ref, int maxIterations, double maxDelta)
+	{
+		double aRe = 0.0, aIm = 0.0, bRe = 0.0, bIm = 0.0, cRe = 0.0, cIm = 0.0;
+		double r2 = maxDelta*maxDelta;
+		int skip = 0;
+		for (int n = 0; n+1 < ref.length && n+1 < maxIterations; n++)
+		{
+			double zRe = 2.0*ref.orbitRe[n], zIm = 2.0*ref.orbitIm[n];
+			double nRe = zRe*aRe - zIm*aIm + 1.0;
+			double nIm = zRe*aIm + zIm*aRe;
+			double nbRe = zRe*bRe - zIm*bIm + aRe*aRe - aIm*aIm;
+			double nbIm = zRe*bIm + zIm*bRe + 2.0*aRe*aIm;
+			double ncRe = zRe*cRe - zIm*cIm + 2.0*(aRe*bRe - aIm*bIm);
+			double ncIm = zRe*cIm + zIm*cRe + 2.0*(aRe*bIm + aIm*bRe);
+			double cubic = (ncRe*ncRe + ncIm*ncIm)*r2*r2;
+			double linear = nRe*nRe + nIm*nIm;
+			/* also stops on overflow (NaN comparison) */
+			if (!(cubic <= SERIES_TOLERANCE*SERIES_TOLERANCE*linear))
+				break;
+			aRe = nRe; aIm = nIm;
+			bRe = nbRe; bIm = nbIm;
+			cRe = ncRe; cIm = ncIm;
+			skip = n+1;
+		}
+		ref.seriesSkip = skip;
+		ref.seriesRe = new double[] { aRe, bRe, cRe };
+		ref.seriesIm = new double[] { aIm, bIm, cIm };
+	}
+	
+	/* returns |a+b| - |a| without cancellation */
+	private static double diffAbs(double a, double b)
+	{
+		if (a >= 0.0)
+			return (a+b >= 0.0) ? b : -(2.0*a + b);
+		else
+			return (a+b > 0.0) ? (2.0*a + b) : -b;
+	}
+	
+	/* if periodicity is greater than zero, points in attracting cycle are finished early */
+	public static void compute(int variant, PerturbationReference ref, int maxIterations,
+			double bailout, double periodicity, int length, int[] itData,
+			double[] dcRe, double[] dcIm, double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		final double[] orbitRe = ref.orbitRe, orbitIm = ref.orbitIm;
+		final int refLength = ref.length;
+		final double imSign = (variant == LaneKernels.QUADRATIC_CONJ) ? -2.0 : 2.0;
+		final boolean absIm = (variant == LaneKernels.QUADRATIC_ABS);
+		final int skip = ref.seriesSkip;
+		for (int i = 0; i < length; i++)
+		{
+			double cRe = dcRe[i];
+			double cIm = dcIm[i];
+			double re = 0.0, im = 0.0;
+			if (skip != 0)
+			{
+				/* delta from series (Horner scheme) */
+				double[] sRe = ref.seriesRe, sIm = ref.seriesIm;
+				double tRe = sRe[2], tIm = sIm[2];
+				for (int k = 1; k >= 0; k--)
+				{
+					double tmp = tRe*cRe - tIm*cIm + sRe[k];
+					tIm = tRe*cIm + tIm*cRe + sIm[k];
+					tRe = tmp;
+				}
+				re = tRe*cRe - tIm*cIm;
+				im = tRe*cIm + tIm*cRe;
+			}
+			int m = skip;
+			int it;
+			double zRe = orbitRe[m] + re, zIm = orbitIm[m] + im;
+			if (checker != null)
+				checker.reset(zRe, zIm);
+			for (it = skip; it < maxIterations; it++)
+			{
+				double norm = zRe*zRe + zIm*zIm;
+				if (norm > bailout)
+					break;
+				if (m == refLength || norm < re*re + im*im)
+				{
+					/* rebase: continue from start of reference orbit */
+					re = zRe;
+					im = zIm;
+					m = 0;
+				}
+				double oRe = orbitRe[m], oIm = orbitIm[m];
+				double newRe = (2.0*oRe + re)*re - (2.0*oIm + im)*im + cRe;
+				double newIm;
+				if (absIm)
+					newIm = 2.0*diffAbs(oRe*oIm, oRe*im + oIm*re + re*im) + cIm;
+				else
+					newIm = imSign*(oRe*im + oIm*re + re*im) + cIm;
+				re = newRe;
+				im = newIm;
+				m++;
+				zRe = orbitRe[m] + re;
+				zIm = orbitIm[m] + im;
+				if (checker != null && checker.check(zRe, zIm))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = zRe;
+			outZIm[i] = zIm;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
+}
@@ -8,14 +8,18 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class PowerMandelbrot extends FractalFormula
+public class PowerMandelbrot extends FractalFormula implements PrimitiveFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
 	public double bailout;
+	public static final String periodicityUserName = Resources.getString("Periodicity");
+	@Parameter
+	public double periodicity;
 	public static final String powerUserName = Resources.getString("Power");
 	@Parameter
 	public double power;
@@ -29,6 +33,7 @@ public class PowerMandelbrot extends FractalFormula
 	{
 		maxIterations = 16;
 		bailout = 4.0;
+		periodicity = 0.0;
 		power = 2.0;
 	}
 	
@@ -37,16 +42,69 @@ public class PowerMandelbrot extends FractalFormula
 	public void compute(int length, int[] itData, Complex[] zData, Complex[] outZData)
 	{
 		Complex z = new Complex();
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
 		for (int i = 0; i < length; i++)
 		{
 			z.set(0.0, 0.0);
+			if (checker != null)
+				checker.reset(z.re, z.im);
 			for (itData[i] = 0;
 					itData[i] < maxIterations &&  z.norm2() <= bailout; itData[i]++)
+			{
 				z.pow(power).add(zData[i]);
+				if (checker != null && checker.check(z.re, z.im))
+				{
+					itData[i] = maxIterations;
+					break;
+				}
+			}
 			outZData[i].set(z);
 			if (itData[i] == maxIterations)
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		int i = 0;
+		/* integer powers by multiplications: faster and exact for small powers */
+		if (LaneKernels.isIntPower(power))
+			i = LaneKernels.intPower((int)power, false, 0.0, 0.0,
+					maxIterations, bailout, periodicity, length, itData,
+					zRe, zIm, outZRe, outZIm);
+		for (; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			if (checker != null)
+				checker.reset(re, im);
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				if (re != 0.0 || im != 0.0)
+				{	/* z^power = exp(power*log(z)) */
+					double abs = Math.hypot(re, im);
+					double arg = (re >= 0.0 || im != 0.0) ?
+							Math.acos(re/abs)*Math.signum(im) : Math.PI;
+					double rexp = Math.exp(Math.log(abs)*power);
+					arg *= power;
+					re = Math.cos(arg) * rexp;
+					im = Math.sin(arg) * rexp;
+				}
+				re += cRe;
+				im += cIm;
+				if (checker != null && checker.check(re, im))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
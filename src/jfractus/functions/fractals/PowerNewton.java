@@ -8,10 +8,11 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class PowerNewton extends FractalFormula
+public class PowerNewton extends FractalFormula implements PrimitiveFractalFormula
 {
 	public final static String epsilonUserName = Resources.getString("Epsilon");
 	@Parameter
@@ -73,5 +74,49 @@ public class PowerNewton extends FractalFormula
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double re = zRe[i], im = zIm[i];
+			int it;
+			for (it = 0; it < maxIterations; it++)
+			{
+				/* z - (z^power - 1) / (power*z^(power-1)) */
+				double pRe = re, pIm = im;
+				double dRe = re, dIm = im;
+				if (re != 0.0 || im != 0.0)
+				{
+					double abs = Math.hypot(re, im);
+					double logAbs = Math.log(abs);
+					double arg = (re >= 0.0 || im != 0.0) ?
+							Math.acos(re/abs)*Math.signum(im) : Math.PI;
+					double rexp = Math.exp(logAbs*power);
+					pRe = Math.cos(arg*power) * rexp;
+					pIm = Math.sin(arg*power) * rexp;
+					rexp = Math.exp(logAbs*(power-1.0));
+					dRe = Math.cos(arg*(power-1.0)) * rexp;
+					dIm = Math.sin(arg*(power-1.0)) * rexp;
+				}
+				pRe -= 1.0;
+				dRe *= power;
+				dIm *= power;
+				double norm2 = dRe*dRe + dIm*dIm;
+				double qRe = (pRe*dRe + pIm*dIm) / norm2;
+				double qIm = (pIm*dRe - pRe*dIm) / norm2;
+				double lastRe = re, lastIm = im;
+				re -= qRe;
+				im -= qIm;
+				double resRe = re - lastRe;
+				double resIm = im - lastIm;
+				if (resRe*resRe + resIm*resIm < epsilon2)
+					break;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
@@ -8,14 +8,18 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class ZPolyMandelbrot extends FractalFormula
+public class ZPolyMandelbrot extends FractalFormula implements PrimitiveFractalFormula
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
 	public double bailout;
+	public static final String periodicityUserName = Resources.getString("Periodicity");
+	@Parameter
+	public double periodicity;
 	
 	public static final String polynomialUserName = Resources.getString("Polynomial");
 	@Parameter
@@ -30,6 +34,7 @@ public class ZPolyMandelbrot extends FractalFormula
 	{
 		maxIterations = 16;
 		bailout = 4.0;
+		periodicity = 0.0;
 		final Complex[] defaultPoly = {
 				new Complex(0.0, 0.0), new Complex(0.0, 0.0), new Complex(1.0, 0.0) };
 		polynomial = defaultPoly;
@@ -40,10 +45,13 @@ public class ZPolyMandelbrot extends FractalFormula
 	        Complex[] outZData)
 	{
 		Complex z = new Complex();
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
 		Complex x = new Complex();
 		for (int i = 0; i < length; i++)
 		{
 			z.set(0.0, 0.0);
+			if (checker != null)
+				checker.reset(z.re, z.im);
 			for (itData[i] = 0;
 					itData[i] < maxIterations &&  z.norm2() <= bailout; itData[i]++)
 			{
@@ -57,11 +65,67 @@ public class ZPolyMandelbrot extends FractalFormula
 				else
 					z.set(0.0, 0.0);
 				z.add(zData[i]);
+				if (checker != null && checker.check(z.re, z.im))
+				{
+					itData[i] = maxIterations;
+					break;
+				}
 			}
 			outZData[i].set(z);
 			if (itData[i] == maxIterations)
 				itData[i] = -1;
 		}
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		PeriodicityChecker checker = PeriodicityChecker.create(periodicity);
+		int degree = polynomial.length-1;
+		double[] polyRe = new double[polynomial.length];
+		double[] polyIm = new double[polynomial.length];
+		for (int c = 0; c <= degree; c++)
+		{
+			polyRe[c] = polynomial[c].re;
+			polyIm[c] = polynomial[c].im;
+		}
+		
+		for (int i = 0; i < length; i++)
+		{
+			double cRe = zRe[i];
+			double cIm = zIm[i];
+			double re = 0.0, im = 0.0;
+			int it;
+			if (checker != null)
+				checker.reset(re, im);
+			for (it = 0; it < maxIterations && re*re + im*im <= bailout; it++)
+			{
+				/* Horner scheme */
+				double xRe = re, xIm = im;
+				re = 0.0;
+				im = 0.0;
+				if (degree >= 0)
+				{
+					re = polyRe[degree];
+					im = polyIm[degree];
+					for (int c = degree-1; c >= 0; c--)
+					{
+						double tmp = re;
+						re = re*xRe - im*xIm + polyRe[c];
+						im = tmp*xIm + im*xRe + polyIm[c];
+					}
+				}
+				re += cRe;
+				im += cIm;
+				if (checker != null && checker.check(re, im))
+				{
+					it = maxIterations;
+					break;
+				}
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
@@ -8,10 +8,11 @@ package jfractus.functions.fractals;
 
 import jfractus.api.FractalFormula;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveFractalFormula;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class ZPolyNewton extends FractalFormula
+public class ZPolyNewton extends FractalFormula implements PrimitiveFractalFormula
 {
 	public final static String epsilonUserName = Resources.getString("Epsilon");
 	@Parameter
@@ -85,4 +86,56 @@ public class ZPolyNewton extends FractalFormula
 				itData[i] = -1;
 		}
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			double[] outZRe, double[] outZIm)
+	{
+		int degree = polynomial.length-1;
+		double[] polyRe = new double[polynomial.length];
+		double[] polyIm = new double[polynomial.length];
+		for (int c = 0; c <= degree; c++)
+		{
+			polyRe[c] = polynomial[c].re;
+			polyIm[c] = polynomial[c].im;
+		}
+		
+		for (int i = 0; i < length; i++)
+		{
+			double re = zRe[i], im = zIm[i];
+			int it;
+			for (it = 0; it < maxIterations; it++)
+			{
+				/* Horner scheme for polynomial and its derivative */
+				double pRe = 0.0, pIm = 0.0;
+				double dRe = 0.0, dIm = 0.0;
+				if (degree >= 0)
+				{
+					pRe = polyRe[degree];
+					pIm = polyIm[degree];
+					for (int c = degree-1; c >= 0; c--)
+					{
+						double tmp = dRe;
+						dRe = dRe*re - dIm*im + pRe;
+						dIm = tmp*im + dIm*re + pIm;
+						tmp = pRe;
+						pRe = pRe*re - pIm*im + polyRe[c];
+						pIm = tmp*im + pIm*re + polyIm[c];
+					}
+				}
+				double norm2 = dRe*dRe + dIm*dIm;
+				double qRe = (pRe*dRe + pIm*dIm) / norm2;
+				double qIm = (pIm*dRe - pRe*dIm) / norm2;
+				double lastRe = re, lastIm = im;
+				re -= qRe;
+				im -= qIm;
+				double resRe = re - lastRe;
+				double resIm = im - lastIm;
+				if (resRe*resRe + resIm*resIm < epsilon2)
+					break;
+			}
+			outZRe[i] = re;
+			outZIm[i] = im;
+			itData[i] = (it == maxIterations) ? -1 : it;
+		}
+	}
 }
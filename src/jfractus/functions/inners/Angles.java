@@ -8,10 +8,11 @@ package jfractus.functions.inners;
 
 import jfractus.api.InnerFunction;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveInnerFunction;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Angles extends InnerFunction
+public class Angles extends InnerFunction implements PrimitiveInnerFunction
 {
 	public static final String shiftUserName = Resources.getString("Shift");
 	@Parameter
@@ -47,5 +48,20 @@ public class Angles extends InnerFunction
 			if (itData[i] < 0)
 				outData[i] = (float)(data[i].arg() + Math.PI) * scaleFactor + shift;
 	}
-
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData)
+	{
+		for (int i = 0; i < length; i++)
+			if (itData[i] < 0)
+			{
+				double re = zRe[i];
+				double im = zIm[i];
+				double arg = 0.0;
+				if (re != 0.0 || im != 0.0)
+					arg = (re >= 0.0 || im != 0.0) ?
+							Math.acos(re/Math.hypot(re, im))*Math.signum(im) : Math.PI;
+				outData[i] = (float)(arg + Math.PI) * scaleFactor + shift;
+			}
+	}
 }
@@ -7,9 +7,10 @@
 package jfractus.functions.inners;
 
 import jfractus.api.InnerFunction;
+import jfractus.api.PrimitiveInnerFunction;
 import jfractus.math.Complex;
 
-public final class Default extends InnerFunction
+public final class Default extends InnerFunction implements PrimitiveInnerFunction
 {
 	public Default()
 	{
@@ -24,4 +25,12 @@ public final class Default extends InnerFunction
 			if (itData[i] < 0)
 				outData[i] = 0;
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData)
+	{
+		for (int i = 0; i < length; i++)
+			if (itData[i] < 0)
+				outData[i] = 0;
+	}
 }
@@ -8,10 +8,11 @@ package jfractus.functions.inners;
 
 import jfractus.api.InnerFunction;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveInnerFunction;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Distance extends InnerFunction
+public class Distance extends InnerFunction implements PrimitiveInnerFunction
 {
 	public static final String shiftUserName = Resources.getString("Shift");
 	@Parameter
@@ -40,4 +41,12 @@ public class Distance extends InnerFunction
 			if (itData[i] < 0)
 				outData[i] = (float)(data[i].abs()) * scale + shift;
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData)
+	{
+		for (int i = 0; i < length; i++)
+			if (itData[i] < 0)
+				outData[i] = (float)(Math.hypot(zRe[i], zIm[i])) * scale + shift;
+	}
 }
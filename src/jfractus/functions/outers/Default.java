@@ -7,9 +7,10 @@
 package jfractus.functions.outers;
 
 import jfractus.api.OuterFunction;
+import jfractus.api.PrimitiveOuterFunction;
 import jfractus.math.Complex;
 
-public final class Default extends OuterFunction
+public final class Default extends OuterFunction implements PrimitiveOuterFunction
 {
 	public Default()
 	{
@@ -24,4 +25,18 @@ public final class Default extends OuterFunction
 			if (itData[i] >= 0)
 				outData[i] = itData[i];
 	}
+	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData)
+	{
+		for (int i = 0; i < length; i++)
+			if (itData[i] >= 0)
+				outData[i] = itData[i];
+	}
+	
+	@Override
+	public boolean isIterationsOnly()
+	{
+		return true;
+	}
 }
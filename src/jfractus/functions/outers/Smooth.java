@@ -8,10 +8,11 @@ package jfractus.functions.outers;
 
 import jfractus.api.OuterFunction;
 import jfractus.api.Parameter;
+import jfractus.api.PrimitiveOuterFunction;
 import jfractus.app.Resources;
 import jfractus.math.Complex;
 
-public class Smooth extends OuterFunction
+public class Smooth extends OuterFunction implements PrimitiveOuterFunction
 {
 	public static final String bailoutUserName = Resources.getString("Bailout");
 	@Parameter
@@ -45,6 +46,19 @@ public class Smooth extends OuterFunction
 				outData[i] = itData[i] + (float)l;
 			}
 	}
-
 	
+	public void compute(int length, int[] itData, double[] zRe, double[] zIm,
+			float[] outData)
+	{
+		for (int i = 0; i < length; i++)
+			if (itData[i] >= 0)
+			{
+				/* log|z| = 0.5*log(|z|^2), hypot only when |z|^2 overflows */
+				double norm2 = zRe[i]*zRe[i] + zIm[i]*zIm[i];
+				double logAbs = (norm2 < Double.POSITIVE_INFINITY) ? 0.5*Math.log(norm2) :
+						Math.log(Math.hypot(zRe[i], zIm[i]));
+				double l = (blFactor - Math.log(logAbs)) * pValue;
+				outData[i] = itData[i] + (float)l;
+			}
+	}
 }
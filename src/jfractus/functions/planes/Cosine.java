@@ -7,9 +7,10 @@
 package jfractus.functions.planes;
 
 import jfractus.api.PlaneTransform;
+import jfractus.api.PrimitivePlaneTransform;
 import jfractus.math.Complex;
 
-public class Cosine extends PlaneTransform
+public class Cosine extends PlaneTransform implements PrimitivePlaneTransform
 {
 
 	@Override
@@ -18,5 +19,16 @@ public class Cosine extends PlaneTransform
 		for (int i = 0; i < length; i++)
 			data[i].cos();
 	}
-
+	
+	public void compute(int length, double[] zRe, double[] zIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double pexp = Math.exp(zIm[i]);
+			double mexp = 1.0/pexp;
+			double re = zRe[i];
+			zRe[i] = 0.5 * Math.cos(re) * (mexp+pexp);
+			zIm[i] = 0.5 * Math.sin(re) * (mexp-pexp);
+		}
+	}
 }
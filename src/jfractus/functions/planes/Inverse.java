@@ -7,9 +7,10 @@
 package jfractus.functions.planes;
 
 import jfractus.api.PlaneTransform;
+import jfractus.api.PrimitivePlaneTransform;
 import jfractus.math.Complex;
 
-public class Inverse extends PlaneTransform
+public class Inverse extends PlaneTransform implements PrimitivePlaneTransform
 {
 	public Inverse()
 	{
@@ -22,5 +23,14 @@ public class Inverse extends PlaneTransform
 		for (int i = 0; i < length; i++)
 			data[i].recip();
 	}
-
+	
+	public void compute(int length, double[] zRe, double[] zIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double norm2 = zRe[i]*zRe[i] + zIm[i]*zIm[i];
+			zRe[i] /= norm2;
+			zIm[i] /= -norm2;
+		}
+	}
 }
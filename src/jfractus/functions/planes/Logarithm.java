@@ -7,9 +7,10 @@
 package jfractus.functions.planes;
 
 import jfractus.api.PlaneTransform;
+import jfractus.api.PrimitivePlaneTransform;
 import jfractus.math.Complex;
 
-public class Logarithm extends PlaneTransform
+public class Logarithm extends PlaneTransform implements PrimitivePlaneTransform
 {
 
 	@Override
@@ -18,5 +19,16 @@ public class Logarithm extends PlaneTransform
 		for (int i = 0; i < length; i++)
 			data[i].log();
 	}
-
+	
+	public void compute(int length, double[] zRe, double[] zIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double re = zRe[i];
+			double im = zIm[i];
+			double abs = Math.hypot(re, im);
+			zRe[i] = Math.log(abs);
+			zIm[i] = (re >= 0.0 || im != 0) ? Math.acos(re/abs)*Math.signum(im) : Math.PI;
+		}
+	}
 }
@@ -7,9 +7,10 @@
 package jfractus.functions.planes;
 
 import jfractus.api.PlaneTransform;
+import jfractus.api.PrimitivePlaneTransform;
 import jfractus.math.Complex;
 
-public final class NoTransform extends PlaneTransform
+public final class NoTransform extends PlaneTransform implements PrimitivePlaneTransform
 {
 	public NoTransform()
 	{
@@ -20,4 +21,14 @@ public final class NoTransform extends PlaneTransform
 	public void compute(int length, Complex[] data)
 	{
 	}
+	
+	public void compute(int length, double[] zRe, double[] zIm)
+	{
+	}
+	
+	@Override
+	public boolean isIdentity()
+	{
+		return true;
+	}
 }
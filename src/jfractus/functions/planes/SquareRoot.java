@@ -7,9 +7,10 @@
 package jfractus.functions.planes;
 
 import jfractus.api.PlaneTransform;
+import jfractus.api.PrimitivePlaneTransform;
 import jfractus.math.Complex;
 
-public class SquareRoot extends PlaneTransform
+public class SquareRoot extends PlaneTransform implements PrimitivePlaneTransform
 {
 
 	@Override
@@ -18,5 +19,23 @@ public class SquareRoot extends PlaneTransform
 		for (int i = 0; i < length; i++)
 			data[i].sqrt();
 	}
-
+	
+	public void compute(int length, double[] zRe, double[] zIm)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double re = zRe[i];
+			double im = zIm[i];
+			if (im != 0.0 || re > 0.0)
+			{
+				zRe[i] = Math.sqrt((re + Math.hypot(re, im))*0.5);
+				zIm[i] = im / (2.0*zRe[i]);
+			}
+			else
+			{
+				zIm[i] = Math.sqrt(-re);
+				zRe[i] = 0.0;
+			}
+		}
+	}
 }
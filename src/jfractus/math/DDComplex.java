@@ -0,0 +1,140 @@
+/**
+ * DDComplex.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.math;
+
+import java.io.Serializable;
+
+import jfractus.generic.Copyable;
+
+/* complex number with double-double parts. as in DoubleDouble, operations
+ * modify this object and do not allocate */
+public class DDComplex implements Serializable, Copyable<DDComplex>
+{
+	private static final long serialVersionUID = -2190536472964542750L;
+	
+	public final DoubleDouble re, im;
+	private final DoubleDouble tmp = new DoubleDouble();
+	
+	public DDComplex()
+	{
+		re = new DoubleDouble();
+		im = new DoubleDouble();
+	}
+	public DDComplex(DoubleDouble re, DoubleDouble im)
+	{
+		this.re = re.copy();
+		this.im = im.copy();
+	}
+	public DDComplex(double re, double im)
+	{
+		this.re = new DoubleDouble(re);
+		this.im = new DoubleDouble(im);
+	}
+	
+	public DDComplex copy()
+	{
+		return new DDComplex(re, im);
+	}
+	
+	/* set methods */
+	public DDComplex set(double r, double i)
+	{
+		re.set(r);
+		im.set(i);
+		return this;
+	}
+	public DDComplex set(DDComplex c)
+	{
+		re.set(c.re);
+		im.set(c.im);
+		return this;
+	}
+	
+	/* arithmetic */
+	public DDComplex add(double r, double i)
+	{
+		re.add(r);
+		im.add(i);
+		return this;
+	}
+	public DDComplex add(DDComplex c)
+	{
+		re.add(c.re);
+		im.add(c.im);
+		return this;
+	}
+	public DDComplex subtract(DDComplex c)
+	{
+		re.subtract(c.re);
+		im.subtract(c.im);
+		return this;
+	}
+	
+	public DDComplex multiply(DDComplex c)
+	{
+		/* c can be this object */
+		double cReHi = c.re.hi, cReLo = c.re.lo;
+		double cImHi = c.im.hi, cImLo = c.im.lo;
+		double imHi = im.hi, imLo = im.lo;
+		/* re = re*c.re - im*c.im, im = re*c.im + im*c.re */
+		tmp.set(re).multiply(cImHi, cImLo);
+		re.multiply(cReHi, cReLo).subtract(im.multiply(cImHi, cImLo));
+		im.set(imHi, imLo).multiply(cReHi, cReLo).add(tmp);
+		return this;
+	}
+	
+	public DDComplex square()
+	{
+		tmp.set(re).multiply(im).scale(2.0);
+		re.square();
+		im.square();
+		re.subtract(im);
+		im.set(tmp);
+		return this;
+	}
+	
+	public DDComplex conj()
+	{
+		im.neg();
+		return this;
+	}
+	
+	/* squared absolute value (in double precision) */
+	public double norm2()
+	{
+		double r = re.doubleValue(), i = im.doubleValue();
+		return r*r + i*i;
+	}
+	
+	public Complex toComplex(Complex dest)
+	{
+		dest.set(re.doubleValue(), im.doubleValue());
+		return dest;
+	}
+	
+	public boolean equals(Object ob)
+	{
+		if (this == ob)
+			return true;
+		else if (ob instanceof DDComplex)
+		{
+			DDComplex c = (DDComplex)ob;
+			return re.equals(c.re) && im.equals(c.im);
+		}
+		else return false;
+	}
+	
+	public int hashCode()
+	{
+		return re.hashCode()*31 + im.hashCode();
+	}
+	
+	public String toString()
+	{
+		return "(" + re.toString() + "," + im.toString() + ")";
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * DoubleDouble.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.math;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+import jfractus.generic.Copyable;
+
+/* double-double number: unevaluated sum hi+lo with |lo| <= ulp(hi)/2 (about 106 bits
+ * of mantissa). operations modify this object and return it, so computations are
+ * allocation-free. products use Dekker's splitting (without fused multiply-add) */
+public class DoubleDouble implements Serializable, Copyable<DoubleDouble>
+{
+	private static final long serialVersionUID = 4417625095385178413L;
+	
+	/* 2^27+1, splits double into two 26-bit halves */
+	private static final double SPLITTER = 134217729.0;
+	
+	public double hi, lo;
+	
+	public DoubleDouble()
+	{
+		hi = lo = 0.0;
+	}
+	public DoubleDouble(double hi)
+	{
+		this.hi = hi;
+		lo = 0.0;
+	}
+	public DoubleDouble(double hi, double lo)
+	{
+		this.hi = hi;
+		this.lo = lo;
+	}
+	protected DoubleDouble(DoubleDouble d)
+	{
+		hi = d.hi;
+		lo = d.lo;
+	}
+	
+	public DoubleDouble copy()
+	{
+		return new DoubleDouble(this);
+	}
+	
+	/* nearest double-double to value */
+	public static DoubleDouble valueOf(BigDecimal value)
+	{
+		double hi = value.doubleValue();
+		double lo = value.subtract(new BigDecimal(hi)).doubleValue();
+		return new DoubleDouble(hi, lo);
+	}
+	
+	public BigDecimal toBigDecimal()
+	{
+		return new BigDecimal(hi).add(new BigDecimal(lo));
+	}
+	
+	/* set methods */
+	public DoubleDouble set(double hi)
+	{
+		this.hi = hi;
+		lo = 0.0;
+		return this;
+	}
+	public DoubleDouble set(double hi, double lo)
+	{
+		this.hi = hi;
+		this.lo = lo;
+		return this;
+	}
+	public DoubleDouble set(DoubleDouble d)
+	{
+		hi = d.hi;
+		lo = d.lo;
+		return this;
+	}
+	
+	public double doubleValue()
+	{
+		return hi + lo;
+	}
+	
+	/* arithmetic */
+	public DoubleDouble add(double b)
+	{
+		/* two-sum of hi and b */
+		double s = hi + b;
+		double bb = s - hi;
+		double e = (hi - (s - bb)) + (b - bb);
+		e += lo;
+		hi = s + e;
+		lo = e - (hi - s);
+		return this;
+	}
+	public DoubleDouble add(double bHi, double bLo)
+	{
+		double s = hi + bHi;
+		double bb = s - hi;
+		double e = (hi - (s - bb)) + (bHi - bb);
+		double t = lo + bLo;
+		bb = t - lo;
+		double f = (lo - (t - bb)) + (bLo - bb);
+		e += t;
+		double h = s + e;
+		e = e - (h - s);
+		e += f;
+		hi = h + e;
+		lo = e - (hi - h);
+		return this;
+	}
+	public DoubleDouble add(DoubleDouble b)
+	{
+		return add(b.hi, b.lo);
+	}
+	
+	public DoubleDouble subtract(double b)
+	{
+		return add(-b);
+	}
+	public DoubleDouble subtract(DoubleDouble b)
+	{
+		return add(-b.hi, -b.lo);
+	}
+	
+	public DoubleDouble multiply(double bHi, double bLo)
+	{
+		/* two-product of hi and bHi */
+		double p = hi * bHi;
+		double t = SPLITTER * hi;
+		double aH = t - (t - hi);
+		double aL = hi - aH;
+		t = SPLITTER * bHi;
+		double bH = t - (t - bHi);
+		double bL = bHi - bH;
+		double e = ((aH*bH - p) + aH*bL + aL*bH) + aL*bL;
+		e += hi*bLo + lo*bHi;
+		hi = p + e;
+		lo = e - (hi - p);
+		return this;
+	}
+	public DoubleDouble multiply(double b)
+	{
+		return multiply(b, 0.0);
+	}
+	public DoubleDouble multiply(DoubleDouble b)
+	{
+		return multiply(b.hi, b.lo);
+	}
+	
+	/* exact multiply by power of two */
+	public DoubleDouble scale(double powerOfTwo)
+	{
+		hi *= powerOfTwo;
+		lo *= powerOfTwo;
+		return this;
+	}
+	
+	public DoubleDouble square()
+	{
+		double p = hi * hi;
+		double t = SPLITTER * hi;
+		double aH = t - (t - hi);
+		double aL = hi - aH;
+		double e = ((aH*aH - p) + 2.0*aH*aL) + aL*aL;
+		e += 2.0*hi*lo;
+		hi = p + e;
+		lo = e - (hi - p);
+		return this;
+	}
+	
+	public DoubleDouble neg()
+	{
+		hi = -hi;
+		lo = -lo;
+		return this;
+	}
+	
+	public DoubleDouble abs()
+	{
+		if (hi < 0.0 || (hi == 0.0 && lo < 0.0))
+			neg();
+		return this;
+	}
+	
+	public boolean equals(Object ob)
+	{
+		if (this == ob)
+			return true;
+		else if (ob instanceof DoubleDouble)
+		{
+			DoubleDouble d = (DoubleDouble)ob;
+			return hi == d.hi && lo == d.lo;
+		}
+		else return false;
+	}
+	
+	/* consistent with equals (0.0 == -0.0) */
+	public int hashCode()
+	{
+		long bits = (hi != 0.0) ? Double.doubleToLongBits(hi) : 0L;
+		bits = bits*31 + ((lo != 0.0) ? Double.doubleToLongBits(lo) : 0L);
+		return (int)(bits ^ (bits >>> 32));
+	}
+	
+	public String toString()
+	{
+		return toBigDecimal().toString();
+	}
+}
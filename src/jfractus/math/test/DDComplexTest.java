@@ -0,0 +1,73 @@
+/**
+ * DDComplexTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.math.test;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import jfractus.math.DDComplex;
+import jfractus.math.DoubleDouble;
+
+public class DDComplexTest
+{
+	private void assertEqualsDD(BigDecimal expected, DoubleDouble value)
+	{
+		BigDecimal error = value.toBigDecimal().subtract(expected).abs();
+		assertTrue("Bad value: " + value + " expected: " + expected,
+				error.compareTo(new BigDecimal(1.0e-30)) <= 0);
+	}
+
+	@Test
+	public void testSquare()
+	{
+		DDComplex z = new DDComplex(
+				DoubleDouble.valueOf(new BigDecimal("-0.743643887037158704752191506")),
+				DoubleDouble.valueOf(new BigDecimal("0.131825904205311970493132056")));
+		BigDecimal re = z.re.toBigDecimal(), im = z.im.toBigDecimal();
+		z.square();
+		assertEqualsDD(re.multiply(re).subtract(im.multiply(im)), z.re);
+		assertEqualsDD(re.multiply(im).multiply(new BigDecimal(2)), z.im);
+	}
+
+	@Test
+	public void testMultiply()
+	{
+		DDComplex z = new DDComplex(
+				DoubleDouble.valueOf(new BigDecimal("1.2345678901234567890123456789")),
+				DoubleDouble.valueOf(new BigDecimal("-0.333333333333333333333333333333")));
+		DDComplex square = z.copy().square();
+		z.multiply(z);
+		assertEqualsDD(square.re.toBigDecimal(), z.re);
+		assertEqualsDD(square.im.toBigDecimal(), z.im);
+		
+		z.set(1.0, 2.0).multiply(new DDComplex(3.0, -4.0));
+		assertEquals(new DDComplex(11.0, 2.0), z);
+	}
+
+	@Test
+	public void testAddNorm()
+	{
+		DDComplex z = new DDComplex(0.5, -0.25);
+		z.add(1.0e-30, 2.0e-30);
+		assertEqualsDD(new BigDecimal(0.5).add(new BigDecimal(1.0e-30)), z.re);
+		assertEqualsDD(new BigDecimal(-0.25).add(new BigDecimal(2.0e-30)), z.im);
+		assertEquals(0.3125, z.norm2(), 1.0e-15);
+		z.conj();
+		assertEquals(0.25, z.im.hi, 0.0);
+	}
+
+	@Test
+	public void testHashCode()
+	{
+		DDComplex z = new DDComplex(1.0, 2.0).multiply(new DDComplex(3.0, -4.0));
+		assertEquals(new DDComplex(11.0, 2.0).hashCode(), z.hashCode());
+		assertEquals(new DDComplex(0.0, 1.0).hashCode(), new DDComplex(-0.0, 1.0).hashCode());
+	}
+}
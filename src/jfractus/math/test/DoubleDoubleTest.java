@@ -0,0 +1,92 @@
+/**
+ * DoubleDoubleTest.java
+ * Author: Mateusz Szpakowski
+ * License: LGPL v2.0
+ */
+
+package jfractus.math.test;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jfractus.math.DoubleDouble;
+
+public class DoubleDoubleTest
+{
+	private static final MathContext MC = new MathContext(60);
+	
+	private DoubleDouble dd;
+	
+	/* relative error must be below 2^-100 */
+	private void assertEqualsDD(BigDecimal expected, DoubleDouble value)
+	{
+		BigDecimal error = value.toBigDecimal().subtract(expected, MC).abs();
+		BigDecimal bound = expected.abs().multiply(new BigDecimal(Math.scalb(1.0, -100)));
+		assertTrue("Bad value: " + value + " expected: " + expected,
+				error.compareTo(bound) <= 0);
+	}
+
+	@Before
+	public void setUp() throws Exception
+	{
+		dd = new DoubleDouble();
+	}
+
+	@Test
+	public void testValueOf()
+	{
+		BigDecimal value = new BigDecimal("-0.74364388703715870475219150611477");
+		dd = DoubleDouble.valueOf(value);
+		assertEquals(value.doubleValue(), dd.hi, 0.0);
+		assertEqualsDD(value, dd);
+	}
+
+	@Test
+	public void testAdd()
+	{
+		dd.set(1.0).add(1.0e-25);
+		assertEqualsDD(new BigDecimal(1.0).add(new BigDecimal(1.0e-25)), dd);
+		DoubleDouble b = DoubleDouble.valueOf(new BigDecimal("-0.9999999999999999999999"));
+		dd.set(1.0).add(b);
+		assertEqualsDD(new BigDecimal(1.0).add(b.toBigDecimal()), dd);
+		dd.set(2.5, 1.0e-20).subtract(0.5);
+		assertEqualsDD(new BigDecimal(2.0).add(new BigDecimal(1.0e-20)), dd);
+	}
+
+	@Test
+	public void testMultiply()
+	{
+		BigDecimal a = new BigDecimal("1.23456789012345678901234567890");
+		BigDecimal b = new BigDecimal("-9.87654321098765432109876543210");
+		DoubleDouble da = DoubleDouble.valueOf(a);
+		DoubleDouble db = DoubleDouble.valueOf(b);
+		dd.set(da).multiply(db);
+		assertEqualsDD(da.toBigDecimal().multiply(db.toBigDecimal()), dd);
+		dd.set(da).multiply(3.0);
+		assertEqualsDD(da.toBigDecimal().multiply(new BigDecimal(3.0)), dd);
+	}
+
+	@Test
+	public void testSquare()
+	{
+		DoubleDouble da = DoubleDouble.valueOf(new BigDecimal("0.1318259042053119704931320563851"));
+		dd.set(da).square();
+		assertEqualsDD(da.toBigDecimal().multiply(da.toBigDecimal()), dd);
+		dd.set(da).neg().abs();
+		assertEquals(da, dd);
+	}
+
+	@Test
+	public void testHashCode()
+	{
+		DoubleDouble da = DoubleDouble.valueOf(new BigDecimal("2.718281828459045235360287471352"));
+		assertEquals(da.hashCode(), da.copy().hashCode());
+		assertEquals(new DoubleDouble(0.0, 0.0).hashCode(),
+				new DoubleDouble(-0.0, 0.0).hashCode());
+	}
+}
@@ -12,7 +12,7 @@ import org.junit.runners.Suite.*;
 
 @RunWith(Suite.class)
 @SuiteClasses({ComplexTest.class, Matrix3DTest.class, Vector2DTest.class,
-	Vector3DTest.class})
+	Vector3DTest.class, DoubleDoubleTest.class, DDComplexTest.class})
 public class MathTestSuite
 {
 